@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.serverextension.attributesecurityfilter;
+
+import com.esri.arcgis.geodatabase.ICursor;
+import com.esri.arcgis.geodatabase.IRow;
+import com.esri.arcgis.geodatabase.ISqlWorkspace;
+import com.esri.arcgis.system.Cleaner;
+import com.esri.serverextension.core.util.ArcObjectsInteropException;
+import com.esri.serverextension.core.util.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Caches the {@link AgencyPermissions} per user name, so the security check
+ * of a query is a map lookup instead of a join over the Filter_* tables.
+ * <p>
+ * Permissions expire after <code>agencyPermissionTimeToLiveSeconds</code>
+ * (300 by default) and are read again by the first request after three
+ * quarters of that time, while concurrent requests keep using the cached
+ * permissions. The SQL workspace belongs to the thread constructing the
+ * extension, so permissions are read on request threads rather than by a
+ * background thread.
+ * <p>
+ * With <code>agencyPermissionPreload</code> set to <code>true</code>, the
+ * permissions of all users are read in a single query at construct time and
+ * refreshed as a whole, and users not found in that query have no access.
+ * Otherwise at most <code>agencyPermissionCacheMaximumSize</code> (1000 by
+ * default) users are cached, evicting the least recently used.
+ */
+@Component
+public class AgencyPermissionCache {
+
+    private static final String AGENCY_ID_FOR_USER_NAME_SQL = "SELECT a.Agency_ID FROM Agency a " +
+            "INNER JOIN Filter_Group_Agency ga ON (a.Agency_ID = ga.Agency_ID) " +
+            "INNER JOIN Filter_User_Group ug ON (ga.Group_ID = ug.Group_ID) " +
+            "INNER JOIN Filter_User u ON (ug.User_ID = u.User_ID) " +
+            "WHERE u.User_Name = LOWER('%1$s')";
+
+    private static final String AGENCY_ID_FOR_ALL_USERS_SQL = "SELECT u.User_Name, a.Agency_ID FROM Agency a " +
+            "INNER JOIN Filter_Group_Agency ga ON (a.Agency_ID = ga.Agency_ID) " +
+            "INNER JOIN Filter_User_Group ug ON (ga.Group_ID = ug.Group_ID) " +
+            "INNER JOIN Filter_User u ON (ug.User_ID = u.User_ID)";
+
+    private final Logger logger = LoggerFactory
+            .getLogger(AgencyPermissionCache.class);
+
+    private final ISqlWorkspace sqlWorkspace;
+    private final long timeToLiveNanos;
+    private final boolean preload;
+    private final Map<String, Entry<AgencyPermissions>> entries;
+    private volatile Entry<Map<String, AgencyPermissions>> preloadedEntry;
+
+    @Inject
+    public AgencyPermissionCache(ISqlWorkspace sqlWorkspace,
+                                 @Value("${agencyPermissionTimeToLiveSeconds:300}") long timeToLiveSeconds,
+                                 @Value("${agencyPermissionPreload:false}") boolean preload,
+                                 @Value("${agencyPermissionCacheMaximumSize:1000}") final int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException(
+                    "Argument 'maximumSize' must be positive.");
+        }
+        this.sqlWorkspace = sqlWorkspace;
+        this.timeToLiveNanos = TimeUnit.SECONDS.toNanos(timeToLiveSeconds);
+        this.preload = preload;
+        this.entries = new LinkedHashMap<String, Entry<AgencyPermissions>>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<AgencyPermissions>> eldest) {
+                return size() > maximumSize;
+            }
+        };
+    }
+
+    /**
+     * Reads the permissions of all users if preloading is enabled.
+     */
+    public void preload() {
+        if (preload) {
+            preloadedEntry = newEntry(readAllAgencyPermissions(), nanoTime());
+        }
+    }
+
+    public AgencyPermissions getAgencyPermissions(String username) {
+        String key = username.toLowerCase(Locale.ROOT);
+        long now = nanoTime();
+        if (preload) {
+            Entry<Map<String, AgencyPermissions>> entry = preloadedEntry;
+            if (entry == null || entry.isExpired(now)) {
+                entry = newEntry(readAllAgencyPermissions(), now);
+                preloadedEntry = entry;
+            } else if (entry.claimRefresh(now)) {
+                try {
+                    entry = newEntry(readAllAgencyPermissions(), now);
+                    preloadedEntry = entry;
+                } catch (RuntimeException ex) {
+                    entry.refreshing.set(false);
+                    logger.warn("Failed to refresh agency permissions.", ex);
+                }
+            }
+            AgencyPermissions permissions = entry.value.get(key);
+            return permissions != null ? permissions : AgencyPermissions.NONE;
+        }
+        Entry<AgencyPermissions> entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry == null || entry.isExpired(now)) {
+            entry = load(key, now);
+        } else if (entry.claimRefresh(now)) {
+            try {
+                entry = load(key, now);
+            } catch (RuntimeException ex) {
+                entry.refreshing.set(false);
+                logger.warn(String.format("Failed to refresh agency permissions of user '%1$s'.",
+                        username), ex);
+            }
+        }
+        return entry.value;
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+        preloadedEntry = null;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
+    private Entry<AgencyPermissions> load(String key, long now) {
+        Entry<AgencyPermissions> entry = newEntry(readAgencyPermissions(key), now);
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    AgencyPermissions readAgencyPermissions(String username) {
+        String sql = String.format(AGENCY_ID_FOR_USER_NAME_SQL, username.replace("'", "''"));
+        logger.debug("Agency ID for username SQL: {}", sql);
+
+        ICursor cursor = null;
+        List<Integer> agencyIds = new ArrayList<>();
+        try {
+            cursor = (ICursor) sqlWorkspace.openQueryCursor(sql);
+            IRow row = null;
+            while ((row = cursor.nextRow()) != null) {
+                agencyIds.add((Integer) row.getValue(0));
+                Cleaner.release(row);
+            }
+        } catch (IOException ex) {
+            throw new ArcObjectsInteropException(
+                    String.format(
+                            "Failed to query agency IDs for username '%1$s'. The query statement was: %2$s",
+                            username, sql), ex);
+        } finally {
+            if (cursor != null) {
+                Cleaner.release(cursor);
+            }
+        }
+        return agencyIds.isEmpty() ? AgencyPermissions.NONE
+                : new AgencyPermissions(agencyIds);
+    }
+
+    Map<String, AgencyPermissions> readAllAgencyPermissions() {
+        StopWatch stopWatch = StopWatch.createAndStart();
+        ICursor cursor = null;
+        Map<String, Collection<Integer>> agencyIdsByUsername = new HashMap<>();
+        try {
+            cursor = (ICursor) sqlWorkspace.openQueryCursor(AGENCY_ID_FOR_ALL_USERS_SQL);
+            IRow row = null;
+            while ((row = cursor.nextRow()) != null) {
+                String username = ((String) row.getValue(0)).toLowerCase(Locale.ROOT);
+                Collection<Integer> agencyIds = agencyIdsByUsername.get(username);
+                if (agencyIds == null) {
+                    agencyIds = new ArrayList<>();
+                    agencyIdsByUsername.put(username, agencyIds);
+                }
+                agencyIds.add((Integer) row.getValue(1));
+                Cleaner.release(row);
+            }
+        } catch (IOException ex) {
+            throw new ArcObjectsInteropException(
+                    String.format(
+                            "Failed to query agency IDs for all users. The query statement was: %1$s",
+                            AGENCY_ID_FOR_ALL_USERS_SQL), ex);
+        } finally {
+            if (cursor != null) {
+                Cleaner.release(cursor);
+            }
+        }
+        Map<String, AgencyPermissions> permissions = new HashMap<>();
+        for (Map.Entry<String, Collection<Integer>> entry : agencyIdsByUsername.entrySet()) {
+            permissions.put(entry.getKey(), new AgencyPermissions(entry.getValue()));
+        }
+        logger.info("Read agency permissions of {} user(s) in {} second(s).",
+                permissions.size(), stopWatch.stop().elapsedTimeSeconds());
+        return permissions;
+    }
+
+    private <T> Entry<T> newEntry(T value, long now) {
+        return new Entry<>(value, now + timeToLiveNanos / 4 * 3, now + timeToLiveNanos);
+    }
+
+    private static final class Entry<T> {
+
+        private final T value;
+        private final long refreshAt;
+        private final long expiresAt;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private Entry(T value, long refreshAt, long expiresAt) {
+            this.value = value;
+            this.refreshAt = refreshAt;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+
+        private boolean claimRefresh(long now) {
+            return now - refreshAt >= 0 && refreshing.compareAndSet(false, true);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.serverextension.attributesecurityfilter;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The agencies a user may see incidents of, together with the SQL predicate
+ * restricting a query to these agencies, rendered once when the permissions
+ * are read.
+ */
+public final class AgencyPermissions {
+
+    public static final AgencyPermissions NONE = new AgencyPermissions(
+            Collections.<Integer>emptySet());
+
+    private final Set<Integer> agencyIds;
+    private final String agencyCondition;
+
+    public AgencyPermissions(Collection<Integer> agencyIds) {
+        if (agencyIds == null) {
+            throw new NullPointerException("Argument 'agencyIds' is required.");
+        }
+        this.agencyIds = Collections.unmodifiableSet(new LinkedHashSet<>(
+                new TreeSet<>(agencyIds)));
+        this.agencyCondition = renderAgencyCondition(this.agencyIds);
+    }
+
+    public Set<Integer> getAgencyIds() {
+        return agencyIds;
+    }
+
+    /**
+     * Returns the predicate restricting a query to the agencies of the user.
+     *
+     * @return the predicate, or <code>null</code> if the user may not see any agency
+     */
+    public String getAgencyCondition() {
+        return agencyCondition;
+    }
+
+    public boolean isEmpty() {
+        return agencyIds.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(agencyIds.toArray(new Integer[agencyIds.size()]));
+    }
+
+    private static String renderAgencyCondition(Set<Integer> agencyIds) {
+        if (agencyIds.isEmpty()) {
+            return null;
+        }
+        StringBuilder condition = new StringBuilder("Responsible_Agency_ID IN (");
+        Iterator<Integer> agencyIdIterator = agencyIds.iterator();
+        while (agencyIdIterator.hasNext()) {
+            condition.append(agencyIdIterator.next().intValue());
+            if (agencyIdIterator.hasNext()) {
+                condition.append(", ");
+            }
+        }
+        return condition.append(')').toString();
+    }
+}
@@ -23,6 +23,7 @@ import com.esri.serverextension.core.server.AbstractRestServerObjectInterceptor;
 import com.esri.serverextension.core.server.MapServerUtilities;
 import com.esri.serverextension.core.server.ServerObjectExtensionException;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 
 import java.io.IOException;
@@ -60,6 +61,16 @@ public class AttributeSecurityFilter extends AbstractRestServerObjectInterceptor
         beanFactory.registerSingleton("sqlWorkspace", sqlWorkspace);
     }
 
+    @Override
+    protected void doStart(ApplicationContext applicationContext) {
+        super.doStart(applicationContext);
+        try {
+            applicationContext.getBean(AgencyPermissionCache.class).preload();
+        } catch (Exception ex) {
+            getLogger().warn("Failed to preload agency permissions.", ex);
+        }
+    }
+
     @Override
     protected void doShutdown() {
         super.doShutdown();
@@ -13,12 +13,14 @@
  */
 package com.esri.serverextension.attributesecurityfilter;
 
-import com.esri.serverextension.core.rest.api.QueryMapServiceLayerOperationInput;
+import com.esri.serverextension.core.rest.json.JSONFieldRewriter;
 import com.esri.serverextension.core.security.SecurityContext;
 import com.esri.serverextension.core.server.RestDelegate;
 import com.esri.serverextension.core.server.RestRequest;
 import com.esri.serverextension.core.server.RestResponse;
 import com.esri.serverextension.core.server.ServerObjectExtensionContext;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,7 +30,6 @@ import org.springframework.web.bind.annotation.RequestMapping;
 
 import javax.inject.Inject;
 import java.io.IOException;
-import java.util.Set;
 
 @Component
 public class QueryOperationDelegate {
@@ -59,27 +60,9 @@ public class QueryOperationDelegate {
             SecurityContext securityContext) throws IOException {
         logger.debug("Handling request for /layer/0/query ...");
 
-        QueryMapServiceLayerOperationInput input = objectMapper.readValue(
-                request.getOperationInput(), QueryMapServiceLayerOperationInput.class);
-
-        Set<Integer> agencyIds = accessController.checkAccess(securityContext);
-        StringBuilder agencyIdsString = new StringBuilder();
-        for (Integer agencyId : agencyIds) {
-            agencyIdsString.append(String.format("%1$d, ", agencyId));
-        }
-        if (agencyIdsString.length() > 0) {
-            agencyIdsString.delete(agencyIdsString.length() - 2, agencyIdsString.length());
-        }
-        String agencyCondition = String.format("Responsible_Agency_ID IN (%1$s)", agencyIdsString);
-        String where = input.getWhere();
-        if (StringUtils.isEmpty(where)) {
-            where = agencyCondition;
-        } else {
-            where = String.format("(%1$s) AND (%2$s)", where, agencyCondition);
-        }
-        input.setWhere(where);
-
-        String filteredOperationInput = objectMapper.writeValueAsString(input);
+        AgencyPermissions permissions = accessController.checkAccess(securityContext);
+        String filteredOperationInput = filterOperationInput(request.getOperationInput(),
+                permissions);
 
         RestRequest filteredRequest = RestRequest.create(
                 request.getCapabilities(),
@@ -92,4 +75,29 @@ public class QueryOperationDelegate {
 
         return handler.process(filteredRequest, null);
     }
+
+    /**
+     * Adds the agency predicate to the where clause of a query.
+     */
+    String filterOperationInput(String operationInput, AgencyPermissions permissions)
+            throws IOException {
+        JSONFieldRewriter rewriter = new JSONFieldRewriter(objectMapper.getFactory());
+        // the input is copied as is except for the where clause, so input
+        // geometries are never converted to ArcObjects
+        final String agencyCondition = permissions.getAgencyCondition();
+        rewriter.rewriteField("where", new JSONFieldRewriter.FieldRewrite() {
+            @Override
+            public void writeValue(JsonParser currentValue, JsonGenerator generator)
+                    throws IOException {
+                String where = currentValue != null ? currentValue.getValueAsString() : null;
+                if (StringUtils.isEmpty(where)) {
+                    where = agencyCondition;
+                } else {
+                    where = String.format("(%1$s) AND (%2$s)", where, agencyCondition);
+                }
+                generator.writeString(where);
+            }
+        });
+        return rewriter.rewrite(operationInput);
+    }
 }
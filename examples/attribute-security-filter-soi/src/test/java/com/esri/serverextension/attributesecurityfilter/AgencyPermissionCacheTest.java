@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.serverextension.attributesecurityfilter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class AgencyPermissionCacheTest {
+
+    private TestAgencyPermissionCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        cache = new TestAgencyPermissionCache(false, 2);
+    }
+
+    @Test
+    public void testHit() throws Exception {
+        AgencyPermissions first = cache.getAgencyPermissions("Alice");
+        assertSame(first, cache.getAgencyPermissions("alice"));
+        assertEquals(1, cache.reads);
+        assertEquals("Responsible_Agency_ID IN (1, 2)", first.getAgencyCondition());
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        cache.getAgencyPermissions("alice");
+        cache.time += TimeUnit.SECONDS.toNanos(100);
+        cache.agencyIds = Arrays.asList(3);
+        AgencyPermissions expired = cache.getAgencyPermissions("alice");
+        assertEquals(Collections.singleton(3), expired.getAgencyIds());
+        assertEquals(2, cache.reads);
+    }
+
+    @Test
+    public void testSingleRefreshClaim() throws Exception {
+        final AgencyPermissions first = cache.getAgencyPermissions("alice");
+        cache.time += TimeUnit.SECONDS.toNanos(80);
+        cache.agencyIds = Arrays.asList(3);
+        // a concurrent request keeps the current permissions while one refreshes
+        cache.onRead = new Runnable() {
+            @Override
+            public void run() {
+                cache.onRead = null;
+                assertSame(first, cache.getAgencyPermissions("alice"));
+            }
+        };
+        AgencyPermissions refreshed = cache.getAgencyPermissions("alice");
+        assertEquals(Collections.singleton(3), refreshed.getAgencyIds());
+        assertSame(refreshed, cache.getAgencyPermissions("alice"));
+        assertEquals(2, cache.reads);
+    }
+
+    @Test
+    public void testFailedRefreshKeepsPermissions() throws Exception {
+        AgencyPermissions first = cache.getAgencyPermissions("alice");
+        cache.time += TimeUnit.SECONDS.toNanos(80);
+        cache.failure = new IllegalStateException("Database unavailable.");
+        assertSame(first, cache.getAgencyPermissions("alice"));
+        assertEquals(2, cache.reads);
+        // the next request claims the refresh again
+        cache.failure = null;
+        cache.agencyIds = Arrays.asList(3);
+        assertEquals(Collections.singleton(3),
+                cache.getAgencyPermissions("alice").getAgencyIds());
+        assertEquals(3, cache.reads);
+    }
+
+    @Test
+    public void testFailedReadOfExpiredPermissions() throws Exception {
+        cache.getAgencyPermissions("alice");
+        cache.time += TimeUnit.SECONDS.toNanos(100);
+        cache.failure = new IllegalStateException("Database unavailable.");
+        try {
+            cache.getAgencyPermissions("alice");
+            fail("Expired permissions must not be used.");
+        } catch (IllegalStateException ex) {
+            assertSame(cache.failure, ex);
+        }
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        cache.getAgencyPermissions("alice");
+        cache.getAgencyPermissions("bob");
+        cache.getAgencyPermissions("alice");
+        cache.getAgencyPermissions("carol");
+        assertEquals(2, cache.size());
+        cache.getAgencyPermissions("alice");
+        assertEquals(3, cache.reads);
+        cache.getAgencyPermissions("bob");
+        assertEquals(4, cache.reads);
+    }
+
+    @Test
+    public void testPreload() throws Exception {
+        cache = new TestAgencyPermissionCache(true, 2);
+        cache.preload();
+        assertEquals(Collections.singleton(7),
+                cache.getAgencyPermissions("Alice").getAgencyIds());
+        assertSame(AgencyPermissions.NONE, cache.getAgencyPermissions("bob"));
+        assertEquals(1, cache.reads);
+        assertEquals(0, cache.size());
+    }
+
+    private static final class TestAgencyPermissionCache extends AgencyPermissionCache {
+
+        private long time;
+        private int reads;
+        private List<Integer> agencyIds = Arrays.asList(2, 1);
+        private RuntimeException failure;
+        private Runnable onRead;
+
+        private TestAgencyPermissionCache(boolean preload, int maximumSize) {
+            super(null, 100, preload, maximumSize);
+        }
+
+        @Override
+        long nanoTime() {
+            return time;
+        }
+
+        @Override
+        AgencyPermissions readAgencyPermissions(String username) {
+            reads++;
+            if (onRead != null) {
+                onRead.run();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return new AgencyPermissions(agencyIds);
+        }
+
+        @Override
+        Map<String, AgencyPermissions> readAllAgencyPermissions() {
+            reads++;
+            return Collections.singletonMap("alice",
+                    new AgencyPermissions(Collections.singleton(7)));
+        }
+    }
+}
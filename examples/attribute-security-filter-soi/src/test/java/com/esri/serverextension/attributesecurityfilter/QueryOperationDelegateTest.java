@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.serverextension.attributesecurityfilter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class QueryOperationDelegateTest {
+
+    private ObjectMapper objectMapper;
+    private QueryOperationDelegate delegate;
+
+    @Before
+    public void setUp() throws Exception {
+        objectMapper = new ObjectMapper();
+        delegate = new QueryOperationDelegate();
+        delegate.setObjectMapper(objectMapper);
+    }
+
+    @Test
+    public void testAgencyPredicateIsAdded() throws Exception {
+        JsonNode input = filter("{\"where\":\"Status = 'Open'\",\"geometry\":{\"x\":1,\"y\":2}}");
+        assertEquals("(Status = 'Open') AND (Responsible_Agency_ID IN (10))",
+                input.get("where").asText());
+        assertEquals(2, input.get("geometry").get("y").asInt());
+    }
+
+    @Test
+    public void testAgencyPredicateWithoutWhereClause() throws Exception {
+        JsonNode input = filter("{\"f\":\"json\"}");
+        assertEquals("Responsible_Agency_ID IN (10)", input.get("where").asText());
+        assertFalse(input.has("objectIds"));
+    }
+
+    @Test
+    public void testRequestedObjectIdsAreKept() throws Exception {
+        JsonNode input = filter("{\"where\":\"1=1\",\"objectIds\":\"2,3\"}");
+        assertEquals("(1=1) AND (Responsible_Agency_ID IN (10))", input.get("where").asText());
+        assertEquals("2,3", input.get("objectIds").asText());
+    }
+
+    private JsonNode filter(String operationInput) throws Exception {
+        return objectMapper.readTree(delegate.filterOperationInput(operationInput,
+                new AgencyPermissions(Arrays.asList(10))));
+    }
+}
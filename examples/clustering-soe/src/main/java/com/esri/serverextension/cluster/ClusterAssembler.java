@@ -17,19 +17,30 @@ package com.esri.serverextension.cluster;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 /**
- * Assembles the clustering. Features need to be sorted by the {@link ClusterFeature}'s value for clusters to be
+ * Assembles the clustering. Features need to be sorted by their value for clusters to be
  * repeatable across the same set of features.
+ * <p>
+ * Clusters and features are kept in parallel primitive arrays and the grid cells are heads into a
+ * pool of linked nodes, so adding a feature does not allocate any objects. Small grids are a flat
+ * array of all cells; larger grids, as for a large extent at a small scale, are a hash table of the
+ * cells in use, so memory depends on the number of clusters and not on the size of the grid.
+ * Every cluster keeps its features as a linked list (most recently added first), which is what
+ * {@link #fixClusters()} walks to move features to closer clusters.
  */
-public class ClusterAssembler {
+public class ClusterAssembler implements ClusterFeatureSink {
 
     private final Logger logger = LoggerFactory.getLogger(ClusterAssembler.class);
 
+    //the largest grid that is allocated as a flat array of all cells
+    static final int MAX_DENSE_CELLS = 1 << 16;
+
+    private static final int INITIAL_CELL_CAPACITY = 256;
+
+    private static final int NONE = -1;
+
     //The grid's extent
     private ClusterExtent _extent;
 
@@ -41,21 +52,48 @@ public class ClusterAssembler {
     //number of columns in grid
     private int    _numColumns;
 
-    //number of columns in grid
+    //number of rows in grid
     private int    _numRows;
 
-    //the cells which keeps the clustering info
-    private Map<Integer, ArrayList<Cluster>> _cells;
-
     //the desired cluster distance in pixels
     private double _clusterDistanceInPixels;
 
-    //all the clusters which are created
-    private ArrayList<Cluster> _clusters;
-
     //number of features from which clusters were built
     private long _numFeatures;
 
+    //whether fixClusters() has been called
+    private boolean _fixed;
+
+    //clusters: centroid, value, most recently added feature and grid node while features are added
+    private int      _numClusters;
+    private double[] _clusterX = new double[256];
+    private double[] _clusterY = new double[256];
+    private double[] _clusterValue = new double[256];
+    private int[]    _clusterFeatureHead = new int[256];
+    private int[]    _clusterGridNode = new int[256];
+
+    //features: position, value and the next older feature of the same cluster
+    private int      _numStoredFeatures;
+    private double[] _featureX = new double[1024];
+    private double[] _featureY = new double[1024];
+    private double[] _featureValue = new double[1024];
+    private int[]    _featureNext = new int[1024];
+
+    //grid: first and last node of every cell, by cell index for a flat grid or by hash table slot
+    private int[] _cellHead;
+    private int[] _cellTail;
+
+    //hash table of the cells in use (row * _numColumns + column, -1 for a free slot), null for a flat grid
+    private long[] _cellKeys;
+    private int    _numCellKeys;
+
+    //grid nodes: cluster and neighbours within the cell; removed nodes are reused through _freeNode
+    private int   _numNodes;
+    private int   _freeNode = NONE;
+    private int[] _nodeCluster = new int[256];
+    private int[] _nodeNext = new int[256];
+    private int[] _nodePrev = new int[256];
+
     /**
      * Assemble the clustering
      * @param mapUnitsPerPixel map units per pixel (like meters per pixel)
@@ -64,32 +102,46 @@ public class ClusterAssembler {
      */
     public ClusterAssembler(double mapUnitsPerPixel,
                             double clusterDistanceInPixels, ClusterExtent extent){
-        _cells = new HashMap<> ();
+        this(mapUnitsPerPixel, clusterDistanceInPixels, extent, MAX_DENSE_CELLS);
+    }
+
+    ClusterAssembler(double mapUnitsPerPixel, double clusterDistanceInPixels, ClusterExtent extent,
+                     int maxDenseCells) {
         _mapUnitsPerPixel = mapUnitsPerPixel;
         _clusterDistanceInPixels = clusterDistanceInPixels;
         _cellSize = mapUnitsPerPixel * _clusterDistanceInPixels;
         _extent = extent;
-        _numColumns = getGridColumn(extent.getXMax())+1;
-        _numRows = getGridRow(extent.getYMax())+1;
-        _clusters = new ArrayList<>();
-    }
-
-    /**
-     * Retrieves all the clusters
-     * @return
-     */
-    public ArrayList<Cluster>getClusters(){
-        return _clusters;
+        long numColumns = (long) Math.floor(extent.getWidth() / _cellSize) + 1;
+        long numRows = (long) Math.floor(extent.getHeight() / _cellSize) + 1;
+        if (numColumns <= 0 || numRows <= 0 || numColumns >= Integer.MAX_VALUE || numRows >= Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format(
+                    "Cannot build a cluster grid of %1$d x %2$d cells.", numColumns, numRows));
+        }
+        _numColumns = (int) numColumns;
+        _numRows = (int) numRows;
+        int capacity;
+        if (numColumns * numRows <= maxDenseCells) {
+            capacity = _numColumns * _numRows;
+        } else {
+            capacity = INITIAL_CELL_CAPACITY;
+            _cellKeys = new long[capacity];
+            Arrays.fill(_cellKeys, NONE);
+        }
+        _cellHead = new int[capacity];
+        _cellTail = new int[capacity];
+        Arrays.fill(_cellHead, NONE);
+        Arrays.fill(_cellTail, NONE);
     }
 
-    /**
-     * Add a feature
-     * @param feature
-     */
-    public void addFeature(ClusterFeature feature) {
+    @Override
+    public void addFeature(double x, double y, double value) {
+        if (_fixed) {
+            throw new IllegalStateException("Features cannot be added after the clusters were fixed.");
+        }
         _numFeatures++;
-        Cluster closestCluster = getClosestCluster(feature.getPoint());
-        if (closestCluster != null) {
+        int closestCluster = getClosestCluster(x, y);
+        int feature = storeFeature(x, y, value);
+        if (closestCluster != NONE) {
             addFeatureToCluster(feature, closestCluster);
         }else{
             createCluster(feature);//create new cluster
@@ -101,6 +153,21 @@ public class ClusterAssembler {
         }
     }
 
+    /**
+     * Add a cluster which was assembled elsewhere as is, without merging it into an existing cluster.
+     * In {@link #fixClusters()} the cluster is treated as a single feature at its centroid.
+     * @param x x coordinate of the cluster's centroid
+     * @param y y coordinate of the cluster's centroid
+     * @param value the cluster's value
+     */
+    public void addCluster(double x, double y, double value) {
+        if (_fixed) {
+            throw new IllegalStateException("Clusters cannot be added after the clusters were fixed.");
+        }
+        _numFeatures++;
+        createCluster(storeFeature(x, y, value));
+    }
+
     /**
      * Returns the number of features used to built clusters.
      *
@@ -110,6 +177,37 @@ public class ClusterAssembler {
         return _numFeatures;
     }
 
+    /**
+     * Returns the number of clusters, including clusters whose value dropped to 0 in {@link #fixClusters()}.
+     *
+     * @return number of clusters
+     */
+    public int getNumberOfClusters() {
+        return _numClusters;
+    }
+
+    public double getClusterX(int cluster) {
+        checkCluster(cluster);
+        return _clusterX[cluster];
+    }
+
+    public double getClusterY(int cluster) {
+        checkCluster(cluster);
+        return _clusterY[cluster];
+    }
+
+    public double getClusterValue(int cluster) {
+        checkCluster(cluster);
+        return _clusterValue[cluster];
+    }
+
+    private void checkCluster(int cluster) {
+        if (cluster < 0 || cluster >= _numClusters) {
+            throw new IndexOutOfBoundsException(String.format(
+                    "Cluster %1$d does not exist, number of clusters: %2$d", cluster, _numClusters));
+        }
+    }
+
     //from yValue real-world, what is the grid row
     private int getGridRow(double yValue){
         return (int) Math.floor((yValue-_extent.getYMin())/_cellSize);
@@ -120,70 +218,212 @@ public class ClusterAssembler {
         return (int) Math.floor((xValue-_extent.getXMin())/_cellSize);
     }
 
+    //slot of a cell or NONE if the cell is outside of the grid or, for a hashed grid, not in use
+    private int findCell(int row, int column) {
+        if (row < 0 || column < 0 || row >= _numRows || column >= _numColumns) {
+            return NONE;
+        }
+        if (_cellKeys == null) {
+            return row * _numColumns + column;
+        }
+        long key = (long) row * _numColumns + column;
+        int mask = _cellKeys.length - 1;
+        for (int slot = hashCell(key) & mask; _cellKeys[slot] != NONE; slot = (slot + 1) & mask) {
+            if (_cellKeys[slot] == key) {
+                return slot;
+            }
+        }
+        return NONE;
+    }
+
+    //slot of a cell, which is put in use if it isn't yet, or NONE if the cell is outside of the grid
+    private int addCell(int row, int column) {
+        if (row < 0 || column < 0 || row >= _numRows || column >= _numColumns) {
+            return NONE;
+        }
+        if (_cellKeys == null) {
+            return row * _numColumns + column;
+        }
+        if ((_numCellKeys + 1) * 2 > _cellKeys.length) {
+            growCells();
+        }
+        long key = (long) row * _numColumns + column;
+        int mask = _cellKeys.length - 1;
+        int slot = hashCell(key) & mask;
+        while (_cellKeys[slot] != NONE) {
+            if (_cellKeys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        _cellKeys[slot] = key;
+        _numCellKeys++;
+        return slot;
+    }
+
+    //doubles the hash table, cells keep their nodes
+    private void growCells() {
+        long[] keys = _cellKeys;
+        int[] heads = _cellHead;
+        int[] tails = _cellTail;
+        int capacity = keys.length * 2;
+        int mask = capacity - 1;
+        _cellKeys = new long[capacity];
+        _cellHead = new int[capacity];
+        _cellTail = new int[capacity];
+        Arrays.fill(_cellKeys, NONE);
+        Arrays.fill(_cellHead, NONE);
+        Arrays.fill(_cellTail, NONE);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != NONE) {
+                int slot = hashCell(keys[i]) & mask;
+                while (_cellKeys[slot] != NONE) {
+                    slot = (slot + 1) & mask;
+                }
+                _cellKeys[slot] = keys[i];
+                _cellHead[slot] = heads[i];
+                _cellTail[slot] = tails[i];
+            }
+        }
+    }
+
+    private static int hashCell(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32);
+    }
+
+    private int storeFeature(double x, double y, double value) {
+        int feature = _numStoredFeatures++;
+        if (feature == _featureX.length) {
+            int capacity = feature * 2;
+            _featureX = Arrays.copyOf(_featureX, capacity);
+            _featureY = Arrays.copyOf(_featureY, capacity);
+            _featureValue = Arrays.copyOf(_featureValue, capacity);
+            _featureNext = Arrays.copyOf(_featureNext, capacity);
+        }
+        _featureX[feature] = x;
+        _featureY[feature] = y;
+        _featureValue[feature] = value;
+        _featureNext[feature] = NONE;
+        return feature;
+    }
+
+    private void createCluster(int feature) {
+        int cluster = _numClusters++;
+        if (cluster == _clusterX.length) {
+            int capacity = cluster * 2;
+            _clusterX = Arrays.copyOf(_clusterX, capacity);
+            _clusterY = Arrays.copyOf(_clusterY, capacity);
+            _clusterValue = Arrays.copyOf(_clusterValue, capacity);
+            _clusterFeatureHead = Arrays.copyOf(_clusterFeatureHead, capacity);
+            _clusterGridNode = Arrays.copyOf(_clusterGridNode, capacity);
+        }
+        _clusterX[cluster] = _featureX[feature];
+        _clusterY[cluster] = _featureY[feature];
+        _clusterValue[cluster] = _featureValue[feature];
+        _clusterFeatureHead[cluster] = feature;
+        _clusterGridNode[cluster] = NONE;
+        addClusterToGrid(cluster);
+    }
+
     //add a feature to an EXISTING cluster
-    private void addFeatureToCluster(ClusterFeature feature, Cluster cluster) {
+    private void addFeatureToCluster(int feature, int cluster) {
         //remove it from the grid because its coordinates are going to change
         removeClusterFromGrid(cluster);
 
         //add the feature to the cluster
-        cluster.addFeature(feature);
+        double value = _featureValue[feature];
+        double count = _clusterValue[cluster];
+        _featureNext[feature] = _clusterFeatureHead[cluster];
+        _clusterFeatureHead[cluster] = feature;
+        double ptc = value/(count + value);
+        double ctc = count/(count + value);
+
+        double x = (_featureX[feature] * ptc + (_clusterX[cluster] * ctc));
+        double y = (_featureY[feature] * ptc + (_clusterY[cluster] * ctc));
+        _clusterX[cluster] = x;
+        _clusterY[cluster] = y;
+        _clusterValue[cluster] += value;
 
         //add it back in to the grid
         addClusterToGrid(cluster);
     }
 
-    //remove a cluster from the grid (it is already in the grid)
-    private void removeClusterFromGrid(Cluster cluster){
-        ClusterPoint pt = cluster.getPoint();
-        int row = getGridRow(pt.y);
-        int column = getGridColumn(pt.x);
-        int index = _numRows * row + column;
-        ArrayList<Cluster> cell = _cells.get(index);
-
-        if (cell != null) {
-            cell.remove(cluster);
-        }else{
-            System.out.println("Programming error");
+    //remove a cluster from the grid (it is in the grid unless its centroid is outside of the extent)
+    private void removeClusterFromGrid(int cluster){
+        int node = _clusterGridNode[cluster];
+        if (node == NONE) {
+            return;
+        }
+        int row = getGridRow(_clusterY[cluster]);
+        int column = getGridColumn(_clusterX[cluster]);
+        int index = findCell(row, column);
+        int prev = _nodePrev[node];
+        int next = _nodeNext[node];
+        if (prev == NONE) {
+            _cellHead[index] = next;
+        } else {
+            _nodeNext[prev] = next;
         }
+        if (next == NONE) {
+            _cellTail[index] = prev;
+        } else {
+            _nodePrev[next] = prev;
+        }
+        _nodeNext[node] = _freeNode;
+        _freeNode = node;
+        _clusterGridNode[cluster] = NONE;
     }
 
     //Add the cluster to the grid
-    private void addClusterToGrid(Cluster cluster){
-        ClusterPoint pt = cluster.getPoint();
-        int row = getGridRow(pt.y);
-        int column = getGridColumn(pt.x);
-        int index = _numRows * row + column;
-        ArrayList<Cluster> cell = _cells.get(index);
-
-        if (cell == null) {
-            cell = new ArrayList<>();
-            _cells.put(index, cell);
-        }
-        cell.add(cluster);
+    private void addClusterToGrid(int cluster){
+        int row = getGridRow(_clusterY[cluster]);
+        int column = getGridColumn(_clusterX[cluster]);
+        int index = addCell(row, column);
+        if (index != NONE) {
+            _clusterGridNode[cluster] = appendToCell(index, cluster);
+        }
     }
 
-    private void createCluster(ClusterFeature feature) {
-        Cluster cluster = new Cluster(feature);
-        addClusterToGrid(cluster);
-        _clusters.add(cluster);
+    //append a cluster to the end of a cell
+    private int appendToCell(int index, int cluster) {
+        int node = _freeNode;
+        if (node != NONE) {
+            _freeNode = _nodeNext[node];
+        } else {
+            node = _numNodes++;
+            if (node == _nodeCluster.length) {
+                int capacity = node * 2;
+                _nodeCluster = Arrays.copyOf(_nodeCluster, capacity);
+                _nodeNext = Arrays.copyOf(_nodeNext, capacity);
+                _nodePrev = Arrays.copyOf(_nodePrev, capacity);
+            }
+        }
+        int tail = _cellTail[index];
+        _nodeCluster[node] = cluster;
+        _nodeNext[node] = NONE;
+        _nodePrev[node] = tail;
+        if (tail == NONE) {
+            _cellHead[index] = node;
+        } else {
+            _nodeNext[tail] = node;
+        }
+        _cellTail[index] = node;
+        return node;
     }
 
-
-
-
     /**
      * Gets the closest cluster within the cell distance
-     * @param pt
-     * @return
+     * @param x x coordinate
+     * @param y y coordinate
+     * @return the index of the closest cluster or -1 if there is none
      */
-    public Cluster getClosestCluster(ClusterPoint pt){
-        int row = getGridRow(pt.y);
-        int column = getGridColumn(pt.x);
+    public int getClosestCluster(double x, double y){
+        int row = getGridRow(y);
+        int column = getGridColumn(x);
 
         //should never happen as all features should come from within the extent
         if (row < 0 || column < 0 || row>=_numRows || column>=_numColumns){
-            System.out.println("There's an error in the query");
-            return null;
+            return NONE;
         }
 
         int yStart = row;
@@ -195,7 +435,6 @@ public class ClusterAssembler {
             yEnd = row+1;
         }
 
-
         int xStart = column;
         int xEnd = column;
         if (column > 0){
@@ -205,28 +444,23 @@ public class ClusterAssembler {
             xEnd = column+1;
         }
 
-        /*
-        int xStart = (int)(Math.floor((extent.xmin - this._xmin) / this._cellSize));
-        int xEnd = (int)(Math.floor((extent.xmax - this._xmin) / this._cellSize));
-        int yStart = (int)(Math.floor((extent.ymin - this._ymin) / this._cellSize));
-        int yEnd = (int)(Math.floor((extent.ymax - this._ymin) / this._cellSize));
-        */
-
-        Cluster minCluster = null;
+        int minCluster = NONE;
         double minDis2 = Double.MAX_VALUE;
 
-        for (int x = xStart; x <= xEnd; x++) {
-            for (int y = yStart; y <= yEnd; y++) {
-                int index = _numRows * y + x;
-                ArrayList<Cluster> cell = _cells.get(index);
-                if (cell != null) {
-                    for (int i = 0; i < cell.size(); i++) {
-                        Cluster cluster = cell.get(i);
-                        double dis2 = pt.squareDistance(cluster.getPoint());
-                        if (dis2 < minDis2) {
-                            minDis2 = dis2;
-                            minCluster = cluster;
-                        }
+        for (int i = xStart; i <= xEnd; i++) {
+            for (int j = yStart; j <= yEnd; j++) {
+                int index = findCell(j, i);
+                if (index == NONE) {
+                    continue;
+                }
+                for (int node = _cellHead[index]; node != NONE; node = _nodeNext[node]) {
+                    int cluster = _nodeCluster[node];
+                    double dx = _clusterX[cluster] - x;
+                    double dy = _clusterY[cluster] - y;
+                    double dis2 = (dx*dx) + (dy*dy);
+                    if (dis2 < minDis2) {
+                        minDis2 = dis2;
+                        minCluster = cluster;
                     }
                 }
             }
@@ -235,148 +469,105 @@ public class ClusterAssembler {
             minDis2 = Math.sqrt(minDis2);
         }
         if (minDis2 > _cellSize){
-            return null;
+            return NONE;
         }
         return minCluster;
     }
 
-
-
-
-    //This examines a cluster and determines if all features in it are the closest to it.
-    public void examineCluster(Cluster cluster){
-
-
-        ArrayList<ClusterFeature> features = cluster.getFeatures();
-        for (int k=0;k<features.size();k++){
-            ClusterFeature feature = features.get(k);
-            ClusterPoint p = feature.getPoint();
-            Cluster clust = getClosestCluster(p);
-            if (clust != cluster){
-                double pixels = cluster.getPoint().distance(p)/_mapUnitsPerPixel;
-                System.out.print("Not closest to cluster...pixel Distance="+Math.round(pixels));
-                if (clust == null){
-                    System.out.println();
-                }else{
-                    double closerPixels = clust.getPoint().distance(p)/_mapUnitsPerPixel;
-                    System.out.println("   Closer to distance="+Math.round(closerPixels));
-                }
-            }
-        }
-    }
-
-
     public void fixClusters() {
-        for (Cluster cluster:_clusters){
+        _fixed = true;
+        for (int cluster = 0; cluster < _numClusters; cluster++){
             fixCluster(cluster);
         }
 
-        for (Cluster cluster:_clusters){
+        for (int cluster = 0; cluster < _numClusters; cluster++){
             fixCluster(cluster);
         }
 
     }
 
-    public void fixCluster(Cluster cluster) {
-        double distance = _cellSize;//this._mapUnitsPerPixel*this._clusterDistanceInPixels;
-        double distanceSq = distance * distance;
-        double test = distanceSq * 2.0;
-        ArrayList<ClusterFeature> features = cluster.getFeatures();
-        for (int k = features.size() - 1; k >= 0; k--) {
-            ClusterFeature feature = features.get(k);
-            ClusterPoint p = feature.getPoint();
+    //moves the features of a cluster which are closer to another cluster, most recently added first
+    private void fixCluster(int cluster) {
+        int prev = NONE;
+        int feature = _clusterFeatureHead[cluster];
+        while (feature != NONE) {
+            int next = _featureNext[feature];
+            double px = _featureX[feature];
+            double py = _featureY[feature];
 
-            Cluster minPt = this.getClosestCluster(p);
+            int minPt = getClosestCluster(px, py);
 
-            if (minPt != null && minPt != cluster) {
-                double ptCount = feature.getValue();
+            if (minPt != NONE && minPt != cluster) {
+                double ptCount = _featureValue[feature];
 
-                double count = cluster.getValue();
+                double count = _clusterValue[cluster];
 
-                //features.splice(k, 1);
-                features.remove(k);
+                if (prev == NONE) {
+                    _clusterFeatureHead[cluster] = next;
+                } else {
+                    _featureNext[prev] = next;
+                }
 
                 double ptCountCount = count - ptCount;
-                cluster.setClusterCount(ptCountCount);
-                ClusterPoint clusterPoint = cluster.getPoint();
+                _clusterValue[cluster] = ptCountCount;
                 if (ptCountCount > 0) {
                     double ptc = ptCount / ptCountCount;
                     double ctc = count / ptCountCount;
 
-
-                    double xx = (clusterPoint.x * ctc) - (p.x * ptc);//x = (cluster.x*count-pt.x*ptCount)/(count-ptCount)
-                    double yy = (clusterPoint.y * ctc) - (p.y * ptc);
-                    //var xx = ((cluster.x*count)-(pt.x*ptCount))/(count);
-                    //var yy = ((cluster.x*count)-(pt.x*ptCount))/(count);
-                    clusterPoint.x = xx;
-                    clusterPoint.y = yy;
-                    this.addCells(cluster);
+                    //x = (cluster.x*count-pt.x*ptCount)/(count-ptCount)
+                    double xx = (_clusterX[cluster] * ctc) - (px * ptc);
+                    double yy = (_clusterY[cluster] * ctc) - (py * ptc);
+                    _clusterX[cluster] = xx;
+                    _clusterY[cluster] = yy;
+                    addCells(cluster);
 
                 } else {
-                    clusterPoint.x = 0;
-                    clusterPoint.y = 0;
+                    _clusterX[cluster] = 0;
+                    _clusterY[cluster] = 0;
                 }
 
-
                 //add to another
-                //this._clusterAddPoint(feature, minPt, ptCount);
-                minPt.addPointCluster(feature, ptCount);
-
-
+                addPointCluster(minPt, feature, ptCount);
+            } else {
+                prev = feature;
             }
-
+            feature = next;
         }
-
-
     }
 
-    public void addCellsForAllClusters(){
-        //this._cells = [];
-        _cells = new HashMap<> ();
-        for (Cluster cluster:_clusters){
-            addCells(cluster);
-        }
+    //add a feature moved out of another cluster
+    private void addPointCluster(int cluster, int feature, double ptCount){
+        double count = _clusterValue[cluster];
 
-    }
+        _featureNext[feature] = _clusterFeatureHead[cluster];
+        _clusterFeatureHead[cluster] = feature;
 
-    public void addCells(Cluster cluster){
-        ClusterPoint clusterPoint = cluster.getPoint();
-        int row = getGridRow(clusterPoint.y);
-        int column = getGridColumn(clusterPoint.x);
+        double ptc = ptCount/(count + ptCount);
+        double ctc = count/(count + ptCount);
 
-        int yStart = row;
-        int yEnd = row;
-        if (row > 0){
-            yStart = row-1;
-        }
-        if (row < _numRows-1){
-            yEnd = row+1;
-        }
+        double x = (_featureX[feature] * ptc + (_clusterX[cluster] * ctc));
+        double y = (_featureY[feature] * ptc + (_clusterY[cluster] * ctc));
+        _clusterValue[cluster] += ptCount;
+        _clusterX[cluster] = x;
+        _clusterY[cluster] = y;
+    }
 
+    //registers a cluster in the cells around its centroid, without removing it from any cell
+    private void addCells(int cluster){
+        int row = getGridRow(_clusterY[cluster]);
+        int column = getGridColumn(_clusterX[cluster]);
 
-        int xStart = column;
-        int xEnd = column;
-        if (column > 0){
-            xStart = column-1;
-        }
-        if (column < _numColumns-1){
-            xEnd = column+1;
-        }
+        //cells outside of the grid are never searched
+        int yStart = Math.max(row, 1) - 1;
+        int yEnd = Math.min(row, _numRows - 2) + 1;
+        int xStart = Math.max(column, 1) - 1;
+        int xEnd = Math.min(column, _numColumns - 2) + 1;
 
         for (int i=xStart;i<=xEnd;i++){
             for (int j=yStart;j<=yEnd;j++){
-                int index = this._numRows * j + i;
-                ArrayList<Cluster> cell = _cells.get(index);
-                if (cell == null) {
-                    cell = new ArrayList<>();
-                    _cells.put(index, cell);
-                }
-                cell.add(cluster);
+                appendToCell(addCell(j, i), cluster);
             }
         }
-
-
     }
 
 }
-
@@ -16,44 +16,35 @@ package com.esri.serverextension.cluster;
 
 import com.esri.arcgis.geodatabase.IFeature;
 import com.esri.arcgis.geodatabase.IRow;
-import com.esri.arcgis.geometry.GeometryEnvironment;
 import com.esri.arcgis.geometry.IGeometry;
-import com.esri.arcgis.geometry.IGeometryFactory2;
 import com.esri.arcgis.geometry.IPoint;
+import com.esri.arcgis.geometry.Point;
 import com.esri.arcgis.system.Cleaner;
 import com.esri.serverextension.core.geodatabase.GeodatabaseFieldMap;
 import com.esri.serverextension.core.geodatabase.GeodatabaseObjectCallbackHandler;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
-import java.util.Map;
 
+/**
+ * Adds the point and cluster field value of every feature to a {@link ClusterFeatureSink}. Coordinates
+ * are read from the shape into reused arrays and no other attributes are read, so handling a feature
+ * costs a few COM calls and allocates nothing on the Java side.
+ */
 public class ClusterAssemblerCallbackHandler implements GeodatabaseObjectCallbackHandler {
 
-    private ClusterAssembler clusterAssembler;
-    private GeodatabaseFieldMap fieldMap;
+    private ClusterFeatureSink clusterAssembler;
     private String clusterFieldName;
     private int clusterFieldIndex = -1;
-    private IGeometryFactory2 geometryFactory;
+    private final double[] x = new double[1];
+    private final double[] y = new double[1];
 
-    public ClusterAssemblerCallbackHandler(ClusterAssembler clusterAssembler, String clusterFieldName) {
+    public ClusterAssemblerCallbackHandler(ClusterFeatureSink clusterAssembler, String clusterFieldName) {
         this.clusterAssembler = clusterAssembler;
         this.clusterFieldName = clusterFieldName;
     }
 
-    public void destroy() {
-        if (geometryFactory != null) {
-            Cleaner.release(geometryFactory);
-            geometryFactory = null;
-        }
-    }
-
     @Override
     public void setGeodatabaseFieldMap(GeodatabaseFieldMap fieldMap) throws IOException {
-        this.fieldMap = fieldMap;
         clusterFieldIndex = fieldMap.get(clusterFieldName).getIndex();
     }
 
@@ -64,42 +55,26 @@ public class ClusterAssemblerCallbackHandler implements GeodatabaseObjectCallbac
 
     @Override
     public void processFeature(IFeature feature) throws IOException {
-        Map<String, Object> attributes = new LinkedHashMap<>();
-        for (GeodatabaseFieldMap.FieldIndex fieldIndex : fieldMap.getFieldIndices()) {
-            attributes.put(fieldIndex.getField().getName(), feature.getValue(fieldIndex.getIndex()));
-        }
-        if (geometryFactory == null) {
-            geometryFactory = new GeometryEnvironment();
-        }
-        IGeometry geometry = feature.getShape();
-        byte[] wkbGeometry = (byte[]) geometryFactory.createWkbVariantFromGeometry(geometry);
-        ClusterPoint clusterPoint = readClusterPoint(wkbGeometry);
         Object value = feature.getValue(clusterFieldIndex);
-        if (value == null) {
+        if (!(value instanceof Number)) {
             return;
         }
-        if (value instanceof Number) {
-            ClusterFeature clusterFeature = new ClusterFeature(clusterPoint,
-                    ((Number) value).doubleValue());
-            clusterAssembler.addFeature(clusterFeature);
-        }
-    }
-
-    private ClusterPoint readClusterPoint(byte[] bytes){
-        int byteOrder = bytes[0];
-        ByteBuffer buf = ByteBuffer.wrap(bytes);
-        if (byteOrder == 1){
-            buf.order(ByteOrder.LITTLE_ENDIAN);
+        IGeometry shape = feature.getShape();
+        if (shape == null) {
+            return;
         }
-
-        buf.get();
-        int geomType = buf.getInt();
-        if (geomType != 1){
-            throw new IllegalArgumentException(String.format("Unexpected geometry type: %1$d. Expected 1 (point).", geomType));
+        IPoint point = shape instanceof IPoint ? (IPoint) shape : new Point(shape);
+        try {
+            if (point.isEmpty()) {
+                return;
+            }
+            point.queryCoords(x, y);
+        } finally {
+            if (point != shape) {
+                Cleaner.release(point);
+            }
+            Cleaner.release(shape);
         }
-
-        double x = buf.getDouble();
-        double y = buf.getDouble();
-        return new ClusterPoint(x, y);
+        clusterAssembler.addFeature(x[0], y[0], ((Number) value).doubleValue());
     }
 }
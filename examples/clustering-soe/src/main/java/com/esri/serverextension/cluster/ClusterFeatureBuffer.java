@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.cluster;
+
+import java.util.Arrays;
+
+/**
+ * Keeps features in growable primitive arrays, so they can be clustered later or more than once.
+ */
+public class ClusterFeatureBuffer implements ClusterFeatureSink {
+
+    private int      _numFeatures;
+    private double[] _featureX;
+    private double[] _featureY;
+    private double[] _featureValue;
+
+    public ClusterFeatureBuffer() {
+        this(1024);
+    }
+
+    public ClusterFeatureBuffer(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 16);
+        _featureX = new double[capacity];
+        _featureY = new double[capacity];
+        _featureValue = new double[capacity];
+    }
+
+    @Override
+    public void addFeature(double x, double y, double value) {
+        int feature = _numFeatures++;
+        if (feature == _featureX.length) {
+            int capacity = feature * 2;
+            _featureX = Arrays.copyOf(_featureX, capacity);
+            _featureY = Arrays.copyOf(_featureY, capacity);
+            _featureValue = Arrays.copyOf(_featureValue, capacity);
+        }
+        _featureX[feature] = x;
+        _featureY[feature] = y;
+        _featureValue[feature] = value;
+    }
+
+    public int getNumberOfFeatures() {
+        return _numFeatures;
+    }
+
+    public double getX(int feature) {
+        return _featureX[feature];
+    }
+
+    public double getY(int feature) {
+        return _featureY[feature];
+    }
+
+    public double getValue(int feature) {
+        return _featureValue[feature];
+    }
+
+    /**
+     * Returns the extent of all features.
+     *
+     * @return the extent, or <code>null</code> if there are no features
+     */
+    public ClusterExtent getExtent() {
+        if (_numFeatures == 0) {
+            return null;
+        }
+        double xmin = Double.POSITIVE_INFINITY;
+        double ymin = Double.POSITIVE_INFINITY;
+        double xmax = Double.NEGATIVE_INFINITY;
+        double ymax = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < _numFeatures; i++) {
+            xmin = Math.min(xmin, _featureX[i]);
+            ymin = Math.min(ymin, _featureY[i]);
+            xmax = Math.max(xmax, _featureX[i]);
+            ymax = Math.max(ymax, _featureY[i]);
+        }
+        return new ClusterExtent(xmin, ymin, xmax, ymax);
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.serverextension.cluster;
+
+/**
+ * Receives the features that are clustered.
+ */
+public interface ClusterFeatureSink {
+
+    /**
+     * Add a feature
+     * @param x x coordinate of the feature
+     * @param y y coordinate of the feature
+     * @param value the feature's value
+     */
+    void addFeature(double x, double y, double value);
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.serverextension.cluster;
+
+import com.esri.arcgis.carto.IMapLayerInfo;
+import com.esri.arcgis.carto.IMapLayerInfos;
+import com.esri.arcgis.carto.IMapServer3;
+import com.esri.arcgis.carto.IMapServerDataAccess;
+import com.esri.arcgis.carto.IMapServerInfo;
+import com.esri.arcgis.carto.IMapServerInfo4;
+import com.esri.arcgis.geodatabase.FeatureClass;
+import com.esri.arcgis.geodatabase.IField;
+import com.esri.arcgis.geodatabase.IFeatureClass;
+import com.esri.arcgis.geodatabase.IFields;
+import com.esri.arcgis.geodatabase.esriFieldType;
+import com.esri.arcgis.geometry.ISpatialReference;
+import com.esri.arcgis.geometry.esriGeometryType;
+import com.esri.arcgis.interop.Cleaner;
+import com.esri.serverextension.core.rest.api.Field;
+import com.esri.serverextension.core.rest.api.FieldType;
+import com.esri.serverextension.core.server.ServerObjectExtensionContext;
+import com.esri.serverextension.core.util.ArcObjectsInteropException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The point feature layers of the map service, read once instead of walking all map layers and
+ * opening their feature classes on every request.
+ * <p>
+ * The catalog built at construct time keeps the feature classes and spatial references it read, since
+ * ArcObjects created on the constructing thread live as long as the extension. After
+ * {@link #invalidate()} the layer metadata is read again on the next lookup. ArcObjects created while
+ * handling a request are released when the request completes, so the reloaded catalog keeps the
+ * feature classes and spatial references read at construct time for the layers still drawing from the
+ * same data source. Feature classes of layers added or changed since are opened again for every
+ * request. Requests may still use the feature classes of a replaced catalog, so these are only
+ * released by {@link #release()} when the extension shuts down.
+ */
+public class ClusterLayerCatalog {
+
+    private final Logger logger = LoggerFactory.getLogger(ClusterLayerCatalog.class);
+
+    private final ServerObjectExtensionContext serverContext;
+    private volatile Snapshot snapshot;
+    private volatile boolean stale;
+    private final List<ClusterLayerInfo> retiredLayers = new ArrayList<>();
+
+    /**
+     * Reads the catalog, keeping the feature classes of all point layers open.
+     */
+    public ClusterLayerCatalog(ServerObjectExtensionContext serverContext) {
+        if (serverContext == null) {
+            throw new NullPointerException("Argument 'serverContext' is required.");
+        }
+        this.serverContext = serverContext;
+        this.snapshot = read(serverContext, null);
+    }
+
+    public List<ClusterLayerInfo> getLayers() {
+        return getSnapshot().layerList;
+    }
+
+    public ClusterLayerInfo getLayer(int id) {
+        ClusterLayerInfo layer = getSnapshot().layers.get(id);
+        if (layer == null) {
+            throw new IllegalArgumentException(String.format("No such point feature layer: %1$d", id));
+        }
+        return layer;
+    }
+
+    /**
+     * Returns the feature class of a layer, which must not be released by the caller.
+     */
+    public IFeatureClass getFeatureClass(int id, ServerObjectExtensionContext serverContext) {
+        ClusterLayerInfo layer = getLayer(id);
+        if (layer.getFeatureClass() != null) {
+            return layer.getFeatureClass();
+        }
+        try {
+            IMapServerDataAccess mapServerDataAccess = (IMapServerDataAccess) serverContext.getServerObject();
+            String mapName = ((IMapServer3) mapServerDataAccess).getDefaultMapName();
+            return new FeatureClass(mapServerDataAccess.getDisplayDataSource(mapName, id));
+        } catch (IOException ex) {
+            throw new ArcObjectsInteropException(
+                    String.format("Failed to open feature class of layer: %1$d", id), ex);
+        }
+    }
+
+    public ISpatialReference getMapSpatialReference(ServerObjectExtensionContext serverContext) {
+        ISpatialReference mapSpatialReference = getSnapshot().mapSpatialReference;
+        if (mapSpatialReference != null) {
+            return mapSpatialReference;
+        }
+        try {
+            IMapServer3 mapServer = (IMapServer3) serverContext.getServerObject();
+            return readMapSpatialReference(mapServer, mapServer.getDefaultMapName());
+        } catch (IOException ex) {
+            throw new ArcObjectsInteropException("Failed to get spatial reference of map.", ex);
+        }
+    }
+
+    /**
+     * Marks the catalog stale, so the layer metadata is read again on the next lookup.
+     */
+    public void invalidate() {
+        logger.info("Invalidating layer catalog.");
+        stale = true;
+    }
+
+    private Snapshot getSnapshot() {
+        if (stale) {
+            synchronized (this) {
+                if (stale) {
+                    Snapshot previousSnapshot = snapshot;
+                    snapshot = read(serverContext, previousSnapshot);
+                    stale = false;
+                    retireReplacedLayers(previousSnapshot, snapshot);
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Releases the feature classes and spatial references kept by the catalog, including those of
+     * replaced catalogs. Must only be called when no more requests are handled.
+     */
+    public synchronized void release() {
+        Snapshot currentSnapshot = snapshot;
+        if (currentSnapshot != null) {
+            retiredLayers.addAll(currentSnapshot.layerList);
+            if (currentSnapshot.mapSpatialReference != null) {
+                Cleaner.release(currentSnapshot.mapSpatialReference);
+            }
+            snapshot = null;
+        }
+        for (ClusterLayerInfo layer : retiredLayers) {
+            if (layer.getSpatialReference() != null) {
+                Cleaner.release(layer.getSpatialReference());
+            }
+            if (layer.getFeatureClass() != null) {
+                Cleaner.release(layer.getFeatureClass());
+            }
+        }
+        retiredLayers.clear();
+    }
+
+    /**
+     * Reads the point layers of the map. At construct time, without a previous snapshot, the feature
+     * classes and spatial references are kept; otherwise those of the previous snapshot are taken over.
+     */
+    private Snapshot read(ServerObjectExtensionContext serverContext, Snapshot previousSnapshot) {
+        boolean keepArcObjects = previousSnapshot == null;
+        try {
+            IMapServerDataAccess mapServerDataAccess = (IMapServerDataAccess) serverContext
+                    .getServerObject();
+            IMapServer3 mapServer = (IMapServer3) mapServerDataAccess;
+            String mapName = mapServer.getDefaultMapName();
+            IMapServerInfo4 mapServerInfo = (IMapServerInfo4) mapServer.getServerInfo(mapName);
+            Map<Integer, ClusterLayerInfo> layers = new LinkedHashMap<>();
+            IMapLayerInfos layerInfos = mapServerInfo.getMapLayerInfos();
+            int layerCount = layerInfos.getCount();
+            for (int i = 0; i < layerCount; i++) {
+                IMapLayerInfo layerInfo = layerInfos.getElement(i);
+                if (layerInfo.isComposite() || !layerInfo.isFeatureLayer()) {
+                    continue;
+                }
+                FeatureClass featureClass = new FeatureClass(mapServerDataAccess
+                        .getDisplayDataSource(mapName, layerInfo.getID()));
+                int shapeType = featureClass.getShapeType();
+                if (shapeType != esriGeometryType.esriGeometryPoint) {
+                    Cleaner.release(featureClass);
+                    continue;
+                }
+                String shapeFieldName = featureClass.getShapeFieldName();
+                String dataSourceName = readDataSourceName(featureClass);
+                ClusterLayerInfo previousLayer = keepArcObjects ? null
+                        : previousSnapshot.layers.get(layerInfo.getID());
+                if (previousLayer != null && !isSameDataSource(previousLayer, dataSourceName,
+                        shapeFieldName)) {
+                    logger.info("Data source of layer {} changed, reopening it on every request.",
+                            layerInfo.getID());
+                    previousLayer = null;
+                }
+                ClusterLayerInfo layer = new ClusterLayerInfo(layerInfo.getID(), layerInfo.getName(),
+                        layerInfo.getDescription(), shapeType, shapeFieldName, dataSourceName,
+                        readFields(featureClass.getFields()),
+                        keepArcObjects ? featureClass.getSpatialReference()
+                                : previousLayer != null ? previousLayer.getSpatialReference() : null,
+                        keepArcObjects ? featureClass
+                                : previousLayer != null ? previousLayer.getFeatureClass() : null);
+                if (!keepArcObjects) {
+                    Cleaner.release(featureClass);
+                }
+                layers.put(layer.getId(), layer);
+            }
+            logger.debug("Read {} point feature layer(s) of map {}.", layers.size(), mapName);
+            return new Snapshot(layers, keepArcObjects ? readMapSpatialReference(mapServer, mapName)
+                    : previousSnapshot.mapSpatialReference);
+        } catch (IOException ex) {
+            throw new ArcObjectsInteropException(
+                    "Failed to get point feature layers from map server object.", ex);
+        }
+    }
+
+    /**
+     * Keeps the feature classes and spatial references of layers which the current catalog no longer
+     * uses until they are released at shutdown.
+     */
+    private void retireReplacedLayers(Snapshot previousSnapshot, Snapshot currentSnapshot) {
+        for (ClusterLayerInfo layer : previousSnapshot.layerList) {
+            ClusterLayerInfo currentLayer = currentSnapshot.layers.get(layer.getId());
+            if (layer.getFeatureClass() != null && (currentLayer == null
+                    || currentLayer.getFeatureClass() != layer.getFeatureClass())) {
+                retiredLayers.add(layer);
+            }
+        }
+    }
+
+    private static boolean isSameDataSource(ClusterLayerInfo layer, String dataSourceName,
+                                            String shapeFieldName) {
+        return layer.getDataSourceName().equals(dataSourceName)
+                && layer.getShapeFieldName().equals(shapeFieldName);
+    }
+
+    private static String readDataSourceName(FeatureClass featureClass) throws IOException {
+        return featureClass.getWorkspace().getPathName() + "|" + featureClass.getName();
+    }
+
+    private static ISpatialReference readMapSpatialReference(IMapServer3 mapServer, String mapName)
+            throws IOException {
+        IMapServerInfo mapServerInfo = (IMapServerInfo) mapServer.getServerInfo(mapName);
+        return mapServerInfo.getDefaultMapDescription().getSpatialReference();
+    }
+
+    private static List<Field> readFields(IFields fields) throws IOException {
+        int fieldCount = fields.getFieldCount();
+        List<Field> result = new ArrayList<>(fieldCount);
+        for (int i = 0; i < fieldCount; i++) {
+            IField field = fields.getField(i);
+            int type = field.getType();
+            result.add(new Field(field.getName(), FieldType.convertIntegerTypeToFieldType(type),
+                    field.getAliasName(), type == esriFieldType.esriFieldTypeString ? field.getLength() : null));
+        }
+        return result;
+    }
+
+    private static final class Snapshot {
+
+        private final Map<Integer, ClusterLayerInfo> layers;
+        private final List<ClusterLayerInfo> layerList;
+        private final ISpatialReference mapSpatialReference;
+
+        private Snapshot(Map<Integer, ClusterLayerInfo> layers, ISpatialReference mapSpatialReference) {
+            this.layers = Collections.unmodifiableMap(layers);
+            this.layerList = Collections.unmodifiableList(new ArrayList<>(layers.values()));
+            this.mapSpatialReference = mapSpatialReference;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.serverextension.cluster;
+
+import com.esri.arcgis.geodatabase.IFeatureClass;
+import com.esri.arcgis.geometry.ISpatialReference;
+import com.esri.serverextension.core.rest.api.Field;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Metadata of a point feature layer of the map service.
+ */
+public final class ClusterLayerInfo {
+
+    private final int id;
+    private final String name;
+    private final String description;
+    private final int shapeType;
+    private final String shapeFieldName;
+    private final String dataSourceName;
+    private final List<Field> fields;
+    private final ISpatialReference spatialReference;
+    private final IFeatureClass featureClass;
+
+    ClusterLayerInfo(int id, String name, String description, int shapeType, String shapeFieldName,
+                     String dataSourceName, List<Field> fields, ISpatialReference spatialReference,
+                     IFeatureClass featureClass) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.shapeType = shapeType;
+        this.shapeFieldName = shapeFieldName;
+        this.dataSourceName = dataSourceName;
+        this.fields = Collections.unmodifiableList(fields);
+        this.spatialReference = spatialReference;
+        this.featureClass = featureClass;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public int getShapeType() {
+        return shapeType;
+    }
+
+    public String getShapeFieldName() {
+        return shapeFieldName;
+    }
+
+    public List<Field> getFields() {
+        return fields;
+    }
+
+    public boolean hasField(String fieldName) {
+        for (Field field : fields) {
+            if (field.getName().equalsIgnoreCase(fieldName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the workspace path and fully qualified name of the feature class, telling whether a
+     * layer still draws from the same data source.
+     */
+    String getDataSourceName() {
+        return dataSourceName;
+    }
+
+    /**
+     * Returns the spatial reference of the feature class, or <code>null</code> if the catalog does
+     * not keep ArcObjects.
+     */
+    public ISpatialReference getSpatialReference() {
+        return spatialReference;
+    }
+
+    /**
+     * Returns the feature class opened when the catalog was built, or <code>null</code> if the
+     * catalog does not keep ArcObjects.
+     */
+    IFeatureClass getFeatureClass() {
+        return featureClass;
+    }
+
+    @Override
+    public String toString() {
+        return "ClusterLayerInfo [id=" + id + ", name=" + name + ", shapeType=" + shapeType
+                + ", shapeFieldName=" + shapeFieldName + "]";
+    }
+}
@@ -14,12 +14,10 @@
 
 package com.esri.serverextension.cluster;
 
-import com.esri.arcgis.carto.IMapLayerInfo;
 import com.esri.arcgis.geodatabase.*;
 import com.esri.arcgis.geometry.IPoint;
 import com.esri.arcgis.geometry.ISpatialReference;
 import com.esri.arcgis.geometry.Point;
-import com.esri.arcgis.geometry.esriGeometryType;
 import com.esri.arcgis.interop.Cleaner;
 import com.esri.arcgis.server.json.JSONObject;
 import com.esri.serverextension.core.geodatabase.GeodatabaseTemplate;
@@ -27,102 +25,126 @@ import com.esri.serverextension.core.rest.api.Feature;
 import com.esri.serverextension.core.rest.api.*;
 import com.esri.serverextension.core.rest.api.Field;
 import com.esri.serverextension.core.rest.api.FieldType;
+import com.esri.serverextension.core.security.ArcGISSecurityException;
+import com.esri.serverextension.core.security.SecurityContext;
+import com.esri.serverextension.core.server.CacheableResponse;
+import com.esri.serverextension.core.server.CoalesceRequests;
+import com.esri.serverextension.core.server.ConcurrencyLimit;
 import com.esri.serverextension.core.server.ServerObjectExtensionContext;
 import com.esri.serverextension.core.util.ArcObjectsInteropException;
 import com.esri.serverextension.core.util.GenericEsriEnum;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.util.CollectionUtils;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 
+import javax.inject.Inject;
 import javax.ws.rs.BeanParam;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 @Service
 public class ClusterLayerResource {
 
+    @Inject
+    private ForkJoinPool clusteringForkJoinPool;
+
+    @Inject
+    private ClusterPyramidCache clusterPyramidCache;
+
+    @Inject
+    private ClusterLayerCatalog layerCatalog;
+
+    @Value("${clusterPyramidRefreshRoles:}")
+    private String clusterPyramidRefreshRoles;
+
     @RequestMapping("/layers/{layerId}")
+    @CacheableResponse
     public JSONObject getLayerResource(@PathVariable("layerId") int layerId,
                                        ServerObjectExtensionContext serverContext) {
-        IMapLayerInfo layerInfo = MapServerUtilities.getPointFeatureLayerByID(layerId, serverContext);
+        ClusterLayerInfo layer = layerCatalog.getLayer(layerId);
         JSONObject layerObject = new JSONObject();
-        try {
-            layerObject.put("name", layerInfo.getName());
-            layerObject.put("id", layerInfo.getID());
-            layerObject.put("description", layerInfo.getDescription());
-        } catch (IOException ex) {
-            throw new ArcObjectsInteropException(
-                    String.format("Failed to get details for layer: %1$d", layerId));
-        }
+        layerObject.put("name", layer.getName());
+        layerObject.put("id", layer.getId());
+        layerObject.put("description", layer.getDescription());
         return layerObject;
     }
 
     @RequestMapping("/layers/{layerId}/query")
+    @CacheableResponse(timeToLiveSeconds = 60)
+    @CoalesceRequests(scope = CoalesceRequests.Scope.SERVICE)
+    @ConcurrencyLimit(lane = ConcurrencyLimit.Lane.HEAVY)
     public FeatureSet query(@PathVariable("layerId") int layerId,
                             @BeanParam ClusterQueryOperationInput input,
                             ServerObjectExtensionContext serverContext) {
         try {
-            IFeatureClass featureClass = MapServerUtilities.getPointFeatureClassByLayerID(layerId, serverContext);
-            int shapeType = featureClass.getShapeType();
-            if (shapeType != esriGeometryType.esriGeometryPoint) {
+            ClusterLayerInfo layer = layerCatalog.getLayer(layerId);
+            FeatureSet featureSet = new FeatureSet();
+            featureSet.setDisplayFieldName(input.getClusterField());
+            Field field = new Field(input.getClusterField(),
+                    FieldType.esriFieldTypeDouble, input.getClusterField());
+            List<Field> fields = new ArrayList<>();
+            fields.add(field);
+            featureSet.setFields(fields);
+            featureSet.setSpatialReference(getOutSpatialReference(input, serverContext));
+            featureSet.setGeometryType(GeometryType.esriGeometryPoint);
 
-            }
-            IQueryFilter queryFilter = getQueryFilter(input, featureClass.getShapeFieldName());
             ClusterExtent clusterExtent = new ClusterExtent(
                     input.getBbox().getXmin(),
                     input.getBbox().getYmin(),
                     input.getBbox().getXmax(),
                     input.getBbox().getYmax()
             );
-            ClusterAssembler clusterAssembler = new ClusterAssembler(
+            ClusterPyramidLevel pyramidLevel = findPyramidLevel(layerId, input);
+            if (pyramidLevel != null) {
+                int[] clusters = pyramidLevel.findClusters(clusterExtent);
+                if (clusters.length > 0) {
+                    List<Feature> features = new ArrayList<>(clusters.length);
+                    for (int cluster : clusters) {
+                        features.add(createClusterFeature(pyramidLevel.getClusterX(cluster),
+                                pyramidLevel.getClusterY(cluster), pyramidLevel.getClusterValue(cluster),
+                                input.getClusterField()));
+                    }
+                    featureSet.setFeatures(features);
+                }
+                return featureSet;
+            }
+
+            IFeatureClass featureClass = layerCatalog.getFeatureClass(layerId, serverContext);
+            IQueryFilter queryFilter = getQueryFilter(input, layer.getShapeFieldName());
+            ParallelClusterAssembler parallelClusterAssembler = new ParallelClusterAssembler(
                     input.getMapUnitsPerPixel(),
                     input.getClusterDistanceInPixels(),
-                    clusterExtent
+                    clusterExtent,
+                    clusteringForkJoinPool
             );
             ClusterAssemblerCallbackHandler clusterAssemblerCallbackHandler =
-                    new ClusterAssemblerCallbackHandler(clusterAssembler, input.getClusterField());
-            try {
-                GeodatabaseTemplate geodatabaseTemplate = new GeodatabaseTemplate();
-                geodatabaseTemplate.query(featureClass, queryFilter, clusterAssemblerCallbackHandler);
-            } finally {
-                clusterAssemblerCallbackHandler.destroy();
-            }
+                    new ClusterAssemblerCallbackHandler(parallelClusterAssembler, input.getClusterField());
+            GeodatabaseTemplate geodatabaseTemplate = new GeodatabaseTemplate();
+            geodatabaseTemplate.query(featureClass, queryFilter, clusterAssemblerCallbackHandler);
 
-            FeatureSet featureSet = new FeatureSet();
-            featureSet.setDisplayFieldName(input.getClusterField());
-            Field field = new Field(input.getClusterField(),
-                    FieldType.esriFieldTypeDouble, input.getClusterField());
-            List<Field> fields = new ArrayList<>();
-            fields.add(field);
-            featureSet.setFields(fields);
-            featureSet.setSpatialReference(getOutSpatialReference(input, serverContext));
-            featureSet.setGeometryType(GeometryType.esriGeometryPoint);
-            clusterAssembler.fixClusters();
-            List<Cluster> clusters = clusterAssembler.getClusters();
-            if (!CollectionUtils.isEmpty(clusters)) {
-                List<Feature> features = new ArrayList<>(clusterAssembler.getClusters().size());
-                for (Cluster cluster : clusterAssembler.getClusters()) {
-                    if (cluster.getValue() == 0.0d) {
+            ClusterAssembler clusterAssembler = parallelClusterAssembler.assemble();
+            int numberOfClusters = clusterAssembler.getNumberOfClusters();
+            if (numberOfClusters > 0) {
+                List<Feature> features = new ArrayList<>(numberOfClusters);
+                for (int cluster = 0; cluster < numberOfClusters; cluster++) {
+                    double value = clusterAssembler.getClusterValue(cluster);
+                    if (value == 0.0d) {
                         continue;
                     }
-                    Feature clusterFeature = new Feature();
-                    ClusterPoint clusterPoint = cluster.getPoint();
-                    IPoint point = new Point();
-                    point.setX(clusterPoint.x);
-                    point.setY(clusterPoint.y);
-                    clusterFeature.setGeometry(point);
-                    Map<String, Object> attributes = new LinkedHashMap<>();
-                    attributes.put(input.getClusterField().intern(), cluster.getValue());
-                    clusterFeature.setAttributes(attributes);
-                    features.add(clusterFeature);
+                    features.add(createClusterFeature(clusterAssembler.getClusterX(cluster),
+                            clusterAssembler.getClusterY(cluster), value, input.getClusterField()));
                 }
                 featureSet.setFeatures(features);
             }
+
             return featureSet;
         } catch (IOException ex) {
             throw new ArcObjectsInteropException(
@@ -130,6 +152,77 @@ public class ClusterLayerResource {
         }
     }
 
+    /**
+     * Starts rebuilding the cluster pyramid of a layer and field. Only users having one of the roles of
+     * the <code>clusterPyramidRefreshRoles</code> property (comma separated) may refresh pyramids.
+     */
+    @RequestMapping("/layers/{layerId}/refreshClusterPyramid")
+    public JSONObject refreshClusterPyramid(@PathVariable("layerId") int layerId,
+                                            @RequestParam("clusterField") String clusterField,
+                                            ServerObjectExtensionContext serverContext,
+                                            SecurityContext securityContext) {
+        if (!isRefreshPermitted(securityContext)) {
+            throw new ArcGISSecurityException(403, "Forbidden", null);
+        }
+        if (!layerCatalog.getLayer(layerId).hasField(clusterField)) {
+            throw new IllegalArgumentException(String.format("No such field: %1$s", clusterField));
+        }
+        clusterPyramidCache.refresh(layerId, clusterField, serverContext);
+        JSONObject response = new JSONObject();
+        response.put("layerId", layerId);
+        response.put("clusterField", clusterField);
+        response.put("clusterDistanceInPixels", clusterPyramidCache.getClusterDistanceInPixels());
+        response.put("success", true);
+        return response;
+    }
+
+    private boolean isRefreshPermitted(SecurityContext securityContext) {
+        Set<String> userRoles = securityContext != null ? securityContext.getUserRoles() : null;
+        String[] permittedRoles = StringUtils.split(clusterPyramidRefreshRoles, ", ");
+        if (userRoles == null || permittedRoles == null) {
+            return false;
+        }
+        for (String role : permittedRoles) {
+            if (userRoles.contains(role)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the pyramid level answering a query, which requires the query to cluster all features
+     * of the layer in their own spatial reference at a pyramid scale.
+     */
+    private ClusterPyramidLevel findPyramidLevel(int layerId, ClusterQueryOperationInput input) {
+        if (input.getGeometry() != null || input.getOutSR() != null
+                || StringUtils.isNotEmpty(input.getWhere())
+                || StringUtils.isEmpty(input.getClusterField())
+                || input.getMapUnitsPerPixel() == null
+                || input.getClusterDistanceInPixels() == null
+                || input.getClusterDistanceInPixels() != clusterPyramidCache.getClusterDistanceInPixels()) {
+            return null;
+        }
+        ClusterPyramid pyramid = clusterPyramidCache.getPyramid(layerId, input.getClusterField());
+        if (pyramid == null) {
+            return null;
+        }
+        return pyramid.findLevel(input.getMapUnitsPerPixel());
+    }
+
+    private Feature createClusterFeature(double x, double y, double value, String clusterField)
+            throws IOException {
+        Feature clusterFeature = new Feature();
+        IPoint point = new Point();
+        point.setX(x);
+        point.setY(y);
+        clusterFeature.setGeometry(point);
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put(clusterField.intern(), value);
+        clusterFeature.setAttributes(attributes);
+        return clusterFeature;
+    }
+
     private IQueryFilter getQueryFilter(ClusterQueryOperationInput input,
                                         String shapeFieldName) {
         try {
@@ -178,6 +271,6 @@ public class ClusterLayerResource {
         if (input.getOutSR() != null) {
             return input.getOutSR();
         }
-        return MapServerUtilities.getMapSpatialReference(serverContext);
+        return layerCatalog.getMapSpatialReference(serverContext);
     }
 }
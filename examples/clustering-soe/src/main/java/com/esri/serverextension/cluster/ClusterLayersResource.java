@@ -14,35 +14,31 @@
 
 package com.esri.serverextension.cluster;
 
-import com.esri.arcgis.carto.IMapLayerInfo;
 import com.esri.arcgis.server.json.JSONArray;
 import com.esri.arcgis.server.json.JSONObject;
+import com.esri.serverextension.core.server.CacheableResponse;
 import com.esri.serverextension.core.server.ServerObjectExtensionContext;
-import com.esri.serverextension.core.util.ArcObjectsInteropException;
 import org.springframework.stereotype.Service;
 import org.springframework.web.bind.annotation.RequestMapping;
 
-import java.io.IOException;
-import java.util.List;
+import javax.inject.Inject;
 
 @Service
 public class ClusterLayersResource {
 
+    @Inject
+    private ClusterLayerCatalog layerCatalog;
+
     @RequestMapping("/layers")
+    @CacheableResponse
     public JSONObject getLayersResource(ServerObjectExtensionContext serverContext) {
         JSONArray layersArray = new JSONArray();
-        List<IMapLayerInfo> pointFeatureLayers = MapServerUtilities.getPointFeatureLayers(serverContext);
-        for (IMapLayerInfo layerInfo : pointFeatureLayers) {
-            try {
-                JSONObject layer = new JSONObject();
-                layer.put("name", layerInfo.getName());
-                layer.put("id", layerInfo.getID());
-                layer.put("description", layerInfo.getDescription());
-                layersArray.put(layer);
-            } catch (IOException ex) {
-                throw new ArcObjectsInteropException(
-                        "Failed to get details from map layer info.");
-            }
+        for (ClusterLayerInfo layerInfo : layerCatalog.getLayers()) {
+            JSONObject layer = new JSONObject();
+            layer.put("name", layerInfo.getName());
+            layer.put("id", layerInfo.getId());
+            layer.put("description", layerInfo.getDescription());
+            layersArray.put(layer);
         }
         JSONObject response = new JSONObject();
         response.put("layers", layersArray);
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Clusters of all features of a layer at a fixed set of scales, from the coarsest level down to the
+ * finest level whose cluster grid has at most {@link #MAX_LEVEL_CELLS} cells. Queries at one of these
+ * scales are answered by filtering the clusters of the level instead of reading and clustering the
+ * features again; queries at finer scales cluster the features they read.
+ */
+public class ClusterPyramid {
+
+    /**
+     * Map units per pixel of the standard Web Mercator tiling scheme, levels 0 to 23.
+     */
+    static final double[] WEB_MERCATOR_MAP_UNITS_PER_PIXEL = new double[24];
+
+    static {
+        for (int level = 0; level < WEB_MERCATOR_MAP_UNITS_PER_PIXEL.length; level++) {
+            WEB_MERCATOR_MAP_UNITS_PER_PIXEL[level] = 156543.03392804097 / (1L << level);
+        }
+    }
+
+    //the largest cluster grid of a level, finer levels hold about as many clusters as features
+    static final double MAX_LEVEL_CELLS = 1 << 22;
+
+    //relative difference up to which a requested scale matches a level
+    private static final double SCALE_TOLERANCE = 1e-6;
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterPyramid.class);
+
+    private final double _clusterDistanceInPixels;
+    private final long _numFeatures;
+    private final ClusterPyramidLevel[] _levels;
+
+    private ClusterPyramid(double clusterDistanceInPixels, long numFeatures, ClusterPyramidLevel[] levels) {
+        _clusterDistanceInPixels = clusterDistanceInPixels;
+        _numFeatures = numFeatures;
+        _levels = levels;
+    }
+
+    /**
+     * Clusters features at the given scales. Scales whose cluster grid over the extent of the
+     * features would be too large are left out.
+     *
+     * @param features features, sorted by their value for repeatable clusters
+     * @param mapUnitsPerPixel the scales of the levels
+     * @param clusterDistanceInPixels cluster distance in pixels
+     * @param pool the pool to cluster on
+     * @return the pyramid
+     */
+    public static ClusterPyramid build(ClusterFeatureBuffer features, double[] mapUnitsPerPixel,
+                                       double clusterDistanceInPixels, ForkJoinPool pool) {
+        List<ClusterPyramidLevel> levels = new ArrayList<>();
+        ClusterExtent extent = features.getExtent();
+        if (extent != null) {
+            for (double levelMapUnitsPerPixel : mapUnitsPerPixel) {
+                double cellSize = levelMapUnitsPerPixel * clusterDistanceInPixels;
+                double numCells = (Math.floor(extent.getWidth() / cellSize) + 1)
+                        * (Math.floor(extent.getHeight() / cellSize) + 1);
+                if (numCells > MAX_LEVEL_CELLS) {
+                    logger.debug("Skipping level at {} map units per pixel, its grid has {} cells.",
+                            levelMapUnitsPerPixel, numCells);
+                    continue;
+                }
+                ParallelClusterAssembler parallelClusterAssembler = new ParallelClusterAssembler(
+                        levelMapUnitsPerPixel, clusterDistanceInPixels, extent, pool,
+                        ParallelClusterAssembler.DEFAULT_TILE_SIZE_IN_CELLS,
+                        ParallelClusterAssembler.DEFAULT_PARALLEL_THRESHOLD, features);
+                levels.add(new ClusterPyramidLevel(levelMapUnitsPerPixel,
+                        parallelClusterAssembler.assemble(), extent));
+            }
+        }
+        return new ClusterPyramid(clusterDistanceInPixels, features.getNumberOfFeatures(),
+                levels.toArray(new ClusterPyramidLevel[levels.size()]));
+    }
+
+    public double getClusterDistanceInPixels() {
+        return _clusterDistanceInPixels;
+    }
+
+    public long getNumberOfFeatures() {
+        return _numFeatures;
+    }
+
+    public int getNumberOfLevels() {
+        return _levels.length;
+    }
+
+    public ClusterPyramidLevel getLevel(int level) {
+        return _levels[level];
+    }
+
+    /**
+     * Returns the level of a scale.
+     *
+     * @param mapUnitsPerPixel map units per pixel
+     * @return the level, or <code>null</code> if the pyramid has no level at this scale
+     */
+    public ClusterPyramidLevel findLevel(double mapUnitsPerPixel) {
+        for (ClusterPyramidLevel level : _levels) {
+            if (Math.abs(level.getMapUnitsPerPixel() - mapUnitsPerPixel)
+                    <= SCALE_TOLERANCE * level.getMapUnitsPerPixel()) {
+                return level;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.cluster;
+
+import com.esri.arcgis.geodatabase.IFeatureClass;
+import com.esri.arcgis.geodatabase.QueryFilter;
+import com.esri.arcgis.system.Cleaner;
+import com.esri.serverextension.core.cache.ResponseCache;
+import com.esri.serverextension.core.geodatabase.GeodatabaseTemplate;
+import com.esri.serverextension.core.server.ServerObjectExtensionContext;
+import com.esri.serverextension.core.util.ArcObjectsInteropException;
+import com.esri.serverextension.core.util.StopWatch;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Keeps a {@link ClusterPyramid} per layer and cluster field at the Web Mercator scales. Features are
+ * read and the levels are clustered on a background thread, which releases the ArcObjects it created
+ * once the features are read, like a request does. Until a pyramid is built, and while it is rebuilt,
+ * queries are answered from the previous pyramid or by clustering features on the fly. A refresh of a
+ * layer and field which is requested before a pending refresh of the same layer and field started
+ * reading features is answered by the pending refresh.
+ * <p>
+ * Pyramids are built at construct time for the point layers having one of the fields of the
+ * <code>clusterPyramidFields</code> property (comma separated), with the cluster distance of the
+ * <code>clusterPyramidDistanceInPixels</code> property. Cached query responses of a layer are
+ * invalidated whenever one of its pyramids has been replaced.
+ */
+@Component
+public class ClusterPyramidCache {
+
+    private final Logger logger = LoggerFactory.getLogger(ClusterPyramidCache.class);
+
+    private final ClusterLayerCatalog layerCatalog;
+    private final ForkJoinPool clusteringForkJoinPool;
+    private final ExecutorService clusterPyramidExecutor;
+    private final ResponseCache responseCache;
+    private final ConcurrentMap<String, ClusterPyramid> pyramids = new ConcurrentHashMap<>();
+    // refreshes queued or running, by layer and cluster field, guarded by itself
+    private final Map<String, PyramidRefresh> refreshes = new HashMap<>();
+
+    @Value("${clusterPyramidFields:}")
+    private String clusterPyramidFields;
+
+    @Value("${clusterPyramidDistanceInPixels:40}")
+    private int clusterDistanceInPixels;
+
+    @Inject
+    public ClusterPyramidCache(ClusterLayerCatalog layerCatalog, ForkJoinPool clusteringForkJoinPool,
+                               @Named("clusterPyramidExecutor") ExecutorService clusterPyramidExecutor,
+                               ResponseCache responseCache) {
+        this.layerCatalog = layerCatalog;
+        this.clusteringForkJoinPool = clusteringForkJoinPool;
+        this.clusterPyramidExecutor = clusterPyramidExecutor;
+        this.responseCache = responseCache;
+    }
+
+    public int getClusterDistanceInPixels() {
+        return clusterDistanceInPixels;
+    }
+
+    /**
+     * Returns the most recently built pyramid of a layer.
+     *
+     * @return the pyramid, or <code>null</code> if none has been built yet
+     */
+    public ClusterPyramid getPyramid(int layerId, String clusterField) {
+        return pyramids.get(getKey(layerId, clusterField));
+    }
+
+    /**
+     * Starts building pyramids for all point layers having one of the configured fields.
+     */
+    public void preload(ServerObjectExtensionContext serverContext) {
+        String[] clusterFields = StringUtils.split(clusterPyramidFields, ", ");
+        if (clusterFields == null || clusterFields.length == 0) {
+            return;
+        }
+        for (ClusterLayerInfo layer : layerCatalog.getLayers()) {
+            for (String clusterField : clusterFields) {
+                if (layer.hasField(clusterField)) {
+                    refresh(layer.getId(), clusterField, serverContext);
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts reading the features of a layer and building a new pyramid from them, unless a refresh of
+     * the layer and field is pending which has not started reading yet. The current pyramid is replaced
+     * once the new one is built.
+     *
+     * @return the pending pyramid
+     */
+    public Future<ClusterPyramid> refresh(int layerId, String clusterField,
+                                          ServerObjectExtensionContext serverContext) {
+        String key = getKey(layerId, clusterField);
+        synchronized (refreshes) {
+            PyramidRefresh refresh = refreshes.get(key);
+            if (refresh == null || refresh.started) {
+                refresh = new PyramidRefresh(layerId, clusterField, serverContext);
+                refresh.future = clusterPyramidExecutor.submit(refresh);
+                refreshes.put(key, refresh);
+            }
+            return refresh.future;
+        }
+    }
+
+    private ClusterPyramid build(int layerId, String clusterField,
+                                 ServerObjectExtensionContext serverContext) {
+        ClusterFeatureBuffer features;
+        Cleaner.trackObjectsInCurrentThread();
+        try {
+            features = readFeatures(layerCatalog.getFeatureClass(layerId, serverContext), clusterField);
+        } finally {
+            Cleaner.releaseAllInCurrentThread();
+        }
+        logger.info("Building cluster pyramid for layer {} and field {} from {} feature(s) ...",
+                layerId, clusterField, features.getNumberOfFeatures());
+        StopWatch stopWatch = StopWatch.createAndStart();
+        ClusterPyramid pyramid = ClusterPyramid.build(features,
+                ClusterPyramid.WEB_MERCATOR_MAP_UNITS_PER_PIXEL, clusterDistanceInPixels,
+                clusteringForkJoinPool);
+        pyramids.put(getKey(layerId, clusterField), pyramid);
+        responseCache.invalidate(String.format("/layers/%1$d/query", layerId));
+        logger.info("Built {} level(s) of cluster pyramid for layer {} and field {} in {} second(s).",
+                pyramid.getNumberOfLevels(), layerId, clusterField,
+                stopWatch.stop().elapsedTimeSeconds());
+        return pyramid;
+    }
+
+    private ClusterFeatureBuffer readFeatures(IFeatureClass featureClass, String clusterField) {
+        ClusterFeatureBuffer features = new ClusterFeatureBuffer();
+        ClusterAssemblerCallbackHandler callbackHandler = new ClusterAssemblerCallbackHandler(features,
+                clusterField);
+        try {
+            if (featureClass.findField(clusterField) < 0) {
+                throw new IllegalArgumentException(String.format("No such field: %1$s", clusterField));
+            }
+            QueryFilter queryFilter = new QueryFilter();
+            queryFilter.setSubFields(clusterField);
+            queryFilter.addField(featureClass.getShapeFieldName());
+            // clusters are only repeatable for features sorted by their value
+            queryFilter.setPostfixClause(String.format("ORDER BY %1$s", clusterField));
+            GeodatabaseTemplate geodatabaseTemplate = new GeodatabaseTemplate();
+            geodatabaseTemplate.query(featureClass, queryFilter, callbackHandler);
+            return features;
+        } catch (IOException ex) {
+            throw new ArcObjectsInteropException("Failed to read cluster features.", ex);
+        }
+    }
+
+    private static String getKey(int layerId, String clusterField) {
+        return layerId + "/" + clusterField;
+    }
+
+    private final class PyramidRefresh implements Callable<ClusterPyramid> {
+
+        private final int layerId;
+        private final String clusterField;
+        private final ServerObjectExtensionContext serverContext;
+        // guarded by refreshes
+        private Future<ClusterPyramid> future;
+        private boolean started;
+
+        private PyramidRefresh(int layerId, String clusterField,
+                               ServerObjectExtensionContext serverContext) {
+            this.layerId = layerId;
+            this.clusterField = clusterField;
+            this.serverContext = serverContext;
+        }
+
+        @Override
+        public ClusterPyramid call() throws Exception {
+            synchronized (refreshes) {
+                started = true;
+            }
+            try {
+                return build(layerId, clusterField, serverContext);
+            } catch (RuntimeException ex) {
+                logger.error(String.format("Failed to build cluster pyramid for layer: %1$d", layerId), ex);
+                throw ex;
+            } finally {
+                synchronized (refreshes) {
+                    String key = getKey(layerId, clusterField);
+                    if (refreshes.get(key) == this) {
+                        refreshes.remove(key);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.cluster;
+
+import java.util.Arrays;
+
+/**
+ * The fixed clusters of one pyramid level. Clusters are sorted by the cells of a coarse index grid
+ * and every cell keeps the range of its clusters (compressed sparse rows), so finding the clusters
+ * within an extent only visits the cells overlapping it.
+ */
+public class ClusterPyramidLevel {
+
+    //width and height of an index cell in pixels
+    private static final int INDEX_CELL_SIZE_IN_PIXELS = 256;
+
+    //the largest index grid that will be allocated
+    private static final int MAX_INDEX_CELLS = 1 << 16;
+
+    private final double _mapUnitsPerPixel;
+    private final double[] _clusterX;
+    private final double[] _clusterY;
+    private final double[] _clusterValue;
+
+    //index grid
+    private final ClusterExtent _extent;
+    private final double _cellSize;
+    private final int    _numColumns;
+    private final int    _numRows;
+    private final int[]  _cellStart;
+
+    /**
+     * Indexes the clusters of an assembler, leaving out clusters without a value.
+     *
+     * @param mapUnitsPerPixel map units per pixel of the level
+     * @param clusterAssembler fixed clusters
+     * @param extent the extent of all features
+     */
+    public ClusterPyramidLevel(double mapUnitsPerPixel, ClusterAssembler clusterAssembler,
+                               ClusterExtent extent) {
+        _mapUnitsPerPixel = mapUnitsPerPixel;
+        _extent = extent;
+        double cellSize = INDEX_CELL_SIZE_IN_PIXELS * mapUnitsPerPixel;
+        double extentSize = Math.max(extent.getWidth(), extent.getHeight());
+        if (extentSize / cellSize > Math.sqrt(MAX_INDEX_CELLS)) {
+            cellSize = extentSize / Math.sqrt(MAX_INDEX_CELLS);
+        }
+        _cellSize = cellSize;
+        _numColumns = (int) Math.floor(extent.getWidth() / cellSize) + 1;
+        _numRows = (int) Math.floor(extent.getHeight() / cellSize) + 1;
+
+        int numClusters = clusterAssembler.getNumberOfClusters();
+        int[] clusterCells = new int[numClusters];
+        _cellStart = new int[_numColumns * _numRows + 1];
+        int count = 0;
+        for (int cluster = 0; cluster < numClusters; cluster++) {
+            if (clusterAssembler.getClusterValue(cluster) == 0.0d) {
+                clusterCells[cluster] = -1;
+                continue;
+            }
+            int cell = getCell(clusterAssembler.getClusterX(cluster), clusterAssembler.getClusterY(cluster));
+            clusterCells[cluster] = cell;
+            _cellStart[cell + 1]++;
+            count++;
+        }
+        for (int cell = 0; cell < _numColumns * _numRows; cell++) {
+            _cellStart[cell + 1] += _cellStart[cell];
+        }
+        int[] positions = new int[_numColumns * _numRows];
+        System.arraycopy(_cellStart, 0, positions, 0, positions.length);
+        _clusterX = new double[count];
+        _clusterY = new double[count];
+        _clusterValue = new double[count];
+        for (int cluster = 0; cluster < numClusters; cluster++) {
+            int cell = clusterCells[cluster];
+            if (cell < 0) {
+                continue;
+            }
+            int position = positions[cell]++;
+            _clusterX[position] = clusterAssembler.getClusterX(cluster);
+            _clusterY[position] = clusterAssembler.getClusterY(cluster);
+            _clusterValue[position] = clusterAssembler.getClusterValue(cluster);
+        }
+    }
+
+    public double getMapUnitsPerPixel() {
+        return _mapUnitsPerPixel;
+    }
+
+    public int getNumberOfClusters() {
+        return _clusterX.length;
+    }
+
+    public double getClusterX(int cluster) {
+        return _clusterX[cluster];
+    }
+
+    public double getClusterY(int cluster) {
+        return _clusterY[cluster];
+    }
+
+    public double getClusterValue(int cluster) {
+        return _clusterValue[cluster];
+    }
+
+    /**
+     * Finds the clusters within an extent.
+     *
+     * @param extent the extent in real world coordinates
+     * @return the indices of the clusters
+     */
+    public int[] findClusters(ClusterExtent extent) {
+        int minColumn = Math.max(getColumn(extent.getXMin()), 0);
+        int minRow = Math.max(getRow(extent.getYMin()), 0);
+        int maxColumn = Math.min(getColumn(extent.getXMax()), _numColumns - 1);
+        int maxRow = Math.min(getRow(extent.getYMax()), _numRows - 1);
+        int[] clusters = new int[16];
+        int count = 0;
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int column = minColumn; column <= maxColumn; column++) {
+                int cell = row * _numColumns + column;
+                for (int cluster = _cellStart[cell]; cluster < _cellStart[cell + 1]; cluster++) {
+                    double x = _clusterX[cluster];
+                    double y = _clusterY[cluster];
+                    if (x < extent.getXMin() || x > extent.getXMax()
+                            || y < extent.getYMin() || y > extent.getYMax()) {
+                        continue;
+                    }
+                    if (count == clusters.length) {
+                        clusters = Arrays.copyOf(clusters, count * 2);
+                    }
+                    clusters[count++] = cluster;
+                }
+            }
+        }
+        return Arrays.copyOf(clusters, count);
+    }
+
+    private int getCell(double x, double y) {
+        int column = Math.min(Math.max(getColumn(x), 0), _numColumns - 1);
+        int row = Math.min(Math.max(getRow(y), 0), _numRows - 1);
+        return row * _numColumns + column;
+    }
+
+    private int getColumn(double x) {
+        return (int) Math.floor((x - _extent.getXMin()) / _cellSize);
+    }
+
+    private int getRow(double y) {
+        return (int) Math.floor((y - _extent.getYMin()) / _cellSize);
+    }
+}
@@ -23,6 +23,10 @@ import org.springframework.core.env.Environment;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
 
 @Configuration
 @ComponentScan("com.esri.serverextension.cluster")
@@ -79,4 +83,23 @@ public class ClusteringConfig {
     public String gitCommitID() {
         return gitCommitID;
     }
+
+    @Bean(destroyMethod = "shutdown")
+    @Singleton
+    public ForkJoinPool clusteringForkJoinPool() {
+        return new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @Bean(destroyMethod = "shutdownNow")
+    @Singleton
+    public ExecutorService clusterPyramidExecutor() {
+        return Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "cluster-pyramid");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
 }
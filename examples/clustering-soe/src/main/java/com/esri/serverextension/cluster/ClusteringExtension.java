@@ -21,6 +21,7 @@ import com.esri.arcgis.server.json.JSONArray;
 import com.esri.arcgis.server.json.JSONObject;
 import com.esri.arcgis.system.ServerUtilities;
 import com.esri.serverextension.core.server.AbstractRestServerObjectExtension;
+import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 
 import java.io.IOException;
@@ -37,16 +38,36 @@ public class ClusteringExtension extends AbstractRestServerObjectExtension {
             "geometry, geometryType, inSR, spatialRel, relationParam, where, " +
             "outField, outSR, orderByFields";
 
+    public static final String REFRESH_CLUSTER_PYRAMID_OPERATION_PARAMETER_NAMES = "clusterField";
+
+    private ClusterLayerCatalog layerCatalog;
+
     @Override
     protected void doConfigure(
             AnnotationConfigApplicationContext applicationContext) {
         super.doConfigure(applicationContext);
         applicationContext.register(ClusteringConfig.class);
+        layerCatalog = new ClusterLayerCatalog(getServerContext());
+        applicationContext.getBeanFactory().registerSingleton("layerCatalog", layerCatalog);
+    }
+
+    @Override
+    protected void doStart(ApplicationContext applicationContext) {
+        super.doStart(applicationContext);
+        try {
+            applicationContext.getBean(ClusterPyramidCache.class).preload(getServerContext());
+        } catch (Exception ex) {
+            getLogger().warn("Failed to build cluster pyramids.", ex);
+        }
     }
 
     @Override
     protected void doShutdown() {
         super.doShutdown();
+        if (layerCatalog != null) {
+            layerCatalog.release();
+            layerCatalog = null;
+        }
     }
 
     @Override
@@ -66,6 +87,10 @@ public class ClusteringExtension extends AbstractRestServerObjectExtension {
                 "query", QUERY_OPERATION_PARAMETER_NAMES, "json", false);
         layerResourceOperations.put(layerQueryOperation);
 
+        JSONObject refreshClusterPyramidOperation = ServerUtilities.createOperation(
+                "refreshClusterPyramid", REFRESH_CLUSTER_PYRAMID_OPERATION_PARAMETER_NAMES, "json", true);
+        layerResourceOperations.put(refreshClusterPyramidOperation);
+
         JSONObject layersResource = ServerUtilities.createResource("layers",
                 "Cluster layers", true, true);
         layersResource.put("operations", layerResourceOperations);
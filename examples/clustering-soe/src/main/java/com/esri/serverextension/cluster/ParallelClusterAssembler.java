@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Clusters large numbers of features on a {@link ForkJoinPool}. Features are buffered as they are
+ * added, then grouped by tiles of the cluster grid. Every tile is clustered by its own
+ * {@link ClusterAssembler} in a fork-join task. The tile clusters are merged into one assembler: clusters
+ * away from tile borders are added as they are, clusters within one cell of a border shared with another
+ * tile are added as features so they join neighbouring clusters, and the result is fixed once more.
+ * <p>
+ * Tiles have a fixed size in grid cells and are merged in tile order, so the clusters only depend on the
+ * features and the order they were added in, not on the pool size or task scheduling. Grids of more than
+ * {@link #MAX_TILES} tiles use tiles of a multiple of the tile size instead. Since clusters are
+ * fixed per tile before they are merged, they are not identical to the clusters of a single
+ * {@link ClusterAssembler}. Fewer features than the parallel threshold are clustered by a single
+ * {@link ClusterAssembler} on the calling thread, with identical results.
+ */
+public class ParallelClusterAssembler implements ClusterFeatureSink {
+
+    public static final int DEFAULT_TILE_SIZE_IN_CELLS = 16;
+
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 50000;
+
+    //the largest number of tiles features are grouped by
+    static final int MAX_TILES = 1 << 16;
+
+    private final Logger logger = LoggerFactory.getLogger(ParallelClusterAssembler.class);
+
+    private final ForkJoinPool _pool;
+    private final double _mapUnitsPerPixel;
+    private final double _clusterDistanceInPixels;
+    private final double _cellSize;
+    private final ClusterExtent _extent;
+    private final int _tileSizeInCells;
+    private final int _parallelThreshold;
+    private final int _numTileColumns;
+    private final int _numTileRows;
+
+    private final ClusterFeatureBuffer _features;
+
+    public ParallelClusterAssembler(double mapUnitsPerPixel, double clusterDistanceInPixels,
+                                    ClusterExtent extent, ForkJoinPool pool) {
+        this(mapUnitsPerPixel, clusterDistanceInPixels, extent, pool, DEFAULT_TILE_SIZE_IN_CELLS,
+                DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * @param mapUnitsPerPixel map units per pixel (like meters per pixel)
+     * @param clusterDistanceInPixels cluster distance in pixels
+     * @param extent the extent in real world coordinates
+     * @param pool the pool tiles are clustered on
+     * @param tileSizeInCells width and height of a tile in grid cells
+     * @param parallelThreshold the number of features from which on tiles are clustered in parallel
+     */
+    public ParallelClusterAssembler(double mapUnitsPerPixel, double clusterDistanceInPixels,
+                                    ClusterExtent extent, ForkJoinPool pool, int tileSizeInCells,
+                                    int parallelThreshold) {
+        this(mapUnitsPerPixel, clusterDistanceInPixels, extent, pool, tileSizeInCells, parallelThreshold,
+                new ClusterFeatureBuffer());
+    }
+
+    /**
+     * Creates an assembler that clusters the features of the given buffer, which can be shared by
+     * several assemblers as long as no more features are added while they assemble.
+     */
+    public ParallelClusterAssembler(double mapUnitsPerPixel, double clusterDistanceInPixels,
+                                    ClusterExtent extent, ForkJoinPool pool, int tileSizeInCells,
+                                    int parallelThreshold, ClusterFeatureBuffer features) {
+        if (pool == null) {
+            throw new NullPointerException("Argument 'pool' is required.");
+        }
+        if (features == null) {
+            throw new NullPointerException("Argument 'features' is required.");
+        }
+        if (tileSizeInCells < 2) {
+            throw new IllegalArgumentException("A tile must be at least 2 cells wide.");
+        }
+        _pool = pool;
+        _mapUnitsPerPixel = mapUnitsPerPixel;
+        _clusterDistanceInPixels = clusterDistanceInPixels;
+        _cellSize = mapUnitsPerPixel * clusterDistanceInPixels;
+        _extent = extent;
+        _parallelThreshold = parallelThreshold;
+        _features = features;
+        long numColumns = (long) Math.floor(extent.getWidth() / _cellSize) + 1;
+        long numRows = (long) Math.floor(extent.getHeight() / _cellSize) + 1;
+        long tileSize = tileSizeInCells;
+        while (((numColumns + tileSize - 1) / tileSize) * ((numRows + tileSize - 1) / tileSize) > MAX_TILES) {
+            tileSize *= 2;
+        }
+        _tileSizeInCells = (int) Math.min(tileSize, Integer.MAX_VALUE);
+        _numTileColumns = (int) ((numColumns + tileSize - 1) / tileSize);
+        _numTileRows = (int) ((numRows + tileSize - 1) / tileSize);
+    }
+
+    @Override
+    public void addFeature(double x, double y, double value) {
+        _features.addFeature(x, y, value);
+    }
+
+    /**
+     * Returns the number of features added.
+     *
+     * @return number of features
+     */
+    public long getNumberOfFeatures() {
+        return _features.getNumberOfFeatures();
+    }
+
+    /**
+     * Clusters the features added so far.
+     *
+     * @return the assembler holding the fixed clusters
+     */
+    public ClusterAssembler assemble() {
+        int numFeatures = _features.getNumberOfFeatures();
+        int numTiles = _numTileColumns * _numTileRows;
+        if (numFeatures < _parallelThreshold || numTiles <= 1) {
+            ClusterAssembler clusterAssembler = new ClusterAssembler(_mapUnitsPerPixel,
+                    _clusterDistanceInPixels, _extent);
+            for (int i = 0; i < numFeatures; i++) {
+                clusterAssembler.addFeature(_features.getX(i), _features.getY(i), _features.getValue(i));
+            }
+            clusterAssembler.fixClusters();
+            return clusterAssembler;
+        }
+
+        //group the features by tile, keeping their order within every tile
+        int[] featureTiles = new int[numFeatures];
+        int[] tileOffsets = new int[numTiles + 1];
+        for (int i = 0; i < numFeatures; i++) {
+            int tile = getTile(_features.getX(i), _features.getY(i));
+            featureTiles[i] = tile;
+            tileOffsets[tile + 1]++;
+        }
+        for (int tile = 0; tile < numTiles; tile++) {
+            tileOffsets[tile + 1] += tileOffsets[tile];
+        }
+        int[] positions = Arrays.copyOf(tileOffsets, numTiles);
+        int[] features = new int[numFeatures];
+        for (int i = 0; i < numFeatures; i++) {
+            features[positions[featureTiles[i]]++] = i;
+        }
+
+        final List<TileTask> tasks = new ArrayList<>();
+        for (int tile = 0; tile < numTiles; tile++) {
+            if (tileOffsets[tile + 1] > tileOffsets[tile]) {
+                tasks.add(new TileTask(tile, features, tileOffsets[tile], tileOffsets[tile + 1]));
+            }
+        }
+        _pool.invoke(new RecursiveAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                ForkJoinTask.invokeAll(tasks);
+            }
+        });
+
+        ClusterAssembler clusterAssembler = merge(tasks);
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("Clustered %1$d features in %2$d tiles into %3$d clusters.",
+                    numFeatures, tasks.size(), clusterAssembler.getNumberOfClusters()));
+        }
+        return clusterAssembler;
+    }
+
+    private ClusterAssembler merge(List<TileTask> tasks) {
+        ClusterAssembler clusterAssembler = new ClusterAssembler(_mapUnitsPerPixel,
+                _clusterDistanceInPixels, _extent);
+        List<TileTask> seamTasks = new ArrayList<>();
+        for (TileTask task : tasks) {
+            ClusterAssembler tileAssembler = task.clusterAssembler;
+            boolean hasSeamClusters = false;
+            for (int cluster = 0; cluster < tileAssembler.getNumberOfClusters(); cluster++) {
+                double value = tileAssembler.getClusterValue(cluster);
+                if (value == 0.0d) {
+                    continue;
+                }
+                double x = tileAssembler.getClusterX(cluster);
+                double y = tileAssembler.getClusterY(cluster);
+                if (task.isNearSeam(x, y)) {
+                    hasSeamClusters = true;
+                } else {
+                    clusterAssembler.addCluster(x, y, value);
+                }
+            }
+            if (hasSeamClusters) {
+                seamTasks.add(task);
+            }
+        }
+        for (TileTask task : seamTasks) {
+            ClusterAssembler tileAssembler = task.clusterAssembler;
+            for (int cluster = 0; cluster < tileAssembler.getNumberOfClusters(); cluster++) {
+                double value = tileAssembler.getClusterValue(cluster);
+                double x = tileAssembler.getClusterX(cluster);
+                double y = tileAssembler.getClusterY(cluster);
+                if (value != 0.0d && task.isNearSeam(x, y)) {
+                    clusterAssembler.addFeature(x, y, value);
+                }
+            }
+        }
+        clusterAssembler.fixClusters();
+        return clusterAssembler;
+    }
+
+    //from yValue real-world, what is the grid row
+    private int getGridRow(double yValue){
+        return (int) Math.floor((yValue-_extent.getYMin())/_cellSize);
+    }
+
+    //from xValue real-world, what is the grid column
+    private int getGridColumn(double xValue){
+        return (int) Math.floor((xValue-_extent.getXMin())/_cellSize);
+    }
+
+    //the tile of a feature, features outside of the extent go to the closest tile
+    private int getTile(double x, double y) {
+        int tileColumn = Math.min(Math.max(getGridColumn(x), 0) / _tileSizeInCells, _numTileColumns - 1);
+        int tileRow = Math.min(Math.max(getGridRow(y), 0) / _tileSizeInCells, _numTileRows - 1);
+        return tileRow * _numTileColumns + tileColumn;
+    }
+
+    /**
+     * Clusters the features of one tile. The tile's assembler covers one extra cell on every side, so
+     * features are never outside of its grid because of rounding.
+     */
+    private final class TileTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] features;
+        private final int start;
+        private final int end;
+        private final double xmin;
+        private final double ymin;
+        private final double xmax;
+        private final double ymax;
+        private final boolean hasLeftSeam;
+        private final boolean hasBottomSeam;
+        private final boolean hasRightSeam;
+        private final boolean hasTopSeam;
+        private ClusterAssembler clusterAssembler;
+
+        private TileTask(int tile, int[] features, int start, int end) {
+            this.features = features;
+            this.start = start;
+            this.end = end;
+            int tileColumn = tile % _numTileColumns;
+            int tileRow = tile / _numTileColumns;
+            double tileSize = _tileSizeInCells * _cellSize;
+            xmin = _extent.getXMin() + tileColumn * tileSize;
+            ymin = _extent.getYMin() + tileRow * tileSize;
+            xmax = xmin + tileSize;
+            ymax = ymin + tileSize;
+            hasLeftSeam = tileColumn > 0;
+            hasBottomSeam = tileRow > 0;
+            hasRightSeam = tileColumn < _numTileColumns - 1;
+            hasTopSeam = tileRow < _numTileRows - 1;
+        }
+
+        @Override
+        protected void compute() {
+            ClusterExtent tileExtent = new ClusterExtent(xmin - _cellSize, ymin - _cellSize,
+                    xmax + _cellSize, ymax + _cellSize);
+            ClusterAssembler tileAssembler = new ClusterAssembler(_mapUnitsPerPixel,
+                    _clusterDistanceInPixels, tileExtent);
+            for (int i = start; i < end; i++) {
+                int feature = features[i];
+                tileAssembler.addFeature(_features.getX(feature), _features.getY(feature),
+                        _features.getValue(feature));
+            }
+            tileAssembler.fixClusters();
+            clusterAssembler = tileAssembler;
+        }
+
+        //whether a cluster could join a cluster of a neighbouring tile
+        private boolean isNearSeam(double x, double y) {
+            return (hasLeftSeam && x - xmin <= _cellSize)
+                    || (hasBottomSeam && y - ymin <= _cellSize)
+                    || (hasRightSeam && xmax - x <= _cellSize)
+                    || (hasTopSeam && ymax - y <= _cellSize);
+        }
+    }
+}
@@ -29,7 +29,6 @@ import org.springframework.test.context.ContextConfiguration;
 
 import javax.inject.Inject;
 import java.io.IOException;
-import java.util.List;
 
 @RunWith(ArcObjectsSpringIntegrationTestRunner.class)
 @ContextConfiguration(locations = {"/spring/config/applicationContext-file-gdb-workspace-test.xml"})
@@ -81,12 +80,12 @@ public class ClusterAssemblerIT {
 
         logger.info("Step 4: Building clusters.");
         clusterAssembler.fixClusters();
-        List<Cluster> clusters = clusterAssembler.getClusters();
-        int clusterCount = clusters.size();
+        int clusterCount = clusterAssembler.getNumberOfClusters();
         Assert.assertTrue(clusterCount > 0);
-        for (Cluster cluster : clusters) {
-            logger.info(String.format("Cluster %1$d: (x: %2$f y: %3$f), %4$f", ++clusterCount,
-                    cluster.getPoint().x, cluster.getPoint().y, cluster.getValue()));
+        for (int cluster = 0; cluster < clusterCount; cluster++) {
+            logger.info(String.format("Cluster %1$d: (x: %2$f y: %3$f), %4$f", cluster + 1,
+                    clusterAssembler.getClusterX(cluster), clusterAssembler.getClusterY(cluster),
+                    clusterAssembler.getClusterValue(cluster)));
         }
     }
 }
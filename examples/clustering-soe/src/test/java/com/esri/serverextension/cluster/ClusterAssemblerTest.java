@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.cluster;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that {@link ClusterAssembler} builds exactly the same clusters as the object based
+ * {@link LegacyClusterAssembler}. The extents are square because the legacy grid index
+ * (<code>numRows * row + column</code>) aliases cells of non-square grids.
+ */
+public class ClusterAssemblerTest {
+
+    private static final double MAP_UNITS_PER_PIXEL = 76.43702828507277;
+
+    private static final ClusterExtent EXTENT = new ClusterExtent(-13244092.36900171,
+            4000883.3498998554, -13144092.36900171, 4100883.3498998554);
+
+    @Test
+    public void testScatteredFeatures() {
+        Random random = new Random(42L);
+        double[][] features = new double[20000][];
+        for (int i = 0; i < features.length; i++) {
+            features[i] = new double[]{
+                    EXTENT.getXMin() + random.nextDouble() * EXTENT.getWidth(),
+                    EXTENT.getYMin() + random.nextDouble() * EXTENT.getHeight(),
+                    1 + random.nextInt(1000)};
+        }
+        assertSameClusters(features, 100);
+    }
+
+    @Test
+    public void testDenseGroups() {
+        Random random = new Random(7L);
+        List<double[]> features = new ArrayList<>();
+        for (int group = 0; group < 40; group++) {
+            double cx = EXTENT.getXMin() + random.nextDouble() * EXTENT.getWidth();
+            double cy = EXTENT.getYMin() + random.nextDouble() * EXTENT.getHeight();
+            double spread = MAP_UNITS_PER_PIXEL * (20 + random.nextInt(200));
+            for (int i = 0; i < 1000; i++) {
+                double x = cx + random.nextGaussian() * spread;
+                double y = cy + random.nextGaussian() * spread;
+                if (x > EXTENT.getXMin() && x < EXTENT.getXMax()
+                        && y > EXTENT.getYMin() && y < EXTENT.getYMax()) {
+                    features.add(new double[]{x, y, random.nextInt(5000) * 0.25});
+                }
+            }
+        }
+        assertSameClusters(features.toArray(new double[features.size()][]), 60);
+    }
+
+    @Test
+    public void testDuplicateLocations() {
+        Random random = new Random(3L);
+        double[][] features = new double[5000][];
+        for (int i = 0; i < features.length; i++) {
+            int location = random.nextInt(50);
+            features[i] = new double[]{
+                    EXTENT.getXMin() + (location % 10) * EXTENT.getWidth() / 10 + 1,
+                    EXTENT.getYMin() + (location / 10) * EXTENT.getHeight() / 5 + 1,
+                    1 + random.nextInt(10)};
+        }
+        assertSameClusters(features, 100);
+    }
+
+    @Test
+    public void testHashedGrid() {
+        Random random = new Random(11L);
+        double[][] features = new double[20000][];
+        for (int i = 0; i < features.length; i++) {
+            features[i] = new double[]{
+                    EXTENT.getXMin() + random.nextDouble() * EXTENT.getWidth(),
+                    EXTENT.getYMin() + random.nextDouble() * EXTENT.getHeight(),
+                    1 + random.nextInt(1000)};
+        }
+        assertSameClusters(features, 60, 0);
+    }
+
+    @Test
+    public void testLargeGrid() {
+        //a grid of about 2^28 cells
+        ClusterExtent extent = new ClusterExtent(-20037508.34, -20037508.34, 20037508.34, 20037508.34);
+        ClusterAssembler clusterAssembler = new ClusterAssembler(0.0373, 64, extent);
+        clusterAssembler.addFeature(0.0d, 0.0d, 1.0d);
+        clusterAssembler.addFeature(1.0d, 1.0d, 3.0d);
+        clusterAssembler.addFeature(10000000.0d, -10000000.0d, 2.0d);
+        clusterAssembler.fixClusters();
+        Assert.assertEquals(2, clusterAssembler.getNumberOfClusters());
+        Assert.assertEquals(0.75d, clusterAssembler.getClusterX(0), 1e-9);
+        Assert.assertEquals(4.0d, clusterAssembler.getClusterValue(0), 0.0d);
+        Assert.assertEquals(2.0d, clusterAssembler.getClusterValue(1), 0.0d);
+    }
+
+    private void assertSameClusters(double[][] features, double clusterDistanceInPixels) {
+        assertSameClusters(features, clusterDistanceInPixels, ClusterAssembler.MAX_DENSE_CELLS);
+    }
+
+    private void assertSameClusters(double[][] features, double clusterDistanceInPixels, int maxDenseCells) {
+        Arrays.sort(features, new Comparator<double[]>() {
+            @Override
+            public int compare(double[] a, double[] b) {
+                return Double.compare(a[2], b[2]);
+            }
+        });
+        LegacyClusterAssembler legacyAssembler = new LegacyClusterAssembler(MAP_UNITS_PER_PIXEL,
+                clusterDistanceInPixels, EXTENT);
+        ClusterAssembler clusterAssembler = new ClusterAssembler(MAP_UNITS_PER_PIXEL,
+                clusterDistanceInPixels, EXTENT, maxDenseCells);
+        for (double[] feature : features) {
+            legacyAssembler.addFeature(new ClusterFeature(new ClusterPoint(feature[0], feature[1]), feature[2]));
+            clusterAssembler.addFeature(feature[0], feature[1], feature[2]);
+        }
+        legacyAssembler.fixClusters();
+        clusterAssembler.fixClusters();
+
+        List<Cluster> expected = legacyAssembler.getClusters();
+        Assert.assertEquals(legacyAssembler.getNumberOfFeatures(), clusterAssembler.getNumberOfFeatures());
+        Assert.assertEquals(expected.size(), clusterAssembler.getNumberOfClusters());
+        for (int i = 0; i < expected.size(); i++) {
+            Cluster cluster = expected.get(i);
+            Assert.assertEquals(cluster.getPoint().x, clusterAssembler.getClusterX(i), 0.0d);
+            Assert.assertEquals(cluster.getPoint().y, clusterAssembler.getClusterY(i), 0.0d);
+            Assert.assertEquals(cluster.getValue(), clusterAssembler.getClusterValue(i), 0.0d);
+        }
+    }
+}
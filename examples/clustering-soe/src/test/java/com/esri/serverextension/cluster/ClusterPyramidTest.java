@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.cluster;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class ClusterPyramidTest {
+
+    private static final ClusterExtent EXTENT = new ClusterExtent(-13244092.36900171,
+            4000883.3498998554, -13144092.36900171, 4100883.3498998554);
+
+    @Test
+    public void testLevelsMatchClusterAssembler() {
+        ClusterFeatureBuffer features = createFeatures(20000, 42L);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            ClusterPyramid pyramid = ClusterPyramid.build(features,
+                    ClusterPyramid.WEB_MERCATOR_MAP_UNITS_PER_PIXEL, 40, pool);
+            Assert.assertEquals(20000, pyramid.getNumberOfFeatures());
+            Assert.assertTrue(pyramid.getNumberOfLevels() > 10);
+
+            double mapUnitsPerPixel = ClusterPyramid.WEB_MERCATOR_MAP_UNITS_PER_PIXEL[12];
+            ClusterPyramidLevel level = pyramid.findLevel(38.21851414253662);
+            Assert.assertNotNull(level);
+            Assert.assertEquals(mapUnitsPerPixel, level.getMapUnitsPerPixel(), 0.0d);
+            Assert.assertNull(pyramid.findLevel(40.0d));
+
+            ClusterAssembler clusterAssembler = new ClusterAssembler(mapUnitsPerPixel, 40,
+                    features.getExtent());
+            for (int i = 0; i < features.getNumberOfFeatures(); i++) {
+                clusterAssembler.addFeature(features.getX(i), features.getY(i), features.getValue(i));
+            }
+            clusterAssembler.fixClusters();
+
+            ClusterExtent bbox = new ClusterExtent(-13220000, 4020000, -13180000, 4050000);
+            double[] expected = new double[0];
+            for (int cluster = 0; cluster < clusterAssembler.getNumberOfClusters(); cluster++) {
+                double x = clusterAssembler.getClusterX(cluster);
+                double y = clusterAssembler.getClusterY(cluster);
+                if (clusterAssembler.getClusterValue(cluster) != 0.0d && x >= bbox.getXMin()
+                        && x <= bbox.getXMax() && y >= bbox.getYMin() && y <= bbox.getYMax()) {
+                    expected = Arrays.copyOf(expected, expected.length + 1);
+                    expected[expected.length - 1] = x * 31 + y * 17 + clusterAssembler.getClusterValue(cluster);
+                }
+            }
+            int[] clusters = level.findClusters(bbox);
+            double[] actual = new double[clusters.length];
+            for (int i = 0; i < clusters.length; i++) {
+                actual[i] = level.getClusterX(clusters[i]) * 31 + level.getClusterY(clusters[i]) * 17
+                        + level.getClusterValue(clusters[i]);
+            }
+            Arrays.sort(expected);
+            Arrays.sort(actual);
+            Assert.assertTrue(expected.length > 0);
+            Assert.assertArrayEquals(expected, actual, 0.0d);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testEmptyPyramid() {
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            ClusterPyramid pyramid = ClusterPyramid.build(new ClusterFeatureBuffer(),
+                    ClusterPyramid.WEB_MERCATOR_MAP_UNITS_PER_PIXEL, 40, pool);
+            Assert.assertEquals(0, pyramid.getNumberOfLevels());
+            Assert.assertNull(pyramid.findLevel(ClusterPyramid.WEB_MERCATOR_MAP_UNITS_PER_PIXEL[0]));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static ClusterFeatureBuffer createFeatures(int count, long seed) {
+        Random random = new Random(seed);
+        ClusterFeatureBuffer features = new ClusterFeatureBuffer();
+        for (int i = 0; i < count; i++) {
+            features.addFeature(EXTENT.getXMin() + random.nextDouble() * EXTENT.getWidth(),
+                    EXTENT.getYMin() + random.nextDouble() * EXTENT.getHeight(), 1 + random.nextInt(1000));
+        }
+        return features;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.cluster;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares clustering a few million features with a single {@link ClusterAssembler} to
+ * {@link ParallelClusterAssembler} on pools of increasing size. Run with
+ * <code>mvn exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.esri.serverextension.cluster.ParallelClusterAssemblerBenchmark</code>.
+ */
+public class ParallelClusterAssemblerBenchmark {
+
+    private static final int NUMBER_OF_FEATURES = 4_000_000;
+    private static final int NUMBER_OF_GROUPS = 500;
+    private static final int ROUNDS = 5;
+
+    private static final double MAP_UNITS_PER_PIXEL = 152.87405657041106;
+    private static final double CLUSTER_DISTANCE_IN_PIXELS = 40;
+
+    private static final ClusterExtent EXTENT = new ClusterExtent(-14000000, 2800000, -7400000, 6400000);
+
+    public static void main(String[] args) throws Exception {
+        double[] x = new double[NUMBER_OF_FEATURES];
+        double[] y = new double[NUMBER_OF_FEATURES];
+        double[] value = new double[NUMBER_OF_FEATURES];
+        Random random = new Random(1L);
+        for (int i = 0; i < NUMBER_OF_FEATURES; i++) {
+            Random group = new Random(random.nextInt(NUMBER_OF_GROUPS));
+            double cx = EXTENT.getXMin() + group.nextDouble() * EXTENT.getWidth();
+            double cy = EXTENT.getYMin() + group.nextDouble() * EXTENT.getHeight();
+            double spread = MAP_UNITS_PER_PIXEL * (50 + group.nextInt(500));
+            x[i] = cx + random.nextGaussian() * spread;
+            y[i] = cy + random.nextGaussian() * spread;
+            value[i] = 1 + random.nextInt(100);
+        }
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            ClusterAssembler clusterAssembler = new ClusterAssembler(MAP_UNITS_PER_PIXEL,
+                    CLUSTER_DISTANCE_IN_PIXELS, EXTENT);
+            for (int i = 0; i < NUMBER_OF_FEATURES; i++) {
+                clusterAssembler.addFeature(x[i], y[i], value[i]);
+            }
+            clusterAssembler.fixClusters();
+            System.out.println(String.format("Round %1$d: sequential %2$d ms, %3$d clusters",
+                    round + 1, (System.nanoTime() - start) / 1000000,
+                    clusterAssembler.getNumberOfClusters()));
+
+            for (int parallelism = 1; parallelism <= processors; parallelism *= 2) {
+                ForkJoinPool pool = new ForkJoinPool(parallelism);
+                try {
+                    start = System.nanoTime();
+                    ParallelClusterAssembler parallelAssembler = new ParallelClusterAssembler(
+                            MAP_UNITS_PER_PIXEL, CLUSTER_DISTANCE_IN_PIXELS, EXTENT, pool);
+                    for (int i = 0; i < NUMBER_OF_FEATURES; i++) {
+                        parallelAssembler.addFeature(x[i], y[i], value[i]);
+                    }
+                    ClusterAssembler clusters = parallelAssembler.assemble();
+                    System.out.println(String.format("Round %1$d: %2$d thread(s) %3$d ms, %4$d clusters",
+                            round + 1, parallelism, (System.nanoTime() - start) / 1000000,
+                            clusters.getNumberOfClusters()));
+                } finally {
+                    pool.shutdown();
+                }
+            }
+        }
+    }
+}
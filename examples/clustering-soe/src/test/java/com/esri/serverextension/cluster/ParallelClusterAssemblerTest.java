@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.cluster;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class ParallelClusterAssemblerTest {
+
+    private static final double MAP_UNITS_PER_PIXEL = 76.43702828507277;
+
+    private static final ClusterExtent EXTENT = new ClusterExtent(-13244092.36900171,
+            4000883.3498998554, -13144092.36900171, 4100883.3498998554);
+
+    @Test
+    public void testBelowThresholdMatchesSequential() {
+        double[][] features = createFeatures(20000, 42L);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            ClusterAssembler expected = new ClusterAssembler(MAP_UNITS_PER_PIXEL, 60, EXTENT);
+            ParallelClusterAssembler parallelAssembler = new ParallelClusterAssembler(MAP_UNITS_PER_PIXEL,
+                    60, EXTENT, pool);
+            for (double[] feature : features) {
+                expected.addFeature(feature[0], feature[1], feature[2]);
+                parallelAssembler.addFeature(feature[0], feature[1], feature[2]);
+            }
+            expected.fixClusters();
+            assertSameClusters(expected, parallelAssembler.assemble());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testSameClustersForAnyPoolSize() {
+        double[][] features = createFeatures(100000, 7L);
+        ClusterAssembler single = assemble(features, 1);
+        ClusterAssembler multiple = assemble(features, 4);
+        assertSameClusters(single, multiple);
+
+        double featureValue = 0.0d;
+        for (double[] feature : features) {
+            featureValue += feature[2];
+        }
+        double clusterValue = 0.0d;
+        for (int cluster = 0; cluster < multiple.getNumberOfClusters(); cluster++) {
+            clusterValue += multiple.getClusterValue(cluster);
+        }
+        Assert.assertEquals(featureValue, clusterValue, 1e-6 * featureValue);
+    }
+
+    @Test
+    public void testLargeGrid() {
+        //a grid of about 2^28 cells, more tiles than are grouped by
+        ClusterExtent extent = new ClusterExtent(-20037508.34, -20037508.34, 20037508.34, 20037508.34);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            ParallelClusterAssembler parallelAssembler = new ParallelClusterAssembler(0.0373, 64, extent,
+                    pool, 16, 2);
+            parallelAssembler.addFeature(0.0d, 0.0d, 1.0d);
+            parallelAssembler.addFeature(1.0d, 1.0d, 3.0d);
+            parallelAssembler.addFeature(10000000.0d, -10000000.0d, 2.0d);
+            ClusterAssembler clusterAssembler = parallelAssembler.assemble();
+            Assert.assertEquals(2, clusterAssembler.getNumberOfClusters());
+            Assert.assertEquals(6.0d, clusterAssembler.getClusterValue(0) + clusterAssembler.getClusterValue(1),
+                    0.0d);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static ClusterAssembler assemble(double[][] features, int parallelism) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            ParallelClusterAssembler parallelAssembler = new ParallelClusterAssembler(MAP_UNITS_PER_PIXEL,
+                    40, EXTENT, pool, 8, 1000);
+            for (double[] feature : features) {
+                parallelAssembler.addFeature(feature[0], feature[1], feature[2]);
+            }
+            return parallelAssembler.assemble();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static double[][] createFeatures(int count, long seed) {
+        Random random = new Random(seed);
+        double[][] features = new double[count][];
+        for (int i = 0; i < count; i++) {
+            features[i] = new double[]{
+                    EXTENT.getXMin() + random.nextDouble() * EXTENT.getWidth(),
+                    EXTENT.getYMin() + random.nextDouble() * EXTENT.getHeight(),
+                    1 + random.nextInt(1000)};
+        }
+        return features;
+    }
+
+    private static void assertSameClusters(ClusterAssembler expected, ClusterAssembler actual) {
+        Assert.assertEquals(expected.getNumberOfClusters(), actual.getNumberOfClusters());
+        for (int i = 0; i < expected.getNumberOfClusters(); i++) {
+            Assert.assertEquals(expected.getClusterX(i), actual.getClusterX(i), 0.0d);
+            Assert.assertEquals(expected.getClusterY(i), actual.getClusterY(i), 0.0d);
+            Assert.assertEquals(expected.getClusterValue(i), actual.getClusterValue(i), 0.0d);
+        }
+    }
+}
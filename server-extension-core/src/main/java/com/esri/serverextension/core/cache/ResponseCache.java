@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.cache;
+
+import com.esri.serverextension.core.metrics.CacheMetrics;
+import com.esri.serverextension.core.server.RestResponse;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps serialized REST responses within a memory budget, so repeated
+ * requests are answered without resolving arguments, invoking the delegate
+ * or serializing its result again.
+ * <p>
+ * Eviction follows W-TinyLFU: new responses enter a small LRU window (1% of
+ * the budget). Responses leaving the window are only admitted to the main
+ * segmented LRU if they have been requested more often than the response
+ * they would replace, as estimated by a {@link FrequencySketch} of recent
+ * requests. Responses requested again while on probation are moved to the
+ * protected segment (80% of the main budget). A response is weighed by the
+ * size of its body and key. Every response expires after its own time to
+ * live, and responses may be invalidated by path, e.g. after the data of a
+ * resource has changed.
+ */
+public class ResponseCache {
+
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final long maximumWeight;
+    private final long maximumWindowWeight;
+    private final long maximumProtectedWeight;
+    private final CacheMetrics metrics;
+    private final Map<String, Node> nodes = new HashMap<>();
+    private final FrequencySketch sketch;
+    private final AccessOrderQueue window = new AccessOrderQueue();
+    private final AccessOrderQueue probation = new AccessOrderQueue();
+    private final AccessOrderQueue protectedQueue = new AccessOrderQueue();
+    private long weight;
+
+    public ResponseCache(long maximumWeightInBytes, CacheMetrics metrics) {
+        if (maximumWeightInBytes <= 0) {
+            throw new IllegalArgumentException(
+                    "Argument 'maximumWeightInBytes' must be positive.");
+        }
+        if (metrics == null) {
+            throw new NullPointerException("Argument 'metrics' is required.");
+        }
+        this.maximumWeight = maximumWeightInBytes;
+        this.maximumWindowWeight = Math.max(1, maximumWeightInBytes / 100);
+        this.maximumProtectedWeight = (maximumWeightInBytes - maximumWindowWeight) * 4 / 5;
+        this.metrics = metrics;
+        // assume responses of 4 KB on average to size the sketch
+        this.sketch = new FrequencySketch((int) Math.min(Integer.MAX_VALUE,
+                maximumWeightInBytes / 4096));
+    }
+
+    /**
+     * Returns the cached response for a key.
+     *
+     * @return the response, or <code>null</code> if none is cached or it has
+     * expired
+     */
+    public RestResponse get(String key) {
+        synchronized (nodes) {
+            sketch.increment(key.hashCode());
+            Node node = nodes.get(key);
+            if (node == null) {
+                metrics.recordMiss();
+                return null;
+            }
+            if (node.expiresAt - nanoTime() <= 0) {
+                remove(node);
+                metrics.recordMiss();
+                return null;
+            }
+            onAccess(node);
+            metrics.recordHit();
+            return RestResponse.fromGeneratedBody(node.responseProperties,
+                    node.responseBody);
+        }
+    }
+
+    /**
+     * Caches a response. Responses weighing more than the whole budget are
+     * not cached.
+     *
+     * @param path the path of the resource or operation that produced the
+     *             response, used by {@link #invalidate(String)}
+     */
+    public void put(String key, String path, RestResponse response,
+                    long timeToLive, TimeUnit unit) {
+        if (key == null) {
+            throw new NullPointerException("Argument 'key' is required.");
+        }
+        if (response == null) {
+            throw new NullPointerException("Argument 'response' is required.");
+        }
+        byte[] responseBody = response.getResponseBody();
+        String responseProperties = response.getResponseProperties();
+        long nodeWeight = ENTRY_OVERHEAD + 2L * key.length()
+                + (responseBody != null ? responseBody.length : 0)
+                + (responseProperties != null ? 2L * responseProperties.length() : 0);
+        synchronized (nodes) {
+            Node previous = nodes.get(key);
+            if (previous != null) {
+                remove(previous);
+            }
+            if (nodeWeight > maximumWeight) {
+                return;
+            }
+            Node node = new Node(key, path, responseProperties, responseBody,
+                    nodeWeight, nanoTime() + unit.toNanos(timeToLive));
+            nodes.put(key, node);
+            window.add(node);
+            weight += nodeWeight;
+            evict();
+        }
+    }
+
+    /**
+     * Removes all responses of a path and of the paths below it.
+     */
+    public void invalidate(String path) {
+        if (path == null) {
+            throw new NullPointerException("Argument 'path' is required.");
+        }
+        String prefix = path.endsWith("/") ? path : path + "/";
+        synchronized (nodes) {
+            Iterator<Node> iterator = nodes.values().iterator();
+            while (iterator.hasNext()) {
+                Node node = iterator.next();
+                if (node.path != null && (node.path.equals(path)
+                        || node.path.startsWith(prefix))) {
+                    iterator.remove();
+                    unlink(node);
+                }
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (nodes) {
+            nodes.clear();
+            window.clear();
+            probation.clear();
+            protectedQueue.clear();
+            weight = 0;
+        }
+    }
+
+    public int size() {
+        synchronized (nodes) {
+            return nodes.size();
+        }
+    }
+
+    public long getWeight() {
+        synchronized (nodes) {
+            return weight;
+        }
+    }
+
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
+    private void onAccess(Node node) {
+        if (node.queue == WINDOW) {
+            window.moveToTail(node);
+        } else if (node.queue == PROBATION) {
+            probation.remove(node);
+            node.queue = PROTECTED;
+            protectedQueue.add(node);
+            while (protectedQueue.weight > maximumProtectedWeight) {
+                Node demoted = protectedQueue.head();
+                protectedQueue.remove(demoted);
+                demoted.queue = PROBATION;
+                probation.add(demoted);
+            }
+        } else {
+            protectedQueue.moveToTail(node);
+        }
+    }
+
+    private void evict() {
+        while (window.weight > maximumWindowWeight) {
+            Node candidate = window.head();
+            window.remove(candidate);
+            candidate.queue = PROBATION;
+            probation.add(candidate);
+        }
+        while (weight > maximumWeight) {
+            Node victim = probation.head();
+            Node candidate = probation.tail();
+            if (victim == null) {
+                victim = protectedQueue.head() != null ? protectedQueue.head()
+                        : window.head();
+                evict(victim);
+            } else if (victim == candidate) {
+                evict(victim);
+            } else if (sketch.frequency(candidate.key.hashCode()) > sketch
+                    .frequency(victim.key.hashCode())) {
+                evict(victim);
+            } else {
+                evict(candidate);
+            }
+        }
+    }
+
+    private void evict(Node node) {
+        remove(node);
+        metrics.recordEviction();
+    }
+
+    private void remove(Node node) {
+        nodes.remove(node.key);
+        unlink(node);
+    }
+
+    private void unlink(Node node) {
+        if (node.queue == WINDOW) {
+            window.remove(node);
+        } else if (node.queue == PROBATION) {
+            probation.remove(node);
+        } else {
+            protectedQueue.remove(node);
+        }
+        weight -= node.weight;
+    }
+
+    private static final class Node {
+
+        private final String key;
+        private final String path;
+        private final String responseProperties;
+        private final byte[] responseBody;
+        private final long weight;
+        private final long expiresAt;
+        private int queue = WINDOW;
+        private Node previous;
+        private Node next;
+
+        private Node(String key, String path, String responseProperties,
+                     byte[] responseBody, long weight, long expiresAt) {
+            this.key = key;
+            this.path = path;
+            this.responseProperties = responseProperties;
+            this.responseBody = responseBody;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * A doubly linked list of nodes from least to most recently used.
+     */
+    private static final class AccessOrderQueue {
+
+        private Node head;
+        private Node tail;
+        private long weight;
+
+        private Node head() {
+            return head;
+        }
+
+        private Node tail() {
+            return tail;
+        }
+
+        private void add(Node node) {
+            node.previous = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            weight += node.weight;
+        }
+
+        private void remove(Node node) {
+            if (node.previous == null) {
+                head = node.next;
+            } else {
+                node.previous.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.previous;
+            } else {
+                node.next.previous = node.previous;
+            }
+            node.previous = null;
+            node.next = null;
+            weight -= node.weight;
+        }
+
+        private void moveToTail(Node node) {
+            if (node != tail) {
+                remove(node);
+                add(node);
+            }
+        }
+
+        private void clear() {
+            head = null;
+            tail = null;
+            weight = 0;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.geodatabase;
+
+import com.esri.arcgis.geodatabase.ICursor;
+import com.esri.arcgis.geodatabase.IFeature;
+import com.esri.arcgis.geodatabase.IFeatureCursor;
+import com.esri.arcgis.geodatabase.IField;
+import com.esri.arcgis.geodatabase.IRow;
+import com.esri.arcgis.geodatabase.esriFieldType;
+import com.esri.arcgis.geometry.IGeometry;
+import com.esri.arcgis.interop.AutomationException;
+import com.esri.arcgis.system.Cleaner;
+import com.esri.serverextension.core.rest.api.FeatureSet;
+import com.esri.serverextension.core.rest.api.Field;
+import com.esri.serverextension.core.rest.api.FieldType;
+import com.esri.serverextension.core.server.RequestDeadline;
+import com.esri.serverextension.core.util.StopWatch;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes an Esri JSON feature set straight from a cursor. Every row is
+ * written to a {@link JsonGenerator} and released as soon as it has been
+ * read, so no intermediate list of features is built. The header properties
+ * (display field, geometry type, spatial reference, fields, ...) are taken
+ * from the given {@link FeatureSet}; its features are ignored. If it has no
+ * fields, they are derived from the cursor fields.
+ * <p>
+ * The result is meant to be returned with
+ * {@link com.esri.serverextension.core.server.RestResponse#fromGeneratedBody(String, byte[])}.
+ */
+public class GeodatabaseFeatureSetCursorExtractor implements
+        GeodatabaseCursorExtractor<byte[]> {
+
+    private final Logger logger = LoggerFactory
+            .getLogger(GeodatabaseFeatureSetCursorExtractor.class);
+
+    private final ObjectMapper objectMapper;
+    private final FeatureSet featureSet;
+
+    public GeodatabaseFeatureSetCursorExtractor(ObjectMapper objectMapper,
+                                                FeatureSet featureSet) {
+        if (objectMapper == null) {
+            throw new NullPointerException(
+                    "Argument 'objectMapper' is required.");
+        }
+        this.objectMapper = objectMapper;
+        this.featureSet = featureSet != null ? featureSet : new FeatureSet();
+    }
+
+    @Override
+    public byte[] extractData(ICursor cursor, GeodatabaseFieldMap fieldMap)
+            throws IOException {
+        try {
+            StopWatch stopWatch = StopWatch.createAndStart();
+            FeatureSetWriter writer = new FeatureSetWriter(fieldMap);
+            int rowCount = 0;
+            IRow row = null;
+            while ((row = cursor.nextRow()) != null) {
+                try {
+                    writer.writeFeature(row, false, null);
+                } finally {
+                    Cleaner.release(row);
+                }
+                if (++rowCount % RequestDeadline.CHECK_INTERVAL == 0) {
+                    RequestDeadline.checkCurrent();
+                }
+            }
+            byte[] result = writer.finish();
+            logger.debug("Writing {} row(s) took {} second(s).", rowCount,
+                    stopWatch.stop().elapsedTimeSeconds());
+            return result;
+        } catch (AutomationException ex) {
+            throw new GeodatabaseSystemException(
+                    "Failed to extract data from cursor.", ex);
+        } finally {
+            if (cursor != null) {
+                Cleaner.release(cursor);
+            }
+        }
+    }
+
+    @Override
+    public byte[] extractData(IFeatureCursor featureCursor,
+                              GeodatabaseFieldMap fieldMap) throws IOException {
+        try {
+            StopWatch stopWatch = StopWatch.createAndStart();
+            FeatureSetWriter writer = new FeatureSetWriter(fieldMap);
+            int featureCount = 0;
+            IFeature feature = null;
+            while ((feature = featureCursor.nextFeature()) != null) {
+                IGeometry shape = null;
+                try {
+                    shape = feature.getShape();
+                    writer.writeFeature(feature, true, shape);
+                } finally {
+                    if (shape != null) {
+                        Cleaner.release(shape);
+                    }
+                    Cleaner.release(feature);
+                }
+                if (++featureCount % RequestDeadline.CHECK_INTERVAL == 0) {
+                    RequestDeadline.checkCurrent();
+                }
+            }
+            byte[] result = writer.finish();
+            logger.debug("Writing {} feature(s) took {} second(s).",
+                    featureCount, stopWatch.stop().elapsedTimeSeconds());
+            return result;
+        } catch (AutomationException ex) {
+            throw new GeodatabaseSystemException(
+                    "Failed to extract data from cursor.", ex);
+        } finally {
+            if (featureCursor != null) {
+                Cleaner.release(featureCursor);
+            }
+        }
+    }
+
+    private final class FeatureSetWriter {
+
+        private final ByteArrayBuilder buffer;
+        private final JsonGenerator generator;
+        private final String[] attributeNames;
+        private final int[] attributeIndices;
+
+        private FeatureSetWriter(GeodatabaseFieldMap fieldMap)
+                throws IOException {
+            List<String> names = new ArrayList<String>();
+            List<Integer> indices = new ArrayList<Integer>();
+            List<Field> fields = new ArrayList<Field>();
+            for (GeodatabaseFieldMap.FieldIndex fieldIndex : fieldMap
+                    .getFieldIndices()) {
+                IField field = fieldIndex.getField();
+                int type = field.getType();
+                if (type == esriFieldType.esriFieldTypeGeometry
+                        || type == esriFieldType.esriFieldTypeBlob
+                        || type == esriFieldType.esriFieldTypeRaster) {
+                    continue;
+                }
+                names.add(field.getName());
+                indices.add(fieldIndex.getIndex());
+                fields.add(new Field(field.getName(), FieldType
+                        .convertIntegerTypeToFieldType(type), field
+                        .getAliasName(),
+                        type == esriFieldType.esriFieldTypeString ? field
+                                .getLength() : null));
+            }
+            attributeNames = names.toArray(new String[names.size()]);
+            attributeIndices = new int[indices.size()];
+            for (int i = 0; i < attributeIndices.length; i++) {
+                attributeIndices[i] = indices.get(i);
+            }
+
+            buffer = new ByteArrayBuilder();
+            generator = objectMapper.getFactory().createGenerator(buffer,
+                    JsonEncoding.UTF8);
+            writeHeader(featureSet.getFields() != null ? featureSet
+                    .getFields() : fields);
+            generator.writeArrayFieldStart("features");
+        }
+
+        private void writeHeader(List<Field> fields) throws IOException {
+            generator.writeStartObject();
+            writeStringField("objectIdFieldName",
+                    featureSet.getObjectIdFieldName());
+            writeStringField("globalIdFieldName",
+                    featureSet.getGlobalIdFieldName());
+            writeStringField("displayFieldName",
+                    featureSet.getDisplayFieldName());
+            if (featureSet.getGeometryType() != null) {
+                generator.writeStringField("geometryType", featureSet
+                        .getGeometryType().name());
+            }
+            if (featureSet.getSpatialReference() != null) {
+                generator.writeFieldName("spatialReference");
+                generator.writeObject(featureSet.getSpatialReference());
+            }
+            generator.writeBooleanField("hasZ", featureSet.isHasZ());
+            generator.writeBooleanField("hasM", featureSet.isHasM());
+            Map<String, String> fieldAliases = featureSet.getFieldAliases();
+            if (fieldAliases != null) {
+                generator.writeFieldName("fieldAliases");
+                generator.writeObject(fieldAliases);
+            }
+            generator.writeFieldName("fields");
+            generator.writeObject(fields);
+        }
+
+        private void writeStringField(String name, String value)
+                throws IOException {
+            if (value != null) {
+                generator.writeStringField(name, value);
+            }
+        }
+
+        private void writeFeature(IRow row, boolean writeGeometry,
+                                  IGeometry geometry) throws IOException {
+            generator.writeStartObject();
+            if (writeGeometry) {
+                generator.writeFieldName("geometry");
+                generator.writeObject(geometry);
+            }
+            generator.writeObjectFieldStart("attributes");
+            for (int i = 0; i < attributeIndices.length; i++) {
+                generator.writeFieldName(attributeNames[i]);
+                generator.writeObject(row.getValue(attributeIndices[i]));
+            }
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+
+        private byte[] finish() throws IOException {
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.close();
+            byte[] result = buffer.toByteArray();
+            buffer.release();
+            return result;
+        }
+    }
+}
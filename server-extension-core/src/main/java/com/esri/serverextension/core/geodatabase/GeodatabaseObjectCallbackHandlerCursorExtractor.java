@@ -20,6 +20,7 @@ import com.esri.arcgis.geodatabase.IFeatureCursor;
 import com.esri.arcgis.geodatabase.IRow;
 import com.esri.arcgis.interop.AutomationException;
 import com.esri.arcgis.system.Cleaner;
+import com.esri.serverextension.core.server.RequestDeadline;
 import com.esri.serverextension.core.util.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -77,6 +78,9 @@ public class GeodatabaseObjectCallbackHandlerCursorExtractor implements
                     rowCount++;
                     objectCallbackHandler.processRow(row);
                     Cleaner.release(row);
+                    if (rowCount % RequestDeadline.CHECK_INTERVAL == 0) {
+                        RequestDeadline.checkCurrent();
+                    }
                 }
             }
             logger.debug("Extracting {} row(s) took {} second(s).", rowCount,
@@ -123,6 +127,9 @@ public class GeodatabaseObjectCallbackHandlerCursorExtractor implements
                     featureCount++;
                     objectCallbackHandler.processFeature(feature);
                     Cleaner.release(feature);
+                    if (featureCount % RequestDeadline.CHECK_INTERVAL == 0) {
+                        RequestDeadline.checkCurrent();
+                    }
                 }
             }
             logger.debug("Extracting {} features(s) took {} second(s).", featureCount,
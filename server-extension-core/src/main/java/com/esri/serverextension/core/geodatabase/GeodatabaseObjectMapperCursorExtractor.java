@@ -20,6 +20,7 @@ import com.esri.arcgis.geodatabase.IFeatureCursor;
 import com.esri.arcgis.geodatabase.IRow;
 import com.esri.arcgis.interop.AutomationException;
 import com.esri.arcgis.system.Cleaner;
+import com.esri.serverextension.core.server.RequestDeadline;
 import com.esri.serverextension.core.util.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -81,6 +82,9 @@ public class GeodatabaseObjectMapperCursorExtractor<T> implements
 					rowCount++;
 					resultSet.add(objectMapper.mapRow(row));
                     Cleaner.release(row);
+					if (rowCount % RequestDeadline.CHECK_INTERVAL == 0) {
+						RequestDeadline.checkCurrent();
+					}
 				}
 			}
 			logger.debug("Extracting {} row(s) took {} second(s).", rowCount,
@@ -129,6 +133,9 @@ public class GeodatabaseObjectMapperCursorExtractor<T> implements
                     featureCount++;
                     resultSet.add(objectMapper.mapRow(feature));
                     Cleaner.release(feature);
+                    if (featureCount % RequestDeadline.CHECK_INTERVAL == 0) {
+                        RequestDeadline.checkCurrent();
+                    }
                 }
             }
             logger.debug("Extracting {} features(s) took {} second(s).", featureCount,
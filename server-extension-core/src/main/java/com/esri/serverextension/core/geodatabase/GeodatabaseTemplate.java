@@ -18,6 +18,7 @@ import com.esri.arcgis.geodatabase.IFeatureClass;
 import com.esri.arcgis.geodatabase.IFeatureCursor;
 import com.esri.arcgis.geodatabase.IQueryFilter;
 import com.esri.arcgis.system.Cleaner;
+import com.esri.serverextension.core.server.RequestDeadline;
 import com.esri.serverextension.core.util.StopWatch;
 import com.esri.serverextension.core.util.UncheckedIOException;
 import org.slf4j.Logger;
@@ -55,6 +56,7 @@ public class GeodatabaseTemplate {
 		IFeatureCursor cursor = null;
 		T result = null;
 		try {
+			RequestDeadline.checkCurrent();
 			StopWatch stopWatch = StopWatch.createAndStart();
 			cursor = featureClass.search(queryFilter, false);
 			logger.debug("Preparing query took {} second(s).", stopWatch.stop()
@@ -0,0 +1,438 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.geodatabase;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of ObjectIDs in the style of a Roaring bitmap. ObjectIDs are
+ * partitioned by their upper 16 bits, and each partition keeps its lower 16
+ * bits either as a sorted array, while it holds at most 4096 values, or as a
+ * bitmap of 65536 bits. Sparse and dense sets both stay small, and unions and
+ * intersections work a partition at a time.
+ * <p>
+ * A bitmap is not thread-safe. Bitmaps shared between threads must not be
+ * modified; {@link #or(ObjectIdBitmap)} and {@link #and(ObjectIdBitmap)}
+ * return new bitmaps.
+ */
+public final class ObjectIdBitmap {
+
+    private static final int ARRAY_CONTAINER_MAX_SIZE = 4096;
+    private static final int BITMAP_WORDS = 1 << 10;
+
+    private char[] keys;
+    private Container[] containers;
+    private int size;
+
+    public ObjectIdBitmap() {
+        this(new char[4], new Container[4], 0);
+    }
+
+    private ObjectIdBitmap(char[] keys, Container[] containers, int size) {
+        this.keys = keys;
+        this.containers = containers;
+        this.size = size;
+    }
+
+    public static ObjectIdBitmap of(int... objectIds) {
+        ObjectIdBitmap bitmap = new ObjectIdBitmap();
+        for (int objectId : objectIds) {
+            bitmap.add(objectId);
+        }
+        return bitmap;
+    }
+
+    public void add(int objectId) {
+        if (objectId < 0) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid ObjectID: %1$d", objectId));
+        }
+        char key = (char) (objectId >>> 16);
+        int index = Arrays.binarySearch(keys, 0, size, key);
+        if (index >= 0) {
+            containers[index] = containers[index].add((char) objectId);
+        } else {
+            insert(-index - 1, key, new ArrayContainer().add((char) objectId));
+        }
+    }
+
+    public boolean contains(int objectId) {
+        if (objectId < 0) {
+            return false;
+        }
+        int index = Arrays.binarySearch(keys, 0, size, (char) (objectId >>> 16));
+        return index >= 0 && containers[index].contains((char) objectId);
+    }
+
+    public int getCardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the union of this and another bitmap as a new bitmap.
+     */
+    public ObjectIdBitmap or(ObjectIdBitmap other) {
+        ObjectIdBitmap result = new ObjectIdBitmap(new char[size + other.size],
+                new Container[size + other.size], 0);
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                result.append(keys[i], containers[i].copy());
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                result.append(other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.append(keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        for (; i < size; i++) {
+            result.append(keys[i], containers[i].copy());
+        }
+        for (; j < other.size; j++) {
+            result.append(other.keys[j], other.containers[j].copy());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the intersection of this and another bitmap as a new bitmap.
+     */
+    public ObjectIdBitmap and(ObjectIdBitmap other) {
+        int capacity = Math.max(1, Math.min(size, other.size));
+        ObjectIdBitmap result = new ObjectIdBitmap(new char[capacity],
+                new Container[capacity], 0);
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container container = containers[i].and(other.containers[j]);
+                if (container.cardinality() > 0) {
+                    result.append(keys[i], container);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public ObjectIdBitmap copy() {
+        Container[] containersCopy = new Container[Math.max(1, size)];
+        for (int i = 0; i < size; i++) {
+            containersCopy[i] = containers[i].copy();
+        }
+        return new ObjectIdBitmap(Arrays.copyOf(keys, Math.max(1, size)),
+                containersCopy, size);
+    }
+
+    /**
+     * Returns the ObjectIDs in ascending order.
+     */
+    public int[] toArray() {
+        int[] objectIds = new int[getCardinality()];
+        int offset = 0;
+        for (int i = 0; i < size; i++) {
+            offset = containers[i].toArray(keys[i] << 16, objectIds, offset);
+        }
+        return objectIds;
+    }
+
+    /**
+     * Returns the ObjectIDs as a comma separated list, as expected by the
+     * <code>objectIds</code> parameter of query operations.
+     */
+    public String toObjectIdsString() {
+        int[] objectIds = toArray();
+        StringBuilder builder = new StringBuilder(objectIds.length * 7);
+        for (int i = 0; i < objectIds.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(objectIds[i]);
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "ObjectIdBitmap [cardinality=" + getCardinality() + "]";
+    }
+
+    private void insert(int index, char key, Container container) {
+        if (size == keys.length) {
+            int capacity = Math.max(4, size * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+    }
+
+    private void append(char key, Container container) {
+        insert(size, key, container);
+    }
+
+    private abstract static class Container {
+
+        abstract Container add(char value);
+
+        abstract boolean contains(char value);
+
+        abstract int cardinality();
+
+        abstract Container or(Container other);
+
+        abstract Container and(Container other);
+
+        abstract Container copy();
+
+        abstract int toArray(int high, int[] objectIds, int offset);
+    }
+
+    private static final class ArrayContainer extends Container {
+
+        private char[] values;
+        private int cardinality;
+
+        private ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        private ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) {
+                return this;
+            }
+            if (cardinality == ARRAY_CONTAINER_MAX_SIZE) {
+                return toBitmapContainer().add(value);
+            }
+            index = -index - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_CONTAINER_MAX_SIZE,
+                        Math.max(4, cardinality * 2)));
+            }
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer) {
+                return other.or(this);
+            }
+            ArrayContainer array = (ArrayContainer) other;
+            char[] merged = new char[cardinality + array.cardinality];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cardinality && j < array.cardinality) {
+                char a = values[i];
+                char b = array.values[j];
+                if (a < b) {
+                    merged[count++] = a;
+                    i++;
+                } else if (a > b) {
+                    merged[count++] = b;
+                    j++;
+                } else {
+                    merged[count++] = a;
+                    i++;
+                    j++;
+                }
+            }
+            while (i < cardinality) {
+                merged[count++] = values[i++];
+            }
+            while (j < array.cardinality) {
+                merged[count++] = array.values[j++];
+            }
+            ArrayContainer result = new ArrayContainer(merged, count);
+            return count > ARRAY_CONTAINER_MAX_SIZE ? result.toBitmapContainer()
+                    : result;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] common = new char[cardinality];
+            int count = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (other.contains(values[i])) {
+                    common[count++] = values[i];
+                }
+            }
+            return new ArrayContainer(common, count);
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(1,
+                    cardinality)), cardinality);
+        }
+
+        @Override
+        int toArray(int high, int[] objectIds, int offset) {
+            for (int i = 0; i < cardinality; i++) {
+                objectIds[offset++] = high | values[i];
+            }
+            return offset;
+        }
+
+        private BitmapContainer toBitmapContainer() {
+            long[] words = new long[BITMAP_WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            return new BitmapContainer(words, cardinality);
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+
+        private final long[] words;
+        private int cardinality;
+
+        private BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            long bit = 1L << value;
+            int word = value >>> 6;
+            if ((words[word] & bit) == 0) {
+                words[word] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container or(Container other) {
+            BitmapContainer result = (BitmapContainer) copy();
+            if (other instanceof BitmapContainer) {
+                long[] otherWords = ((BitmapContainer) other).words;
+                int count = 0;
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    result.words[i] |= otherWords[i];
+                    count += Long.bitCount(result.words[i]);
+                }
+                result.cardinality = count;
+            } else {
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.cardinality; i++) {
+                    result.add(array.values[i]);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            long[] common = new long[BITMAP_WORDS];
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                common[i] = words[i] & otherWords[i];
+                count += Long.bitCount(common[i]);
+            }
+            BitmapContainer result = new BitmapContainer(common, count);
+            return count > ARRAY_CONTAINER_MAX_SIZE ? result : result
+                    .toArrayContainer();
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        int toArray(int high, int[] objectIds, int offset) {
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    objectIds[offset++] = high | (i << 6)
+                            | Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+            return offset;
+        }
+
+        private ArrayContainer toArrayContainer() {
+            char[] values = new char[Math.max(1, cardinality)];
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[count++] = (char) ((i << 6)
+                            | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, count);
+        }
+    }
+}
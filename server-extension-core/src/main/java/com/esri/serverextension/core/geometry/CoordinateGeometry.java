@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.geometry;
+
+import com.esri.arcgis.geometry.IGeometry;
+
+import java.util.Arrays;
+
+/**
+ * Esri JSON geometry held in primitive arrays. Vertices are stored
+ * interleaved as <code>x, y[, z][, m]</code> and parts are described by
+ * offsets into the vertex list, so a geometry read from a request costs two
+ * arrays instead of a graph of COM objects. An envelope is stored as its
+ * lower left and upper right corner. {@link #toGeometry()} creates the
+ * ArcObjects geometry on demand.
+ * <p>
+ * Polylines and polygons with true curves cannot be held in vertex arrays
+ * and are kept as Esri JSON instead, see {@link #curves}.
+ * <p>
+ * The arrays given to the constructor are not copied.
+ */
+public final class CoordinateGeometry {
+
+    public enum Type {
+        POINT, MULTIPOINT, POLYLINE, POLYGON, ENVELOPE
+    }
+
+    private static final int[] SINGLE_PART = new int[0];
+
+    private final Type type;
+    private final boolean zAware;
+    private final boolean mAware;
+    private final int dimension;
+    private final double[] coordinates;
+    private final int[] partOffsets;
+    private final SpatialReferenceDefinition spatialReference;
+    private final String curveJson;
+
+    /**
+     * @param coordinates interleaved vertex coordinates
+     * @param partOffsets index of the first vertex of every part followed by
+     *                    the vertex count; may be <code>null</code> for
+     *                    single part geometries
+     */
+    public CoordinateGeometry(Type type, boolean zAware, boolean mAware,
+                              double[] coordinates, int[] partOffsets,
+                              SpatialReferenceDefinition spatialReference) {
+        if (type == null) {
+            throw new NullPointerException("Argument 'type' is required.");
+        }
+        if (coordinates == null) {
+            throw new NullPointerException(
+                    "Argument 'coordinates' is required.");
+        }
+        this.type = type;
+        this.zAware = zAware;
+        this.mAware = mAware;
+        this.dimension = 2 + (zAware ? 1 : 0) + (mAware ? 1 : 0);
+        if (coordinates.length % dimension != 0) {
+            throw new IllegalArgumentException(String.format(
+                    "Coordinate count %1$d is not a multiple of %2$d.",
+                    coordinates.length, dimension));
+        }
+        int pointCount = coordinates.length / dimension;
+        if (type == Type.POINT && pointCount != 1) {
+            throw new IllegalArgumentException(
+                    "A point must have exactly one vertex.");
+        }
+        if (type == Type.ENVELOPE && pointCount != 2) {
+            throw new IllegalArgumentException(
+                    "An envelope must have exactly two corners.");
+        }
+        if (partOffsets != null) {
+            if (partOffsets.length == 0
+                    || partOffsets[partOffsets.length - 1] != pointCount) {
+                throw new IllegalArgumentException(
+                        "The last part offset must be the vertex count.");
+            }
+            for (int i = 1; i < partOffsets.length; i++) {
+                if (partOffsets[i] < partOffsets[i - 1]) {
+                    throw new IllegalArgumentException(
+                            "Part offsets must be ascending.");
+                }
+            }
+        }
+        this.coordinates = coordinates;
+        this.partOffsets = partOffsets != null ? partOffsets : SINGLE_PART;
+        this.spatialReference = spatialReference;
+        this.curveJson = null;
+    }
+
+    private CoordinateGeometry(Type type, boolean zAware, boolean mAware,
+                               String curveJson,
+                               SpatialReferenceDefinition spatialReference) {
+        this.type = type;
+        this.zAware = zAware;
+        this.mAware = mAware;
+        this.dimension = 2 + (zAware ? 1 : 0) + (mAware ? 1 : 0);
+        this.coordinates = new double[0];
+        this.partOffsets = SINGLE_PART;
+        this.spatialReference = spatialReference;
+        this.curveJson = curveJson;
+    }
+
+    public static CoordinateGeometry point(double x, double y,
+                                           SpatialReferenceDefinition spatialReference) {
+        return new CoordinateGeometry(Type.POINT, false, false, new double[]{
+                x, y}, null, spatialReference);
+    }
+
+    public static CoordinateGeometry envelope(double xmin, double ymin,
+                                              double xmax, double ymax,
+                                              SpatialReferenceDefinition spatialReference) {
+        return new CoordinateGeometry(Type.ENVELOPE, false, false,
+                new double[]{xmin, ymin, xmax, ymax}, null,
+                spatialReference);
+    }
+
+    /**
+     * Creates a polyline or polygon with true curves. Such a geometry has no
+     * vertices; it is converted through its Esri JSON.
+     *
+     * @param curveJson the Esri JSON of the geometry with
+     *                  <code>curvePaths</code> or <code>curveRings</code>,
+     *                  without spatial reference
+     */
+    public static CoordinateGeometry curves(Type type, boolean zAware,
+                                            boolean mAware, String curveJson,
+                                            SpatialReferenceDefinition spatialReference) {
+        if (type != Type.POLYLINE && type != Type.POLYGON) {
+            throw new IllegalArgumentException(String.format(
+                    "A %1$s geometry cannot have curves.", type));
+        }
+        if (curveJson == null) {
+            throw new NullPointerException("Argument 'curveJson' is required.");
+        }
+        return new CoordinateGeometry(type, zAware, mAware, curveJson,
+                spatialReference);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public boolean isZAware() {
+        return zAware;
+    }
+
+    public boolean isMAware() {
+        return mAware;
+    }
+
+    /**
+     * Returns the number of values stored per vertex.
+     */
+    public int getDimension() {
+        return dimension;
+    }
+
+    public int getPointCount() {
+        return coordinates.length / dimension;
+    }
+
+    public int getPartCount() {
+        if (partOffsets.length == 0) {
+            return getPointCount() > 0 ? 1 : 0;
+        }
+        return partOffsets.length - 1;
+    }
+
+    public int getPartStart(int part) {
+        return partOffsets.length == 0 ? 0 : partOffsets[part];
+    }
+
+    public int getPartEnd(int part) {
+        return partOffsets.length == 0 ? getPointCount()
+                : partOffsets[part + 1];
+    }
+
+    public double getX(int point) {
+        return coordinates[point * dimension];
+    }
+
+    public double getY(int point) {
+        return coordinates[point * dimension + 1];
+    }
+
+    public double getZ(int point) {
+        return zAware ? coordinates[point * dimension + 2] : Double.NaN;
+    }
+
+    public double getM(int point) {
+        return mAware ? coordinates[point * dimension + dimension - 1]
+                : Double.NaN;
+    }
+
+    /**
+     * Returns the interleaved vertex coordinates. The array is not a copy.
+     */
+    public double[] getCoordinates() {
+        return coordinates;
+    }
+
+    public SpatialReferenceDefinition getSpatialReference() {
+        return spatialReference;
+    }
+
+    public boolean hasCurves() {
+        return curveJson != null;
+    }
+
+    /**
+     * Returns the Esri JSON of a geometry with true curves.
+     *
+     * @return the JSON, or <code>null</code> if the geometry has no curves
+     */
+    public String getCurveJson() {
+        return curveJson;
+    }
+
+    public boolean isEmpty() {
+        return curveJson == null
+                && (getPointCount() == 0 || Double.isNaN(coordinates[0]));
+    }
+
+    /**
+     * Creates the ArcObjects geometry for this geometry.
+     */
+    public IGeometry toGeometry() {
+        return new CoordinateGeometryConverter().toGeometry(this);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof CoordinateGeometry)) {
+            return false;
+        }
+        CoordinateGeometry other = (CoordinateGeometry) obj;
+        if (type != other.type || zAware != other.zAware
+                || mAware != other.mAware
+                || getPartCount() != other.getPartCount()
+                || !Arrays.equals(coordinates, other.coordinates)
+                || (curveJson == null ? other.curveJson != null
+                : !curveJson.equals(other.curveJson))) {
+            return false;
+        }
+        for (int i = 0; i < getPartCount(); i++) {
+            if (getPartStart(i) != other.getPartStart(i)) {
+                return false;
+            }
+        }
+        return spatialReference == null ? other.spatialReference == null
+                : spatialReference.equals(other.spatialReference);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = type.hashCode();
+        result = 31 * result + Arrays.hashCode(coordinates);
+        result = 31 * result + (curveJson != null ? curveJson.hashCode() : 0);
+        result = 31 * result
+                + (spatialReference != null ? spatialReference.hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "CoordinateGeometry [type=" + type + ", zAware=" + zAware
+                + ", mAware=" + mAware + ", pointCount=" + getPointCount()
+                + ", partCount=" + getPartCount() + ", curves=" + hasCurves()
+                + ", spatialReference=" + spatialReference + "]";
+    }
+}
@@ -0,0 +1,472 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.geometry;
+
+import com.esri.arcgis.geometry.Envelope;
+import com.esri.arcgis.geometry.GeometryEnvironment;
+import com.esri.arcgis.geometry.IGeometry;
+import com.esri.arcgis.geometry.IGeometryBridge2;
+import com.esri.arcgis.geometry.IGeometryCollection;
+import com.esri.arcgis.geometry.IJSONConverterGeometry;
+import com.esri.arcgis.geometry.IPointCollection;
+import com.esri.arcgis.geometry.IPointCollection4;
+import com.esri.arcgis.geometry.ISegmentCollection;
+import com.esri.arcgis.geometry.ISpatialReference;
+import com.esri.arcgis.geometry.JSONConverterGeometry;
+import com.esri.arcgis.geometry.Multipoint;
+import com.esri.arcgis.geometry.Path;
+import com.esri.arcgis.geometry.Point;
+import com.esri.arcgis.geometry.Polygon;
+import com.esri.arcgis.geometry.Polyline;
+import com.esri.arcgis.geometry.Ring;
+import com.esri.arcgis.geometry.esriGeometryType;
+import com.esri.arcgis.system.Cleaner;
+import com.esri.arcgis.system.IJSONObject;
+import com.esri.arcgis.system.IJSONReader;
+import com.esri.arcgis.system.JSONObject;
+import com.esri.arcgis.system.JSONReader;
+import com.esri.arcgis.system._WKSPoint;
+import com.esri.serverextension.core.util.ArcObjectsInteropException;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Converts between {@link CoordinateGeometry} and ArcObjects geometries.
+ * Vertices of geometries without z or m values are transferred in one call
+ * per part through {@link IGeometryBridge2}; other geometries are transferred
+ * vertex by vertex. Polylines and polygons with true curves are converted
+ * through their Esri JSON with {@link JSONConverterGeometry}.
+ */
+public class CoordinateGeometryConverter {
+
+    public CoordinateGeometryConverter() {
+    }
+
+    public IGeometry toGeometry(CoordinateGeometry geometry) {
+        if (geometry == null) {
+            throw new NullPointerException("Argument 'geometry' is required.");
+        }
+        try {
+            IGeometry result;
+            if (geometry.hasCurves()) {
+                result = toCurveGeometry(geometry);
+            } else {
+                switch (geometry.getType()) {
+                    case POINT:
+                        result = toPoint(geometry);
+                        break;
+                    case ENVELOPE:
+                        result = toEnvelope(geometry);
+                        break;
+                    case MULTIPOINT:
+                        result = toMultipoint(geometry);
+                        break;
+                    case POLYLINE:
+                        result = toPolyline(geometry);
+                        break;
+                    case POLYGON:
+                        result = toPolygon(geometry);
+                        break;
+                    default:
+                        throw new IllegalArgumentException(String.format(
+                                "Unsupported geometry type '%1$s'.",
+                                geometry.getType()));
+                }
+            }
+            SpatialReferenceDefinition spatialReference = geometry
+                    .getSpatialReference();
+            if (spatialReference != null && !spatialReference.isEmpty()) {
+                result.setSpatialReferenceByRef(spatialReference
+                        .toSpatialReference());
+            }
+            return result;
+        } catch (IOException ex) {
+            throw new ArcObjectsInteropException(String.format(
+                    "Cannot create %1$s geometry.", geometry.getType()), ex);
+        }
+    }
+
+    public CoordinateGeometry fromGeometry(IGeometry geometry) {
+        if (geometry == null) {
+            throw new NullPointerException("Argument 'geometry' is required.");
+        }
+        try {
+            ISpatialReference spatialReference = geometry
+                    .getSpatialReference();
+            SpatialReferenceDefinition definition = null;
+            if (spatialReference != null
+                    && spatialReference.getFactoryCode() > 0) {
+                definition = SpatialReferenceDefinition
+                        .fromWkid(spatialReference.getFactoryCode());
+            }
+            return fromGeometry(geometry, definition);
+        } catch (IOException ex) {
+            throw new ArcObjectsInteropException(
+                    "Cannot read spatial reference of geometry.", ex);
+        }
+    }
+
+    /**
+     * Reads the coordinates of the given geometry. The spatial reference of
+     * the geometry is not read; the given definition is used instead.
+     */
+    public CoordinateGeometry fromGeometry(IGeometry geometry,
+                                           SpatialReferenceDefinition spatialReference) {
+        if (geometry == null) {
+            throw new NullPointerException("Argument 'geometry' is required.");
+        }
+        try {
+            int geometryType = geometry.getGeometryType();
+            switch (geometryType) {
+                case esriGeometryType.esriGeometryPoint:
+                    return fromPoint(new Point(geometry), spatialReference);
+                case esriGeometryType.esriGeometryEnvelope:
+                    return fromEnvelope(new Envelope(geometry),
+                            spatialReference);
+                case esriGeometryType.esriGeometryMultipoint: {
+                    Multipoint multipoint = new Multipoint(geometry);
+                    return fromPointCollection(
+                            CoordinateGeometry.Type.MULTIPOINT, multipoint,
+                            null, multipoint.isZAware(),
+                            multipoint.isMAware(), spatialReference);
+                }
+                case esriGeometryType.esriGeometryPolyline: {
+                    Polyline polyline = new Polyline(geometry);
+                    if (hasNonLinearSegments(polyline)) {
+                        return fromCurveGeometry(
+                                CoordinateGeometry.Type.POLYLINE, polyline,
+                                polyline.isZAware(), polyline.isMAware(),
+                                spatialReference);
+                    }
+                    return fromPointCollection(
+                            CoordinateGeometry.Type.POLYLINE, polyline,
+                            polyline, polyline.isZAware(),
+                            polyline.isMAware(), spatialReference);
+                }
+                case esriGeometryType.esriGeometryPolygon: {
+                    Polygon polygon = new Polygon(geometry);
+                    if (hasNonLinearSegments(polygon)) {
+                        return fromCurveGeometry(
+                                CoordinateGeometry.Type.POLYGON, polygon,
+                                polygon.isZAware(), polygon.isMAware(),
+                                spatialReference);
+                    }
+                    return fromPointCollection(
+                            CoordinateGeometry.Type.POLYGON, polygon, polygon,
+                            polygon.isZAware(), polygon.isMAware(),
+                            spatialReference);
+                }
+                default:
+                    throw new IllegalArgumentException(String.format(
+                            "Unsupported geometry type '%1$d'.", geometryType));
+            }
+        } catch (IOException ex) {
+            throw new ArcObjectsInteropException(
+                    "Cannot read coordinates of geometry.", ex);
+        }
+    }
+
+    private IGeometry toCurveGeometry(CoordinateGeometry geometry)
+            throws IOException {
+        IJSONReader jsonReader = new JSONReader();
+        IJSONConverterGeometry converterGeometry = new JSONConverterGeometry();
+        try {
+            jsonReader.readFromString(geometry.getCurveJson());
+            if (geometry.getType() == CoordinateGeometry.Type.POLYGON) {
+                return converterGeometry.readPolygon(jsonReader,
+                        geometry.isZAware(), geometry.isMAware());
+            }
+            return converterGeometry.readPolyline(jsonReader,
+                    geometry.isZAware(), geometry.isMAware());
+        } finally {
+            Cleaner.release(converterGeometry);
+            Cleaner.release(jsonReader);
+        }
+    }
+
+    private static boolean hasNonLinearSegments(ISegmentCollection segments)
+            throws IOException {
+        boolean[] nonLinear = new boolean[1];
+        segments.hasNonLinearSegments(nonLinear);
+        return nonLinear[0];
+    }
+
+    private CoordinateGeometry fromCurveGeometry(CoordinateGeometry.Type type,
+                                                 IGeometry geometry,
+                                                 boolean zAware, boolean mAware,
+                                                 SpatialReferenceDefinition spatialReference)
+            throws IOException {
+        IJSONObject jsonObject = new JSONObject();
+        IJSONConverterGeometry converterGeometry = new JSONConverterGeometry();
+        try {
+            converterGeometry.queryJSONGeometry(geometry, true, jsonObject);
+            return CoordinateGeometry.curves(type, zAware, mAware,
+                    jsonObject.toJSONString(null), spatialReference);
+        } finally {
+            Cleaner.release(converterGeometry);
+            Cleaner.release(jsonObject);
+        }
+    }
+
+    private Point toPoint(CoordinateGeometry geometry) throws IOException {
+        Point point = new Point();
+        point.setZAware(geometry.isZAware());
+        point.setMAware(geometry.isMAware());
+        if (!geometry.isEmpty()) {
+            point.putCoords(geometry.getX(0), geometry.getY(0));
+            if (geometry.isZAware()) {
+                point.setZ(geometry.getZ(0));
+            }
+            if (geometry.isMAware()) {
+                point.setM(geometry.getM(0));
+            }
+        }
+        return point;
+    }
+
+    private Envelope toEnvelope(CoordinateGeometry geometry)
+            throws IOException {
+        Envelope envelope = new Envelope();
+        envelope.setZAware(geometry.isZAware());
+        envelope.setMAware(geometry.isMAware());
+        if (!geometry.isEmpty()) {
+            envelope.putCoords(geometry.getX(0), geometry.getY(0),
+                    geometry.getX(1), geometry.getY(1));
+            if (geometry.isZAware()) {
+                envelope.setZMin(geometry.getZ(0));
+                envelope.setZMax(geometry.getZ(1));
+            }
+            if (geometry.isMAware()) {
+                envelope.setMMin(geometry.getM(0));
+                envelope.setMMax(geometry.getM(1));
+            }
+        }
+        return envelope;
+    }
+
+    private Multipoint toMultipoint(CoordinateGeometry geometry)
+            throws IOException {
+        Multipoint multipoint = new Multipoint();
+        multipoint.setZAware(geometry.isZAware());
+        multipoint.setMAware(geometry.isMAware());
+        IGeometryBridge2 geometryBridge = new GeometryEnvironment();
+        try {
+            addPoints(geometryBridge, multipoint, geometry, 0,
+                    geometry.getPointCount());
+        } finally {
+            Cleaner.release(geometryBridge);
+        }
+        return multipoint;
+    }
+
+    private Polyline toPolyline(CoordinateGeometry geometry)
+            throws IOException {
+        Polyline polyline = new Polyline();
+        polyline.setZAware(geometry.isZAware());
+        polyline.setMAware(geometry.isMAware());
+        IGeometryBridge2 geometryBridge = new GeometryEnvironment();
+        try {
+            for (int part = 0; part < geometry.getPartCount(); part++) {
+                Path path = new Path();
+                path.setZAware(geometry.isZAware());
+                path.setMAware(geometry.isMAware());
+                addPoints(geometryBridge, path, geometry,
+                        geometry.getPartStart(part), geometry.getPartEnd(part));
+                polyline.addGeometry(path, null, null);
+            }
+        } finally {
+            Cleaner.release(geometryBridge);
+        }
+        return polyline;
+    }
+
+    private Polygon toPolygon(CoordinateGeometry geometry)
+            throws IOException {
+        Polygon polygon = new Polygon();
+        polygon.setZAware(geometry.isZAware());
+        polygon.setMAware(geometry.isMAware());
+        IGeometryBridge2 geometryBridge = new GeometryEnvironment();
+        try {
+            for (int part = 0; part < geometry.getPartCount(); part++) {
+                Ring ring = new Ring();
+                ring.setZAware(geometry.isZAware());
+                ring.setMAware(geometry.isMAware());
+                addPoints(geometryBridge, ring, geometry,
+                        geometry.getPartStart(part), geometry.getPartEnd(part));
+                polygon.addGeometry(ring, null, null);
+            }
+        } finally {
+            Cleaner.release(geometryBridge);
+        }
+        return polygon;
+    }
+
+    private void addPoints(IGeometryBridge2 geometryBridge,
+                           IPointCollection4 pointCollection,
+                           CoordinateGeometry geometry, int start, int end)
+            throws IOException {
+        if (end <= start) {
+            return;
+        }
+        if (!geometry.isZAware() && !geometry.isMAware()) {
+            _WKSPoint[] points = new _WKSPoint[end - start];
+            for (int i = start; i < end; i++) {
+                _WKSPoint point = new _WKSPoint();
+                point.X = geometry.getX(i);
+                point.Y = geometry.getY(i);
+                points[i - start] = point;
+            }
+            geometryBridge.addWKSPoints(pointCollection,
+                    new _WKSPoint[][]{points});
+            return;
+        }
+        for (int i = start; i < end; i++) {
+            Point point = new Point();
+            point.putCoords(geometry.getX(i), geometry.getY(i));
+            if (geometry.isZAware()) {
+                point.setZAware(true);
+                point.setZ(geometry.getZ(i));
+            }
+            if (geometry.isMAware()) {
+                point.setMAware(true);
+                point.setM(geometry.getM(i));
+            }
+            pointCollection.addPoint(point, null, null);
+        }
+    }
+
+    private CoordinateGeometry fromPoint(Point point,
+                                         SpatialReferenceDefinition spatialReference)
+            throws IOException {
+        boolean zAware = point.isZAware();
+        boolean mAware = point.isMAware();
+        double[] coordinates = new double[2 + (zAware ? 1 : 0)
+                + (mAware ? 1 : 0)];
+        if (point.isEmpty()) {
+            Arrays.fill(coordinates, Double.NaN);
+        } else {
+            double[] x = new double[1];
+            double[] y = new double[1];
+            point.queryCoords(x, y);
+            int i = 0;
+            coordinates[i++] = x[0];
+            coordinates[i++] = y[0];
+            if (zAware) {
+                coordinates[i++] = point.getZ();
+            }
+            if (mAware) {
+                coordinates[i] = point.getM();
+            }
+        }
+        return new CoordinateGeometry(CoordinateGeometry.Type.POINT, zAware,
+                mAware, coordinates, null, spatialReference);
+    }
+
+    private CoordinateGeometry fromEnvelope(Envelope envelope,
+                                            SpatialReferenceDefinition spatialReference)
+            throws IOException {
+        boolean zAware = envelope.isZAware();
+        boolean mAware = envelope.isMAware();
+        int dimension = 2 + (zAware ? 1 : 0) + (mAware ? 1 : 0);
+        double[] coordinates = new double[2 * dimension];
+        if (envelope.isEmpty()) {
+            Arrays.fill(coordinates, Double.NaN);
+        } else {
+            double[] xmin = new double[1];
+            double[] ymin = new double[1];
+            double[] xmax = new double[1];
+            double[] ymax = new double[1];
+            envelope.queryCoords(xmin, ymin, xmax, ymax);
+            coordinates[0] = xmin[0];
+            coordinates[1] = ymin[0];
+            coordinates[dimension] = xmax[0];
+            coordinates[dimension + 1] = ymax[0];
+            if (zAware) {
+                coordinates[2] = envelope.getZMin();
+                coordinates[dimension + 2] = envelope.getZMax();
+            }
+            if (mAware) {
+                coordinates[dimension - 1] = envelope.getMMin();
+                coordinates[2 * dimension - 1] = envelope.getMMax();
+            }
+        }
+        return new CoordinateGeometry(CoordinateGeometry.Type.ENVELOPE,
+                zAware, mAware, coordinates, null, spatialReference);
+    }
+
+    private CoordinateGeometry fromPointCollection(CoordinateGeometry.Type type,
+                                                   IPointCollection4 pointCollection,
+                                                   IGeometryCollection parts,
+                                                   boolean zAware, boolean mAware,
+                                                   SpatialReferenceDefinition spatialReference)
+            throws IOException {
+        int pointCount = pointCollection.getPointCount();
+        int dimension = 2 + (zAware ? 1 : 0) + (mAware ? 1 : 0);
+        double[] coordinates = new double[pointCount * dimension];
+        int[] partOffsets = null;
+        if (parts != null) {
+            int partCount = parts.getGeometryCount();
+            partOffsets = new int[partCount + 1];
+            for (int part = 0; part < partCount; part++) {
+                IGeometry geometry = parts.getGeometry(part);
+                IPointCollection partPoints = type == CoordinateGeometry.Type.POLYGON
+                        ? new Ring(geometry) : new Path(geometry);
+                partOffsets[part + 1] = partOffsets[part]
+                        + partPoints.getPointCount();
+            }
+        }
+        if (pointCount == 0) {
+            return new CoordinateGeometry(type, zAware, mAware, coordinates,
+                    partOffsets, spatialReference);
+        }
+        if (!zAware && !mAware) {
+            _WKSPoint[] points = new _WKSPoint[pointCount];
+            for (int i = 0; i < pointCount; i++) {
+                points[i] = new _WKSPoint();
+            }
+            IGeometryBridge2 geometryBridge = new GeometryEnvironment();
+            try {
+                geometryBridge.queryWKSPoints(pointCollection, 0,
+                        new _WKSPoint[][]{points});
+            } finally {
+                Cleaner.release(geometryBridge);
+            }
+            for (int i = 0; i < pointCount; i++) {
+                coordinates[2 * i] = points[i].X;
+                coordinates[2 * i + 1] = points[i].Y;
+            }
+        } else {
+            Point point = new Point();
+            double[] x = new double[1];
+            double[] y = new double[1];
+            for (int i = 0; i < pointCount; i++) {
+                pointCollection.queryPoint(i, point);
+                point.queryCoords(x, y);
+                int offset = i * dimension;
+                coordinates[offset++] = x[0];
+                coordinates[offset++] = y[0];
+                if (zAware) {
+                    coordinates[offset++] = point.getZ();
+                }
+                if (mAware) {
+                    coordinates[offset] = point.getM();
+                }
+            }
+        }
+        return new CoordinateGeometry(type, zAware, mAware, coordinates,
+                partOffsets, spatialReference);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.geometry;
+
+import com.esri.arcgis.geometry.ISpatialReference;
+import com.esri.serverextension.core.util.ArcObjectsInteropException;
+
+/**
+ * Plain Java description of an Esri JSON spatial reference (well-known ID,
+ * latest well-known ID or well-known text). It is turned into an
+ * {@link ISpatialReference} only by {@link #toSpatialReference()}.
+ */
+public final class SpatialReferenceDefinition {
+
+    private final Integer wkid;
+    private final Integer latestWkid;
+    private final String wkt;
+
+    public SpatialReferenceDefinition(Integer wkid, Integer latestWkid,
+                                      String wkt) {
+        this.wkid = wkid;
+        this.latestWkid = latestWkid;
+        this.wkt = wkt;
+    }
+
+    public static SpatialReferenceDefinition fromWkid(int wkid) {
+        return new SpatialReferenceDefinition(wkid, null, null);
+    }
+
+    public Integer getWkid() {
+        return wkid;
+    }
+
+    public Integer getLatestWkid() {
+        return latestWkid;
+    }
+
+    public String getWkt() {
+        return wkt;
+    }
+
+    public boolean isEmpty() {
+        return wkid == null && latestWkid == null && wkt == null;
+    }
+
+    public ISpatialReference toSpatialReference() {
+        SpatialReferenceFactory spatialReferenceFactory = new SpatialReferenceFactory();
+        if (wkid != null) {
+            try {
+                return spatialReferenceFactory.create(wkid);
+            } catch (ArcObjectsInteropException ex) {
+                if (latestWkid == null) {
+                    throw ex;
+                }
+            }
+        }
+        if (latestWkid != null) {
+            return spatialReferenceFactory.create(latestWkid);
+        }
+        if (wkt != null) {
+            return spatialReferenceFactory.create(wkt);
+        }
+        return null;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof SpatialReferenceDefinition)) {
+            return false;
+        }
+        SpatialReferenceDefinition other = (SpatialReferenceDefinition) obj;
+        return equals(wkid, other.wkid) && equals(latestWkid, other.latestWkid)
+                && equals(wkt, other.wkt);
+    }
+
+    private static boolean equals(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = wkid != null ? wkid.hashCode() : 0;
+        result = 31 * result + (latestWkid != null ? latestWkid.hashCode() : 0);
+        result = 31 * result + (wkt != null ? wkt.hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "SpatialReferenceDefinition [wkid=" + wkid + ", latestWkid="
+                + latestWkid + ", wkt=" + wkt + "]";
+    }
+}
@@ -48,4 +48,25 @@ public class SpatialReferenceFactory {
 							factoryCode), e);
 		}
 	}
+
+	public ISpatialReference create(String wkt) {
+		try {
+			SpatialReferenceEnvironment spatialReferenceEnvironment = new SpatialReferenceEnvironment();
+			ISpatialReference[] sr = new ISpatialReference[1];
+			int[] bytesRead = new int[1];
+			spatialReferenceEnvironment.createESRISpatialReference(wkt, sr,
+					bytesRead);
+			ISpatialReferenceResolution resolution = (ISpatialReferenceResolution)sr[0];
+			resolution.constructFromHorizon();
+			ISpatialReferenceTolerance tolerance = (ISpatialReferenceTolerance)sr[0];
+			tolerance.setDefaultXYTolerance();
+			Cleaner.release(spatialReferenceEnvironment);
+			return sr[0];
+		} catch (IOException e) {
+			throw new ArcObjectsInteropException(
+					String.format(
+							"Cannot create spatial reference from WKT '%1$s'.",
+							wkt), e);
+		}
+	}
 }
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.metrics;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Collects {@link RouteMetrics} per matched URI template and
+ * {@link CacheMetrics} per cache name. Requests not matching any delegate are
+ * recorded under {@link #UNMATCHED_PATH}.
+ */
+public class MetricsRegistry {
+
+    public static final String UNMATCHED_PATH = "(unmatched)";
+
+    private static final double[] QUANTILES = {0.5d, 0.9d, 0.99d, 0.999d};
+    private static final String[] QUANTILE_NAMES = {"p50", "p90", "p99",
+            "p999"};
+
+    private final ConcurrentMap<String, RouteMetrics> routes = new ConcurrentHashMap<String, RouteMetrics>();
+    private final ConcurrentMap<String, CacheMetrics> caches = new ConcurrentHashMap<String, CacheMetrics>();
+    private final long startTime = System.currentTimeMillis();
+    private volatile WarmUp warmUp;
+
+    public MetricsRegistry() {
+    }
+
+    /**
+     * Records a handled request.
+     *
+     * @param path the URI template the request matched, or <code>null</code>
+     * @param timings the phase timings of the request, if any
+     * @param elapsedNanos the total time spent on the request
+     * @param failed whether the request failed with an exception
+     */
+    public void record(String path, RequestTimings timings, long elapsedNanos,
+                       boolean failed) {
+        getRouteMetrics(path != null ? path : UNMATCHED_PATH).record(timings,
+                elapsedNanos, failed);
+    }
+
+    public RouteMetrics getRouteMetrics(String path) {
+        RouteMetrics metrics = routes.get(path);
+        if (metrics == null) {
+            RouteMetrics newMetrics = new RouteMetrics(path);
+            metrics = routes.putIfAbsent(path, newMetrics);
+            if (metrics == null) {
+                metrics = newMetrics;
+            }
+        }
+        return metrics;
+    }
+
+    public List<RouteMetrics> getRouteMetrics() {
+        List<RouteMetrics> metrics = new ArrayList<RouteMetrics>(routes.values());
+        Collections.sort(metrics, new Comparator<RouteMetrics>() {
+            @Override
+            public int compare(RouteMetrics a, RouteMetrics b) {
+                return a.getPath().compareTo(b.getPath());
+            }
+        });
+        return metrics;
+    }
+
+    public CacheMetrics getCacheMetrics(String name) {
+        CacheMetrics metrics = caches.get(name);
+        if (metrics == null) {
+            CacheMetrics newMetrics = new CacheMetrics(name);
+            metrics = caches.putIfAbsent(name, newMetrics);
+            if (metrics == null) {
+                metrics = newMetrics;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Records the warm-up run at the end of construction.
+     *
+     * @param elapsedNanos the total time spent warming up
+     * @param types the number of types whose serializers were prepared
+     * @param requests the number of sample requests processed
+     * @param failures the number of sample requests which failed
+     */
+    public void recordWarmUp(long elapsedNanos, int types, int requests,
+                             int failures) {
+        warmUp = new WarmUp(elapsedNanos, types, requests, failures);
+    }
+
+    /**
+     * Writes a snapshot of all routes and caches as a JSON object. Latencies
+     * are in milliseconds.
+     */
+    public void writeSnapshot(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("startTime", startTime);
+        generator.writeNumberField("snapshotTime", System.currentTimeMillis());
+        WarmUp currentWarmUp = warmUp;
+        if (currentWarmUp != null) {
+            generator.writeObjectFieldStart("warmUp");
+            generator.writeNumberField("duration",
+                    currentWarmUp.elapsedNanos / 1000000.0d);
+            generator.writeNumberField("types", currentWarmUp.types);
+            generator.writeNumberField("requests", currentWarmUp.requests);
+            generator.writeNumberField("failures", currentWarmUp.failures);
+            generator.writeEndObject();
+        }
+        generator.writeArrayFieldStart("routes");
+        for (RouteMetrics metrics : getRouteMetrics()) {
+            long requests = metrics.getRequests();
+            long errors = metrics.getErrors();
+            generator.writeStartObject();
+            generator.writeStringField("path", metrics.getPath());
+            generator.writeNumberField("requests", requests);
+            generator.writeNumberField("errors", errors);
+            generator.writeNumberField("errorRate",
+                    requests > 0 ? (double) errors / requests : 0.0d);
+            generator.writeNumberField("rejections", metrics.getRejections());
+            generator.writeNumberField("timeouts", metrics.getTimeouts());
+            if (metrics.getConcurrencyLimit() > 0) {
+                generator.writeNumberField("concurrencyLimit",
+                        metrics.getConcurrencyLimit());
+            }
+            generator.writeFieldName("latency");
+            writeHistogram(metrics.getLatency().snapshot(), generator);
+            generator.writeObjectFieldStart("phases");
+            for (RequestPhase phase : RequestPhase.values()) {
+                LatencyHistogram.Snapshot snapshot = metrics
+                        .getPhaseLatency(phase).snapshot();
+                if (snapshot.getCount() > 0) {
+                    generator.writeFieldName(phase.getJsonName());
+                    writeHistogram(snapshot, generator);
+                }
+            }
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.writeArrayFieldStart("caches");
+        List<CacheMetrics> cacheMetrics = new ArrayList<CacheMetrics>(caches.values());
+        Collections.sort(cacheMetrics, new Comparator<CacheMetrics>() {
+            @Override
+            public int compare(CacheMetrics a, CacheMetrics b) {
+                return a.getName().compareTo(b.getName());
+            }
+        });
+        for (CacheMetrics metrics : cacheMetrics) {
+            generator.writeStartObject();
+            generator.writeStringField("name", metrics.getName());
+            generator.writeNumberField("hits", metrics.getHits());
+            generator.writeNumberField("misses", metrics.getMisses());
+            generator.writeNumberField("hitRate", metrics.getHitRate());
+            generator.writeNumberField("refreshes", metrics.getRefreshes());
+            generator.writeNumberField("evictions", metrics.getEvictions());
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    private static void writeHistogram(LatencyHistogram.Snapshot snapshot,
+                                       JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("count", snapshot.getCount());
+        generator.writeNumberField("mean", snapshot.getMeanMillis());
+        for (int i = 0; i < QUANTILES.length; i++) {
+            generator.writeNumberField(QUANTILE_NAMES[i],
+                    snapshot.getValueAtQuantileMillis(QUANTILES[i]));
+        }
+        generator.writeNumberField("max", snapshot.getMaxMillis());
+        generator.writeEndObject();
+    }
+
+    private static final class WarmUp {
+
+        private final long elapsedNanos;
+        private final int types;
+        private final int requests;
+        private final int failures;
+
+        private WarmUp(long elapsedNanos, int types, int requests,
+                       int failures) {
+            this.elapsedNanos = elapsedNanos;
+            this.types = types;
+            this.requests = requests;
+            this.failures = failures;
+        }
+    }
+}
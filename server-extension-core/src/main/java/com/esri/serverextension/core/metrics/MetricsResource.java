@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.metrics;
+
+import com.esri.serverextension.core.security.ArcGISSecurityException;
+import com.esri.serverextension.core.security.SecurityContext;
+import com.esri.serverextension.core.server.RestResponse;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Built-in resource returning the snapshot of the {@link MetricsRegistry}.
+ * <p>
+ * The resource only exists if the <code>metricsEnabled</code> property is
+ * <code>true</code>, and only users having one of the roles of the
+ * <code>metricsRoles</code> property (comma separated) may read it. Without
+ * roles, every request is forbidden.
+ */
+@Conditional(MetricsResource.Enabled.class)
+public class MetricsResource {
+
+    private final Logger logger = LoggerFactory.getLogger(MetricsResource.class);
+
+    private final MetricsRegistry metricsRegistry;
+    private final ObjectMapper objectMapper;
+    private final Set<String> permittedRoles;
+
+    @Inject
+    public MetricsResource(MetricsRegistry metricsRegistry,
+                           ObjectMapper objectMapper,
+                           @Value("${metricsRoles:}") String permittedRoles) {
+        this.metricsRegistry = metricsRegistry;
+        this.objectMapper = objectMapper;
+        String[] roles = StringUtils.split(permittedRoles, ", ");
+        this.permittedRoles = roles != null ? Collections
+                .unmodifiableSet(new HashSet<String>(Arrays.asList(roles)))
+                : Collections.<String>emptySet();
+        if (this.permittedRoles.isEmpty()) {
+            logger.warn("Metrics are enabled without any 'metricsRoles', "
+                    + "so nobody can read them.");
+        }
+    }
+
+    @RequestMapping("/metrics")
+    public RestResponse getMetrics(SecurityContext securityContext)
+            throws IOException {
+        if (!isPermitted(securityContext)) {
+            throw new ArcGISSecurityException(403, "Forbidden", null);
+        }
+        ByteArrayBuilder buffer = new ByteArrayBuilder();
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(
+                buffer, JsonEncoding.UTF8);
+        metricsRegistry.writeSnapshot(generator);
+        generator.close();
+        byte[] body = buffer.toByteArray();
+        buffer.release();
+        return RestResponse.fromGeneratedBody(null, body);
+    }
+
+    private boolean isPermitted(SecurityContext securityContext) {
+        Set<String> userRoles = securityContext != null ? securityContext
+                .getUserRoles() : null;
+        if (userRoles == null) {
+            return false;
+        }
+        for (String role : permittedRoles) {
+            if (userRoles.contains(role)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static final class Enabled implements Condition {
+
+        @Override
+        public boolean matches(ConditionContext context,
+                               AnnotatedTypeMetadata metadata) {
+            return context.getEnvironment().getProperty("metricsEnabled",
+                    Boolean.class, Boolean.FALSE);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.metrics;
+
+/**
+ * Phases of handling a REST request that are timed separately.
+ */
+public enum RequestPhase {
+
+    /** Finding the delegate matching the request path. */
+    ROUTING("routing"),
+
+    /** Waiting for the concurrency limit of the route to admit the request. */
+    QUEUEING("queueing"),
+
+    /** Resolving the arguments of a delegate method. */
+    ARGUMENT_RESOLUTION("argumentResolution"),
+
+    /** Running a delegate method, not counting forwarding to the server object. */
+    INVOCATION("invocation"),
+
+    /** Converting the return value of a delegate method into a response. */
+    SERIALIZATION("serialization"),
+
+    /** Forwarding the request to the server object or the extension it is meant for. */
+    FORWARDING("forwarding");
+
+    private final String jsonName;
+
+    RequestPhase(String jsonName) {
+        this.jsonName = jsonName;
+    }
+
+    public String getJsonName() {
+        return jsonName;
+    }
+}
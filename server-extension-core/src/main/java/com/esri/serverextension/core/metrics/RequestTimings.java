@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Time spent in every {@link RequestPhase} of a single request, in
+ * nanoseconds. A phase entered more than once accumulates its time. Not
+ * thread-safe; a request is handled by one thread.
+ */
+public final class RequestTimings {
+
+    private static final RequestPhase[] PHASES = RequestPhase.values();
+
+    private final long[] nanos = new long[PHASES.length];
+    private final boolean[] recorded = new boolean[PHASES.length];
+
+    public RequestTimings() {
+    }
+
+    public void add(RequestPhase phase, long elapsedNanos) {
+        nanos[phase.ordinal()] += elapsedNanos;
+        recorded[phase.ordinal()] = true;
+    }
+
+    public boolean isRecorded(RequestPhase phase) {
+        return recorded[phase.ordinal()];
+    }
+
+    public long getNanos(RequestPhase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    @Override
+    public String toString() {
+        return "RequestTimings [phases=" + Arrays.toString(PHASES)
+                + ", nanos=" + Arrays.toString(nanos) + "]";
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Request count, error count and latencies of one route.
+ */
+public final class RouteMetrics {
+
+    private static final RequestPhase[] PHASES = RequestPhase.values();
+
+    private final String path;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private volatile int concurrencyLimit;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram[] phaseLatencies = new LatencyHistogram[PHASES.length];
+
+    RouteMetrics(String path) {
+        this.path = path;
+        for (int i = 0; i < phaseLatencies.length; i++) {
+            phaseLatencies[i] = new LatencyHistogram();
+        }
+    }
+
+    void record(RequestTimings timings, long elapsedNanos, boolean failed) {
+        requests.incrementAndGet();
+        if (failed) {
+            errors.incrementAndGet();
+        }
+        latency.record(elapsedNanos);
+        if (timings != null) {
+            for (RequestPhase phase : PHASES) {
+                if (timings.isRecorded(phase)) {
+                    phaseLatencies[phase.ordinal()].record(timings.getNanos(phase));
+                }
+            }
+        }
+    }
+
+    /**
+     * Records a request rejected by the concurrency limit of the route.
+     */
+    public void recordRejection() {
+        rejections.incrementAndGet();
+    }
+
+    /**
+     * Records a request aborted because its deadline passed.
+     */
+    public void recordTimeout() {
+        timeouts.incrementAndGet();
+    }
+
+    public void setConcurrencyLimit(int concurrencyLimit) {
+        this.concurrencyLimit = concurrencyLimit;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public long getRejections() {
+        return rejections.get();
+    }
+
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    /**
+     * Returns the current concurrency limit of the route, or 0 if the route
+     * is not limited.
+     */
+    public int getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public LatencyHistogram getPhaseLatency(RequestPhase phase) {
+        return phaseLatencies[phase.ordinal()];
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.rest.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rewrites top-level fields of a JSON object, e.g. an operation input,
+ * without binding it. The input is copied token by token, so values that are
+ * not rewritten, like large geometries, are never deserialized. Fields to be
+ * rewritten that are missing from the input are appended to it.
+ * <p>
+ * Field names are matched ignoring case, like the parameters of a REST
+ * request. Only the first of several fields whose names differ in case only
+ * is rewritten and the others are dropped, so none of them bypasses the
+ * rewrite.
+ */
+public final class JSONFieldRewriter {
+
+    /**
+     * Writes the new value of a field.
+     */
+    public interface FieldRewrite {
+
+        /**
+         * @param currentValue the parser positioned on the current value of
+         *                     the field, or <code>null</code> if the input does
+         *                     not contain the field
+         * @param generator    the generator to write exactly one value to
+         */
+        void writeValue(JsonParser currentValue, JsonGenerator generator)
+                throws IOException;
+    }
+
+    private final JsonFactory jsonFactory;
+    private final Map<String, String> fieldNames = new LinkedHashMap<String, String>();
+    private final Map<String, FieldRewrite> rewrites = new LinkedHashMap<String, FieldRewrite>();
+
+    public JSONFieldRewriter(JsonFactory jsonFactory) {
+        if (jsonFactory == null) {
+            throw new NullPointerException(
+                    "Argument 'jsonFactory' is required.");
+        }
+        this.jsonFactory = jsonFactory;
+    }
+
+    public JSONFieldRewriter rewriteField(String fieldName, FieldRewrite rewrite) {
+        if (fieldName == null) {
+            throw new NullPointerException("Argument 'fieldName' is required.");
+        }
+        if (rewrite == null) {
+            throw new NullPointerException("Argument 'rewrite' is required.");
+        }
+        String key = toKey(fieldName);
+        fieldNames.put(key, fieldName);
+        rewrites.put(key, rewrite);
+        return this;
+    }
+
+    /**
+     * Rewrites a JSON object. A blank input is taken as an empty object.
+     */
+    public String rewrite(String json) throws IOException {
+        StringWriter writer = new StringWriter(json != null ? json.length() + 64 : 64);
+        JsonGenerator generator = jsonFactory.createGenerator(writer);
+        try {
+            if (StringUtils.isBlank(json)) {
+                generator.writeStartObject();
+                writeMissingFields(new HashSet<String>(), generator);
+                generator.writeEndObject();
+            } else {
+                JsonParser parser = jsonFactory.createParser(json);
+                try {
+                    rewrite(parser, generator);
+                } finally {
+                    parser.close();
+                }
+            }
+        } finally {
+            generator.close();
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Returns the text of a top-level scalar field of a JSON object without
+     * reading any other value. Of several fields whose names differ in case
+     * only, the first is read.
+     *
+     * @return the text, or <code>null</code> if the field is missing, null or
+     * not a scalar
+     */
+    public String readField(String json, String fieldName) throws IOException {
+        if (StringUtils.isBlank(json)) {
+            return null;
+        }
+        JsonParser parser = jsonFactory.createParser(json);
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JSONException("Expected a JSON object.");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String currentName = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (fieldName.equalsIgnoreCase(currentName)) {
+                    return token.isScalarValue() ? parser.getValueAsString()
+                            : null;
+                }
+                parser.skipChildren();
+            }
+            return null;
+        } finally {
+            parser.close();
+        }
+    }
+
+    private void rewrite(JsonParser parser, JsonGenerator generator)
+            throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JSONException("Expected a JSON object.");
+        }
+        generator.writeStartObject();
+        Set<String> rewrittenFields = new HashSet<String>();
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            String key = toKey(fieldName);
+            parser.nextToken();
+            FieldRewrite rewrite = rewrites.get(key);
+            if (rewrite == null) {
+                generator.writeFieldName(fieldName);
+                generator.copyCurrentStructure(parser);
+            } else if (rewrittenFields.add(key)) {
+                generator.writeFieldName(fieldName);
+                rewrite.writeValue(parser, generator);
+                // skips a structured value not consumed by the rewrite
+                parser.skipChildren();
+            } else {
+                // drops a field differing in case from a rewritten field
+                parser.skipChildren();
+            }
+        }
+        if (token != JsonToken.END_OBJECT) {
+            throw new JSONException("Expected the end of the JSON object.");
+        }
+        writeMissingFields(rewrittenFields, generator);
+        generator.writeEndObject();
+    }
+
+    private void writeMissingFields(Set<String> rewrittenFields,
+                                    JsonGenerator generator) throws IOException {
+        for (Map.Entry<String, FieldRewrite> entry : rewrites.entrySet()) {
+            if (!rewrittenFields.contains(entry.getKey())) {
+                generator.writeFieldName(fieldNames.get(entry.getKey()));
+                entry.getValue().writeValue(null, generator);
+            }
+        }
+    }
+
+    private static String toKey(String fieldName) {
+        return fieldName.toLowerCase(Locale.ROOT);
+    }
+}
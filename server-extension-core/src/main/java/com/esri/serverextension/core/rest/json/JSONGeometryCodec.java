@@ -0,0 +1,729 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.rest.json;
+
+import com.esri.arcgis.geometry.IGeometry;
+import com.esri.arcgis.geometry.IJSONConverterGeometry;
+import com.esri.arcgis.geometry.ISpatialReference;
+import com.esri.arcgis.geometry.ISpatialReference3;
+import com.esri.arcgis.geometry.ISpatialReferenceTolerance;
+import com.esri.arcgis.geometry.IVerticalCoordinateSystem;
+import com.esri.arcgis.geometry.JSONConverterGeometry;
+import com.esri.arcgis.system.Cleaner;
+import com.esri.arcgis.system.IJSONObject;
+import com.esri.arcgis.system.JSONObject;
+import com.esri.serverextension.core.geometry.CoordinateGeometry;
+import com.esri.serverextension.core.geometry.CoordinateGeometryConverter;
+import com.esri.serverextension.core.geometry.SpatialReferenceDefinition;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Streaming Esri JSON codec for points, multipoints, polylines, polygons and
+ * envelopes. Coordinates are read from a {@link JsonParser} straight into a
+ * {@link CoordinateGeometry} and written from it to a {@link JsonGenerator},
+ * so no COM JSON objects and no intermediate JSON strings are involved.
+ * Polylines and polygons with true curves (<code>curvePaths</code> and
+ * <code>curveRings</code>) are kept as Esri JSON and converted with
+ * {@link JSONConverterGeometry}.
+ * <p>
+ * Spatial references of ArcObjects geometries are rendered once per factory
+ * code, vertical coordinate system, tolerances and precision with
+ * {@link JSONConverterGeometry} and then written from a cache. Instances are
+ * thread safe.
+ */
+public class JSONGeometryCodec {
+
+    private static final Pattern SIMPLE_POINT_FORMAT = Pattern
+            .compile(JSONGeometryMapper.SIMPLE_POINT_FORMAT_REGEX);
+
+    private static final Pattern SIMPLE_ENVELOPE_FORMAT = Pattern
+            .compile(JSONGeometryMapper.SIMPLE_ENVELOPE_FORMAT_REGEX);
+
+    private static final int MAX_CACHED_SPATIAL_REFERENCES = 256;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * Coordinate properties of points and envelopes, in the order of the
+     * value array used while reading them.
+     */
+    private static final String[] VALUE_NAMES = new String[]{"x", "y", "z",
+            "m", "xmin", "ymin", "xmax", "ymax", "zmin", "zmax", "mmin",
+            "mmax"};
+
+    private final ConcurrentMap<SpatialReferenceKey, String> spatialReferenceCache = new ConcurrentHashMap<SpatialReferenceKey, String>();
+
+    private final CoordinateGeometryConverter geometryConverter = new CoordinateGeometryConverter();
+
+    public JSONGeometryCodec() {
+    }
+
+    public CoordinateGeometryConverter getGeometryConverter() {
+        return geometryConverter;
+    }
+
+    /**
+     * Parses the simple <code>x,y</code> and
+     * <code>xmin,ymin,xmax,ymax</code> formats. Returns <code>null</code> if
+     * the text is in neither format.
+     */
+    public CoordinateGeometry readSimpleGeometry(String text) {
+        Matcher m = SIMPLE_POINT_FORMAT.matcher(text);
+        if (m.matches()) {
+            return CoordinateGeometry.point(Double.parseDouble(m.group("x")),
+                    Double.parseDouble(m.group("y")), null);
+        }
+        m = SIMPLE_ENVELOPE_FORMAT.matcher(text);
+        if (m.matches()) {
+            return CoordinateGeometry.envelope(
+                    Double.parseDouble(m.group("xmin")),
+                    Double.parseDouble(m.group("ymin")),
+                    Double.parseDouble(m.group("xmax")),
+                    Double.parseDouble(m.group("ymax")), null);
+        }
+        return null;
+    }
+
+    /**
+     * Reads a geometry object. The parser must be positioned on or just
+     * before the start of the object. Returns <code>null</code> if the value
+     * is <code>null</code> or an object without geometry properties.
+     */
+    public CoordinateGeometry readGeometry(JsonParser parser)
+            throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == null) {
+            token = parser.nextToken();
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, String.format(
+                    "Expected start of geometry object but found %1$s.",
+                    token));
+        }
+
+        CoordinateGeometry.Type type = null;
+        Boolean hasZ = null;
+        Boolean hasM = null;
+        double[] values = new double[VALUE_NAMES.length];
+        boolean[] present = new boolean[VALUE_NAMES.length];
+        CoordinateBuffer buffer = null;
+        String curveName = null;
+        String curves = null;
+        SpatialReferenceDefinition spatialReference = null;
+
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            int valueIndex = getValueIndex(name);
+            if (valueIndex >= 0) {
+                if (type == null && valueIndex == 0) {
+                    type = CoordinateGeometry.Type.POINT;
+                } else if (type == null && valueIndex == 4) {
+                    type = CoordinateGeometry.Type.ENVELOPE;
+                }
+                values[valueIndex] = readCoordinate(parser);
+                present[valueIndex] = true;
+            } else if ("points".equals(name)) {
+                buffer = readPoints(parser);
+                if (type == null) {
+                    type = CoordinateGeometry.Type.MULTIPOINT;
+                }
+            } else if ("paths".equals(name) || "rings".equals(name)) {
+                buffer = readParts(parser);
+                if (type == null) {
+                    type = "paths".equals(name) ? CoordinateGeometry.Type.POLYLINE
+                            : CoordinateGeometry.Type.POLYGON;
+                }
+            } else if ("curvePaths".equals(name) || "curveRings".equals(name)) {
+                curveName = name;
+                curves = copyValue(parser);
+                if (type == null) {
+                    type = "curvePaths".equals(name) ? CoordinateGeometry.Type.POLYLINE
+                            : CoordinateGeometry.Type.POLYGON;
+                }
+            } else if ("hasZ".equals(name)) {
+                hasZ = parser.getValueAsBoolean();
+            } else if ("hasM".equals(name)) {
+                hasM = parser.getValueAsBoolean();
+            } else if ("spatialReference".equals(name)) {
+                spatialReference = readSpatialReference(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (token != JsonToken.END_OBJECT) {
+            throw new JsonParseException(parser,
+                    "Unexpected end of geometry object.");
+        }
+        if (type == null) {
+            return null;
+        }
+
+        switch (type) {
+            case POINT:
+                return createPoint(values, present, spatialReference);
+            case ENVELOPE:
+                return createEnvelope(values, present, spatialReference);
+            default:
+                boolean zAware = hasZ != null && hasZ;
+                boolean mAware = hasM != null && hasM;
+                if (curves != null && type != CoordinateGeometry.Type.MULTIPOINT) {
+                    return CoordinateGeometry.curves(type, zAware, mAware,
+                            createCurveJson(curveName, curves, zAware, mAware),
+                            spatialReference);
+                }
+                if (buffer == null) {
+                    buffer = new CoordinateBuffer();
+                }
+                return buffer.toGeometry(type, zAware, mAware,
+                        spatialReference);
+        }
+    }
+
+    private static String copyValue(JsonParser parser) throws IOException {
+        StringWriter writer = new StringWriter();
+        JsonGenerator generator = JSON_FACTORY.createGenerator(writer);
+        try {
+            generator.copyCurrentStructure(parser);
+        } finally {
+            generator.close();
+        }
+        return writer.toString();
+    }
+
+    private static String createCurveJson(String curveName, String curves,
+                                          boolean zAware, boolean mAware) throws IOException {
+        StringWriter writer = new StringWriter(curves.length() + 64);
+        JsonGenerator generator = JSON_FACTORY.createGenerator(writer);
+        try {
+            generator.writeStartObject();
+            if (zAware) {
+                generator.writeBooleanField("hasZ", true);
+            }
+            if (mAware) {
+                generator.writeBooleanField("hasM", true);
+            }
+            generator.writeFieldName(curveName);
+            generator.writeRawValue(curves);
+            generator.writeEndObject();
+        } finally {
+            generator.close();
+        }
+        return writer.toString();
+    }
+
+    private static int getValueIndex(String name) {
+        for (int i = 0; i < VALUE_NAMES.length; i++) {
+            if (VALUE_NAMES[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public SpatialReferenceDefinition readSpatialReference(JsonParser parser)
+            throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == null) {
+            token = parser.nextToken();
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token == JsonToken.VALUE_NUMBER_INT) {
+            return SpatialReferenceDefinition.fromWkid(parser.getIntValue());
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, String.format(
+                    "Expected start of spatial reference object but found %1$s.",
+                    token));
+        }
+        Integer wkid = null;
+        Integer latestWkid = null;
+        String wkt = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            token = parser.nextToken();
+            if ("wkid".equals(name) && token != JsonToken.VALUE_NULL) {
+                wkid = parser.getValueAsInt();
+            } else if ("latestWkid".equals(name)
+                    && token != JsonToken.VALUE_NULL) {
+                latestWkid = parser.getValueAsInt();
+            } else if ("wkt".equals(name)) {
+                wkt = parser.getValueAsString();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new SpatialReferenceDefinition(wkid, latestWkid, wkt);
+    }
+
+    public void writeGeometry(CoordinateGeometry geometry,
+                              JsonGenerator generator, boolean skipSpatialReference)
+            throws IOException {
+        generator.writeStartObject();
+        writeGeometryContent(geometry, generator);
+        if (!skipSpatialReference && geometry.getSpatialReference() != null) {
+            generator.writeFieldName("spatialReference");
+            writeSpatialReference(geometry.getSpatialReference(), generator);
+        }
+        generator.writeEndObject();
+    }
+
+    public void writeGeometry(IGeometry geometry, JsonGenerator generator,
+                              boolean skipSpatialReference) throws IOException {
+        CoordinateGeometry coordinateGeometry = geometryConverter
+                .fromGeometry(geometry, null);
+        generator.writeStartObject();
+        writeGeometryContent(coordinateGeometry, generator);
+        if (!skipSpatialReference) {
+            ISpatialReference spatialReference = geometry
+                    .getSpatialReference();
+            if (spatialReference != null) {
+                generator.writeFieldName("spatialReference");
+                writeSpatialReference(spatialReference, generator);
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    public void writeSpatialReference(SpatialReferenceDefinition spatialReference,
+                                      JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        if (spatialReference.getWkid() != null) {
+            generator.writeNumberField("wkid", spatialReference.getWkid());
+        }
+        if (spatialReference.getLatestWkid() != null) {
+            generator.writeNumberField("latestWkid",
+                    spatialReference.getLatestWkid());
+        }
+        if (spatialReference.getWkt() != null) {
+            generator.writeStringField("wkt", spatialReference.getWkt());
+        }
+        generator.writeEndObject();
+    }
+
+    public void writeSpatialReference(ISpatialReference spatialReference,
+                                      JsonGenerator generator) throws IOException {
+        generator.writeRawValue(getSpatialReferenceJson(spatialReference));
+    }
+
+    /**
+     * Returns the Esri JSON of the given spatial reference. Spatial
+     * references with a factory code are rendered only once per vertical
+     * coordinate system, tolerances and precision.
+     */
+    public String getSpatialReferenceJson(ISpatialReference spatialReference)
+            throws IOException {
+        if (spatialReference.getFactoryCode() <= 0) {
+            return convertSpatialReference(spatialReference);
+        }
+        SpatialReferenceKey key = new SpatialReferenceKey(spatialReference);
+        String json = spatialReferenceCache.get(key);
+        if (json == null) {
+            json = convertSpatialReference(spatialReference);
+            if (spatialReferenceCache.size() < MAX_CACHED_SPATIAL_REFERENCES) {
+                spatialReferenceCache.putIfAbsent(key, json);
+            }
+        }
+        return json;
+    }
+
+    String convertSpatialReference(ISpatialReference spatialReference)
+            throws IOException {
+        IJSONObject jsonObject = new JSONObject();
+        IJSONConverterGeometry converterGeometry = new JSONConverterGeometry();
+        try {
+            converterGeometry.queryJSONSpatialReference(spatialReference,
+                    jsonObject);
+            return jsonObject.toJSONString(null);
+        } finally {
+            Cleaner.release(converterGeometry);
+            Cleaner.release(jsonObject);
+        }
+    }
+
+    private void writeGeometryContent(CoordinateGeometry geometry,
+                                      JsonGenerator generator) throws IOException {
+        if (geometry.hasCurves()) {
+            writeCurveContent(geometry.getCurveJson(), generator);
+            return;
+        }
+        switch (geometry.getType()) {
+            case POINT:
+                generator.writeFieldName("x");
+                writeCoordinate(geometry.getX(0), generator);
+                generator.writeFieldName("y");
+                writeCoordinate(geometry.getY(0), generator);
+                if (geometry.isZAware()) {
+                    generator.writeFieldName("z");
+                    writeCoordinate(geometry.getZ(0), generator);
+                }
+                if (geometry.isMAware()) {
+                    generator.writeFieldName("m");
+                    writeCoordinate(geometry.getM(0), generator);
+                }
+                break;
+            case ENVELOPE:
+                generator.writeFieldName("xmin");
+                writeCoordinate(geometry.getX(0), generator);
+                generator.writeFieldName("ymin");
+                writeCoordinate(geometry.getY(0), generator);
+                generator.writeFieldName("xmax");
+                writeCoordinate(geometry.getX(1), generator);
+                generator.writeFieldName("ymax");
+                writeCoordinate(geometry.getY(1), generator);
+                if (geometry.isZAware()) {
+                    generator.writeFieldName("zmin");
+                    writeCoordinate(geometry.getZ(0), generator);
+                    generator.writeFieldName("zmax");
+                    writeCoordinate(geometry.getZ(1), generator);
+                }
+                if (geometry.isMAware()) {
+                    generator.writeFieldName("mmin");
+                    writeCoordinate(geometry.getM(0), generator);
+                    generator.writeFieldName("mmax");
+                    writeCoordinate(geometry.getM(1), generator);
+                }
+                break;
+            case MULTIPOINT:
+                writeAwareness(geometry, generator);
+                generator.writeFieldName("points");
+                writePoints(geometry, 0, geometry.getPointCount(), generator);
+                break;
+            default:
+                writeAwareness(geometry, generator);
+                generator.writeFieldName(geometry.getType() == CoordinateGeometry.Type.POLYGON
+                        ? "rings" : "paths");
+                generator.writeStartArray();
+                for (int part = 0; part < geometry.getPartCount(); part++) {
+                    writePoints(geometry, geometry.getPartStart(part),
+                            geometry.getPartEnd(part), generator);
+                }
+                generator.writeEndArray();
+                break;
+        }
+    }
+
+    private void writeCurveContent(String curveJson, JsonGenerator generator)
+            throws IOException {
+        JsonParser parser = JSON_FACTORY.createParser(curveJson);
+        try {
+            parser.nextToken();
+            expect(parser, JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                if ("spatialReference".equals(name)) {
+                    parser.skipChildren();
+                } else {
+                    generator.writeFieldName(name);
+                    generator.copyCurrentStructure(parser);
+                }
+            }
+        } finally {
+            parser.close();
+        }
+    }
+
+    private void writeAwareness(CoordinateGeometry geometry,
+                                JsonGenerator generator) throws IOException {
+        if (geometry.isZAware()) {
+            generator.writeBooleanField("hasZ", true);
+        }
+        if (geometry.isMAware()) {
+            generator.writeBooleanField("hasM", true);
+        }
+    }
+
+    private void writePoints(CoordinateGeometry geometry, int start, int end,
+                             JsonGenerator generator) throws IOException {
+        double[] coordinates = geometry.getCoordinates();
+        int dimension = geometry.getDimension();
+        generator.writeStartArray();
+        for (int i = start * dimension; i < end * dimension; i += dimension) {
+            generator.writeStartArray();
+            for (int j = 0; j < dimension; j++) {
+                writeCoordinate(coordinates[i + j], generator);
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndArray();
+    }
+
+    private static void writeCoordinate(double value, JsonGenerator generator)
+            throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            generator.writeNull();
+        } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            generator.writeNumber((long) value);
+        } else {
+            generator.writeNumber(value);
+        }
+    }
+
+    private static double readCoordinate(JsonParser parser) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.VALUE_NUMBER_FLOAT
+                || token == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getDoubleValue();
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            return Double.NaN;
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            String text = parser.getText();
+            try {
+                return Double.parseDouble(text);
+            } catch (NumberFormatException ex) {
+                throw new JsonParseException(parser, String.format(
+                        "Invalid coordinate value '%1$s'.", text));
+            }
+        }
+        throw new JsonParseException(parser, String.format(
+                "Expected coordinate value but found %1$s.", token));
+    }
+
+    private CoordinateBuffer readPoints(JsonParser parser) throws IOException {
+        CoordinateBuffer buffer = new CoordinateBuffer();
+        readPointArray(parser, buffer);
+        return buffer;
+    }
+
+    private CoordinateBuffer readParts(JsonParser parser) throws IOException {
+        CoordinateBuffer buffer = new CoordinateBuffer();
+        expect(parser, JsonToken.START_ARRAY);
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            readPointArray(parser, buffer);
+            buffer.endPart();
+        }
+        return buffer;
+    }
+
+    private void readPointArray(JsonParser parser, CoordinateBuffer buffer)
+            throws IOException {
+        expect(parser, JsonToken.START_ARRAY);
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            expect(parser, JsonToken.START_ARRAY);
+            int dimension = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                double value = readCoordinate(parser);
+                if (dimension < CoordinateBuffer.WIDTH) {
+                    buffer.set(dimension, value);
+                }
+                dimension++;
+            }
+            if (dimension < 2) {
+                throw new JsonParseException(parser,
+                        "A coordinate must have at least two values.");
+            }
+            buffer.endPoint();
+        }
+    }
+
+    private static void expect(JsonParser parser, JsonToken expected)
+            throws IOException {
+        if (parser.getCurrentToken() != expected) {
+            throw new JsonParseException(parser, String.format(
+                    "Expected %1$s but found %2$s.", expected,
+                    parser.getCurrentToken()));
+        }
+    }
+
+    private static CoordinateGeometry createPoint(double[] values,
+                                                  boolean[] present,
+                                                  SpatialReferenceDefinition spatialReference) {
+        boolean zAware = present[2];
+        boolean mAware = present[3];
+        double[] coordinates = new double[2 + (zAware ? 1 : 0)
+                + (mAware ? 1 : 0)];
+        int i = 0;
+        coordinates[i++] = present[0] ? values[0] : Double.NaN;
+        coordinates[i++] = present[1] ? values[1] : Double.NaN;
+        if (zAware) {
+            coordinates[i++] = values[2];
+        }
+        if (mAware) {
+            coordinates[i] = values[3];
+        }
+        return new CoordinateGeometry(CoordinateGeometry.Type.POINT, zAware,
+                mAware, coordinates, null, spatialReference);
+    }
+
+    private static CoordinateGeometry createEnvelope(double[] values,
+                                                     boolean[] present,
+                                                     SpatialReferenceDefinition spatialReference) {
+        boolean zAware = present[8] || present[9];
+        boolean mAware = present[10] || present[11];
+        int dimension = 2 + (zAware ? 1 : 0) + (mAware ? 1 : 0);
+        double[] coordinates = new double[2 * dimension];
+        for (int corner = 0; corner < 2; corner++) {
+            int target = corner * dimension;
+            coordinates[target++] = present[4 + 2 * corner] ? values[4 + 2 * corner]
+                    : Double.NaN;
+            coordinates[target++] = present[5 + 2 * corner] ? values[5 + 2 * corner]
+                    : Double.NaN;
+            if (zAware) {
+                coordinates[target++] = present[8 + corner] ? values[8 + corner]
+                        : Double.NaN;
+            }
+            if (mAware) {
+                coordinates[target] = present[10 + corner] ? values[10 + corner]
+                        : Double.NaN;
+            }
+        }
+        return new CoordinateGeometry(CoordinateGeometry.Type.ENVELOPE,
+                zAware, mAware, coordinates, null, spatialReference);
+    }
+
+    /**
+     * The properties of a spatial reference that its Esri JSON depends on.
+     */
+    static final class SpatialReferenceKey {
+
+        private final int factoryCode;
+        private final int verticalFactoryCode;
+        private final double[] precision;
+
+        SpatialReferenceKey(ISpatialReference spatialReference) throws IOException {
+            factoryCode = spatialReference.getFactoryCode();
+            IVerticalCoordinateSystem verticalCoordinateSystem = spatialReference instanceof ISpatialReference3
+                    ? ((ISpatialReference3) spatialReference).getVerticalCoordinateSystem() : null;
+            verticalFactoryCode = verticalCoordinateSystem != null
+                    ? verticalCoordinateSystem.getFactoryCode() : 0;
+            double[] falseX = new double[1];
+            double[] falseY = new double[1];
+            double[] xyUnits = new double[1];
+            double[] falseZ = new double[1];
+            double[] zUnits = new double[1];
+            double[] falseM = new double[1];
+            double[] mUnits = new double[1];
+            spatialReference.getFalseOriginAndUnits(falseX, falseY, xyUnits);
+            spatialReference.getZFalseOriginAndUnits(falseZ, zUnits);
+            spatialReference.getMFalseOriginAndUnits(falseM, mUnits);
+            precision = new double[]{falseX[0], falseY[0], xyUnits[0],
+                    falseZ[0], zUnits[0], falseM[0], mUnits[0], Double.NaN,
+                    Double.NaN, Double.NaN};
+            if (spatialReference instanceof ISpatialReferenceTolerance) {
+                ISpatialReferenceTolerance tolerance = (ISpatialReferenceTolerance) spatialReference;
+                precision[7] = tolerance.getXYTolerance();
+                precision[8] = tolerance.getZTolerance();
+                precision[9] = tolerance.getMTolerance();
+            }
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof SpatialReferenceKey)) {
+                return false;
+            }
+            SpatialReferenceKey other = (SpatialReferenceKey) obj;
+            return factoryCode == other.factoryCode
+                    && verticalFactoryCode == other.verticalFactoryCode
+                    && Arrays.equals(precision, other.precision);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = factoryCode;
+            result = 31 * result + verticalFactoryCode;
+            result = 31 * result + Arrays.hashCode(precision);
+            return result;
+        }
+    }
+
+    /**
+     * Growable buffer of vertices with up to four values each, compacted to
+     * the final dimension once the awareness flags of the geometry are known.
+     */
+    private static final class CoordinateBuffer {
+
+        private static final int WIDTH = 4;
+
+        private double[] values = new double[16 * WIDTH];
+        private int pointCount;
+        private int[] partOffsets = new int[]{0, 0, 0, 0};
+        private int partCount;
+
+        private CoordinateBuffer() {
+            Arrays.fill(values, Double.NaN);
+        }
+
+        private void set(int dimension, double value) {
+            values[pointCount * WIDTH + dimension] = value;
+        }
+
+        private void endPoint() {
+            pointCount++;
+            if (pointCount * WIDTH >= values.length) {
+                int oldLength = values.length;
+                values = Arrays.copyOf(values, oldLength * 2);
+                Arrays.fill(values, oldLength, values.length, Double.NaN);
+            }
+        }
+
+        private void endPart() {
+            partCount++;
+            if (partCount + 1 >= partOffsets.length) {
+                partOffsets = Arrays.copyOf(partOffsets,
+                        partOffsets.length * 2);
+            }
+            partOffsets[partCount] = pointCount;
+        }
+
+        private CoordinateGeometry toGeometry(CoordinateGeometry.Type type,
+                                              boolean zAware, boolean mAware,
+                                              SpatialReferenceDefinition spatialReference) {
+            int dimension = 2 + (zAware ? 1 : 0) + (mAware ? 1 : 0);
+            double[] coordinates = new double[pointCount * dimension];
+            for (int i = 0; i < pointCount; i++) {
+                int source = i * WIDTH;
+                int target = i * dimension;
+                coordinates[target++] = values[source];
+                coordinates[target++] = values[source + 1];
+                if (zAware) {
+                    coordinates[target++] = values[source + 2];
+                }
+                if (mAware) {
+                    coordinates[target] = values[source + (zAware ? 3 : 2)];
+                }
+            }
+            int[] offsets = null;
+            if (type != CoordinateGeometry.Type.MULTIPOINT) {
+                offsets = Arrays.copyOf(partOffsets, partCount + 1);
+            }
+            return new CoordinateGeometry(type, zAware, mAware, coordinates,
+                    offsets, spatialReference);
+        }
+    }
+}
@@ -15,13 +15,16 @@
 package com.esri.serverextension.core.rest.json;
 
 import com.esri.arcgis.geometry.*;
-import com.esri.arcgis.system.*;
+import com.esri.serverextension.core.geometry.CoordinateGeometry;
+import com.esri.serverextension.core.geometry.SpatialReferenceDefinition;
 import com.esri.serverextension.core.geometry.SpatialReferenceFactory;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import org.apache.commons.lang3.StringUtils;
 
 import java.io.IOException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.StringWriter;
 
 public class JSONGeometryMapper {
 
@@ -33,201 +36,125 @@ public class JSONGeometryMapper {
             + "\\w*?(?<xmax>[-+]?([0-9]+(\\.[0-9]*)?|\\.[0-9]+))\\w*,"
             + "\\w*?(?<ymax>[-+]?([0-9]+(\\.[0-9]*)?|\\.[0-9]+))\\w*";
 
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final JSONGeometryCodec GEOMETRY_CODEC = new JSONGeometryCodec();
+
     public JSONGeometryMapper() {
     }
 
     public boolean isSimplePointFormat(String geometry) {
-        Pattern p = Pattern.compile(SIMPLE_POINT_FORMAT_REGEX);
-        Matcher m = p.matcher(geometry);
-        return m.matches();
+        CoordinateGeometry simpleGeometry = GEOMETRY_CODEC
+                .readSimpleGeometry(geometry);
+        return simpleGeometry != null
+                && simpleGeometry.getType() == CoordinateGeometry.Type.POINT;
     }
 
-    public IPoint readPoint(String geometry) {
-        Pattern p = Pattern.compile(SIMPLE_POINT_FORMAT_REGEX);
-        Matcher m = p.matcher(geometry);
-        if (m.matches()) {
-            double x = Double.parseDouble(m.group("x"));
-            double y = Double.parseDouble(m.group("y"));
-            IPoint point;
-            try {
-                point = new Point();
-                point.putCoords(x, y);
-            } catch (IOException e) {
-                throw new JSONException(String.format(
-                        "Cannot map JSON string '%1$s' to %2$s", geometry,
-                        "IPoint"), e);
-            }
-            return point;
-        }
-
-        try {
-            IJSONConverterGeometry converterGeometry = new JSONConverterGeometry();
-            IJSONReader jsonReader = createJSONReader(geometry);
-            IPoint point = converterGeometry.readPoint(jsonReader);
-            Cleaner.release(jsonReader);
-            Cleaner.release(converterGeometry);
-            return point;
-        } catch (IOException e) {
-            throw new JSONException(
-                    String.format("Cannot map JSON string '%1$s' to %2$s",
-                            geometry, "IPoint"), e);
-        }
+    public boolean isSimpleEnvelopeFormat(String geometry) {
+        CoordinateGeometry simpleGeometry = GEOMETRY_CODEC
+                .readSimpleGeometry(geometry);
+        return simpleGeometry != null
+                && simpleGeometry.getType() == CoordinateGeometry.Type.ENVELOPE;
     }
 
-    public IMultipoint readMultipoint(String geometry) {
-        try {
-            IJSONConverterGeometry converterGeometry = new JSONConverterGeometry();
-            IJSONReader jsonReader = createJSONReader(geometry);
-            IMultipoint multiPoint = converterGeometry.readMultipoint(
-                    jsonReader, false, false);
-            Cleaner.release(jsonReader);
-            Cleaner.release(converterGeometry);
-            return multiPoint;
+    /**
+     * Reads a geometry in Esri JSON or one of the simple formats without
+     * creating ArcObjects geometry.
+     */
+    public CoordinateGeometry readGeometry(String geometry) {
+        CoordinateGeometry simpleGeometry = GEOMETRY_CODEC
+                .readSimpleGeometry(geometry);
+        if (simpleGeometry != null) {
+            return simpleGeometry;
+        }
+        try (JsonParser parser = JSON_FACTORY.createParser(geometry)) {
+            return GEOMETRY_CODEC.readGeometry(parser);
         } catch (IOException e) {
             throw new JSONException(String.format(
                     "Cannot map JSON string '%1$s' to %2$s", geometry,
-                    "IMultipoint"), e);
+                    "CoordinateGeometry"), e);
         }
     }
 
-    public IPolyline readPolyline(String geometry) {
-        try {
-            IJSONConverterGeometry converterGeometry = new JSONConverterGeometry();
-            IJSONReader jsonReader = createJSONReader(geometry);
-            IPolyline polyline = converterGeometry.readPolyline(jsonReader,
-                    false, false);
-            Cleaner.release(jsonReader);
-            Cleaner.release(converterGeometry);
-            return polyline;
-        } catch (IOException e) {
-            throw new JSONException(String.format(
-                    "Cannot map JSON string '%1$s' to %2$s", geometry,
-                    "IPolyline"), e);
-        }
+    public IPoint readPoint(String geometry) {
+        return (IPoint) readGeometry(geometry, CoordinateGeometry.Type.POINT,
+                "IPoint");
     }
 
-    public IPolygon readPolygon(String geometry) {
-        try {
-            IJSONConverterGeometry converterGeometry = new JSONConverterGeometry();
-            IJSONReader jsonReader = createJSONReader(geometry);
-            IPolygon polygon = converterGeometry.readPolygon(jsonReader, false,
-                    false);
-            Cleaner.release(jsonReader);
-            Cleaner.release(converterGeometry);
-            return polygon;
-        } catch (IOException e) {
-            throw new JSONException(String.format(
-                    "Cannot convert JSON string '%1$s' to %2$s", geometry,
-                    "IPolygon"), e);
-        }
+    public IMultipoint readMultipoint(String geometry) {
+        return (IMultipoint) readGeometry(geometry,
+                CoordinateGeometry.Type.MULTIPOINT, "IMultipoint");
     }
 
-    public boolean isSimpleEnvelopeFormat(String geometry) {
-        Pattern p = Pattern.compile(SIMPLE_ENVELOPE_FORMAT_REGEX);
-        Matcher m = p.matcher(geometry);
-        return m.matches();
+    public IPolyline readPolyline(String geometry) {
+        return (IPolyline) readGeometry(geometry,
+                CoordinateGeometry.Type.POLYLINE, "IPolyline");
+    }
+
+    public IPolygon readPolygon(String geometry) {
+        return (IPolygon) readGeometry(geometry,
+                CoordinateGeometry.Type.POLYGON, "IPolygon");
     }
 
     public IEnvelope readEnvelope(String geometry) {
-        Pattern p = Pattern.compile(SIMPLE_ENVELOPE_FORMAT_REGEX);
-        Matcher m = p.matcher(geometry);
-        if (m.matches()) {
-            double xmin = Double.parseDouble(m.group("xmin"));
-            double ymin = Double.parseDouble(m.group("ymin"));
-            double xmax = Double.parseDouble(m.group("xmax"));
-            double ymax = Double.parseDouble(m.group("ymax"));
-            IEnvelopeGEN envelope;
-            try {
-                envelope = new Envelope();
-                envelope.setXMin(xmin);
-                envelope.setYMin(ymin);
-                envelope.setXMax(xmax);
-                envelope.setYMax(ymax);
-            } catch (IOException e) {
-                throw new JSONException(String.format(
-                        "Cannot map JSON string '%1$s' to %2$s", geometry,
-                        "IEnvelopeGEN"), e);
-            }
-            return (IEnvelope) envelope;
-        }
+        return (IEnvelope) readGeometry(geometry,
+                CoordinateGeometry.Type.ENVELOPE, "IEnvelope");
+    }
 
-        try {
-            IJSONConverterGeometry converterGeometry = new JSONConverterGeometry();
-            IJSONReader jsonReader = createJSONReader(geometry);
-            IEnvelope envelope = converterGeometry.readEnvelope(jsonReader);
-            Cleaner.release(jsonReader);
-            Cleaner.release(converterGeometry);
-            return envelope;
-        } catch (IOException e) {
+    private IGeometry readGeometry(String geometry,
+                                   CoordinateGeometry.Type type, String typeName) {
+        CoordinateGeometry coordinateGeometry = readGeometry(geometry);
+        if (coordinateGeometry == null
+                || coordinateGeometry.getType() != type) {
             throw new JSONException(String.format(
                     "Cannot map JSON string '%1$s' to %2$s", geometry,
-                    "IEnvelope"), e);
+                    typeName));
         }
+        return coordinateGeometry.toGeometry();
     }
 
     public ISpatialReference readSpatialReference(String spatialReference) {
-        try {
-            if (StringUtils.isNumeric(spatialReference)) {
-                SpatialReferenceFactory spatialReferenceFactory = new SpatialReferenceFactory();
-                try {
-                    int wkid = Integer.parseInt(spatialReference);
-                    return spatialReferenceFactory.create(wkid);
-                } catch (NumberFormatException ignored) {
-                }
+        if (StringUtils.isNumeric(spatialReference)) {
+            SpatialReferenceFactory spatialReferenceFactory = new SpatialReferenceFactory();
+            try {
+                int wkid = Integer.parseInt(spatialReference);
+                return spatialReferenceFactory.create(wkid);
+            } catch (NumberFormatException ignored) {
             }
-            IJSONConverterGeometry converterGeometry = new JSONConverterGeometry();
-            IJSONReader jsonReader = createJSONReader(spatialReference);
-            ISpatialReference sr = converterGeometry
-                    .readSpatialReference(jsonReader);
-            Cleaner.release(jsonReader);
-            Cleaner.release(converterGeometry);
-            return sr;
+        }
+        SpatialReferenceDefinition definition;
+        try (JsonParser parser = JSON_FACTORY.createParser(spatialReference)) {
+            definition = GEOMETRY_CODEC.readSpatialReference(parser);
         } catch (IOException e) {
             throw new JSONException(String.format(
                     "Cannot map JSON string '%1$s' to %2$s", spatialReference,
                     "ISpatialReference"), e);
         }
+        if (definition == null || definition.isEmpty()) {
+            throw new JSONException(String.format(
+                    "Cannot map JSON string '%1$s' to %2$s", spatialReference,
+                    "ISpatialReference"));
+        }
+        return definition.toSpatialReference();
     }
 
     public String writeGeometry(IGeometry geometry, boolean skipSpatialReference) {
-        try {
-            IJSONObject jsonObject = new JSONObject();
-            IJSONConverterGeometry converterGeometry = new JSONConverterGeometry();
-            converterGeometry.queryJSONGeometry(geometry, skipSpatialReference, jsonObject);
-            String json = jsonObject.toJSONString(null);
-            Cleaner.release(converterGeometry);
-            Cleaner.release(jsonObject);
-            return json;
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+            GEOMETRY_CODEC.writeGeometry(geometry, generator,
+                    skipSpatialReference);
         } catch (IOException e) {
             throw new JSONException("Cannot map geometry to JSON string", e);
         }
+        return writer.toString();
     }
 
     public String writeSpatialReference(ISpatialReference spatialReference) {
         try {
-            IJSONObject jsonObject = new JSONObject();
-            IJSONConverterGeometry converterGeometry = new JSONConverterGeometry();
-            converterGeometry.queryJSONSpatialReference(spatialReference,
-                    jsonObject);
-            String json = jsonObject.toJSONString(null);
-            Cleaner.release(converterGeometry);
-            Cleaner.release(jsonObject);
-            return json;
+            return GEOMETRY_CODEC.getSpatialReferenceJson(spatialReference);
         } catch (IOException e) {
             throw new JSONException(
                     "Cannot map spatial reference to JSON string", e);
         }
     }
-
-    private IJSONReader createJSONReader(String json) {
-        IJSONReader reader;
-        try {
-            reader = new JSONReader();
-            reader.readFromString(json);
-        } catch (IOException e) {
-            throw new JSONException(String.format(
-                    "Cannot read JSON string '%1$s'", json), e);
-        }
-        return reader;
-    }
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.serverextension.core.rest.support.jackson;
+
+import com.esri.serverextension.core.geometry.CoordinateGeometry;
+import com.esri.serverextension.core.rest.json.JSONGeometryCodec;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+
+/**
+ * Reads a geometry with {@link JSONGeometryCodec} directly from the parser
+ * and converts it to the ArcObjects geometry type handled by the subclass.
+ */
+@SuppressWarnings("serial")
+public abstract class AbstractGeometryDeserializer<T> extends
+        StdDeserializer<T> {
+
+    private final Class<T> geometryClass;
+    private final JSONGeometryCodec geometryCodec;
+    private final CoordinateGeometry.Type geometryType;
+
+    /**
+     * @param geometryType the geometry type that is accepted or
+     *                     <code>null</code> to accept any type
+     */
+    protected AbstractGeometryDeserializer(Class<T> vc,
+                                           JSONGeometryCodec geometryCodec,
+                                           CoordinateGeometry.Type geometryType) {
+        super(vc);
+        this.geometryClass = vc;
+        this.geometryCodec = geometryCodec;
+        this.geometryType = geometryType;
+    }
+
+    @Override
+    public T deserialize(JsonParser jsonParser,
+                         DeserializationContext deserializationContext) throws IOException,
+            JsonProcessingException {
+        CoordinateGeometry geometry;
+        if (jsonParser.getCurrentToken() == JsonToken.VALUE_STRING) {
+            geometry = geometryCodec.readSimpleGeometry(jsonParser.getText());
+        } else {
+            geometry = geometryCodec.readGeometry(jsonParser);
+        }
+        if (geometry == null) {
+            return null;
+        }
+        if (geometryType != null && geometry.getType() != geometryType) {
+            throw JsonMappingException.from(jsonParser, String.format(
+                    "Cannot map %1$s geometry to %2$s.", geometry.getType(),
+                    geometryClass.getSimpleName()));
+        }
+        return geometryClass.cast(geometry.toGeometry());
+    }
+}
@@ -15,6 +15,8 @@
 package com.esri.serverextension.core.rest.support.jackson;
 
 import com.esri.arcgis.geometry.*;
+import com.esri.serverextension.core.geometry.CoordinateGeometry;
+import com.esri.serverextension.core.rest.json.JSONGeometryCodec;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 
@@ -23,6 +25,8 @@ public class ArcGISTypesModule extends SimpleModule {
 
     private ObjectMapper objectMapper;
 
+    private final JSONGeometryCodec geometryCodec = new JSONGeometryCodec();
+
     public ArcGISTypesModule() {
         super("ArcObjectsModule");
     }
@@ -32,23 +36,28 @@ public class ArcGISTypesModule extends SimpleModule {
         this.objectMapper = context.getOwner();
 
         addDeserializer(IGeometry.class, new GeometryDeserializer(
-                this.objectMapper));
-        addDeserializer(IPoint.class, new PointDeserializer(this.objectMapper));
+                this.geometryCodec));
+        addDeserializer(IPoint.class, new PointDeserializer(this.geometryCodec));
         addDeserializer(IMultipoint.class, new MultipointDeserializer(
-                this.objectMapper));
+                this.geometryCodec));
         addDeserializer(IPolyline.class, new PolylineDeserializer(
-                this.objectMapper));
+                this.geometryCodec));
         addDeserializer(IPolygon.class, new PolygonDeserializer(
-                this.objectMapper));
+                this.geometryCodec));
         addDeserializer(IEnvelope.class, new EnvelopeDeserializer(
-                this.objectMapper));
+                this.geometryCodec));
         addSerializer(IGeometry.class,
-                new GeometrySerializer(this.objectMapper));
+                new GeometrySerializer(this.geometryCodec));
+
+        addDeserializer(CoordinateGeometry.class,
+                new CoordinateGeometryDeserializer(this.geometryCodec));
+        addSerializer(CoordinateGeometry.class,
+                new CoordinateGeometrySerializer(this.geometryCodec));
 
         addDeserializer(ISpatialReference.class,
-                new SpatialReferenceDeserializer(this.objectMapper));
+                new SpatialReferenceDeserializer(this.geometryCodec));
         addSerializer(ISpatialReference.class, new SpatialReferenceSerializer(
-                this.objectMapper));
+                this.geometryCodec));
 
         super.setupModule(context);
     }
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.serverextension.core.rest.support.jackson;
+
+import com.esri.serverextension.core.geometry.CoordinateGeometry;
+import com.esri.serverextension.core.rest.json.JSONGeometryCodec;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+
+/**
+ * Reads geometries without creating ArcObjects geometry, so delegates that
+ * declare {@link CoordinateGeometry} parameters only pay for the conversion
+ * when they call {@link CoordinateGeometry#toGeometry()}.
+ */
+@SuppressWarnings("serial")
+public class CoordinateGeometryDeserializer extends
+        StdDeserializer<CoordinateGeometry> {
+
+    private final JSONGeometryCodec geometryCodec;
+
+    protected CoordinateGeometryDeserializer(JSONGeometryCodec geometryCodec) {
+        super(CoordinateGeometry.class);
+        this.geometryCodec = geometryCodec;
+    }
+
+    @Override
+    public CoordinateGeometry deserialize(JsonParser jsonParser,
+                                          DeserializationContext deserializationContext) throws IOException,
+            JsonProcessingException {
+        if (jsonParser.getCurrentToken() == JsonToken.VALUE_STRING) {
+            return geometryCodec.readSimpleGeometry(jsonParser.getText());
+        }
+        return geometryCodec.readGeometry(jsonParser);
+    }
+}
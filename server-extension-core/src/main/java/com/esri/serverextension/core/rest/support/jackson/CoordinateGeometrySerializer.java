@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.serverextension.core.rest.support.jackson;
+
+import com.esri.serverextension.core.geometry.CoordinateGeometry;
+import com.esri.serverextension.core.rest.json.JSONGeometryCodec;
+import com.fasterxml.jackson.core.JsonGenerationException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+@SuppressWarnings("serial")
+public class CoordinateGeometrySerializer extends
+        StdSerializer<CoordinateGeometry> {
+
+    private final JSONGeometryCodec geometryCodec;
+
+    protected CoordinateGeometrySerializer(JSONGeometryCodec geometryCodec) {
+        super(CoordinateGeometry.class);
+        this.geometryCodec = geometryCodec;
+    }
+
+    @Override
+    public void serialize(CoordinateGeometry value, JsonGenerator jgen,
+                          SerializerProvider provider) throws IOException,
+            JsonGenerationException {
+        geometryCodec.writeGeometry(value, jgen, false);
+    }
+
+}
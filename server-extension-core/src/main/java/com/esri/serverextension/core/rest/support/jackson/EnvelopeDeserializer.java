@@ -11,29 +11,17 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.​
  */
-
 package com.esri.serverextension.core.rest.support.jackson;
 
 import com.esri.arcgis.geometry.IEnvelope;
-import com.esri.serverextension.core.rest.json.JSONGeometryMapper;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-
-import java.io.IOException;
+import com.esri.serverextension.core.geometry.CoordinateGeometry;
+import com.esri.serverextension.core.rest.json.JSONGeometryCodec;
 
 @SuppressWarnings("serial")
-public class EnvelopeDeserializer extends AbstractDeserializer<IEnvelope> {
-
-    private JSONGeometryMapper geometryMapper = new JSONGeometryMapper();
-
-    protected EnvelopeDeserializer(ObjectMapper objectMapper) {
-        super(IEnvelope.class, objectMapper);
-    }
+public class EnvelopeDeserializer extends AbstractGeometryDeserializer<IEnvelope> {
 
-    @Override
-    protected IEnvelope deserialize(String json) throws IOException,
-            JsonProcessingException {
-        return this.geometryMapper.readEnvelope(json);
+    protected EnvelopeDeserializer(JSONGeometryCodec geometryCodec) {
+        super(IEnvelope.class, geometryCodec, CoordinateGeometry.Type.ENVELOPE);
     }
 
 }
@@ -11,29 +11,32 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.​
  */
-
 package com.esri.serverextension.core.rest.support.jackson;
 
 import com.esri.arcgis.geometry.IGeometry;
-import com.esri.serverextension.core.rest.json.JSONGeometryMapper;
+import com.esri.serverextension.core.rest.json.JSONGeometryCodec;
 import com.fasterxml.jackson.core.JsonGenerationException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 
 import java.io.IOException;
 
 @SuppressWarnings("serial")
-public class GeometrySerializer extends AbstractSerializer<IGeometry> {
+public class GeometrySerializer extends StdSerializer<IGeometry> {
 
-    private JSONGeometryMapper geometryMapper = new JSONGeometryMapper();
+    private final JSONGeometryCodec geometryCodec;
 
-    protected GeometrySerializer(ObjectMapper objectMapper) {
-        super(objectMapper, IGeometry.class);
+    protected GeometrySerializer(JSONGeometryCodec geometryCodec) {
+        super(IGeometry.class);
+        this.geometryCodec = geometryCodec;
     }
 
     @Override
-    protected String serialize(IGeometry value) throws IOException,
+    public void serialize(IGeometry value, JsonGenerator jgen,
+                          SerializerProvider provider) throws IOException,
             JsonGenerationException {
-        return this.geometryMapper.writeGeometry(value, false);
+        geometryCodec.writeGeometry(value, jgen, false);
     }
 
 }
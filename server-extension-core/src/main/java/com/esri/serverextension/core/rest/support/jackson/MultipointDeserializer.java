@@ -11,29 +11,17 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.​
  */
-
 package com.esri.serverextension.core.rest.support.jackson;
 
 import com.esri.arcgis.geometry.IMultipoint;
-import com.esri.serverextension.core.rest.json.JSONGeometryMapper;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-
-import java.io.IOException;
+import com.esri.serverextension.core.geometry.CoordinateGeometry;
+import com.esri.serverextension.core.rest.json.JSONGeometryCodec;
 
 @SuppressWarnings("serial")
-public class MultipointDeserializer extends AbstractDeserializer<IMultipoint> {
-
-    private JSONGeometryMapper geometryMapper = new JSONGeometryMapper();
-
-    protected MultipointDeserializer(ObjectMapper objectMapper) {
-        super(IMultipoint.class, objectMapper);
-    }
+public class MultipointDeserializer extends AbstractGeometryDeserializer<IMultipoint> {
 
-    @Override
-    protected IMultipoint deserialize(String json) throws IOException,
-            JsonProcessingException {
-        return this.geometryMapper.readMultipoint(json);
+    protected MultipointDeserializer(JSONGeometryCodec geometryCodec) {
+        super(IMultipoint.class, geometryCodec, CoordinateGeometry.Type.MULTIPOINT);
     }
 
 }
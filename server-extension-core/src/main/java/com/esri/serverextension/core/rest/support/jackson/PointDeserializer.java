@@ -11,29 +11,17 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.​
  */
-
 package com.esri.serverextension.core.rest.support.jackson;
 
 import com.esri.arcgis.geometry.IPoint;
-import com.esri.serverextension.core.rest.json.JSONGeometryMapper;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-
-import java.io.IOException;
+import com.esri.serverextension.core.geometry.CoordinateGeometry;
+import com.esri.serverextension.core.rest.json.JSONGeometryCodec;
 
 @SuppressWarnings("serial")
-public class PointDeserializer extends AbstractDeserializer<IPoint> {
-
-    private JSONGeometryMapper geometryMapper = new JSONGeometryMapper();
-
-    protected PointDeserializer(ObjectMapper objectMapper) {
-        super(IPoint.class, objectMapper);
-    }
+public class PointDeserializer extends AbstractGeometryDeserializer<IPoint> {
 
-    @Override
-    protected IPoint deserialize(String json) throws IOException,
-            JsonProcessingException {
-        return this.geometryMapper.readPoint(json);
+    protected PointDeserializer(JSONGeometryCodec geometryCodec) {
+        super(IPoint.class, geometryCodec, CoordinateGeometry.Type.POINT);
     }
 
 }
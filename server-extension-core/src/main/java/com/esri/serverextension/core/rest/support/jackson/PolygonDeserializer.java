@@ -11,29 +11,17 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.​
  */
-
 package com.esri.serverextension.core.rest.support.jackson;
 
 import com.esri.arcgis.geometry.IPolygon;
-import com.esri.serverextension.core.rest.json.JSONGeometryMapper;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-
-import java.io.IOException;
+import com.esri.serverextension.core.geometry.CoordinateGeometry;
+import com.esri.serverextension.core.rest.json.JSONGeometryCodec;
 
 @SuppressWarnings("serial")
-public class PolygonDeserializer extends AbstractDeserializer<IPolygon> {
-
-    private JSONGeometryMapper geometryMapper = new JSONGeometryMapper();
-
-    protected PolygonDeserializer(ObjectMapper objectMapper) {
-        super(IPolygon.class, objectMapper);
-    }
+public class PolygonDeserializer extends AbstractGeometryDeserializer<IPolygon> {
 
-    @Override
-    protected IPolygon deserialize(String json) throws IOException,
-            JsonProcessingException {
-        return this.geometryMapper.readPolygon(json);
+    protected PolygonDeserializer(JSONGeometryCodec geometryCodec) {
+        super(IPolygon.class, geometryCodec, CoordinateGeometry.Type.POLYGON);
     }
 
 }
@@ -11,29 +11,17 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.​
  */
-
 package com.esri.serverextension.core.rest.support.jackson;
 
 import com.esri.arcgis.geometry.IPolyline;
-import com.esri.serverextension.core.rest.json.JSONGeometryMapper;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-
-import java.io.IOException;
+import com.esri.serverextension.core.geometry.CoordinateGeometry;
+import com.esri.serverextension.core.rest.json.JSONGeometryCodec;
 
 @SuppressWarnings("serial")
-public class PolylineDeserializer extends AbstractDeserializer<IPolyline> {
-
-    private JSONGeometryMapper geometryMapper = new JSONGeometryMapper();
-
-    protected PolylineDeserializer(ObjectMapper objectMapper) {
-        super(IPolyline.class, objectMapper);
-    }
+public class PolylineDeserializer extends AbstractGeometryDeserializer<IPolyline> {
 
-    @Override
-    protected IPolyline deserialize(String json) throws IOException,
-            JsonProcessingException {
-        return this.geometryMapper.readPolyline(json);
+    protected PolylineDeserializer(JSONGeometryCodec geometryCodec) {
+        super(IPolyline.class, geometryCodec, CoordinateGeometry.Type.POLYLINE);
     }
 
 }
@@ -11,32 +11,46 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.​
  */
-
 package com.esri.serverextension.core.rest.support.jackson;
 
 import com.esri.arcgis.geometry.ISpatialReference;
+import com.esri.serverextension.core.geometry.SpatialReferenceDefinition;
+import com.esri.serverextension.core.rest.json.JSONGeometryCodec;
 import com.esri.serverextension.core.rest.json.JSONGeometryMapper;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 
 import java.io.IOException;
 
 @SuppressWarnings("serial")
 public class SpatialReferenceDeserializer extends
-        AbstractDeserializer<ISpatialReference> {
+        StdDeserializer<ISpatialReference> {
 
-    private JSONGeometryMapper geometryMapper = new JSONGeometryMapper();
+    private final JSONGeometryCodec geometryCodec;
+    private final JSONGeometryMapper geometryMapper = new JSONGeometryMapper();
 
-    protected SpatialReferenceDeserializer(ObjectMapper objectMapper) {
-        super(ISpatialReference.class, objectMapper);
+    protected SpatialReferenceDeserializer(JSONGeometryCodec geometryCodec) {
+        super(ISpatialReference.class);
+        this.geometryCodec = geometryCodec;
     }
 
     @Override
-    protected ISpatialReference deserialize(String json) throws IOException,
+    public ISpatialReference deserialize(JsonParser jsonParser,
+                                         DeserializationContext deserializationContext) throws IOException,
             JsonProcessingException {
-        ISpatialReference spatialReference = this.geometryMapper
-                .readSpatialReference(json);
-        return spatialReference;
+        if (jsonParser.getCurrentToken() == JsonToken.VALUE_STRING) {
+            return this.geometryMapper.readSpatialReference(jsonParser
+                    .getText());
+        }
+        SpatialReferenceDefinition spatialReference = geometryCodec
+                .readSpatialReference(jsonParser);
+        if (spatialReference == null || spatialReference.isEmpty()) {
+            return null;
+        }
+        return spatialReference.toSpatialReference();
     }
 
 }
@@ -11,32 +11,33 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.​
  */
-
 package com.esri.serverextension.core.rest.support.jackson;
 
 import com.esri.arcgis.geometry.ISpatialReference;
-import com.esri.serverextension.core.rest.json.JSONGeometryMapper;
+import com.esri.serverextension.core.rest.json.JSONGeometryCodec;
 import com.fasterxml.jackson.core.JsonGenerationException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 
 import java.io.IOException;
 
 @SuppressWarnings("serial")
 public class SpatialReferenceSerializer extends
-        AbstractSerializer<ISpatialReference> {
+        StdSerializer<ISpatialReference> {
 
-    private JSONGeometryMapper geometryMapper = new JSONGeometryMapper();
+    private final JSONGeometryCodec geometryCodec;
 
-    public SpatialReferenceSerializer(ObjectMapper objectMapper) {
-        super(objectMapper, ISpatialReference.class);
+    public SpatialReferenceSerializer(JSONGeometryCodec geometryCodec) {
+        super(ISpatialReference.class);
+        this.geometryCodec = geometryCodec;
     }
 
     @Override
-    public String serialize(ISpatialReference value) throws IOException,
+    public void serialize(ISpatialReference value, JsonGenerator jgen,
+                          SerializerProvider provider) throws IOException,
             JsonGenerationException {
-
-        String json = this.geometryMapper.writeSpatialReference(value);
-        return json;
+        geometryCodec.writeSpatialReference(value, jgen);
     }
 
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.security;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable set of role names backed by a bitset over the roles known to a
+ * {@link UserRoleCache}, so membership checks take constant time. Instances
+ * are interned by the cache, so users with the same roles share one set.
+ */
+public final class RoleSet extends AbstractSet<String> {
+
+    private final UserRoleCache.RoleIndex roleIndex;
+    private final long[] bits;
+    private final String[] roles;
+    private final int hashCode;
+
+    RoleSet(UserRoleCache.RoleIndex roleIndex, long[] bits, String[] roles) {
+        this.roleIndex = roleIndex;
+        this.bits = bits;
+        this.roles = roles;
+        int hash = 0;
+        for (String role : roles) {
+            hash += role.hashCode();
+        }
+        this.hashCode = hash;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String)) {
+            return false;
+        }
+        int index = roleIndex.indexOf((String) o);
+        if (index < 0) {
+            return false;
+        }
+        int word = index >>> 6;
+        return word < bits.length && (bits[word] & (1L << index)) != 0;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < roles.length;
+            }
+
+            @Override
+            public String next() {
+                if (next >= roles.length) {
+                    throw new NoSuchElementException();
+                }
+                return roles[next++];
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return roles.length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (o instanceof RoleSet && ((RoleSet) o).roleIndex == roleIndex) {
+            return Arrays.equals(bits, ((RoleSet) o).bits);
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.security;
+
+import com.esri.serverextension.core.metrics.CacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bounded cache of the {@link SecurityContext} per user name, so the roles of
+ * a user are not enumerated through COM on every request. The least recently
+ * used users are evicted once the cache is full, and entries expire after a
+ * time to live.
+ * <p>
+ * The roles of a user can only be read while handling a request of that
+ * user, so an entry is refreshed ahead of its expiry by the first request of
+ * the user after three quarters of the time to live. Concurrent requests of
+ * the user keep using the current entry meanwhile. Role sets are interned
+ * and a security context, including its principal, is reused as long as the
+ * roles of the user do not change.
+ */
+public class UserRoleCache {
+
+    /**
+     * Reads the roles of the user of the current request.
+     */
+    public interface RoleReader {
+
+        Collection<String> readRoles() throws IOException;
+    }
+
+    private final Logger logger = LoggerFactory.getLogger(UserRoleCache.class);
+
+    private final long timeToLiveNanos;
+    private final long refreshAfterNanos;
+    private final CacheMetrics metrics;
+    private final RoleIndex roleIndex = new RoleIndex();
+    private final ConcurrentMap<RoleSet, RoleSet> roleSets = new ConcurrentHashMap<RoleSet, RoleSet>();
+    private final Map<String, Entry> entries;
+
+    public UserRoleCache(final int maximumSize, long timeToLive, TimeUnit unit,
+                         CacheMetrics metrics) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException(
+                    "Argument 'maximumSize' must be positive.");
+        }
+        if (metrics == null) {
+            throw new NullPointerException("Argument 'metrics' is required.");
+        }
+        this.timeToLiveNanos = unit.toNanos(timeToLive);
+        this.refreshAfterNanos = timeToLiveNanos / 4 * 3;
+        this.metrics = metrics;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maximumSize) {
+                    UserRoleCache.this.metrics.recordEviction();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the security context of a user, reading the roles of the user
+     * if they are not cached or due to be refreshed.
+     */
+    public SecurityContext getSecurityContext(String userName,
+                                              RoleReader roleReader) throws IOException {
+        long now = nanoTime();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(userName);
+        }
+        if (entry == null || now - entry.expiresAt >= 0) {
+            metrics.recordMiss();
+            return load(userName, roleReader, now).securityContext;
+        }
+        metrics.recordHit();
+        if (now - entry.refreshAt >= 0 && entry.refreshing.compareAndSet(false, true)) {
+            try {
+                entry = load(userName, roleReader, now);
+                metrics.recordRefresh();
+            } catch (IOException | RuntimeException ex) {
+                entry.refreshing.set(false);
+                logger.warn(String.format("Failed to refresh roles of user '%1$s'.",
+                        userName), ex);
+            }
+        }
+        return entry.securityContext;
+    }
+
+    public void invalidate(String userName) {
+        synchronized (entries) {
+            entries.remove(userName);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
+    private Entry load(String userName, RoleReader roleReader, long now)
+            throws IOException {
+        RoleSet roles = intern(roleReader.readRoles());
+        synchronized (entries) {
+            Entry previous = entries.get(userName);
+            SecurityContext securityContext = previous != null
+                    && previous.securityContext.getUserRoles() == roles ? previous.securityContext
+                    : new UserSecurityContext(userName, roles);
+            Entry entry = new Entry(securityContext, now + refreshAfterNanos,
+                    now + timeToLiveNanos);
+            entries.put(userName, entry);
+            return entry;
+        }
+    }
+
+    RoleSet intern(Collection<String> roles) {
+        TreeSet<String> sortedRoles = new TreeSet<String>();
+        if (roles != null) {
+            sortedRoles.addAll(roles);
+        }
+        int[] indices = new int[sortedRoles.size()];
+        int maxIndex = -1;
+        int i = 0;
+        for (String role : sortedRoles) {
+            indices[i] = roleIndex.register(role);
+            maxIndex = Math.max(maxIndex, indices[i]);
+            i++;
+        }
+        long[] bits = new long[maxIndex < 0 ? 0 : (maxIndex >>> 6) + 1];
+        for (int index : indices) {
+            bits[index >>> 6] |= 1L << index;
+        }
+        RoleSet roleSet = new RoleSet(roleIndex, bits,
+                sortedRoles.toArray(new String[sortedRoles.size()]));
+        RoleSet internedRoleSet = roleSets.putIfAbsent(roleSet, roleSet);
+        return internedRoleSet != null ? internedRoleSet : roleSet;
+    }
+
+    static final class RoleIndex {
+
+        private final ConcurrentMap<String, Integer> indices = new ConcurrentHashMap<String, Integer>();
+
+        int indexOf(String role) {
+            Integer index = indices.get(role);
+            return index != null ? index : -1;
+        }
+
+        synchronized int register(String role) {
+            Integer index = indices.get(role);
+            if (index == null) {
+                index = indices.size();
+                indices.put(role, index);
+            }
+            return index;
+        }
+    }
+
+    private static final class Entry {
+
+        private final SecurityContext securityContext;
+        private final long refreshAt;
+        private final long expiresAt;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private Entry(SecurityContext securityContext, long refreshAt,
+                      long expiresAt) {
+            this.securityContext = securityContext;
+            this.refreshAt = refreshAt;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.security;
+
+import java.security.Principal;
+import java.util.Set;
+
+final class UserSecurityContext implements SecurityContext {
+
+    private final Principal principal;
+    private final Set<String> userRoles;
+
+    UserSecurityContext(final String userName, Set<String> userRoles) {
+        this.principal = new Principal() {
+
+            @Override
+            public String getName() {
+                return userName;
+            }
+
+            @Override
+            public String toString() {
+                return "Principal [name=" + userName + "]";
+            }
+
+        };
+        this.userRoles = userRoles;
+    }
+
+    @Override
+    public Set<String> getUserRoles() {
+        return userRoles;
+    }
+
+    @Override
+    public Principal getUserPrincipal() {
+        return principal;
+    }
+
+    @Override
+    public String toString() {
+        return "Principal [principal=" + principal + ", userRoles="
+                + userRoles + "]";
+    }
+}
@@ -21,11 +21,14 @@ import com.esri.arcgis.server.IServerObject;
 import com.esri.arcgis.server.IServerObjectExtension;
 import com.esri.arcgis.server.IServerObjectHelper;
 import com.esri.arcgis.system.*;
+import com.esri.serverextension.core.metrics.MetricsRegistry;
+import com.esri.serverextension.core.metrics.RequestPhase;
 import com.esri.serverextension.core.rest.api.ArcGISServiceException;
 import com.esri.serverextension.core.rest.api.Error;
 import com.esri.serverextension.core.rest.api.ErrorObject;
 import com.esri.serverextension.core.rest.json.JSONConverter;
 import com.esri.serverextension.core.security.SecurityContext;
+import com.esri.serverextension.core.security.UserRoleCache;
 import com.esri.serverextension.core.server.internal.UriPath;
 import com.esri.serverextension.core.util.ArcObjectsInteropException;
 import com.esri.serverextension.core.util.ArcObjectsUtilities;
@@ -42,10 +45,16 @@ import org.springframework.core.env.MutablePropertySources;
 import org.springframework.util.StringUtils;
 
 import java.io.IOException;
-import java.security.Principal;
 import java.util.*;
 import java.util.Map.Entry;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 @SuppressWarnings("serial")
 public abstract class AbstractRestServerObjectExtension implements
@@ -57,6 +66,18 @@ public abstract class AbstractRestServerObjectExtension implements
     private ApplicationContext applicationContext;
     private RestDelegateMappings delegateMappings;
     private ObjectMapper objectMapper;
+    private MetricsRegistry metricsRegistry;
+    private UserRoleCache userRoleCache;
+    private long requestTimeoutMillis;
+    private boolean sharesParentContext;
+    private DelegateWarmUp warmUp;
+    // resolved on the thread constructing the extension, so the proxy is not
+    // released at the end of a request
+    private volatile IRESTRequestHandler serverObjectRequestHandler;
+    // resolved on a thread of their own, so the proxies are not released at
+    // the end of a request either
+    private volatile ExecutorService extensionRequestHandlerResolver;
+    private final ConcurrentMap<String, IRESTRequestHandler> extensionRequestHandlers = new ConcurrentHashMap<String, IRESTRequestHandler>();
 
     private boolean isInitialized;
     private boolean isConstructed;
@@ -106,14 +127,25 @@ public abstract class AbstractRestServerObjectExtension implements
     @Override
     public final void shutdown() throws IOException, AutomationException {
         logger.info("Shutting down ...");
+        if (warmUp != null) {
+            warmUp.stop();
+            warmUp = null;
+        }
         doShutdown();
         ((ConfigurableApplicationContext) applicationContext).close();
+        releaseRequestHandlers();
+        if (sharesParentContext) {
+            SharedApplicationContext.release();
+            sharesParentContext = false;
+        }
 
         // prevents server extension from failing to shut down
         Cleaner.releaseAllInCurrentThread();
 
         logger.info("Shut down completed.");
         delegateMappings = null;
+        metricsRegistry = null;
+        userRoleCache = null;
         serverContext = null;
         logger = null;
         displayName = null;
@@ -131,6 +163,9 @@ public abstract class AbstractRestServerObjectExtension implements
             logger.info("Constructing ...");
 
             Map<String, Object> configProperties = ArcObjectsUtilities.toMap(propertySet);
+            serverContext.readServerObjectProperties();
+            serverObjectRequestHandler = createServerObjectRequestHandler();
+            extensionRequestHandlerResolver = createExtensionRequestHandlerResolver();
             Map<String, Object> serverProperties = serverContext
                     .getServerProperties();
             configProperties.putAll(serverProperties);
@@ -162,6 +197,11 @@ public abstract class AbstractRestServerObjectExtension implements
             propertySources.addAfter("server", new MapPropertySource("config",
                     configProperties));
 
+            if (Boolean.parseBoolean(String.valueOf(configProperties
+                    .get("sharedContextEnabled")))) {
+                newContext.setParent(SharedApplicationContext.acquire());
+                sharesParentContext = true;
+            }
             newContext.register(DefaultConfig.class);
             doConfigure(newContext);
             if (!newContext.isActive()) {
@@ -173,6 +213,20 @@ public abstract class AbstractRestServerObjectExtension implements
                     "delegateMappings", RestDelegateMappings.class);
             objectMapper = applicationContext.getBean("objectMapper",
                     ObjectMapper.class);
+            metricsRegistry = applicationContext.getBean("metricsRegistry",
+                    MetricsRegistry.class);
+            userRoleCache = applicationContext.getBean("userRoleCache",
+                    UserRoleCache.class);
+            requestTimeoutMillis = TimeUnit.SECONDS.toMillis(applicationContext
+                    .getEnvironment().getProperty("requestTimeoutSeconds",
+                            Long.class, 0L));
+            doStart(applicationContext);
+            try {
+                warmUp = new DelegateWarmUp(applicationContext, serverContext);
+                warmUp.start();
+            } catch (RuntimeException ex) {
+                logger.warn("Warm-up failed.", ex);
+            }
 
             logger.info("Construction completed.");
 
@@ -184,6 +238,12 @@ public abstract class AbstractRestServerObjectExtension implements
             logger.error("A fatal error occured during construction.", error);
             throw new ServerObjectExtensionError(
                     "A fatal error occured during construction.", error);
+        } finally {
+            // a failed construction must not keep the shared context alive
+            if (!isConstructed && sharesParentContext) {
+                SharedApplicationContext.release();
+                sharesParentContext = false;
+            }
         }
     }
 
@@ -191,6 +251,14 @@ public abstract class AbstractRestServerObjectExtension implements
             AnnotationConfigApplicationContext applicationContext) {
     }
 
+    /**
+     * Called at the end of {@link #construct(IPropertySet)} once the
+     * application context has been refreshed, on the thread constructing the
+     * extension.
+     */
+    protected void doStart(ApplicationContext applicationContext) {
+    }
+
     protected void doShutdown() {
     }
 
@@ -213,18 +281,22 @@ public abstract class AbstractRestServerObjectExtension implements
 
         logger.debug("Handling REST request ... ");
 
+        StopWatch timer = StopWatch.createAndStart();
+        RestRequest request = null;
+        String route = null;
+        boolean failed = true;
         try {
             Cleaner.trackObjectsInCurrentThread();
-            StopWatch timer = StopWatch.createAndStart();
 
-            RestRequest request = new RestRequest(capabilities, resourceName,
+            request = new RestRequest(capabilities, resourceName,
                     operationName, operationInput, outputFormat,
                     requestProperties, serverContext,
                     createSecurityContext(serverContext));
-            Map<String, Object> serverProperties = serverContext
-                    .getServerProperties();
-            for (Entry<String, Object> entry : serverProperties.entrySet()) {
-                request.setAttribute(entry.getKey(), entry.getValue());
+
+            if (requestTimeoutMillis > 0) {
+                request.setDeadline(RequestDeadline.after(requestTimeoutMillis,
+                        TimeUnit.MILLISECONDS));
+                RequestDeadline.setCurrent(request.getDeadline());
             }
 
             logger.debug("Request: {}", request);
@@ -234,9 +306,15 @@ public abstract class AbstractRestServerObjectExtension implements
             logger.debug("Path="+path);
 
             RestResponse response = null;
-            RestDelegate delegate = delegateMappings.getMatchingDelegate(path);
-            if (delegate != null) {
+            long routingTime = System.nanoTime();
+            RestDelegateMatch match = delegateMappings.findMatch(path);
+            request.getTimings().add(RequestPhase.ROUTING,
+                    System.nanoTime() - routingTime);
+            if (match != null) {
+                route = match.getPathTemplate();
+                RestDelegate delegate = match.getDelegate();
                 logger.debug("Found delegate {} for path {}.", delegate, path);
+                request.setUriTemplateVariables(match.getUriVariables());
                 response = delegate.process(request, new RestDelegate() {
                     @Override
                     public RestResponse process(RestRequest request, RestDelegate handler) {
@@ -264,12 +342,16 @@ public abstract class AbstractRestServerObjectExtension implements
                     response = delegateRestRequestToHandler(request);
                 }
             }
-            timer.stop();
-            logger.debug("Finished handling REST request in {} second(s).",
-                    timer.elapsedTimeSeconds());
-            return response.getResponseBody();
+            byte[] responseBody = response.getResponseBody();
+            failed = false;
+            return responseBody;
         } catch (Exception ex) {
             logger.error("Failed to handle REST request.", ex);
+            if (RequestTimeoutException.isCauseOf(ex)) {
+                metricsRegistry.getRouteMetrics(
+                        route != null ? route : MetricsRegistry.UNMATCHED_PATH)
+                        .recordTimeout();
+            }
             return handleError(ex);
         } catch (java.lang.Error error) {
             logger.error("A fatal error occurred when handling REST request.",
@@ -277,6 +359,14 @@ public abstract class AbstractRestServerObjectExtension implements
             return handleError(500,
                     "A fatal error occurred when handling REST request.", null);
         } finally {
+            timer.stop();
+            logger.debug("Finished handling REST request in {} second(s).",
+                    timer.elapsedTimeSeconds());
+            if (request != null) {
+                metricsRegistry.record(route, request.getTimings(),
+                        timer.elapsedTimeNanos(), failed);
+            }
+            RequestDeadline.setCurrent(null);
             Cleaner.releaseAllInCurrentThread();
         }
     }
@@ -287,11 +377,18 @@ public abstract class AbstractRestServerObjectExtension implements
         if (restRequestHandler != null) {
             logger.debug("Forwarding request to handler: {}", request);
             String[] responseProperties = new String[1];
-            byte[] responseBody = restRequestHandler.handleRESTRequest(
-                    request.getCapabilities(), request.getResourceName(),
-                    request.getOperationName(), request.getOperationInput(),
-                    request.getOutputFormat(), request.getRequestProperties(),
-                    responseProperties);
+            long forwardingTime = System.nanoTime();
+            byte[] responseBody;
+            try {
+                responseBody = restRequestHandler.handleRESTRequest(
+                        request.getCapabilities(), request.getResourceName(),
+                        request.getOperationName(), request.getOperationInput(),
+                        request.getOutputFormat(), request.getRequestProperties(),
+                        responseProperties);
+            } finally {
+                request.getTimings().add(RequestPhase.FORWARDING,
+                        System.nanoTime() - forwardingTime);
+            }
             return new RestResponse(responseProperties[0], responseBody);
         } else {
             throw new ServerObjectExtensionException(
@@ -299,34 +396,43 @@ public abstract class AbstractRestServerObjectExtension implements
         }
     }
 
+    /**
+     * Returns the REST request handler of the server object, or of the
+     * extension named by the <code>ExtensionName</code> server property. The
+     * handler of the server object is resolved once at construct time; the
+     * handler of an extension is resolved once on the thread resolving
+     * extension handlers. Both are kept until the extension shuts down.
+     */
     protected IRESTRequestHandler findRestRequestHandlerDelegate() {
         try {
-            IServerObject serverObject = serverContext.getServerObject();
-            Map<String, Object> serverProperties = serverContext
-                    .getServerProperties();
             // Check if there is an extension name set
-            String extensionName = (String) serverProperties
-                    .get("ExtensionName");
+            String extensionName = (String) serverContext
+                    .getServerProperty("ExtensionName");
             if (extensionName == null || extensionName.isEmpty()) {
                 // No extension has been set - return reference to parent server object
-                if (TypeChecker.instanceOf(serverObject,
-                        IRESTRequestHandler.class)) {
-                    return new IRESTRequestHandlerProxy(serverObject);
-                } else {
+                IRESTRequestHandler restRequestHandler = serverObjectRequestHandler;
+                if (restRequestHandler == null) {
                     throw new ServerObjectExtensionException(
                             "Server object does not implement IRESTRequestHandler.");
                 }
+                return restRequestHandler;
             } else {
-                IServerObjectExtension extension = serverContext
-                        .getServerObjectExtension(extensionName);
-                if (TypeChecker
-                        .instanceOf(extension, IRESTRequestHandler.class)) {
-                    return new IRESTRequestHandlerProxy(extension);
-                } else {
-                    throw new ServerObjectExtensionException(
-                            "This server object extension does not "
-                                    + "implement IRESTRequestHandler.");
+                IRESTRequestHandler restRequestHandler = extensionRequestHandlers
+                        .get(extensionName);
+                if (restRequestHandler == null) {
+                    restRequestHandler = resolveExtensionRequestHandler(extensionName);
+                    if (restRequestHandler == null) {
+                        throw new ServerObjectExtensionException(
+                                "This server object extension does not "
+                                        + "implement IRESTRequestHandler.");
+                    }
+                    IRESTRequestHandler existingRequestHandler = extensionRequestHandlers
+                            .putIfAbsent(extensionName, restRequestHandler);
+                    if (existingRequestHandler != null) {
+                        restRequestHandler = existingRequestHandler;
+                    }
                 }
+                return restRequestHandler;
             }
         } catch (IOException ex) {
             throw new ServerObjectExtensionException(
@@ -334,6 +440,86 @@ public abstract class AbstractRestServerObjectExtension implements
         }
     }
 
+    /**
+     * Forgets the resolved REST request handlers when the extension shuts
+     * down. The thread resolving extension handlers releases their proxies
+     * when it ends.
+     */
+    void releaseRequestHandlers() {
+        serverObjectRequestHandler = null;
+        extensionRequestHandlers.clear();
+        ExecutorService resolver = extensionRequestHandlerResolver;
+        extensionRequestHandlerResolver = null;
+        if (resolver != null) {
+            resolver.shutdown();
+            try {
+                resolver.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private IRESTRequestHandler resolveExtensionRequestHandler(
+            final String extensionName) {
+        ExecutorService resolver = extensionRequestHandlerResolver;
+        if (resolver == null) {
+            throw new ServerObjectExtensionException(
+                    "Server object extension is not constructed.");
+        }
+        try {
+            return resolver.submit(new Callable<IRESTRequestHandler>() {
+                @Override
+                public IRESTRequestHandler call() throws Exception {
+                    IServerObjectExtension extension = serverContext
+                            .getServerObjectExtension(extensionName);
+                    if (extension != null && TypeChecker.instanceOf(extension,
+                            IRESTRequestHandler.class)) {
+                        return new IRESTRequestHandlerProxy(extension);
+                    }
+                    return null;
+                }
+            }).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ServerObjectExtensionException(
+                    "Interrupted while finding REST request handler.", ex);
+        } catch (ExecutionException ex) {
+            throw new ServerObjectExtensionException(
+                    "Failed to find REST request handler.", ex.getCause());
+        }
+    }
+
+    private static ExecutorService createExtensionRequestHandlerResolver() {
+        return Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Cleaner.trackObjectsInCurrentThread();
+                        try {
+                            runnable.run();
+                        } finally {
+                            Cleaner.releaseAllInCurrentThread();
+                        }
+                    }
+                }, "rest-request-handler-resolver");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    private IRESTRequestHandler createServerObjectRequestHandler()
+            throws IOException {
+        IServerObject serverObject = serverContext.getServerObject();
+        if (TypeChecker.instanceOf(serverObject, IRESTRequestHandler.class)) {
+            return new IRESTRequestHandlerProxy(serverObject);
+        }
+        return null;
+    }
+
     protected byte[] handleError(Throwable t) throws IOException {
         Integer code = null;
         String message = null;
@@ -375,65 +561,33 @@ public abstract class AbstractRestServerObjectExtension implements
         return JSONConverter.toByteArray(errorJSON);
     }
 
-    private static final SecurityContext createSecurityContext(
+    private SecurityContext createSecurityContext(
             ServerObjectExtensionContext serverContext) {
-        final String userName;
-        final Set<String> userRoles;
         try {
             IServerEnvironment2 serverEnvironment = (IServerEnvironment2) serverContext
                     .getServerEnvironment();
-            IServerUserInfo userInfo = serverEnvironment.getUserInfo();
-            userName = "".equals(userInfo.getName()) ? "cpiepel" : userInfo.getName();
-
-            Set<String> roleSet = new HashSet<String>();
-            IEnumBSTR roles = userInfo.getRoles();
-            if (roles != null) {
-                roles.reset();
-                String role = roles.next();
-                while (!("".equals(role))) {
-                    roleSet.add(role);
-                    role = roles.next();
-                }
-            }
-            userRoles = Collections.unmodifiableSet(roleSet);
+            final IServerUserInfo userInfo = serverEnvironment.getUserInfo();
+            String userName = "".equals(userInfo.getName()) ? "cpiepel" : userInfo.getName();
+            return userRoleCache.getSecurityContext(userName,
+                    new UserRoleCache.RoleReader() {
+                        @Override
+                        public Collection<String> readRoles() throws IOException {
+                            List<String> roleList = new ArrayList<String>();
+                            IEnumBSTR roles = userInfo.getRoles();
+                            if (roles != null) {
+                                roles.reset();
+                                String role = roles.next();
+                                while (!("".equals(role))) {
+                                    roleList.add(role);
+                                    role = roles.next();
+                                }
+                            }
+                            return roleList;
+                        }
+                    });
         } catch (IOException ex) {
             throw new ArcObjectsInteropException(
                     "Failed to read server user info.");
         }
-
-        final Principal principal = new Principal() {
-
-            @Override
-            public String getName() {
-                return userName;
-            }
-
-            @Override
-            public String toString() {
-                return "Principal [name=" + userName + "]";
-            }
-
-        };
-
-        return new SecurityContext() {
-
-            @Override
-            public Set<String> getUserRoles() {
-                return userRoles;
-            }
-
-            @Override
-            public Principal getUserPrincipal() {
-                return principal;
-            }
-
-            @Override
-            public String toString() {
-                return "Principal [principal=" + principal + ", userRoles="
-                        + userRoles + "]";
-
-            }
-
-        };
     }
 }
\ No newline at end of file
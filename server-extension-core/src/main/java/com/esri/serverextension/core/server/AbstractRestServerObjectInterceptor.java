@@ -22,12 +22,18 @@ import com.esri.arcgis.system.IWebRequestHandler;
 import com.esri.serverextension.core.rest.json.JSONConverter;
 
 import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 @SuppressWarnings("serial")
 public abstract class AbstractRestServerObjectInterceptor extends
         AbstractRestServerObjectExtension implements IRequestHandler,
         IRequestHandler2, IWebRequestHandler {
 
+    // the schemas of the server object and its extensions do not change
+    // while the interceptor is running, keyed by extension name
+    private final ConcurrentMap<String, String> schemas = new ConcurrentHashMap<String, String>();
+
     public AbstractRestServerObjectInterceptor() {
         super();
     }
@@ -47,9 +53,21 @@ public abstract class AbstractRestServerObjectInterceptor extends
         getLogger().debug("Handling request for REST schema.");
 
         try {
+            Object extensionName = getServerContext().getServerProperty(
+                    "ExtensionName");
+            String schemaKey = extensionName != null ? extensionName
+                    .toString() : "";
+            String schema = schemas.get(schemaKey);
+            if (schema != null) {
+                return schema;
+            }
             IRESTRequestHandler restRequestHandler = findRestRequestHandlerDelegate();
             if (restRequestHandler != null) {
-                return restRequestHandler.getSchema();
+                schema = restRequestHandler.getSchema();
+                if (schema != null) {
+                    schemas.putIfAbsent(schemaKey, schema);
+                }
+                return schema;
             }
 
             getLogger()
@@ -72,6 +90,12 @@ public abstract class AbstractRestServerObjectInterceptor extends
         }
     }
 
+    @Override
+    void releaseRequestHandlers() {
+        super.releaseRequestHandlers();
+        schemas.clear();
+    }
+
     @Override
     public byte[] handleBinaryRequest(byte[] request) throws IOException,
             AutomationException {
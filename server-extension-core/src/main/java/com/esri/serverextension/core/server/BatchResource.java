@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.server;
+
+import com.esri.serverextension.core.metrics.MetricsRegistry;
+import com.esri.serverextension.core.rest.api.ArcGISServiceException;
+import com.esri.serverextension.core.rest.api.ErrorObject;
+import com.esri.serverextension.core.server.internal.UriPath;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Built-in resource executing many requests in one REST call. The
+ * <code>requests</code> parameter is an array of objects having a
+ * <code>resource</code>, an <code>operation</code> and an
+ * <code>operationInput</code>. The requests are dispatched in order through
+ * the {@link RestDelegateMappings}, sharing the security context and server
+ * context of the batch request, and their responses are written to a JSON
+ * array as they complete. A failed request does not fail the batch; its
+ * response is an error object, as is the response of a request which is not
+ * JSON, e.g. an image.
+ * <p>
+ * The resource only exists if the <code>batchEnabled</code> property is
+ * <code>true</code>. At most <code>batchMaximumRequests</code> (50) requests
+ * are accepted per batch.
+ */
+@Conditional(BatchResource.Enabled.class)
+public class BatchResource {
+
+    private static final String BATCH_PATH = "/batch";
+    private static final int UTF8_BOM_LENGTH = 3;
+
+    private final Logger logger = LoggerFactory.getLogger(BatchResource.class);
+
+    private final RestDelegateMappings delegateMappings;
+    private final MetricsRegistry metricsRegistry;
+    private final ObjectMapper objectMapper;
+    private final int maximumRequests;
+
+    @Inject
+    public BatchResource(RestDelegateMappings delegateMappings,
+                         MetricsRegistry metricsRegistry, ObjectMapper objectMapper,
+                         @Value("${batchMaximumRequests:50}") int maximumRequests) {
+        this.delegateMappings = delegateMappings;
+        this.metricsRegistry = metricsRegistry;
+        this.objectMapper = objectMapper;
+        this.maximumRequests = maximumRequests;
+    }
+
+    @RequestMapping(BATCH_PATH)
+    public RestResponse batch(RestRequest request, RestDelegate handler)
+            throws IOException {
+        JsonNode requests = request.getOperationInputTree(objectMapper).get(
+                "requests");
+        if (requests == null || !requests.isArray()) {
+            throw new ArcGISServiceException(400,
+                    "Parameter 'requests' must be an array.", null);
+        }
+        if (requests.size() > maximumRequests) {
+            throw new ArcGISServiceException(400, String.format(
+                    "A batch must not have more than %1$d requests.",
+                    maximumRequests), null);
+        }
+        ByteArrayBuilder buffer = new ByteArrayBuilder();
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(
+                buffer, JsonEncoding.UTF8);
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("responses");
+        for (JsonNode item : requests) {
+            String resourceName = getText(item, "resource");
+            String operationName = getText(item, "operation");
+            JsonNode operationInput = item.get("operationInput");
+            RestRequest itemRequest = RestRequest.create(
+                    request.getCapabilities(), resourceName, operationName,
+                    operationInput == null || operationInput.isNull() ? "{}"
+                            : operationInput.isTextual() ? operationInput
+                            .asText() : operationInput.toString(),
+                    request.getOutputFormat(), request.getRequestProperties(),
+                    request);
+            generator.writeStartObject();
+            if (resourceName != null) {
+                generator.writeStringField("resource", resourceName);
+            }
+            if (operationName != null) {
+                generator.writeStringField("operation", operationName);
+            }
+            writeResponse(itemRequest, handler, generator);
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.close();
+        byte[] body = buffer.toByteArray();
+        buffer.release();
+        return RestResponse.fromGeneratedBody(null, body);
+    }
+
+    private void writeResponse(RestRequest request, RestDelegate handler,
+                               JsonGenerator generator) throws IOException {
+        long startTime = System.nanoTime();
+        String path = new UriPath(request).getPath();
+        String route = null;
+        boolean failed = true;
+        try {
+            byte[] body;
+            try {
+                RestDelegateMatch match = delegateMappings.findMatch(path);
+                if (match == null || BATCH_PATH.equals(match.getPathTemplate())) {
+                    throw new ArcGISServiceException(404, String.format(
+                            "The resource/operation %1$s does not exist "
+                                    + "or access is forbidden.", path), null);
+                }
+                route = match.getPathTemplate();
+                request.setUriTemplateVariables(match.getUriVariables());
+                RestResponse response = match.getDelegate().process(request,
+                        handler);
+                body = response != null ? response.getResponseBody() : null;
+                if (body != null && body.length > 0 && !isJson(body)) {
+                    throw new ArcGISServiceException(400, String.format(
+                            "The response of %1$s is not JSON and cannot "
+                                    + "be part of a batch.", path), null);
+                }
+                failed = false;
+            } catch (RuntimeException ex) {
+                logger.debug("Failed to handle batch request for path '{}'.",
+                        path, ex);
+                if (route != null && RequestTimeoutException.isCauseOf(ex)) {
+                    metricsRegistry.getRouteMetrics(route).recordTimeout();
+                }
+                generator.writeFieldName("error");
+                generator.writeObject(createError(ex));
+                return;
+            }
+            generator.writeFieldName("response");
+            if (body == null || body.length == 0) {
+                generator.writeNull();
+            } else {
+                int offset = hasByteOrderMark(body) ? UTF8_BOM_LENGTH : 0;
+                generator.writeRawValue(new String(body, offset,
+                        body.length - offset, StandardCharsets.UTF_8));
+            }
+        } finally {
+            if (route != null) {
+                metricsRegistry.record(route, request.getTimings(),
+                        System.nanoTime() - startTime, failed);
+            }
+        }
+    }
+
+    /**
+     * Returns whether a body is exactly one JSON value, so it can be embedded
+     * in the batch response without corrupting it.
+     */
+    private boolean isJson(byte[] body) throws IOException {
+        JsonParser parser = objectMapper.getFactory().createParser(body);
+        try {
+            if (parser.nextToken() == null) {
+                return false;
+            }
+            parser.skipChildren();
+            return parser.nextToken() == null;
+        } catch (JsonProcessingException ex) {
+            return false;
+        } finally {
+            parser.close();
+        }
+    }
+
+    private static boolean hasByteOrderMark(byte[] body) {
+        return body.length >= UTF8_BOM_LENGTH && (body[0] & 0xff) == 0xef
+                && (body[1] & 0xff) == 0xbb && (body[2] & 0xff) == 0xbf;
+    }
+
+    private static ErrorObject createError(Throwable t) {
+        Throwable root = t;
+        while (root.getCause() != null) {
+            root = root.getCause();
+        }
+        if (root instanceof ArcGISServiceException) {
+            ArcGISServiceException ex = (ArcGISServiceException) root;
+            return new ErrorObject(ex.getCode() != null ? ex.getCode() : 500,
+                    ex.getCauseMessage(), ex.getDetails());
+        }
+        return new ErrorObject(500, StringUtils.isEmpty(root.getMessage())
+                ? "Internal Server Error" : root.getMessage(), new String[0]);
+    }
+
+    private static String getText(JsonNode item, String fieldName) {
+        JsonNode value = item.get(fieldName);
+        return value != null && !value.isNull() ? value.asText() : null;
+    }
+
+    static final class Enabled implements Condition {
+
+        @Override
+        public boolean matches(ConditionContext context,
+                               AnnotatedTypeMetadata metadata) {
+            return context.getEnvironment().getProperty("batchEnabled",
+                    Boolean.class, Boolean.FALSE);
+        }
+    }
+}
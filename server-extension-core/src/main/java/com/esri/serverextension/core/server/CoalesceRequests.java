@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.server;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a delegate method whose concurrent identical requests are executed
+ * once. Requests arriving while an equal request is being processed wait for
+ * it and return its response instead of repeating the work. Requests are
+ * equal if they have the same path, operation input and output format and,
+ * depending on the {@link #scope()}, the same user.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface CoalesceRequests {
+
+    Scope scope() default Scope.USER;
+
+    enum Scope {
+
+        /**
+         * Only requests of the same user with the same roles are coalesced.
+         */
+        USER,
+
+        /**
+         * Requests of all users are coalesced, which requires responses not
+         * to depend on the user.
+         */
+        SERVICE
+    }
+}
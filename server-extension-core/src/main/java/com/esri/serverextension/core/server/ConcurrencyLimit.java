@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.server;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of concurrent requests of a delegate method. All delegate
+ * methods of a {@link #lane()} share one limit, so expensive requests cannot
+ * take the capacity reserved for cheap ones. The limit adapts to the observed
+ * latency: it grows while the recent average latency stays close to the
+ * long-term average and shrinks when it rises or requests time out. Requests
+ * over the limit wait in the queue of the lane and are rejected with status
+ * 429 when they cannot be admitted in time.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface ConcurrencyLimit {
+
+    Lane lane() default Lane.LIGHT;
+
+    enum Lane {
+
+        /**
+         * Cheap requests, e.g. metadata, which are admitted generously and
+         * may wait up to a second.
+         */
+        LIGHT(16, 256, 1000),
+
+        /**
+         * Expensive requests, e.g. queries, which start with a low limit and
+         * are rejected quickly.
+         */
+        HEAVY(4, 32, 100);
+
+        private final int initialLimit;
+        private final int maximumLimit;
+        private final long maximumQueueTimeMillis;
+
+        Lane(int initialLimit, int maximumLimit, long maximumQueueTimeMillis) {
+            this.initialLimit = initialLimit;
+            this.maximumLimit = maximumLimit;
+            this.maximumQueueTimeMillis = maximumQueueTimeMillis;
+        }
+
+        public int getInitialLimit() {
+            return initialLimit;
+        }
+
+        public int getMaximumLimit() {
+            return maximumLimit;
+        }
+
+        public long getMaximumQueueTime(TimeUnit unit) {
+            return unit.convert(maximumQueueTimeMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+}
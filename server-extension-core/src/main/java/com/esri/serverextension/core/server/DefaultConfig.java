@@ -14,42 +14,88 @@
 
 package com.esri.serverextension.core.server;
 
+import com.esri.serverextension.core.cache.ResponseCache;
+import com.esri.serverextension.core.metrics.MetricsRegistry;
+import com.esri.serverextension.core.metrics.MetricsResource;
 import com.esri.serverextension.core.rest.support.jackson.ObjectMapperFactory;
+import com.esri.serverextension.core.security.UserRoleCache;
 import com.esri.serverextension.core.server.internal.RestDelegateMappingRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
 import org.springframework.core.env.Environment;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * The default beans of an extension. The built-in resources are imported
+ * rather than component scanned, so they are found even when the extension
+ * ships a Spring candidate component index that does not list them.
+ */
 @Configuration
 @ComponentScan("com.esri.serverextension.core")
+@Import({BatchResource.class, MetricsResource.class})
 public class DefaultConfig {
 
     @Inject
     private Environment env;
-    private final ObjectMapper objectMapper;
+    @Inject
+    private ApplicationContext applicationContext;
 
     public DefaultConfig() {
-        objectMapper = new ObjectMapperFactory().create();
     }
 
+    /**
+     * Returns the object mapper of the shared parent context, if any, so
+     * extension instances share its serializer caches.
+     */
     @Bean
     @Singleton
     public ObjectMapper objectMapper() {
-        return objectMapper;
+        ApplicationContext parent = applicationContext.getParent();
+        if (parent != null && parent.containsBean("objectMapper")) {
+            return parent.getBean("objectMapper", ObjectMapper.class);
+        }
+        return new ObjectMapperFactory().create();
     }
 
     @Bean
     @Singleton
     public RestDelegateMappings delegateMappings() {
         RestDelegateMappingRegistry registry = new RestDelegateMappingRegistry(
-                objectMapper);
+                objectMapper());
         registry.configureDefaultArgumentResolvers();
         registry.configureDefaultReturnValueHandlers();
+        registry.setResponseCache(responseCache());
+        registry.setMetricsRegistry(metricsRegistry());
         return registry;
     }
+
+    @Bean
+    @Singleton
+    public MetricsRegistry metricsRegistry() {
+        return new MetricsRegistry();
+    }
+
+    @Bean
+    @Singleton
+    public UserRoleCache userRoleCache() {
+        return new UserRoleCache(env.getProperty("userRoleCacheMaximumSize",
+                Integer.class, 4096), env.getProperty(
+                "userRoleCacheTimeToLiveSeconds", Long.class, 300L),
+                TimeUnit.SECONDS, metricsRegistry().getCacheMetrics("userRoles"));
+    }
+
+    @Bean
+    @Singleton
+    public ResponseCache responseCache() {
+        return new ResponseCache(env.getProperty(
+                "responseCacheMaximumSizeInMegabytes", Long.class, 64L) * 1024 * 1024,
+                metricsRegistry().getCacheMetrics("responses"));
+    }
 }
@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+
+package com.esri.serverextension.core.server;
+
+import com.esri.arcgis.system.Cleaner;
+import com.esri.serverextension.core.metrics.MetricsRegistry;
+import com.esri.serverextension.core.security.SecurityContext;
+import com.esri.serverextension.core.server.internal.RestDelegateMappingRegistry;
+import com.esri.serverextension.core.server.internal.UriPath;
+import com.esri.serverextension.core.util.StopWatch;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warms up an extension at the end of construction, so the first requests
+ * after a SOC recycle do not pay for lazily created Jackson serializers, cold
+ * ArcObjects converters and interpreted delegate methods.
+ * <p>
+ * The serializers of the parameter and return types of all delegate methods
+ * are prepared on the thread constructing the extension. Sample requests are
+ * processed afterwards on a worker thread, so they do not delay construction.
+ * They are processed <code>warmUpIterations</code> (3) times, until the
+ * <code>warmUpTimeBudgetSeconds</code> (10) are spent: a request with an
+ * empty operation input for each {@link CacheableResponse} route without URI
+ * template variables, and the recorded requests of the JSON resources found at
+ * <code>warmUpRequestsLocation</code>, which have the format of a
+ * {@link BatchResource} input. Sample requests run as an anonymous user,
+ * cannot be forwarded to the server object and are not recorded in the route
+ * metrics. Their responses are cached like the responses of any anonymous
+ * request, so later iterations of cacheable routes are answered from the
+ * cache.
+ * <p>
+ * Like a request, every sample request releases the ArcObjects it created
+ * when it is complete. Setting <code>warmUpEnabled</code> to
+ * <code>false</code> disables warm-up.
+ */
+final class DelegateWarmUp implements Runnable {
+
+    static final String DEFAULT_REQUESTS_LOCATION = "classpath*:META-INF/server-extension/warm-up.json";
+
+    private static final SecurityContext ANONYMOUS = new SecurityContext() {
+
+        private final Principal principal = new Principal() {
+            @Override
+            public String getName() {
+                return "";
+            }
+        };
+
+        @Override
+        public Set<String> getUserRoles() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public Principal getUserPrincipal() {
+            return principal;
+        }
+    };
+
+    private static final RestDelegate FORWARDING_REFUSED = new RestDelegate() {
+        @Override
+        public RestResponse process(RestRequest request, RestDelegate handler) {
+            throw new ServerObjectExtensionException(
+                    "Warm-up requests cannot be forwarded to the server object.");
+        }
+    };
+
+    private final Logger logger = LoggerFactory.getLogger(DelegateWarmUp.class);
+
+    private final ApplicationContext applicationContext;
+    private final ServerObjectExtensionContext serverContext;
+    private final RestDelegateMappings delegateMappings;
+    private final ObjectMapper objectMapper;
+    private final List<JsonNode> samples = new ArrayList<JsonNode>();
+    private StopWatch timer;
+    private long budgetNanos;
+    private int iterations;
+    private int types;
+    private volatile boolean stopped;
+    private Thread thread;
+
+    DelegateWarmUp(ApplicationContext applicationContext,
+                   ServerObjectExtensionContext serverContext) {
+        this.applicationContext = applicationContext;
+        this.serverContext = serverContext;
+        this.delegateMappings = applicationContext.getBean("delegateMappings",
+                RestDelegateMappings.class);
+        this.objectMapper = applicationContext.getBean("objectMapper",
+                ObjectMapper.class);
+    }
+
+    /**
+     * Prepares the serializers and starts processing the sample requests on a
+     * worker thread.
+     */
+    void start() {
+        Environment environment = applicationContext.getEnvironment();
+        if (!environment.getProperty("warmUpEnabled", Boolean.class,
+                Boolean.TRUE)) {
+            return;
+        }
+        timer = StopWatch.createAndStart();
+        budgetNanos = TimeUnit.SECONDS.toNanos(environment.getProperty(
+                "warmUpTimeBudgetSeconds", Long.class, 10L));
+        iterations = environment.getProperty("warmUpIterations",
+                Integer.class, 3);
+        if (delegateMappings instanceof RestDelegateMappingRegistry) {
+            RestDelegateMappingRegistry registry = (RestDelegateMappingRegistry) delegateMappings;
+            types = registry.prepareSerializers();
+            for (String path : registry.getCacheablePaths()) {
+                samples.add(objectMapper.createObjectNode().put("resource",
+                        path.substring(1)));
+            }
+        }
+        samples.addAll(readSamples(environment.getProperty(
+                "warmUpRequestsLocation", DEFAULT_REQUESTS_LOCATION)));
+        if (iterations <= 0 || samples.isEmpty()) {
+            complete(0, 0);
+            return;
+        }
+        thread = new Thread(this, "warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops processing sample requests and waits for the current one to
+     * complete, at most for the time budget.
+     */
+    void stop() {
+        stopped = true;
+        if (thread != null) {
+            try {
+                thread.join(TimeUnit.NANOSECONDS.toMillis(budgetNanos));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        int requests = 0;
+        int failures = 0;
+        long endTime = System.nanoTime() + budgetNanos;
+        warmUp:
+        for (int i = 0; i < iterations; i++) {
+            for (JsonNode sample : samples) {
+                if (stopped) {
+                    break warmUp;
+                }
+                long remainingNanos = endTime - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    logger.info("Warm-up time budget of {} second(s) exhausted.",
+                            TimeUnit.NANOSECONDS.toSeconds(budgetNanos));
+                    break warmUp;
+                }
+                requests++;
+                if (!process(sample, remainingNanos)) {
+                    failures++;
+                }
+            }
+        }
+        complete(requests, failures);
+    }
+
+    private void complete(int requests, int failures) {
+        timer.stop();
+        if (stopped) {
+            logger.info("Warm-up stopped after {} request(s).", requests);
+            return;
+        }
+        applicationContext.getBean("metricsRegistry", MetricsRegistry.class)
+                .recordWarmUp(timer.elapsedTimeNanos(), types, requests,
+                        failures);
+        logger.info("Warmed up serializers of {} type(s) and {} request(s) "
+                        + "({} failed) in {} second(s).", types, requests,
+                failures, timer.elapsedTimeSeconds());
+    }
+
+    private boolean process(JsonNode sample, long remainingNanos) {
+        String resourceName = getText(sample, "resource");
+        String operationName = getText(sample, "operation");
+        JsonNode operationInput = sample.get("operationInput");
+        RestRequest request = new RestRequest("", resourceName, operationName,
+                operationInput == null || operationInput.isNull() ? "{}"
+                        : operationInput.isTextual() ? operationInput.asText()
+                        : operationInput.toString(), "json", "{}",
+                serverContext, ANONYMOUS);
+        request.setDeadline(RequestDeadline.after(remainingNanos,
+                TimeUnit.NANOSECONDS));
+        String path = new UriPath(request).getPath();
+        try {
+            Cleaner.trackObjectsInCurrentThread();
+            RequestDeadline.setCurrent(request.getDeadline());
+            RestDelegateMatch match = delegateMappings.findMatch(path);
+            if (match == null) {
+                logger.warn("Cannot find delegate for warm-up path '{}'.", path);
+                return false;
+            }
+            request.setUriTemplateVariables(match.getUriVariables());
+            RestResponse response = match.getDelegate().process(request,
+                    FORWARDING_REFUSED);
+            if (response != null) {
+                response.getResponseBody();
+            }
+            return true;
+        } catch (RuntimeException ex) {
+            logger.debug("Failed to process warm-up request for path '{}'.",
+                    path, ex);
+            return false;
+        } finally {
+            RequestDeadline.setCurrent(null);
+            Cleaner.releaseAllInCurrentThread();
+        }
+    }
+
+    private List<JsonNode> readSamples(String location) {
+        List<JsonNode> samples = new ArrayList<JsonNode>();
+        try {
+            for (Resource resource : applicationContext.getResources(location)) {
+                InputStream in = resource.getInputStream();
+                try {
+                    JsonNode requests = objectMapper.readTree(in).get("requests");
+                    if (requests == null || !requests.isArray()) {
+                        logger.warn("Ignoring warm-up requests without "
+                                + "'requests' array: {}", resource);
+                        continue;
+                    }
+                    for (JsonNode sample : requests) {
+                        samples.add(sample);
+                    }
+                } finally {
+                    in.close();
+                }
+            }
+        } catch (IOException ex) {
+            logger.warn(String.format("Failed to read warm-up requests: %1$s",
+                    location), ex);
+        }
+        return samples;
+    }
+
+    private static String getText(JsonNode sample, String fieldName) {
+        JsonNode value = sample.get(fieldName);
+        return value != null && !value.isNull() ? value.asText() : null;
+    }
+}
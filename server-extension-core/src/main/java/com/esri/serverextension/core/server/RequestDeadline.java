@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.server;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The point in time by which a request must be handled. The deadline of the
+ * request being handled is also bound to the handling thread, so long-running
+ * loops such as reading a cursor can call {@link #checkCurrent()}
+ * periodically and abort with a {@link RequestTimeoutException} once the
+ * client has given up.
+ */
+public final class RequestDeadline {
+
+    /**
+     * The number of rows read from a cursor between deadline checks.
+     */
+    public static final int CHECK_INTERVAL = 256;
+
+    private static final ThreadLocal<RequestDeadline> CURRENT = new ThreadLocal<RequestDeadline>();
+
+    private final long deadlineNanos;
+    private final long timeoutMillis;
+
+    private RequestDeadline(long deadlineNanos, long timeoutMillis) {
+        this.deadlineNanos = deadlineNanos;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public static RequestDeadline after(long timeout, TimeUnit unit) {
+        return new RequestDeadline(System.nanoTime() + unit.toNanos(timeout),
+                unit.toMillis(timeout));
+    }
+
+    /**
+     * Returns the deadline of the request handled by the current thread.
+     *
+     * @return the deadline, or <code>null</code> if there is none
+     */
+    public static RequestDeadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Binds a deadline to the current thread, or unbinds it if
+     * <code>null</code>.
+     */
+    public static void setCurrent(RequestDeadline deadline) {
+        if (deadline != null) {
+            CURRENT.set(deadline);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * Throws a {@link RequestTimeoutException} if the deadline of the request
+     * handled by the current thread has passed.
+     */
+    public static void checkCurrent() {
+        RequestDeadline deadline = CURRENT.get();
+        if (deadline != null) {
+            deadline.check();
+        }
+    }
+
+    /**
+     * Returns the earlier of two deadlines, either of which may be
+     * <code>null</code>.
+     */
+    public static RequestDeadline earliest(RequestDeadline a, RequestDeadline b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        return a.deadlineNanos - b.deadlineNanos <= 0 ? a : b;
+    }
+
+    public boolean isExpired() {
+        return deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    public long getRemaining(TimeUnit unit) {
+        return unit.convert(Math.max(0L, deadlineNanos - System.nanoTime()),
+                TimeUnit.NANOSECONDS);
+    }
+
+    public void check() {
+        if (isExpired()) {
+            throw new RequestTimeoutException(String.format(
+                    "The request did not complete within %1$d ms.",
+                    timeoutMillis));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RequestDeadline [timeoutMillis=" + timeoutMillis
+                + ", remainingMillis=" + getRemaining(TimeUnit.MILLISECONDS)
+                + "]";
+    }
+}
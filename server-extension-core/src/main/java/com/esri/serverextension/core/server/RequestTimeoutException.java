@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.server;
+
+import com.esri.serverextension.core.rest.api.ArcGISServiceException;
+
+/**
+ * Thrown when a request is aborted because its {@link RequestDeadline} has
+ * passed.
+ */
+public class RequestTimeoutException extends ArcGISServiceException {
+
+    private static final long serialVersionUID = 1L;
+
+    public RequestTimeoutException(String causeMessage) {
+        super(504, causeMessage, null);
+    }
+
+    /**
+     * Returns whether a request timeout caused an exception.
+     */
+    public static boolean isCauseOf(Throwable t) {
+        for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RequestTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
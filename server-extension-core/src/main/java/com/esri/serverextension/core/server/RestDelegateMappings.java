@@ -29,4 +29,6 @@ public interface RestDelegateMappings {
                           int priority);
 
     RestDelegate getMatchingDelegate(String path);
+
+    RestDelegateMatch findMatch(String path);
 }
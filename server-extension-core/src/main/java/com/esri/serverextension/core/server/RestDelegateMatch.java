@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.server;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Result of routing a request path: the matching delegate, the template it
+ * was registered with and the URI template variables extracted from the path.
+ */
+public final class RestDelegateMatch {
+
+    private final String pathTemplate;
+    private final RestDelegate delegate;
+    private final Map<String, String> uriVariables;
+
+    public RestDelegateMatch(String pathTemplate, RestDelegate delegate,
+                             Map<String, String> uriVariables) {
+        if (delegate == null) {
+            throw new NullPointerException(
+                    "Argument 'delegate' is required.");
+        }
+        this.pathTemplate = pathTemplate;
+        this.delegate = delegate;
+        this.uriVariables = uriVariables != null ? Collections
+                .unmodifiableMap(uriVariables) : Collections
+                .<String, String>emptyMap();
+    }
+
+    public String getPathTemplate() {
+        return pathTemplate;
+    }
+
+    public RestDelegate getDelegate() {
+        return delegate;
+    }
+
+    public Map<String, String> getUriVariables() {
+        return uriVariables;
+    }
+
+    @Override
+    public String toString() {
+        return "RestDelegateMatch [pathTemplate=" + pathTemplate
+                + ", delegate=" + delegate + ", uriVariables="
+                + uriVariables + "]";
+    }
+}
@@ -14,8 +14,13 @@
 
 package com.esri.serverextension.core.server;
 
+import com.esri.serverextension.core.metrics.RequestTimings;
 import com.esri.serverextension.core.security.SecurityContext;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.lang3.StringUtils;
 
+import java.io.IOException;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -23,6 +28,8 @@ import java.util.Map;
 
 public final class RestRequest {
 
+    private static final Object REMOVED = new Object();
+
     private String capabilities;
     private String resourceName;
     private String operationName;
@@ -31,7 +38,13 @@ public final class RestRequest {
     private String requestProperties;
     private SecurityContext securityContext;
     private ServerObjectExtensionContext serverContext;
-    private Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+    // attributes set, removed or read from the server properties during
+    // this request, overlaying the server properties of the request
+    private Map<String, Object> attributes;
+    private Map<String, String> uriTemplateVariables;
+    private JsonNode operationInputTree;
+    private RequestDeadline deadline;
+    private final RequestTimings timings = new RequestTimings();
 
     RestRequest(String capabilities, String resourceName, String operationName,
                 String operationInput, String outputFormat,
@@ -63,9 +76,11 @@ public final class RestRequest {
             throw new NullPointerException(
                     "Argument 'context' must not be null.");
         }
-        return new RestRequest(capabilities, resourceName, operationName,
-                operationInput, outputFormat, requestProperties,
+        RestRequest request = new RestRequest(capabilities, resourceName,
+                operationName, operationInput, outputFormat, requestProperties,
                 context.getServerContext(), context.getSecurityContext());
+        request.deadline = context.deadline;
+        return request;
     }
 
     public String getCapabilities() {
@@ -84,6 +99,24 @@ public final class RestRequest {
         return operationInput;
     }
 
+    /**
+     * Returns the operation input parsed into a JSON tree. The input is parsed
+     * on first access only, so all argument resolvers of a delegate bind from
+     * the same tree.
+     */
+    public JsonNode getOperationInputTree(ObjectMapper objectMapper)
+            throws IOException {
+        if (operationInputTree == null) {
+            JsonNode tree = null;
+            if (StringUtils.isNotBlank(operationInput)) {
+                tree = objectMapper.readTree(operationInput);
+            }
+            operationInputTree = tree != null ? tree : objectMapper
+                    .createObjectNode();
+        }
+        return operationInputTree;
+    }
+
     public String getOutputFormat() {
         return outputFormat;
     }
@@ -100,24 +133,87 @@ public final class RestRequest {
         return serverContext;
     }
 
+    public Map<String, String> getUriTemplateVariables() {
+        return uriTemplateVariables;
+    }
+
+    void setUriTemplateVariables(Map<String, String> uriTemplateVariables) {
+        this.uriTemplateVariables = uriTemplateVariables;
+    }
+
+    /**
+     * Returns the deadline of this request.
+     *
+     * @return the deadline, or <code>null</code> if the request may take as
+     * long as it needs
+     */
+    public RequestDeadline getDeadline() {
+        return deadline;
+    }
+
+    public void setDeadline(RequestDeadline deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * Returns the time spent in the phases of handling this request so far.
+     */
+    public RequestTimings getTimings() {
+        return timings;
+    }
+
     public void setAttribute(String name, Object o) {
-        attributes.put(name, o);
+        getLocalAttributes().put(name, o);
     }
 
+    /**
+     * Returns an attribute of this request. Unless it has been set or removed,
+     * the server property of the same name is returned.
+     */
     public Object getAttribute(String name) {
-        return attributes.get(name);
+        if (attributes != null && attributes.containsKey(name)) {
+            Object value = attributes.get(name);
+            return value != REMOVED ? value : null;
+        }
+        Object value = serverContext.getServerProperty(name);
+        getLocalAttributes().put(name, value);
+        return value;
     }
 
     public boolean removeAttribute(String name) {
-        return attributes.remove(name) != null;
+        boolean removed = getAttribute(name) != null;
+        getLocalAttributes().put(name, REMOVED);
+        return removed;
     }
 
     public Iterator<String> getAttributeNames() {
-        return Collections.unmodifiableSet(attributes.keySet()).iterator();
+        return getAttributes().keySet().iterator();
     }
 
+    /**
+     * Returns a copy of the attributes of this request, including the server
+     * properties.
+     */
     public Map<String, Object> getAttributes() {
-        return Collections.unmodifiableMap(attributes);
+        Map<String, Object> result = new LinkedHashMap<String, Object>(
+                serverContext.getServerProperties());
+        if (attributes != null) {
+            for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+                if (entry.getValue() == REMOVED) {
+                    result.remove(entry.getKey());
+                } else if (entry.getValue() != null) {
+                    result.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    private Map<String, Object> getLocalAttributes() {
+        if (attributes == null) {
+            attributes = new LinkedHashMap<String, Object>();
+        }
+        return attributes;
     }
 
     @Override
@@ -22,13 +22,33 @@ public final class RestResponse {
 
     private final String responseProperties;
     private final byte[] responseBody;
+    private final boolean copyOnRead;
 
     public RestResponse(String responseProperties, byte[] responseBody) {
+        this(responseProperties, responseBody, true);
+    }
+
+    private RestResponse(String responseProperties, byte[] responseBody,
+                         boolean copyOnRead) {
         this.responseProperties = responseProperties;
         this.responseBody = responseBody;
+        this.copyOnRead = copyOnRead;
+    }
+
+    /**
+     * Creates a response that takes ownership of a body generated for it, e.g.
+     * by a serializer. The body is handed out without defensive copies, so the
+     * caller must not modify the array afterwards.
+     */
+    public static RestResponse fromGeneratedBody(String responseProperties,
+                                                 byte[] responseBody) {
+        return new RestResponse(responseProperties, responseBody, false);
     }
 
     public byte[] getResponseBody() {
+        if (!copyOnRead) {
+            return responseBody;
+        }
         return responseBody != null ? Arrays.copyOf(responseBody,
                 responseBody.length) : null;
     }
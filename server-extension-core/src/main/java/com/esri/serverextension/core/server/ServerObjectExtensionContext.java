@@ -17,15 +17,29 @@ package com.esri.serverextension.core.server;
 import com.esri.arcgis.server.*;
 import com.esri.arcgis.system.*;
 import com.esri.serverextension.core.util.ArcObjectsInteropException;
+import com.esri.serverextension.core.util.ArcObjectsUtilities;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 
 import static com.esri.serverextension.core.util.ArcObjectsUtilities.toMap;
 
+/**
+ * Gives access to the server object and its environment. Once
+ * {@link #readServerObjectProperties()} has been called at construct time, the
+ * server object properties are served from an immutable snapshot. The server
+ * environment and its properties depend on the request being handled (e.g.
+ * the user or the name of the extension a request is addressed to), so they
+ * are looked up on the calling thread every time they are requested.
+ */
 public class ServerObjectExtensionContext {
 
+    private static final String SERVER_ENVIRONMENT_UID = "{32d4c328-e473-4615-922c-63c108f55e60}";
+
     private final IServerObjectHelper serverObjectHelper;
+    private volatile Map<String, Object> serverObjectProperties;
 
     ServerObjectExtensionContext(IServerObjectHelper serverObjectHelper) {
         if (serverObjectHelper == null) {
@@ -40,6 +54,15 @@ public class ServerObjectExtensionContext {
         return new ServerObjectExtensionContext(serverObjectHelper);
     }
 
+    /**
+     * Reads the server object properties once. They are part of the service
+     * configuration, which does not change while the extension is running.
+     */
+    void readServerObjectProperties() {
+        serverObjectProperties = Collections.unmodifiableMap(
+                new HashMap<String, Object>(lookupServerObjectProperties()));
+    }
+
     public IServerObjectHelper getServerObjectHelper() {
         return serverObjectHelper;
     }
@@ -54,22 +77,23 @@ public class ServerObjectExtensionContext {
     }
 
     public Map<String, Object> getServerObjectProperties() {
-        IPropertySet serverPropertySet;
-        try {
-            IServerObjectHelper2 helper = new IServerObjectHelper2Proxy(serverObjectHelper);
-            serverPropertySet = helper.getServerObjectProperty();
-        } catch (IOException ex) {
-            throw new ArcObjectsInteropException(
-                    "Failed to read server properties.", ex);
+        Map<String, Object> properties = serverObjectProperties;
+        if (properties != null) {
+            return properties;
         }
-        return toMap(serverPropertySet);
+        return lookupServerObjectProperties();
     }
 
+    /**
+     * Returns the server environment of the request handled by the calling
+     * thread. The environment is released at the end of the request, so it
+     * must not be kept beyond it.
+     */
     public IServerEnvironment getServerEnvironment() {
         try {
             EnvironmentManager envMgr = new EnvironmentManager();
             UID envUID = new UID();
-            envUID.setValue("{32d4c328-e473-4615-922c-63c108f55e60}");
+            envUID.setValue(SERVER_ENVIRONMENT_UID);
             IServerEnvironment serverEnvironment = new IServerEnvironment2Proxy(
                     envMgr.getEnvironment(envUID));
             Cleaner.release(envMgr);
@@ -80,11 +104,14 @@ public class ServerObjectExtensionContext {
         }
     }
 
+    /**
+     * Returns the server environment properties of the request handled by the
+     * calling thread.
+     */
     public Map<String, Object> getServerProperties() {
         IPropertySet serverPropertySet;
         try {
-            IServerEnvironment serverEnvironment = getServerEnvironment();
-            serverPropertySet = serverEnvironment.getProperties();
+            serverPropertySet = getServerEnvironment().getProperties();
         } catch (IOException ex) {
             throw new ArcObjectsInteropException(
                     "Failed to read server properties.", ex);
@@ -92,6 +119,20 @@ public class ServerObjectExtensionContext {
         return toMap(serverPropertySet);
     }
 
+    /**
+     * Returns a server environment property of the request handled by the
+     * calling thread.
+     */
+    public Object getServerProperty(String name) {
+        try {
+            return ArcObjectsUtilities.getProperty(getServerEnvironment()
+                    .getProperties(), name);
+        } catch (IOException ex) {
+            throw new ArcObjectsInteropException(String.format(
+                    "Failed to read server property '%1$s'.", name), ex);
+        }
+    }
+
     public IServerObjectExtension getServerObjectExtension(String name) {
         IServerObject serverObject;
         try {
@@ -127,4 +168,16 @@ public class ServerObjectExtensionContext {
         Map<String, Object> serverProperties = this.getServerObjectProperties();
         return (String) serverProperties.get("CfgType");
     }
+
+    private Map<String, Object> lookupServerObjectProperties() {
+        IPropertySet serverPropertySet;
+        try {
+            IServerObjectHelper2 helper = new IServerObjectHelper2Proxy(serverObjectHelper);
+            serverPropertySet = helper.getServerObjectProperty();
+        } catch (IOException ex) {
+            throw new ArcObjectsInteropException(
+                    "Failed to read server properties.", ex);
+        }
+        return toMap(serverPropertySet);
+    }
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.server;
+
+import com.esri.serverextension.core.rest.support.jackson.ObjectMapperFactory;
+import com.esri.serverextension.core.server.internal.RouteIndex;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * A parent application context shared by all extension instances loaded by
+ * the same class loader that enable the <code>sharedContextEnabled</code>
+ * property. It holds the stateless, thread-safe infrastructure: the
+ * {@link ObjectMapper} with its serializer caches and geometry codecs, and
+ * the resolved {@link RouteIndex}. The context is created by the first
+ * instance and closed when the last one shuts down.
+ */
+final class SharedApplicationContext {
+
+    private static final Logger logger = LoggerFactory
+            .getLogger(SharedApplicationContext.class);
+
+    private static AnnotationConfigApplicationContext context;
+    private static int references;
+
+    private SharedApplicationContext() {
+    }
+
+    static synchronized ApplicationContext acquire() {
+        if (context == null) {
+            logger.info("Creating shared application context.");
+            context = new AnnotationConfigApplicationContext(SharedConfig.class);
+        }
+        references++;
+        return context;
+    }
+
+    static synchronized void release() {
+        if (references > 0 && --references == 0) {
+            logger.info("Closing shared application context.");
+            context.close();
+            context = null;
+        }
+    }
+
+    /**
+     * The beans of the shared context, deliberately not annotated with
+     * <code>@Configuration</code> so the component scan of
+     * {@link DefaultConfig} does not pick them up.
+     */
+    static class SharedConfig {
+
+        @Bean
+        public ObjectMapper objectMapper() {
+            return new ObjectMapperFactory().create();
+        }
+
+        @Bean
+        public RouteIndex routeIndex(ApplicationContext applicationContext) {
+            return RouteIndex.read(applicationContext,
+                    applicationContext.getClassLoader());
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.server.internal;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A concurrency limit adjusted by additive increase and multiplicative
+ * decrease (AIMD), shared by all routes of a lane. Latencies are smoothed by
+ * two exponentially weighted moving averages: a short one following the last
+ * requests and a long one serving as the baseline, so single slow requests
+ * among cheap ones do not move the limit. The limit grows by one per limit's
+ * worth of requests while the short average stays within twice the baseline
+ * and the limit is actually used. It is cut by 10% when the short average
+ * rises above twice the baseline or a request times out, at most once per
+ * limit's worth of requests.
+ */
+final class AdaptiveConcurrencyLimiter {
+
+    private static final double BACKOFF_RATIO = 0.9d;
+    private static final double LATENCY_TOLERANCE = 2.0d;
+    // weights of the newest latency, i.e. about the last 20 and 500 requests
+    private static final double SHORT_SMOOTHING = 0.05d;
+    private static final double LONG_SMOOTHING = 0.002d;
+    private static final int MINIMUM_SAMPLES = 20;
+
+    private final int maximumLimit;
+    private double limit;
+    private int inFlight;
+    private double shortLatency;
+    private double longLatency;
+    private long samples;
+    private int samplesSinceBackoff;
+
+    AdaptiveConcurrencyLimiter(int initialLimit, int maximumLimit) {
+        if (initialLimit < 1 || maximumLimit < initialLimit) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid limits: %1$d, %2$d", initialLimit, maximumLimit));
+        }
+        this.limit = initialLimit;
+        this.maximumLimit = maximumLimit;
+    }
+
+    /**
+     * Admits a request, waiting for a running request to complete if the
+     * limit is reached.
+     *
+     * @return <code>false</code> if the request could not be admitted in time
+     */
+    synchronized boolean acquire(long timeout, TimeUnit unit)
+            throws InterruptedException {
+        if (inFlight >= (int) limit) {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            do {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            } while (inFlight >= (int) limit);
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Releases an admitted request and adjusts the limit to its latency.
+     *
+     * @param latencyNanos the latency of the request, or a negative value if
+     *                     it failed and must not affect the limit
+     */
+    synchronized void release(long latencyNanos) {
+        boolean limited = inFlight * 2 >= (int) limit;
+        inFlight--;
+        if (latencyNanos >= 0) {
+            samplesSinceBackoff++;
+            samples++;
+            // plain means until the averages have seen enough requests
+            shortLatency += Math.max(SHORT_SMOOTHING, 1.0d / samples)
+                    * (latencyNanos - shortLatency);
+            longLatency += Math.max(LONG_SMOOTHING, 1.0d / samples)
+                    * (latencyNanos - longLatency);
+            if (samples >= MINIMUM_SAMPLES
+                    && shortLatency > LATENCY_TOLERANCE * longLatency) {
+                backOff();
+            } else if (limited) {
+                limit = Math.min(maximumLimit, limit + 1.0d / limit);
+            }
+        }
+        notifyAll();
+    }
+
+    /**
+     * Releases an admitted request which timed out, which lowers the limit
+     * like a rising latency.
+     */
+    synchronized void releaseTimedOut() {
+        inFlight--;
+        samplesSinceBackoff++;
+        backOff();
+        notifyAll();
+    }
+
+    private void backOff() {
+        if (samplesSinceBackoff >= (int) limit) {
+            limit = Math.max(1.0d, limit * BACKOFF_RATIO);
+            samplesSinceBackoff = 0;
+        }
+    }
+
+    synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+}
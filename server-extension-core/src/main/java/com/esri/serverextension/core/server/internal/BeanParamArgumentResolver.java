@@ -36,7 +36,8 @@ public final class BeanParamArgumentResolver implements ArgumentResolver {
         BeanParam annotation = parameter
                 .getParameterAnnotation(BeanParam.class);
         if (annotation != null) {
-            return objectMapper.readValue(request.getOperationInput(), type);
+            return objectMapper.treeToValue(
+                    request.getOperationInputTree(objectMapper), type);
         }
         return null;
     }
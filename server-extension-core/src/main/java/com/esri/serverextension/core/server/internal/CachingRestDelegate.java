@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.server.internal;
+
+import com.esri.serverextension.core.cache.ResponseCache;
+import com.esri.serverextension.core.server.RestDelegate;
+import com.esri.serverextension.core.server.RestRequest;
+import com.esri.serverextension.core.server.RestResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Answers requests of a delegate from a {@link ResponseCache}. Responses are
+ * keyed by {@link RequestKeys#createKey(String, RestRequest, ObjectMapper,
+ * boolean)} including the user. Only responses returned by the delegate are
+ * cached; failed requests are not.
+ */
+public final class CachingRestDelegate implements RestDelegate {
+
+    private final RestDelegate delegate;
+    private final ResponseCache responseCache;
+    private final long timeToLiveSeconds;
+    private final ObjectMapper objectMapper;
+
+    public CachingRestDelegate(RestDelegate delegate,
+                               ResponseCache responseCache, long timeToLiveSeconds,
+                               ObjectMapper objectMapper) {
+        if (delegate == null) {
+            throw new NullPointerException("Argument 'delegate' is required.");
+        }
+        if (responseCache == null) {
+            throw new NullPointerException(
+                    "Argument 'responseCache' is required.");
+        }
+        if (objectMapper == null) {
+            throw new NullPointerException(
+                    "Argument 'objectMapper' is required.");
+        }
+        this.delegate = delegate;
+        this.responseCache = responseCache;
+        this.timeToLiveSeconds = timeToLiveSeconds;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public RestResponse process(RestRequest request, RestDelegate handler) {
+        String path = new UriPath(request).getPath();
+        String key = RequestKeys.createKey(path, request, objectMapper, true);
+        RestResponse response = responseCache.get(key);
+        if (response != null) {
+            return response;
+        }
+        response = delegate.process(request, handler);
+        if (response != null) {
+            responseCache.put(key, path, response, timeToLiveSeconds,
+                    TimeUnit.SECONDS);
+        }
+        return response;
+    }
+
+    @Override
+    public String toString() {
+        return "CachingRestDelegate [delegate=" + delegate
+                + ", timeToLiveSeconds=" + timeToLiveSeconds + "]";
+    }
+}
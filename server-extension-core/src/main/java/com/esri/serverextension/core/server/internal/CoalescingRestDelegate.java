@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.server.internal;
+
+import com.esri.serverextension.core.server.CoalesceRequests;
+import com.esri.serverextension.core.server.RequestDeadline;
+import com.esri.serverextension.core.server.RequestTimeoutException;
+import com.esri.serverextension.core.server.RestDelegate;
+import com.esri.serverextension.core.server.RestRequest;
+import com.esri.serverextension.core.server.RestResponse;
+import com.esri.serverextension.core.server.ServerObjectExtensionException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Executes concurrent identical requests of a delegate once. The first
+ * request processes the request on its own thread, and requests with the same
+ * key arriving meanwhile wait for its response, sharing the response body.
+ * Failures are passed to all waiting requests, except for a timeout of the
+ * first request, after which a waiting request with time left is processed
+ * again. Waiting requests give up when their own {@link RequestDeadline}
+ * passes. Requests arriving after the response is complete are processed
+ * again.
+ */
+public final class CoalescingRestDelegate implements RestDelegate {
+
+    private final Logger logger = LoggerFactory
+            .getLogger(CoalescingRestDelegate.class);
+
+    private final RestDelegate delegate;
+    private final CoalesceRequests.Scope scope;
+    private final ObjectMapper objectMapper;
+    private final ConcurrentMap<String, FutureTask<RestResponse>> inFlightRequests = new ConcurrentHashMap<>();
+
+    public CoalescingRestDelegate(RestDelegate delegate,
+                                  CoalesceRequests.Scope scope, ObjectMapper objectMapper) {
+        if (delegate == null) {
+            throw new NullPointerException("Argument 'delegate' is required.");
+        }
+        if (scope == null) {
+            throw new NullPointerException("Argument 'scope' is required.");
+        }
+        if (objectMapper == null) {
+            throw new NullPointerException(
+                    "Argument 'objectMapper' is required.");
+        }
+        this.delegate = delegate;
+        this.scope = scope;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public RestResponse process(final RestRequest request,
+                                final RestDelegate handler) {
+        String key = RequestKeys.createKey(new UriPath(request).getPath(),
+                request, objectMapper, scope == CoalesceRequests.Scope.USER);
+        FutureTask<RestResponse> task = new FutureTask<RestResponse>(
+                new Callable<RestResponse>() {
+                    @Override
+                    public RestResponse call() throws Exception {
+                        RestResponse response = delegate.process(request,
+                                handler);
+                        // hand out the same body to all waiting requests
+                        return response != null ? RestResponse
+                                .fromGeneratedBody(response
+                                        .getResponseProperties(), response
+                                        .getResponseBody()) : null;
+                    }
+                });
+        FutureTask<RestResponse> inFlightTask = inFlightRequests.putIfAbsent(
+                key, task);
+        if (inFlightTask == null) {
+            try {
+                task.run();
+            } finally {
+                inFlightRequests.remove(key, task);
+            }
+            return getResponse(task, null);
+        }
+        logger.debug("Waiting for in-flight request {}.", key);
+        RequestDeadline deadline = RequestDeadline.earliest(
+                request.getDeadline(), RequestDeadline.current());
+        try {
+            return getResponse(inFlightTask, deadline);
+        } catch (RequestTimeoutException ex) {
+            // the request waited for may have had a shorter deadline
+            if (deadline != null && deadline.isExpired()) {
+                throw ex;
+            }
+            logger.debug("In-flight request {} timed out, processing "
+                    + "request again.", key);
+            return process(request, handler);
+        }
+    }
+
+    /**
+     * Returns the number of requests being processed, for tests.
+     */
+    int getInFlightRequestCount() {
+        return inFlightRequests.size();
+    }
+
+    private static RestResponse getResponse(FutureTask<RestResponse> task,
+                                            RequestDeadline deadline) {
+        try {
+            if (deadline == null) {
+                return task.get();
+            }
+            return task.get(deadline.getRemaining(TimeUnit.NANOSECONDS),
+                    TimeUnit.NANOSECONDS);
+        } catch (TimeoutException ex) {
+            deadline.check();
+            throw new RequestTimeoutException(
+                    "The request timed out waiting for an in-flight request.");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ServerObjectExtensionException(
+                    "Interrupted while waiting for an in-flight request.", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new ServerObjectExtensionException(cause);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CoalescingRestDelegate [delegate=" + delegate + ", scope="
+                + scope + "]";
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.server.internal;
+
+import com.esri.serverextension.core.metrics.RequestPhase;
+import com.esri.serverextension.core.metrics.RouteMetrics;
+import com.esri.serverextension.core.rest.api.ArcGISServiceException;
+import com.esri.serverextension.core.server.ConcurrencyLimit;
+import com.esri.serverextension.core.server.RequestTimeoutException;
+import com.esri.serverextension.core.server.RestDelegate;
+import com.esri.serverextension.core.server.RestRequest;
+import com.esri.serverextension.core.server.RestResponse;
+import com.esri.serverextension.core.server.ServerObjectExtensionException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admits requests of a delegate through an {@link AdaptiveConcurrencyLimiter},
+ * usually the one shared by all delegates of the same lane. The time spent
+ * waiting for admission is recorded as {@link RequestPhase#QUEUEING}, and
+ * requests that are not admitted within the maximum queue time of the lane
+ * fail with status 429.
+ */
+public final class ConcurrencyLimitingRestDelegate implements RestDelegate {
+
+    private final RestDelegate delegate;
+    private final String path;
+    private final ConcurrencyLimit.Lane lane;
+    private final RouteMetrics routeMetrics;
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    /**
+     * @param routeMetrics the metrics of the route, or <code>null</code>
+     */
+    public ConcurrencyLimitingRestDelegate(RestDelegate delegate, String path,
+                                           ConcurrencyLimit.Lane lane, RouteMetrics routeMetrics) {
+        this(delegate, path, lane, lane != null ? new AdaptiveConcurrencyLimiter(
+                lane.getInitialLimit(), lane.getMaximumLimit()) : null,
+                routeMetrics);
+    }
+
+    /**
+     * @param limiter the limiter of the lane
+     * @param routeMetrics the metrics of the route, or <code>null</code>
+     */
+    ConcurrencyLimitingRestDelegate(RestDelegate delegate, String path,
+                                    ConcurrencyLimit.Lane lane, AdaptiveConcurrencyLimiter limiter,
+                                    RouteMetrics routeMetrics) {
+        if (delegate == null) {
+            throw new NullPointerException("Argument 'delegate' is required.");
+        }
+        if (lane == null) {
+            throw new NullPointerException("Argument 'lane' is required.");
+        }
+        if (limiter == null) {
+            throw new NullPointerException("Argument 'limiter' is required.");
+        }
+        this.delegate = delegate;
+        this.path = path;
+        this.lane = lane;
+        this.routeMetrics = routeMetrics;
+        this.limiter = limiter;
+        if (routeMetrics != null) {
+            routeMetrics.setConcurrencyLimit(limiter.getLimit());
+        }
+    }
+
+    @Override
+    public RestResponse process(RestRequest request, RestDelegate handler) {
+        long queueTime = System.nanoTime();
+        boolean admitted;
+        try {
+            admitted = limiter.acquire(
+                    lane.getMaximumQueueTime(TimeUnit.NANOSECONDS),
+                    TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ServerObjectExtensionException(
+                    "Interrupted while waiting for admission.", ex);
+        }
+        long startTime = System.nanoTime();
+        request.getTimings().add(RequestPhase.QUEUEING, startTime - queueTime);
+        if (!admitted) {
+            if (routeMetrics != null) {
+                routeMetrics.recordRejection();
+            }
+            throw new ArcGISServiceException(429, String.format(
+                    "Too many concurrent requests for %1$s, try again later.",
+                    path), null);
+        }
+        long latency = -1L;
+        boolean timedOut = false;
+        try {
+            RestResponse response = delegate.process(request, handler);
+            latency = System.nanoTime() - startTime;
+            return response;
+        } catch (RuntimeException ex) {
+            timedOut = RequestTimeoutException.isCauseOf(ex);
+            throw ex;
+        } finally {
+            if (timedOut) {
+                limiter.releaseTimedOut();
+            } else {
+                limiter.release(latency);
+            }
+            if (routeMetrics != null) {
+                routeMetrics.setConcurrencyLimit(limiter.getLimit());
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrencyLimitingRestDelegate [delegate=" + delegate
+                + ", lane=" + lane + "]";
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.server.internal;
+
+import com.esri.serverextension.core.server.RequestDeadline;
+import com.esri.serverextension.core.server.RestDelegate;
+import com.esri.serverextension.core.server.RestRequest;
+import com.esri.serverextension.core.server.RestResponse;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shortens the deadline of the requests of a delegate to its own timeout,
+ * binding the deadline to the handling thread while the delegate runs.
+ */
+public final class DeadlineRestDelegate implements RestDelegate {
+
+    private final RestDelegate delegate;
+    private final long timeoutSeconds;
+
+    public DeadlineRestDelegate(RestDelegate delegate, long timeoutSeconds) {
+        if (delegate == null) {
+            throw new NullPointerException("Argument 'delegate' is required.");
+        }
+        this.delegate = delegate;
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    @Override
+    public RestResponse process(RestRequest request, RestDelegate handler) {
+        RequestDeadline previousDeadline = request.getDeadline();
+        RequestDeadline deadline = RequestDeadline.earliest(previousDeadline,
+                RequestDeadline.after(timeoutSeconds, TimeUnit.SECONDS));
+        request.setDeadline(deadline);
+        RequestDeadline.setCurrent(deadline);
+        try {
+            deadline.check();
+            return delegate.process(request, handler);
+        } finally {
+            request.setDeadline(previousDeadline);
+            RequestDeadline.setCurrent(previousDeadline);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DeadlineRestDelegate [delegate=" + delegate
+                + ", timeoutSeconds=" + timeoutSeconds + "]";
+    }
+}
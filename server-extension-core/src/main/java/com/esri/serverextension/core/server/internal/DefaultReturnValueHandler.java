@@ -43,13 +43,13 @@ public final class DefaultReturnValueHandler implements ReturnValueHandler {
         if (RestResponse.class.isAssignableFrom(type)) {
             return (RestResponse) returnValue;
 		} else if (CharSequence.class.isAssignableFrom(type)) {
-            return new RestResponse(null,
+            return RestResponse.fromGeneratedBody(null,
                     JSONConverter.toByteArray((String) returnValue));
         } else if (xmlRootElement != null) {
-            return new RestResponse(null,
+            return RestResponse.fromGeneratedBody(null,
                     objectMapper.writeValueAsBytes(returnValue));
         } else if (IRecordSet.class.isAssignableFrom(type)) {
-            return new RestResponse(null,
+            return RestResponse.fromGeneratedBody(null,
                     objectMapper.writeValueAsBytes(returnValue));
 		} else if (JSONObject.class.isAssignableFrom(type)) {
             return new RestResponse(null,
@@ -60,7 +60,7 @@ public final class DefaultReturnValueHandler implements ReturnValueHandler {
 					JSONConverter.toByteArray(((JSONArray) returnValue)
 							.toString()));
 		} else if (Collection.class.isAssignableFrom(type)) {
-			return new RestResponse(null,
+			return RestResponse.fromGeneratedBody(null,
 					objectMapper.writeValueAsBytes(returnValue));
         }
         throw new IllegalArgumentException(String.format(
@@ -14,42 +14,90 @@
 
 package com.esri.serverextension.core.server.internal;
 
+import com.esri.serverextension.core.metrics.RequestPhase;
+import com.esri.serverextension.core.metrics.RequestTimings;
 import com.esri.serverextension.core.server.RestDelegate;
 import com.esri.serverextension.core.server.RestRequest;
 import com.esri.serverextension.core.server.RestResponse;
 import com.esri.serverextension.core.server.ServerObjectExtensionException;
 import org.springframework.core.MethodParameter;
+import org.springframework.util.ReflectionUtils;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.Arrays;
 import java.util.List;
 
+/**
+ * Invokes a delegate method through an invocation plan that is built once:
+ * parameter metadata and argument resolvers are bound per slot and the method
+ * is called through a spreading {@link MethodHandle}, leaving only argument
+ * resolution and a single call for each request. The time spent resolving
+ * arguments, invoking the method and handling its return value is added to
+ * the {@link RequestTimings} of the request.
+ */
 public final class DelegateMethodInvoker implements RestDelegate {
 
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(
+            Object.class, Object[].class);
+
     private final Object bean;
     private final Method method;
-    private final List<ArgumentResolver> argumentResolvers;
+    private final MethodParameter[] parameters;
+    private final ArgumentResolver[] argumentResolvers;
+    private final MethodParameter returnParameter;
     private final ReturnValueHandler returnValueHandler;
+    private final MethodHandle invoker;
 
     public DelegateMethodInvoker(Object bean, Method method,
                                  List<ArgumentResolver> argumentResolvers,
                                  ReturnValueHandler returnValueHandler) {
         this.bean = bean;
         this.method = method;
-        this.argumentResolvers = argumentResolvers;
+        int numParameters = method.getParameterCount();
+        if (argumentResolvers.size() != numParameters) {
+            throw new IllegalArgumentException(String.format(
+                    "Expected %1$d argument resolvers for method %2$s but got %3$d.",
+                    numParameters, method, argumentResolvers.size()));
+        }
+        this.parameters = new MethodParameter[numParameters];
+        for (int i = 0; i < numParameters; i++) {
+            parameters[i] = new MethodParameter(method, i);
+        }
+        this.argumentResolvers = argumentResolvers
+                .toArray(new ArgumentResolver[numParameters]);
+        this.returnParameter = new MethodParameter(method, -1);
         this.returnValueHandler = returnValueHandler;
+        this.invoker = createInvoker(bean, method);
+    }
+
+    private static MethodHandle createInvoker(Object bean, Method method) {
+        try {
+            ReflectionUtils.makeAccessible(method);
+            MethodHandle handle = MethodHandles.lookup().unreflect(method);
+            if (!Modifier.isStatic(method.getModifiers())) {
+                handle = handle.bindTo(bean);
+            }
+            return handle.asSpreader(Object[].class,
+                    method.getParameterCount()).asType(INVOKER_TYPE);
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException(String.format(
+                    "Cannot access delegate method %1$s.", method), ex);
+        }
     }
 
     @Override
     public RestResponse process(RestRequest request, RestDelegate handler) {
-        Class<?>[] parameterTypes = method.getParameterTypes();
-        Object[] arguments = new Object[parameterTypes.length];
-        for (int i = 0; i < parameterTypes.length; i++) {
-            MethodParameter parameter = new MethodParameter(method, i);
-            ArgumentResolver resolver = argumentResolvers.get(i);
+        RequestTimings timings = request != null ? request.getTimings() : null;
+        long startTime = System.nanoTime();
+        Object[] arguments = new Object[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
             try {
-                arguments[i] = resolver.resolveArgument(parameter, request, handler);
+                arguments[i] = argumentResolvers[i].resolveArgument(
+                        parameters[i], request, handler);
             } catch (Exception ex) {
                 String className = method.getDeclaringClass().toString();
                 String methodName = method.toString();
@@ -61,12 +109,17 @@ public final class DelegateMethodInvoker implements RestDelegate {
             }
 
         }
-        MethodParameter returnParameter = new MethodParameter(method, -1);
+        long invocationTime = System.nanoTime();
+        long forwardingNanos = 0L;
+        if (timings != null) {
+            timings.add(RequestPhase.ARGUMENT_RESOLUTION,
+                    invocationTime - startTime);
+            forwardingNanos = timings.getNanos(RequestPhase.FORWARDING);
+        }
         Object returnValue;
         try {
-            returnValue = method.invoke(bean, arguments);
-        } catch (IllegalAccessException | IllegalArgumentException
-                | InvocationTargetException ex) {
+            returnValue = (Object) invoker.invokeExact(arguments);
+        } catch (Throwable ex) {
             String className = method.getDeclaringClass().toString();
             String methodName = method.toString();
             String message = String.format(
@@ -76,6 +129,13 @@ public final class DelegateMethodInvoker implements RestDelegate {
                     Arrays.toString(arguments));
             throw new ServerObjectExtensionException(message, ex);
         }
+        long serializationTime = System.nanoTime();
+        if (timings != null) {
+            // forwarding to the server object is timed as a phase of its own
+            timings.add(RequestPhase.INVOCATION, serializationTime
+                    - invocationTime - (timings.getNanos(RequestPhase.FORWARDING)
+                    - forwardingNanos));
+        }
         RestResponse response = null;
         try {
             response = returnValueHandler.handleReturnValue(returnValue,
@@ -90,10 +150,21 @@ public final class DelegateMethodInvoker implements RestDelegate {
                             className, Arrays.toString(arguments));
             throw new ServerObjectExtensionException(message, ex);
         }
-
+        if (timings != null) {
+            timings.add(RequestPhase.SERIALIZATION, System.nanoTime()
+                    - serializationTime);
+        }
         return response;
     }
 
+    public Object getBean() {
+        return bean;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
     @Override
     public String toString() {
         String beanName = null;
@@ -35,34 +35,26 @@ public final class PathVariableArgumentResolver implements ArgumentResolver {
     @Override
     public Object resolveArgument(MethodParameter parameter,
                                   RestRequest request, RestDelegate handler) throws Exception {
-        Method method = parameter.getMethod();
-        RequestMapping requestMapping = method
-                .getAnnotation(RequestMapping.class);
-        String[] templates = requestMapping.value();
-
         Class<?> type = parameter.getParameterType();
         PathVariable annotation = parameter
                 .getParameterAnnotation(PathVariable.class);
         String variable = annotation.value();
 
-        String path = new UriPath(request).getPath();
+        Map<String, String> uriTemplateVars = request.getUriTemplateVariables();
+        if (uriTemplateVars == null) {
+            uriTemplateVars = matchUriTemplateVariables(parameter.getMethod(),
+                    new UriPath(request).getPath());
+        }
         Object value = null;
-        for (String template : templates) {
-            UriTemplate uriTemplate = new UriTemplate(template);
-            if (uriTemplate.matches(path)) {
-                Map<String, String> uriTemplateVars = uriTemplate.match(path);
-                if (uriTemplateVars != null) {
-                    if (StringUtils.isEmpty(variable)) {
-                        // PathVariable does not contain name
-                        // get first value in list
-                        if (!CollectionUtils.isEmpty(uriTemplateVars)) {
-                            value = uriTemplateVars.values().iterator().next();
-                        }
-                    } else {
-                        value = uriTemplateVars.get(variable);
-                    }
-                    break;
+        if (uriTemplateVars != null) {
+            if (StringUtils.isEmpty(variable)) {
+                // PathVariable does not contain name
+                // get first value in list
+                if (!CollectionUtils.isEmpty(uriTemplateVars)) {
+                    value = uriTemplateVars.values().iterator().next();
                 }
+            } else {
+                value = uriTemplateVars.get(variable);
             }
         }
 
@@ -74,6 +66,19 @@ public final class PathVariableArgumentResolver implements ArgumentResolver {
         return converter.convertIfNecessary(value, type, parameter);
     }
 
+    private Map<String, String> matchUriTemplateVariables(Method method,
+                                                          String path) {
+        RequestMapping requestMapping = method
+                .getAnnotation(RequestMapping.class);
+        for (String template : requestMapping.value()) {
+            UriTemplate uriTemplate = new UriTemplate(template);
+            if (uriTemplate.matches(path)) {
+                return uriTemplate.match(path);
+            }
+        }
+        return null;
+    }
+
     @Override
     public boolean resolves(MethodParameter parameter) {
         return parameter.getMethodAnnotation(RequestMapping.class) != null
@@ -33,7 +33,8 @@ public final class RequestBodyArgumentResolver implements ArgumentResolver {
     public Object resolveArgument(MethodParameter parameter,
                                   RestRequest request, RestDelegate handler) throws Exception {
         Class<?> type = parameter.getParameterType();
-        return objectMapper.readValue(request.getOperationInput(), type);
+        return objectMapper.treeToValue(
+                request.getOperationInputTree(objectMapper), type);
     }
 
     @Override
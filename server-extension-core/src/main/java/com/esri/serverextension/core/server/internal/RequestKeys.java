@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.server.internal;
+
+import com.esri.serverextension.core.security.SecurityContext;
+import com.esri.serverextension.core.server.RestRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Creates the keys identifying equal requests for response caching and
+ * request coalescing.
+ */
+final class RequestKeys {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private RequestKeys() {
+    }
+
+    /**
+     * Returns a key made of the request path, the output format and a digest
+     * of the operation input, whose object fields are sorted so the same
+     * input always has the same key.
+     *
+     * @param includeUser whether the user and the user roles are part of the
+     *                    digest, so requests of different users never share a
+     *                    key
+     */
+    static String createKey(String path, RestRequest request,
+                            ObjectMapper objectMapper, boolean includeUser) {
+        StringBuilder input = new StringBuilder();
+        SecurityContext securityContext = request.getSecurityContext();
+        if (includeUser && securityContext != null) {
+            if (securityContext.getUserPrincipal() != null) {
+                input.append(securityContext.getUserPrincipal().getName());
+            }
+            input.append('\u0000');
+            if (securityContext.getUserRoles() != null) {
+                input.append(new TreeSet<String>(securityContext.getUserRoles()));
+            }
+        }
+        input.append('\u0000');
+        try {
+            appendCanonical(request.getOperationInputTree(objectMapper), input);
+        } catch (IOException ex) {
+            // let the delegate report the invalid input, keyed by the raw input
+            input.append(request.getOperationInput());
+        }
+        StringBuilder key = new StringBuilder(path.length() + 80);
+        key.append(path).append('?').append(request.getOutputFormat())
+                .append('#');
+        for (byte b : sha256(input.toString())) {
+            key.append(HEX_DIGITS[(b >> 4) & 0xf]).append(HEX_DIGITS[b & 0xf]);
+        }
+        return key.toString();
+    }
+    private static void appendCanonical(JsonNode node, StringBuilder builder) {
+        if (node.isObject()) {
+            List<String> fieldNames = new ArrayList<String>(node.size());
+            Iterator<String> iterator = node.fieldNames();
+            while (iterator.hasNext()) {
+                fieldNames.add(iterator.next());
+            }
+            Collections.sort(fieldNames);
+            builder.append('{');
+            for (int i = 0; i < fieldNames.size(); i++) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                String fieldName = fieldNames.get(i);
+                builder.append(fieldName.length()).append(':').append(fieldName)
+                        .append('=');
+                appendCanonical(node.get(fieldName), builder);
+            }
+            builder.append('}');
+        } else if (node.isArray()) {
+            builder.append('[');
+            for (int i = 0; i < node.size(); i++) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                appendCanonical(node.get(i), builder);
+            }
+            builder.append(']');
+        } else {
+            builder.append(node.toString());
+        }
+    }
+
+    private static byte[] sha256(String input) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(
+                    input.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not supported.", ex);
+        }
+    }
+}
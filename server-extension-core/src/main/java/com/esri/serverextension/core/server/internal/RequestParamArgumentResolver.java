@@ -14,9 +14,10 @@
 
 package com.esri.serverextension.core.server.internal;
 
-import com.esri.arcgis.server.json.JSONObject;
+import com.esri.serverextension.core.rest.api.ArcGISServiceException;
 import com.esri.serverextension.core.server.RestDelegate;
 import com.esri.serverextension.core.server.RestRequest;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.core.MethodParameter;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -37,10 +38,25 @@ public final class RequestParamArgumentResolver implements ArgumentResolver {
                 .getParameterAnnotation(RequestParam.class);
         String value = annotation.value();
 
-        JSONObject operationInput = new JSONObject(request.getOperationInput());
-        Object param = operationInput.opt(value);
-        return objectMapper.readValue(param != null ? param.toString() : null,
-                type);
+        JsonNode operationInput = request.getOperationInputTree(objectMapper);
+        JsonNode param = operationInput.get(value);
+        if (param == null || param.isNull()) {
+            if (annotation.required()) {
+                throw new ArcGISServiceException(400,
+                        "Invalid or missing input parameters.",
+                        new String[]{String.format(
+                                "'%1$s' parameter not specified", value)});
+            }
+            return null;
+        }
+        if (param.isTextual()) {
+            if (CharSequence.class.isAssignableFrom(type)) {
+                return param.textValue();
+            }
+            // parameter values are frequently sent as JSON encoded strings
+            return objectMapper.readValue(param.textValue(), type);
+        }
+        return objectMapper.treeToValue(param, type);
     }
 
     @Override
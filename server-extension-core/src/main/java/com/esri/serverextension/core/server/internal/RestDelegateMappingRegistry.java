@@ -14,9 +14,18 @@
 
 package com.esri.serverextension.core.server.internal;
 
+import com.esri.serverextension.core.cache.ResponseCache;
+import com.esri.serverextension.core.metrics.MetricsRegistry;
+import com.esri.serverextension.core.server.CacheableResponse;
+import com.esri.serverextension.core.server.CoalesceRequests;
+import com.esri.serverextension.core.server.ConcurrencyLimit;
+import com.esri.serverextension.core.server.RequestTimeout;
 import com.esri.serverextension.core.server.RestDelegate;
 import com.esri.serverextension.core.server.RestDelegateMappings;
+import com.esri.serverextension.core.server.RestDelegateMatch;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.type.TypeFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
@@ -25,28 +34,52 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.context.support.ApplicationObjectSupport;
 import org.springframework.core.MethodParameter;
 import org.springframework.core.annotation.Order;
+import org.springframework.util.ClassUtils;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.util.UriTemplate;
 
+import javax.ws.rs.BeanParam;
+import javax.xml.bind.annotation.XmlRootElement;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public final class RestDelegateMappingRegistry extends
         ApplicationObjectSupport implements RestDelegateMappings,
         InitializingBean {
 
+    /**
+     * The location of the route indices generated by the
+     * <code>server-extension-processor</code> annotation processor. The
+     * delegate methods of beans whose classes come with a route index are
+     * taken from the index instead of reflecting over all their methods,
+     * unless the <code>routeIndexEnabled</code> property is
+     * <code>false</code>. Other beans are always inspected by reflection.
+     */
+    public static final String ROUTE_INDEX_LOCATION = "META-INF/server-extension/routes.index";
+
     private final Logger logger = LoggerFactory
             .getLogger(RestDelegateMappingRegistry.class);
 
     private final List<RestDelegateMappingEntry> mappings;
     private final List<ArgumentResolver> argumentResolvers;
     private final List<ReturnValueHandler> returnValueHandlers;
+    private final Set<Method> delegateMethods;
+    private final List<String> cacheablePaths;
+    private final Map<ConcurrencyLimit.Lane, AdaptiveConcurrencyLimiter> laneLimiters;
 
     @Autowired(required = true)
     private ObjectMapper objectMapper;
-    private boolean isSorted;
+    private volatile UriTemplateTrie router;
+    private ResponseCache responseCache;
+    private MetricsRegistry metricsRegistry;
 
     public RestDelegateMappingRegistry(ObjectMapper objectMapper) {
         if (objectMapper == null) {
@@ -57,6 +90,27 @@ public final class RestDelegateMappingRegistry extends
         mappings = new ArrayList<RestDelegateMappingEntry>();
         argumentResolvers = new ArrayList<ArgumentResolver>();
         returnValueHandlers = new ArrayList<ReturnValueHandler>();
+        delegateMethods = new LinkedHashSet<Method>();
+        cacheablePaths = new ArrayList<String>();
+        laneLimiters = new EnumMap<ConcurrencyLimit.Lane, AdaptiveConcurrencyLimiter>(
+                ConcurrencyLimit.Lane.class);
+    }
+
+    /**
+     * Sets the cache for the responses of delegate methods annotated with
+     * {@link CacheableResponse}. Without a cache these methods are always
+     * invoked.
+     */
+    public void setResponseCache(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    /**
+     * Sets the registry receiving the rejections and concurrency limits of
+     * delegate methods annotated with {@link ConcurrencyLimit}.
+     */
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
     }
 
     public void addArgumentResolver(ArgumentResolver argumentResolver) {
@@ -113,12 +167,24 @@ public final class RestDelegateMappingRegistry extends
 
     private void findAndRegisterAnnotatedDelegates(
             ApplicationContext applicationContext) {
+        RouteIndex routeIndex = null;
+        if (applicationContext.getEnvironment().getProperty(
+                "routeIndexEnabled", Boolean.class, Boolean.TRUE)) {
+            // a shared parent context provides the index resolved once
+            routeIndex = applicationContext.containsBean("routeIndex")
+                    ? applicationContext.getBean("routeIndex", RouteIndex.class)
+                    : RouteIndex.read(applicationContext,
+                    applicationContext.getClassLoader());
+        }
         String[] beanNames = applicationContext.getBeanDefinitionNames();
         for (String beanName : beanNames) {
             Object bean = applicationContext.getBean(beanName);
             if (bean != null) {
-                Class<?> type = bean.getClass();
-                Method[] methods = type.getMethods();
+                Class<?> type = ClassUtils.getUserClass(bean);
+                Collection<Method> methods = routeIndex != null
+                        && routeIndex.isIndexed(type) ? routeIndex
+                        .getMethods(type) : Arrays.asList(bean.getClass()
+                        .getMethods());
                 for (Method method : methods) {
                     findAndRegisterAnnotatedDelegateMethods(bean, method);
                 }
@@ -134,10 +200,42 @@ public final class RestDelegateMappingRegistry extends
             String[] paths = requestMapping.value();
             for (String path : paths) {
                 if (path != null && !path.isEmpty()) {
-                    DelegateMethodInvoker delegate = new DelegateMethodInvoker(
+                    RestDelegate delegate = new DelegateMethodInvoker(
                             bean, method,
                             findMatchingArgumentResolvers(method),
                             findMatchingReturnValueHandler(method));
+                    ConcurrencyLimit concurrencyLimit = method
+                            .getAnnotation(ConcurrencyLimit.class);
+                    if (concurrencyLimit != null) {
+                        delegate = new ConcurrencyLimitingRestDelegate(
+                                delegate, path, concurrencyLimit.lane(),
+                                getLaneLimiter(concurrencyLimit.lane()),
+                                metricsRegistry != null ? metricsRegistry
+                                        .getRouteMetrics(path) : null);
+                    }
+                    RequestTimeout requestTimeout = method
+                            .getAnnotation(RequestTimeout.class);
+                    if (requestTimeout != null) {
+                        delegate = new DeadlineRestDelegate(delegate,
+                                requestTimeout.seconds());
+                    }
+                    CoalesceRequests coalesceRequests = method
+                            .getAnnotation(CoalesceRequests.class);
+                    if (coalesceRequests != null) {
+                        delegate = new CoalescingRestDelegate(delegate,
+                                coalesceRequests.scope(), objectMapper);
+                    }
+                    CacheableResponse cacheableResponse = method
+                            .getAnnotation(CacheableResponse.class);
+                    if (cacheableResponse != null && !path.contains("{")) {
+                        cacheablePaths.add(path);
+                    }
+                    if (cacheableResponse != null && responseCache != null) {
+                        delegate = new CachingRestDelegate(delegate,
+                                responseCache,
+                                cacheableResponse.timeToLiveSeconds(),
+                                objectMapper);
+                    }
                     Order order = method.getAnnotation(Order.class);
                     if (order == null) {
                         registerDelegate(path, delegate);
@@ -146,7 +244,74 @@ public final class RestDelegateMappingRegistry extends
                     }
                 }
             }
+            delegateMethods.add(method);
+        }
+    }
+
+    /**
+     * Returns the limiter shared by all delegate methods of a lane, so the
+     * routes of one lane cannot take the capacity of the other.
+     */
+    private AdaptiveConcurrencyLimiter getLaneLimiter(ConcurrencyLimit.Lane lane) {
+        AdaptiveConcurrencyLimiter limiter = laneLimiters.get(lane);
+        if (limiter == null) {
+            limiter = new AdaptiveConcurrencyLimiter(lane.getInitialLimit(),
+                    lane.getMaximumLimit());
+            laneLimiters.put(lane, limiter);
+        }
+        return limiter;
+    }
+
+    /**
+     * Returns the paths of the delegate methods annotated with
+     * {@link CacheableResponse} which have no URI template variables. As
+     * their responses may be cached, these methods are expected to be free of
+     * side effects, so they can be invoked without recorded inputs.
+     */
+    public List<String> getCacheablePaths() {
+        return Collections.unmodifiableList(cacheablePaths);
+    }
+
+    /**
+     * Creates the Jackson deserializers of the {@link BeanParam} and
+     * {@link XmlRootElement} parameters and the serializers of the
+     * {@link XmlRootElement} and collection return values of all registered
+     * delegate methods, which are otherwise created by the first request of
+     * each route.
+     *
+     * @return the number of types prepared
+     */
+    public int prepareSerializers() {
+        TypeFactory typeFactory = objectMapper.getTypeFactory();
+        Set<JavaType> readerTypes = new LinkedHashSet<JavaType>();
+        Set<JavaType> writerTypes = new LinkedHashSet<JavaType>();
+        for (Method method : delegateMethods) {
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            for (int i = 0; i < parameterTypes.length; i++) {
+                MethodParameter parameter = new MethodParameter(method, i);
+                if (parameter.hasParameterAnnotation(BeanParam.class)
+                        || parameterTypes[i]
+                        .getAnnotation(XmlRootElement.class) != null) {
+                    readerTypes.add(typeFactory.constructType(method
+                            .getGenericParameterTypes()[i]));
+                }
+            }
+            Class<?> returnType = method.getReturnType();
+            if (returnType.getAnnotation(XmlRootElement.class) != null
+                    || Collection.class.isAssignableFrom(returnType)) {
+                writerTypes.add(typeFactory.constructType(method
+                        .getGenericReturnType()));
+            }
+        }
+        // readers and writers prefetch their root (de)serializers into the
+        // caches shared with the object mapper
+        for (JavaType type : readerTypes) {
+            objectMapper.readerFor(type);
         }
+        for (JavaType type : writerTypes) {
+            objectMapper.writerFor(type);
+        }
+        return readerTypes.size() + writerTypes.size();
     }
 
     private List<ArgumentResolver> findMatchingArgumentResolvers(Method method) {
@@ -225,7 +390,7 @@ public final class RestDelegateMappingRegistry extends
         synchronized (mappings) {
             mappings.add(new RestDelegateMappingEntry(path, delegate,
                     priority));
-            isSorted = false;
+            router = null;
         }
     }
 
@@ -287,18 +452,26 @@ public final class RestDelegateMappingRegistry extends
 
     @Override
     public RestDelegate getMatchingDelegate(String path) {
-        if (!isSorted) {
+        RestDelegateMatch match = findMatch(path);
+        return match != null ? match.getDelegate() : null;
+    }
+
+    @Override
+    public RestDelegateMatch findMatch(String path) {
+        UriTemplateTrie currentRouter = router;
+        if (currentRouter == null) {
             synchronized (mappings) {
-                Collections.sort(mappings);
-                Collections.reverse(mappings);
-                isSorted = true;
-            }
-        }
-        for (RestDelegateMappingEntry entry : mappings) {
-            if (entry.getPath().matches(path)) {
-                return entry.getDelegate();
+                currentRouter = router;
+                if (currentRouter == null) {
+                    List<RestDelegateMappingEntry> entries = new ArrayList<RestDelegateMappingEntry>(
+                            mappings);
+                    Collections.sort(entries);
+                    Collections.reverse(entries);
+                    currentRouter = UriTemplateTrie.compile(entries);
+                    router = currentRouter;
+                }
             }
         }
-        return null;
+        return currentRouter.match(path);
     }
 }
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.server.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The delegate methods listed in the route indices on the class path,
+ * resolved once so that all extension instances sharing a parent context
+ * can register their delegates without reflection.
+ * <p>
+ * A route index only covers the classes of the jar or directory containing
+ * it, so the delegate methods of classes built without the annotation
+ * processor are still found by reflection.
+ *
+ * @see RestDelegateMappingRegistry#ROUTE_INDEX_LOCATION
+ */
+public final class RouteIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(RouteIndex.class);
+
+    private final Map<Class<?>, List<Method>> methods;
+    private final List<String> indexedLocations;
+
+    private RouteIndex(Map<Class<?>, List<Method>> methods,
+                       List<String> indexedLocations) {
+        this.methods = Collections.unmodifiableMap(methods);
+        this.indexedLocations = Collections.unmodifiableList(indexedLocations);
+    }
+
+    /**
+     * Reads and resolves all route indices.
+     *
+     * @return the index, which is empty if no route index was found
+     */
+    public static RouteIndex read(ResourcePatternResolver resourceResolver,
+                                  ClassLoader classLoader) {
+        Map<Class<?>, List<Method>> methods = new LinkedHashMap<Class<?>, List<Method>>();
+        List<String> indexedLocations = new ArrayList<String>();
+        try {
+            Resource[] resources = resourceResolver.getResources(
+                    ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX
+                            + RestDelegateMappingRegistry.ROUTE_INDEX_LOCATION);
+            for (Resource resource : resources) {
+                logger.debug("Reading route index {}.", resource);
+                String url = resource.getURL().toString();
+                indexedLocations.add(url.substring(0, url.length()
+                        - RestDelegateMappingRegistry.ROUTE_INDEX_LOCATION.length()));
+                try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(resource.getInputStream(),
+                                StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        line = line.trim();
+                        int separator = line.indexOf('#');
+                        if (separator > 0) {
+                            addMethod(methods, line.substring(0, separator),
+                                    line.substring(separator + 1), classLoader);
+                        }
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to read route index.", ex);
+        }
+        return new RouteIndex(methods, indexedLocations);
+    }
+
+    public boolean isEmpty() {
+        return indexedLocations.isEmpty();
+    }
+
+    /**
+     * Returns whether a class and all its superclasses were compiled along
+     * with a route index, so that the index lists all of their delegate
+     * methods.
+     */
+    public boolean isIndexed(Class<?> type) {
+        if (indexedLocations.isEmpty()) {
+            return false;
+        }
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            if (!isIndexedLocation(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the indexed delegate methods of a class, including those
+     * declared by its superclasses unless the class overrides them.
+     */
+    public List<Method> getMethods(Class<?> type) {
+        List<Method> typeMethods = new ArrayList<Method>();
+        Set<String> signatures = new HashSet<String>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            List<Method> declaredMethods = methods.get(c);
+            if (declaredMethods != null) {
+                for (Method method : declaredMethods) {
+                    if (signatures.add(method.getName()
+                            + Arrays.toString(method.getParameterTypes()))) {
+                        typeMethods.add(method);
+                    }
+                }
+            }
+        }
+        return typeMethods;
+    }
+
+    private boolean isIndexedLocation(Class<?> type) {
+        ClassLoader classLoader = type.getClassLoader();
+        if (classLoader == null) {
+            return false;
+        }
+        URL url = classLoader.getResource(ClassUtils
+                .convertClassNameToResourcePath(type.getName()) + ".class");
+        if (url == null) {
+            return false;
+        }
+        String location = url.toString();
+        for (String indexedLocation : indexedLocations) {
+            if (location.startsWith(indexedLocation)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void addMethod(Map<Class<?>, List<Method>> methods,
+                                  String className, String signature, ClassLoader classLoader) {
+        try {
+            Class<?> type = ClassUtils.forName(className, classLoader);
+            int parametersStart = signature.indexOf('(');
+            String name = signature.substring(0, parametersStart);
+            String[] parameterTypeNames = StringUtils.commaDelimitedListToStringArray(
+                    signature.substring(parametersStart + 1, signature.length() - 1));
+            Class<?>[] parameterTypes = new Class<?>[parameterTypeNames.length];
+            for (int i = 0; i < parameterTypes.length; i++) {
+                parameterTypes[i] = ClassUtils.forName(parameterTypeNames[i],
+                        classLoader);
+            }
+            List<Method> typeMethods = methods.get(type);
+            if (typeMethods == null) {
+                typeMethods = new ArrayList<Method>();
+                methods.put(type, typeMethods);
+            }
+            typeMethods.add(type.getMethod(name, parameterTypes));
+        } catch (ClassNotFoundException | NoSuchMethodException ex) {
+            throw new IllegalStateException(String.format(
+                    "Route index does not match the classes of %1$s.",
+                    className), ex);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.server.internal;
+
+import com.esri.serverextension.core.server.RestDelegateMatch;
+import com.esri.serverextension.core.server.internal.RestDelegateMappingRegistry.RestDelegateMappingEntry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Segment trie compiled from registered URI templates. Every template segment
+ * is either a literal or a single <code>{variable}</code>; literal children
+ * are tried before variable children, so a lookup costs a walk over the path
+ * segments rather than a regular expression match per registered route.
+ * Templates using regular expressions or partial segment variables are kept
+ * aside and matched with {@link org.springframework.web.util.UriTemplate}.
+ */
+public final class UriTemplateTrie {
+
+    private final Node root;
+    private final List<RestDelegateMappingEntry> fallbackEntries;
+
+    private UriTemplateTrie(Node root,
+                            List<RestDelegateMappingEntry> fallbackEntries) {
+        this.root = root;
+        this.fallbackEntries = fallbackEntries;
+    }
+
+    /**
+     * Compiles the given entries, which must be ordered from most to least
+     * preferred.
+     */
+    public static UriTemplateTrie compile(
+            List<RestDelegateMappingEntry> entries) {
+        Node root = new Node();
+        List<RestDelegateMappingEntry> fallbackEntries = new ArrayList<RestDelegateMappingEntry>();
+        for (RestDelegateMappingEntry entry : entries) {
+            String template = entry.getPath().toString();
+            List<String> variableNames = new ArrayList<String>();
+            Node node = compileSegments(root, template, variableNames);
+            if (node == null) {
+                fallbackEntries.add(entry);
+            } else {
+                node.routes.add(new Route(entry, variableNames
+                        .toArray(new String[variableNames.size()])));
+                root.updateMaxPriority(template, entry.getPriority());
+            }
+        }
+        return new UriTemplateTrie(root, fallbackEntries);
+    }
+
+    private static Node compileSegments(Node root, String template,
+                                        List<String> variableNames) {
+        if (!template.startsWith("/")) {
+            return null;
+        }
+        Node node = root;
+        for (String segment : splitPath(template)) {
+            if (segment.indexOf('{') < 0 && segment.indexOf('}') < 0) {
+                Node child = node.literals.get(segment);
+                if (child == null) {
+                    child = new Node();
+                    node.literals.put(segment, child);
+                }
+                node = child;
+            } else if (isVariableSegment(segment)) {
+                if (node.variable == null) {
+                    node.variable = new Node();
+                }
+                variableNames.add(segment.substring(1, segment.length() - 1));
+                node = node.variable;
+            } else {
+                return null;
+            }
+        }
+        return node;
+    }
+
+    private static boolean isVariableSegment(String segment) {
+        if (segment.length() < 3 || segment.charAt(0) != '{'
+                || segment.charAt(segment.length() - 1) != '}') {
+            return false;
+        }
+        for (int i = 1; i < segment.length() - 1; i++) {
+            char c = segment.charAt(i);
+            if (c == '{' || c == '}' || c == ':') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static String[] splitPath(String path) {
+        if (path.length() <= 1) {
+            return new String[0];
+        }
+        int count = 1;
+        for (int i = 1; i < path.length(); i++) {
+            if (path.charAt(i) == '/') {
+                count++;
+            }
+        }
+        String[] segments = new String[count];
+        int start = 1;
+        for (int i = 0; i < count; i++) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = path.length();
+            }
+            segments[i] = path.substring(start, end);
+            start = end + 1;
+        }
+        return segments;
+    }
+
+    public RestDelegateMatch match(String path) {
+        if (path == null) {
+            return null;
+        }
+        Route best = null;
+        String[] bestValues = null;
+        if (path.startsWith("/")) {
+            String[] segments = splitPath(path);
+            Search search = new Search(segments);
+            search.visit(root, 0, 0);
+            best = search.best;
+            bestValues = search.bestValues;
+        }
+
+        for (RestDelegateMappingEntry entry : fallbackEntries) {
+            if (best != null
+                    && entry.getPriority() <= best.entry.getPriority()) {
+                break;
+            }
+            if (entry.getPath().matches(path)) {
+                return new RestDelegateMatch(entry.getPath().toString(),
+                        entry.getDelegate(), entry.getPath().match(path));
+            }
+        }
+
+        if (best == null) {
+            return null;
+        }
+        Map<String, String> uriVariables = new LinkedHashMap<String, String>();
+        for (int i = 0; i < best.variableNames.length; i++) {
+            uriVariables.put(best.variableNames[i], bestValues[i]);
+        }
+        return new RestDelegateMatch(best.entry.getPath().toString(),
+                best.entry.getDelegate(), uriVariables);
+    }
+
+    private static final class Search {
+
+        private final String[] segments;
+        private final String[] values;
+        private Route best;
+        private String[] bestValues;
+
+        private Search(String[] segments) {
+            this.segments = segments;
+            this.values = new String[segments.length];
+        }
+
+        private void visit(Node node, int depth, int numValues) {
+            if (best != null
+                    && node.maxPriority <= best.entry.getPriority()) {
+                return;
+            }
+            if (depth == segments.length) {
+                if (!node.routes.isEmpty()) {
+                    Route candidate = node.routes.get(0);
+                    if (best == null || candidate.entry.getPriority() > best
+                            .entry.getPriority()) {
+                        best = candidate;
+                        bestValues = Arrays.copyOf(values, numValues);
+                    }
+                }
+                return;
+            }
+            String segment = segments[depth];
+            Node literal = node.literals.get(segment);
+            if (literal != null) {
+                visit(literal, depth + 1, numValues);
+            }
+            if (node.variable != null) {
+                values[numValues] = segment;
+                visit(node.variable, depth + 1, numValues + 1);
+            }
+        }
+    }
+
+    private static final class Node {
+
+        private final Map<String, Node> literals = new HashMap<String, Node>();
+        private final List<Route> routes = new ArrayList<Route>();
+        private Node variable;
+        private int maxPriority = Integer.MIN_VALUE;
+
+        private void updateMaxPriority(String template, int priority) {
+            Node node = this;
+            node.maxPriority = Math.max(node.maxPriority, priority);
+            for (String segment : splitPath(template)) {
+                node = isVariableSegment(segment) ? node.variable
+                        : node.literals.get(segment);
+                node.maxPriority = Math.max(node.maxPriority, priority);
+            }
+        }
+    }
+
+    private static final class Route {
+
+        private final RestDelegateMappingEntry entry;
+        private final String[] variableNames;
+
+        private Route(RestDelegateMappingEntry entry, String[] variableNames) {
+            this.entry = entry;
+            this.variableNames = variableNames;
+        }
+    }
+}
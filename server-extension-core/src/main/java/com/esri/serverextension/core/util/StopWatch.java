@@ -14,6 +14,8 @@
 
 package com.esri.serverextension.core.util;
 
+import java.util.concurrent.TimeUnit;
+
 public class StopWatch {
 
     private boolean isRunning;
@@ -36,7 +38,7 @@ public class StopWatch {
         }
         isRunning = true;
         hasElapsed = false;
-        startTime = System.currentTimeMillis();
+        startTime = System.nanoTime();
         return this;
     }
 
@@ -44,13 +46,23 @@ public class StopWatch {
         if (!isRunning) {
             throw new IllegalStateException("StopWatch is not running.");
         }
-        elapsedTime = System.currentTimeMillis() - startTime;
+        elapsedTime = System.nanoTime() - startTime;
         isRunning = false;
         hasElapsed = true;
         return this;
     }
 
     public long elapsedTimeMillis() {
+        if (isRunning) {
+            throw new IllegalStateException("StopWatch is already running.");
+        }
+        if (!hasElapsed) {
+            throw new IllegalStateException("StopWatch has never been started.");
+        }
+        return TimeUnit.NANOSECONDS.toMillis(elapsedTime);
+    }
+
+    public long elapsedTimeNanos() {
         if (isRunning) {
             throw new IllegalStateException("StopWatch is already running.");
         }
@@ -61,6 +73,6 @@ public class StopWatch {
     }
 
     public double elapsedTimeSeconds() {
-        return elapsedTimeMillis() / 1000.0d;
+        return elapsedTimeNanos() / 1000000000.0d;
     }
 }
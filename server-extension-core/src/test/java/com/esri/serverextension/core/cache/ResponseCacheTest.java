@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.cache;
+
+import com.esri.serverextension.core.metrics.CacheMetrics;
+import com.esri.serverextension.core.metrics.MetricsRegistry;
+import com.esri.serverextension.core.server.RestResponse;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ResponseCacheTest {
+
+    private CacheMetrics metrics;
+    private long now;
+    private ResponseCache cache;
+
+    @Before
+    public void setUp() {
+        metrics = new MetricsRegistry().getCacheMetrics("responses");
+        cache = new ResponseCache(10000, metrics) {
+            @Override
+            long nanoTime() {
+                return now;
+            }
+        };
+    }
+
+    @Test
+    public void testGetCachedResponse() {
+        byte[] body = new byte[100];
+        cache.put("/layers?json#1", "/layers", RestResponse.fromGeneratedBody(
+                "{}", body), 1, TimeUnit.MINUTES);
+        RestResponse response = cache.get("/layers?json#1");
+        assertNotNull(response);
+        assertSame(body, response.getResponseBody());
+        assertEquals("{}", response.getResponseProperties());
+        assertNull(cache.get("/layers?json#2"));
+        assertEquals(1, metrics.getHits());
+        assertEquals(1, metrics.getMisses());
+    }
+
+    @Test
+    public void testExpiration() {
+        cache.put("a", "/a", response(10), 10, TimeUnit.SECONDS);
+        now += TimeUnit.SECONDS.toNanos(9);
+        assertNotNull(cache.get("a"));
+        now += TimeUnit.SECONDS.toNanos(1);
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+    }
+
+    @Test
+    public void testInvalidatePath() {
+        cache.put("a", "/layers/1", response(10), 1, TimeUnit.MINUTES);
+        cache.put("b", "/layers/1/query", response(10), 1, TimeUnit.MINUTES);
+        cache.put("c", "/layers/10/query", response(10), 1, TimeUnit.MINUTES);
+        cache.invalidate("/layers/1");
+        assertNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    public void testFrequentResponsesAreKept() {
+        for (int i = 0; i < 10; i++) {
+            cache.put("hot" + i, "/hot", response(800), 1, TimeUnit.MINUTES);
+            for (int j = 0; j < 5; j++) {
+                cache.get("hot" + i);
+            }
+        }
+        for (int i = 0; i < 100; i++) {
+            cache.put("cold" + i, "/cold", response(800), 1, TimeUnit.MINUTES);
+        }
+        int hot = 0;
+        for (int i = 0; i < 10; i++) {
+            if (cache.get("hot" + i) != null) {
+                hot++;
+            }
+        }
+        assertEquals(10, hot);
+        assertEquals(99, metrics.getEvictions());
+    }
+
+    @Test
+    public void testOversizedResponseIsNotCached() {
+        cache.put("a", "/a", response(20000), 1, TimeUnit.MINUTES);
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getWeight());
+    }
+
+    private static RestResponse response(int length) {
+        return RestResponse.fromGeneratedBody(null, new byte[length]);
+    }
+}
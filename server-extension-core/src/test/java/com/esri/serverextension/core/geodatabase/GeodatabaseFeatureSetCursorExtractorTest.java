@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+
+package com.esri.serverextension.core.geodatabase;
+
+import com.esri.arcgis.geodatabase.ICursor;
+import com.esri.arcgis.geodatabase.IFeature;
+import com.esri.arcgis.geodatabase.IFeatureCursor;
+import com.esri.arcgis.geodatabase.IField;
+import com.esri.arcgis.geodatabase.IFields;
+import com.esri.arcgis.geodatabase.IRow;
+import com.esri.arcgis.geodatabase.esriFieldType;
+import com.esri.serverextension.core.rest.api.FeatureSet;
+import com.esri.serverextension.core.rest.api.Field;
+import com.esri.serverextension.core.rest.api.FieldType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GeodatabaseFeatureSetCursorExtractorTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testWriteRows() throws Exception {
+        FeatureSet featureSet = new FeatureSet();
+        featureSet.setDisplayFieldName("NAME");
+        GeodatabaseFeatureSetCursorExtractor extractor = new GeodatabaseFeatureSetCursorExtractor(
+                objectMapper, featureSet);
+        byte[] body = extractor.extractData(cursor(new Object[]{1, "a", null},
+                new Object[]{2, "b", null}), fieldMap());
+        JsonNode json = objectMapper.readTree(body);
+        assertEquals("NAME", json.get("displayFieldName").asText());
+        assertEquals(2, json.get("fields").size());
+        assertEquals("OBJECTID", json.get("fields").get(0).get("name").asText());
+        assertEquals("esriFieldTypeString", json.get("fields").get(1).get("type").asText());
+        assertEquals(20, json.get("fields").get(1).get("length").asInt());
+        JsonNode features = json.get("features");
+        assertEquals(2, features.size());
+        assertFalse(features.get(0).has("geometry"));
+        assertEquals(1, features.get(0).get("attributes").get("OBJECTID").asInt());
+        assertEquals("b", features.get(1).get("attributes").get("NAME").asText());
+        assertFalse(features.get(1).get("attributes").has("SHAPE"));
+    }
+
+    @Test
+    public void testWriteFeatures() throws Exception {
+        FeatureSet featureSet = new FeatureSet();
+        featureSet.setFields(Collections.singletonList(new Field("NAME",
+                FieldType.esriFieldTypeString, "Name")));
+        GeodatabaseFeatureSetCursorExtractor extractor = new GeodatabaseFeatureSetCursorExtractor(
+                objectMapper, featureSet);
+        AtomicInteger shapeReads = new AtomicInteger();
+        byte[] body = extractor.extractData(featureCursor(shapeReads,
+                new Object[]{1, "a", null}, new Object[]{2, "b", null},
+                new Object[]{3, "c", null}), fieldMap());
+        JsonNode json = objectMapper.readTree(body);
+        assertEquals(1, json.get("fields").size());
+        assertEquals("Name", json.get("fields").get(0).get("alias").asText());
+        JsonNode features = json.get("features");
+        assertEquals(3, features.size());
+        assertTrue(features.get(2).has("geometry"));
+        assertEquals("c", features.get(2).get("attributes").get("NAME").asText());
+        assertEquals(3, shapeReads.get());
+    }
+
+    @Test
+    public void testWriteEmptyCursor() throws Exception {
+        GeodatabaseFeatureSetCursorExtractor extractor = new GeodatabaseFeatureSetCursorExtractor(
+                objectMapper, null);
+        byte[] body = extractor.extractData(cursor(), fieldMap());
+        JsonNode json = objectMapper.readTree(body);
+        assertEquals(0, json.get("features").size());
+        assertEquals(2, json.get("fields").size());
+        assertFalse(json.get("hasZ").asBoolean());
+    }
+
+    private static GeodatabaseFieldMap fieldMap() {
+        final IField[] fields = {
+                field("OBJECTID", esriFieldType.esriFieldTypeOID, 4),
+                field("NAME", esriFieldType.esriFieldTypeString, 20),
+                field("SHAPE", esriFieldType.esriFieldTypeGeometry, 0)
+        };
+        GeodatabaseFieldMap fieldMap = new GeodatabaseFieldMap();
+        fieldMap.initialize(proxy(IFields.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return "getFieldCount".equals(method.getName()) ? fields.length
+                        : fields[(Integer) args[0]];
+            }
+        }), null);
+        return fieldMap;
+    }
+
+    private static IField field(final String name, final int type, final int length) {
+        return proxy(IField.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                switch (method.getName()) {
+                    case "getName":
+                    case "getAliasName":
+                        return name;
+                    case "getType":
+                        return type;
+                    case "getLength":
+                        return length;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            }
+        });
+    }
+
+    private static ICursor cursor(Object[]... rows) {
+        final Iterator<Object[]> iterator = Arrays.asList(rows).iterator();
+        return proxy(ICursor.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (!"nextRow".equals(method.getName())) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+                return iterator.hasNext() ? row(IRow.class, iterator.next(), null)
+                        : null;
+            }
+        });
+    }
+
+    private static IFeatureCursor featureCursor(final AtomicInteger shapeReads,
+                                                Object[]... rows) {
+        final Iterator<Object[]> iterator = Arrays.asList(rows).iterator();
+        return proxy(IFeatureCursor.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (!"nextFeature".equals(method.getName())) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+                return iterator.hasNext() ? row(IFeature.class, iterator.next(),
+                        shapeReads) : null;
+            }
+        });
+    }
+
+    private static <T> T row(Class<T> type, final Object[] values,
+                             final AtomicInteger shapeReads) {
+        return proxy(type, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                switch (method.getName()) {
+                    case "getValue":
+                        return values[(Integer) args[0]];
+                    case "getShape":
+                        shapeReads.incrementAndGet();
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            }
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(
+                GeodatabaseFeatureSetCursorExtractorTest.class.getClassLoader(),
+                new Class<?>[]{type}, handler));
+    }
+}
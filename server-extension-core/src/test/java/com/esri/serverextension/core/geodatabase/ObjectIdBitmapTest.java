@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.geodatabase;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ObjectIdBitmapTest {
+
+    @Test
+    public void testAddAndContains() throws Exception {
+        ObjectIdBitmap bitmap = ObjectIdBitmap.of(1, 5, 65536, 70000, 5);
+        assertEquals(4, bitmap.getCardinality());
+        assertTrue(bitmap.contains(5));
+        assertTrue(bitmap.contains(65536));
+        assertFalse(bitmap.contains(6));
+        assertFalse(bitmap.contains(-1));
+        assertArrayEquals(new int[]{1, 5, 65536, 70000}, bitmap.toArray());
+        assertEquals("1,5,65536,70000", bitmap.toObjectIdsString());
+    }
+
+    @Test
+    public void testDenseContainer() throws Exception {
+        ObjectIdBitmap bitmap = new ObjectIdBitmap();
+        for (int i = 0; i < 10000; i += 2) {
+            bitmap.add(i);
+        }
+        assertEquals(5000, bitmap.getCardinality());
+        assertTrue(bitmap.contains(9998));
+        assertFalse(bitmap.contains(9999));
+    }
+
+    @Test
+    public void testOrAndAgainstTreeSet() throws Exception {
+        Random random = new Random(42L);
+        for (int round = 0; round < 20; round++) {
+            int bound = round % 2 == 0 ? 20000 : 1 << 20;
+            int count = random.nextInt(8000);
+            TreeSet<Integer> a = new TreeSet<Integer>();
+            TreeSet<Integer> b = new TreeSet<Integer>();
+            ObjectIdBitmap bitmapA = new ObjectIdBitmap();
+            ObjectIdBitmap bitmapB = new ObjectIdBitmap();
+            for (int i = 0; i < count; i++) {
+                int x = random.nextInt(bound);
+                int y = random.nextInt(bound);
+                a.add(x);
+                b.add(y);
+                bitmapA.add(x);
+                bitmapB.add(y);
+            }
+            TreeSet<Integer> union = new TreeSet<Integer>(a);
+            union.addAll(b);
+            TreeSet<Integer> intersection = new TreeSet<Integer>(a);
+            intersection.retainAll(b);
+            assertArrayEquals(toArray(union), bitmapA.or(bitmapB).toArray());
+            assertArrayEquals(toArray(intersection), bitmapA.and(bitmapB)
+                    .toArray());
+            assertArrayEquals(toArray(a), bitmapA.toArray());
+        }
+    }
+
+    @Test
+    public void testOperationsDoNotModifyOperands() throws Exception {
+        ObjectIdBitmap a = ObjectIdBitmap.of(1, 2, 3);
+        ObjectIdBitmap b = ObjectIdBitmap.of(3, 4);
+        ObjectIdBitmap union = a.or(b);
+        union.add(5);
+        ObjectIdBitmap intersection = a.and(b);
+        intersection.add(6);
+        assertArrayEquals(new int[]{1, 2, 3}, a.toArray());
+        assertArrayEquals(new int[]{3, 4}, b.toArray());
+        assertArrayEquals(new int[]{3, 6}, intersection.toArray());
+    }
+
+    private static int[] toArray(TreeSet<Integer> set) {
+        int[] array = new int[set.size()];
+        int i = 0;
+        for (Integer value : set) {
+            array[i++] = value;
+        }
+        return array;
+    }
+}
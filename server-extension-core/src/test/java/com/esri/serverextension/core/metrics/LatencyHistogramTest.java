@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketsCoverValues() throws Exception {
+        long[] values = {0L, 1L, 15L, 16L, 17L, 31L, 32L, 1000L, 123456789L,
+                (1L << 41) - 1};
+        for (long value : values) {
+            int index = LatencyHistogram.bucketIndex(value);
+            long upperBound = LatencyHistogram.bucketUpperBound(index);
+            assertTrue(value <= upperBound);
+            assertTrue(index == 0
+                    || LatencyHistogram.bucketUpperBound(index - 1) < value);
+            assertTrue(upperBound - value <= value / 16);
+        }
+    }
+
+    @Test
+    public void testQuantiles() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000L, snapshot.getCount());
+        assertEquals(500.5d, snapshot.getMeanMillis(), 1e-9);
+        assertEquals(1000.0d, snapshot.getMaxMillis(), 1e-9);
+        assertEquals(500.0d, snapshot.getValueAtQuantileMillis(0.5d), 500.0d / 16);
+        assertEquals(990.0d, snapshot.getValueAtQuantileMillis(0.99d), 990.0d / 16);
+        assertEquals(1000.0d, snapshot.getValueAtQuantileMillis(1.0d), 1e-9);
+    }
+
+    @Test
+    public void testConcurrentRecording() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 100000; i++) {
+                        histogram.record(i);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(400000L, histogram.getCount());
+        assertEquals(400000L, histogram.snapshot().getCount());
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.rest.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class JSONFieldRewriterTest {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    @Test
+    public void testRewriteField() throws Exception {
+        String input = "{\"geometry\":{\"rings\":[[[0,0],[0,1],[1,1],[0,0]]]},"
+                + "\"where\":\"STATUS = 'Open'\",\"outFields\":\"*\",\"f\":\"json\"}";
+        String output = new JSONFieldRewriter(jsonFactory)
+                .rewriteField("where", new AppendCondition("AGENCY = 1"))
+                .rewrite(input);
+        assertEquals("{\"geometry\":{\"rings\":[[[0,0],[0,1],[1,1],[0,0]]]},"
+                + "\"where\":\"(STATUS = 'Open') AND (AGENCY = 1)\","
+                + "\"outFields\":\"*\",\"f\":\"json\"}", output);
+    }
+
+    @Test
+    public void testAppendMissingField() throws Exception {
+        String output = new JSONFieldRewriter(jsonFactory)
+                .rewriteField("where", new AppendCondition("AGENCY = 1"))
+                .rewrite("{\"outFields\":\"*\"}");
+        assertEquals("{\"outFields\":\"*\",\"where\":\"AGENCY = 1\"}", output);
+    }
+
+    @Test
+    public void testRewriteBlankInput() throws Exception {
+        String output = new JSONFieldRewriter(jsonFactory)
+                .rewriteField("where", new AppendCondition("AGENCY = 1"))
+                .rewrite("");
+        assertEquals("{\"where\":\"AGENCY = 1\"}", output);
+    }
+
+    @Test
+    public void testReplaceStructuredValue() throws Exception {
+        String output = new JSONFieldRewriter(jsonFactory)
+                .rewriteField("geometry", new JSONFieldRewriter.FieldRewrite() {
+                    @Override
+                    public void writeValue(JsonParser currentValue,
+                                           JsonGenerator generator) throws IOException {
+                        generator.writeNull();
+                    }
+                })
+                .rewrite("{\"geometry\":{\"x\":1,\"y\":[2,3]},\"f\":\"json\"}");
+        assertEquals("{\"geometry\":null,\"f\":\"json\"}", output);
+    }
+
+    @Test
+    public void testReadField() throws Exception {
+        JSONFieldRewriter rewriter = new JSONFieldRewriter(jsonFactory);
+        String input = "{\"geometry\":{\"objectIds\":\"9\"},\"objectIds\":\"1,2\",\"f\":null}";
+        assertEquals("1,2", rewriter.readField(input, "objectIds"));
+        assertNull(rewriter.readField(input, "geometry"));
+        assertNull(rewriter.readField(input, "f"));
+        assertNull(rewriter.readField(input, "where"));
+    }
+
+    @Test
+    public void testRewriteFieldIgnoringCase() throws Exception {
+        String output = new JSONFieldRewriter(jsonFactory)
+                .rewriteField("where", new AppendCondition("AGENCY = 1"))
+                .rewrite("{\"Where\":\"STATUS = 'Open'\",\"f\":\"json\"}");
+        assertEquals("{\"Where\":\"(STATUS = 'Open') AND (AGENCY = 1)\","
+                + "\"f\":\"json\"}", output);
+    }
+
+    @Test
+    public void testDropCaseVariantDuplicates() throws Exception {
+        String output = new JSONFieldRewriter(jsonFactory)
+                .rewriteField("where", new AppendCondition("AGENCY = 1"))
+                .rewrite("{\"where\":\"STATUS = 'Open'\",\"WHERE\":\"1=1\","
+                        + "\"f\":\"json\",\"Where\":{\"x\":[1]}}");
+        assertEquals("{\"where\":\"(STATUS = 'Open') AND (AGENCY = 1)\","
+                + "\"f\":\"json\"}", output);
+    }
+
+    @Test
+    public void testReadFieldIgnoringCase() throws Exception {
+        JSONFieldRewriter rewriter = new JSONFieldRewriter(jsonFactory);
+        assertEquals("1,2", rewriter.readField(
+                "{\"OBJECTIDS\":\"1,2\",\"objectIds\":\"3\"}", "objectIds"));
+    }
+
+    private static final class AppendCondition implements
+            JSONFieldRewriter.FieldRewrite {
+
+        private final String condition;
+
+        private AppendCondition(String condition) {
+            this.condition = condition;
+        }
+
+        @Override
+        public void writeValue(JsonParser currentValue, JsonGenerator generator)
+                throws IOException {
+            String where = currentValue != null ? currentValue
+                    .getValueAsString() : null;
+            generator.writeString(where == null || where.isEmpty() ? condition
+                    : "(" + where + ") AND (" + condition + ")");
+        }
+    }
+}
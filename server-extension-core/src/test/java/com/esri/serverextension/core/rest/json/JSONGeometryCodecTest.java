@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.rest.json;
+
+import com.esri.arcgis.geometry.ISpatialReference;
+import com.esri.arcgis.geometry.ISpatialReference3;
+import com.esri.arcgis.geometry.ISpatialReferenceTolerance;
+import com.esri.arcgis.geometry.IVerticalCoordinateSystem;
+import com.esri.serverextension.core.geometry.CoordinateGeometry;
+import com.esri.serverextension.core.geometry.SpatialReferenceDefinition;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class JSONGeometryCodecTest {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final JSONGeometryCodec codec = new JSONGeometryCodec();
+
+    @Test
+    public void testReadPoint() throws Exception {
+        CoordinateGeometry point = read("{\"x\":-117.5,\"y\":34,\"spatialReference\":{\"wkid\":4326}}");
+        assertEquals(CoordinateGeometry.Type.POINT, point.getType());
+        assertFalse(point.isZAware());
+        assertEquals(-117.5, point.getX(0), 0.0);
+        assertEquals(34.0, point.getY(0), 0.0);
+        assertEquals(SpatialReferenceDefinition.fromWkid(4326),
+                point.getSpatialReference());
+    }
+
+    @Test
+    public void testReadPolylineWithZAndM() throws Exception {
+        CoordinateGeometry polyline = read("{\"hasM\":true,\"paths\":[[[1,2,3,4],[5,6,7,8]],[[9,10,11,12]]],"
+                + "\"hasZ\":true,\"spatialReference\":{\"wkid\":102100,\"latestWkid\":3857}}");
+        assertEquals(CoordinateGeometry.Type.POLYLINE, polyline.getType());
+        assertTrue(polyline.isZAware());
+        assertTrue(polyline.isMAware());
+        assertEquals(2, polyline.getPartCount());
+        assertEquals(3, polyline.getPointCount());
+        assertEquals(2, polyline.getPartStart(1));
+        assertArrayEquals(new double[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11,
+                12}, polyline.getCoordinates(), 0.0);
+        assertEquals(Integer.valueOf(3857),
+                polyline.getSpatialReference().getLatestWkid());
+    }
+
+    @Test
+    public void testReadPolygonWithMOnly() throws Exception {
+        CoordinateGeometry polygon = read("{\"hasM\":true,\"rings\":[[[0,0,1],[0,1,2],[1,1,3],[0,0,1]]]}");
+        assertEquals(CoordinateGeometry.Type.POLYGON, polygon.getType());
+        assertFalse(polygon.isZAware());
+        assertEquals(3, polygon.getDimension());
+        assertEquals(3.0, polygon.getM(2), 0.0);
+        assertEquals(Double.NaN, polygon.getZ(2), 0.0);
+    }
+
+    @Test
+    public void testReadEnvelope() throws Exception {
+        CoordinateGeometry envelope = read("{\"xmin\":1,\"ymin\":2,\"xmax\":3,\"ymax\":4,\"zmin\":5,\"zmax\":6}");
+        assertEquals(CoordinateGeometry.Type.ENVELOPE, envelope.getType());
+        assertTrue(envelope.isZAware());
+        assertArrayEquals(new double[]{1, 2, 5, 3, 4, 6},
+                envelope.getCoordinates(), 0.0);
+    }
+
+    @Test
+    public void testReadUnknownObject() throws Exception {
+        assertNull(read("{\"name\":\"value\",\"nested\":{\"x\":1}}"));
+    }
+
+    @Test
+    public void testReadSimpleFormats() throws Exception {
+        CoordinateGeometry point = codec.readSimpleGeometry("10.5,-20");
+        assertEquals(CoordinateGeometry.Type.POINT, point.getType());
+        assertEquals(-20.0, point.getY(0), 0.0);
+        CoordinateGeometry envelope = codec.readSimpleGeometry("1,2,3,4");
+        assertEquals(CoordinateGeometry.Type.ENVELOPE, envelope.getType());
+        assertEquals(3.0, envelope.getX(1), 0.0);
+        assertNull(codec.readSimpleGeometry("abc"));
+    }
+
+    @Test
+    public void testWriteMultipoint() throws Exception {
+        String json = "{\"points\":[[1,2],[3.25,4]],\"spatialReference\":{\"wkid\":4326}}";
+        assertEquals(json, write(read(json)));
+    }
+
+    @Test
+    public void testWriteEmptyPoint() throws Exception {
+        assertEquals("{\"x\":null,\"y\":null}", write(read("{\"x\":\"NaN\",\"y\":null}")));
+    }
+
+    @Test
+    public void testRoundTripPolygon() throws Exception {
+        String json = "{\"hasZ\":true,\"rings\":[[[0,0,1],[0,1,1.5],[1,1,2],[0,0,1]],[]]}";
+        CoordinateGeometry polygon = read(json);
+        assertEquals(2, polygon.getPartCount());
+        assertEquals(json, write(polygon));
+    }
+
+    @Test
+    public void testReadCurvePaths() throws Exception {
+        CoordinateGeometry polyline = read("{\"hasZ\":true,\"curvePaths\":[[[0,0,1],"
+                + "{\"c\":[[2,2,1],[1,1.5,1]]}]],\"spatialReference\":{\"wkid\":4326}}");
+        assertEquals(CoordinateGeometry.Type.POLYLINE, polyline.getType());
+        assertTrue(polyline.hasCurves());
+        assertTrue(polyline.isZAware());
+        assertFalse(polyline.isEmpty());
+        assertEquals("{\"hasZ\":true,\"curvePaths\":[[[0,0,1],{\"c\":[[2,2,1],[1,1.5,1]]}]]}",
+                polyline.getCurveJson());
+        assertEquals(SpatialReferenceDefinition.fromWkid(4326),
+                polyline.getSpatialReference());
+    }
+
+    @Test
+    public void testCurvesTakePrecedenceOverRings() throws Exception {
+        CoordinateGeometry polygon = read("{\"rings\":[[[0,0],[0,2],[2,0],[0,0]]],"
+                + "\"curveRings\":[[[0,0],{\"a\":[[0,0],[1,0],0,1]}]]}");
+        assertEquals(CoordinateGeometry.Type.POLYGON, polygon.getType());
+        assertEquals("{\"curveRings\":[[[0,0],{\"a\":[[0,0],[1,0],0,1]}]]}",
+                polygon.getCurveJson());
+    }
+
+    @Test
+    public void testRoundTripCurveRings() throws Exception {
+        String json = "{\"hasM\":true,\"curveRings\":[[[0,0,1],{\"b\":[[0,0,1],[1,1],[2,2]]}]],"
+                + "\"spatialReference\":{\"wkid\":102100,\"latestWkid\":3857}}";
+        assertEquals(json, write(read(json)));
+    }
+
+    @Test
+    public void testSpatialReferenceCacheKey() throws Exception {
+        CountingCodec countingCodec = new CountingCodec();
+        ISpatialReference plain = createSpatialReference(4326, 0, 0.001);
+        ISpatialReference withVerticalCoordinateSystem = createSpatialReference(4326, 5703, 0.001);
+        ISpatialReference withTolerance = createSpatialReference(4326, 0, 0.01);
+        assertEquals("4326/0/0.001", countingCodec.getSpatialReferenceJson(plain));
+        assertEquals("4326/0/0.001", countingCodec.getSpatialReferenceJson(
+                createSpatialReference(4326, 0, 0.001)));
+        assertEquals(1, countingCodec.conversions);
+        assertEquals("4326/5703/0.001", countingCodec.getSpatialReferenceJson(
+                withVerticalCoordinateSystem));
+        assertEquals("4326/0/0.01", countingCodec.getSpatialReferenceJson(withTolerance));
+        assertEquals(3, countingCodec.conversions);
+    }
+
+    private static ISpatialReference createSpatialReference(final int factoryCode,
+                                                            final int verticalFactoryCode,
+                                                            final double xyTolerance) {
+        final IVerticalCoordinateSystem verticalCoordinateSystem = verticalFactoryCode > 0
+                ? (IVerticalCoordinateSystem) Proxy.newProxyInstance(
+                JSONGeometryCodecTest.class.getClassLoader(),
+                new Class<?>[]{IVerticalCoordinateSystem.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return verticalFactoryCode;
+                    }
+                }) : null;
+        return (ISpatialReference) Proxy.newProxyInstance(
+                JSONGeometryCodecTest.class.getClassLoader(),
+                new Class<?>[]{ISpatialReference.class, ISpatialReference3.class,
+                        ISpatialReferenceTolerance.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        switch (method.getName()) {
+                            case "getFactoryCode":
+                                return factoryCode;
+                            case "getVerticalCoordinateSystem":
+                                return verticalCoordinateSystem;
+                            case "getXYTolerance":
+                                return xyTolerance;
+                            case "getZTolerance":
+                            case "getMTolerance":
+                                return 0.001;
+                            case "toString":
+                                return factoryCode + "/" + verticalFactoryCode + "/" + xyTolerance;
+                            default:
+                                // false origins and units are left at zero
+                                return null;
+                        }
+                    }
+                });
+    }
+
+    private static final class CountingCodec extends JSONGeometryCodec {
+
+        private int conversions;
+
+        @Override
+        String convertSpatialReference(ISpatialReference spatialReference) {
+            conversions++;
+            return spatialReference.toString();
+        }
+    }
+
+    private CoordinateGeometry read(String json) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            return codec.readGeometry(parser);
+        }
+    }
+
+    private String write(CoordinateGeometry geometry) throws IOException {
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = jsonFactory.createGenerator(writer)) {
+            codec.writeGeometry(geometry, generator, false);
+        }
+        return writer.toString();
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.security;
+
+import com.esri.serverextension.core.metrics.CacheMetrics;
+import com.esri.serverextension.core.metrics.MetricsRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class UserRoleCacheTest {
+
+    private CacheMetrics metrics;
+    private TestUserRoleCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        metrics = new MetricsRegistry().getCacheMetrics("userRoles");
+        cache = new TestUserRoleCache(2, metrics);
+    }
+
+    @Test
+    public void testRoleSetMembership() throws Exception {
+        RoleSet roles = cache.intern(Arrays.asList("viewer", "editor"));
+        assertEquals(2, roles.size());
+        assertTrue(roles.contains("editor"));
+        assertTrue(roles.contains("viewer"));
+        assertFalse(roles.contains("admin"));
+        assertEquals(new HashSet<String>(Arrays.asList("editor", "viewer")),
+                roles);
+        assertEquals(Collections.emptySet(), cache.intern(null));
+    }
+
+    @Test
+    public void testRoleSetsAreInterned() throws Exception {
+        RoleSet roles = cache.intern(Arrays.asList("viewer", "editor"));
+        assertSame(roles, cache.intern(Arrays.asList("editor", "viewer")));
+        assertNotSame(roles, cache.intern(Arrays.asList("editor")));
+    }
+
+    @Test
+    public void testHitAndMiss() throws Exception {
+        CountingRoleReader reader = new CountingRoleReader("viewer");
+        SecurityContext first = cache.getSecurityContext("alice", reader);
+        SecurityContext second = cache.getSecurityContext("alice", reader);
+        assertSame(first, second);
+        assertEquals("alice", first.getUserPrincipal().getName());
+        assertEquals(1, reader.reads);
+        assertEquals(1L, metrics.getHits());
+        assertEquals(1L, metrics.getMisses());
+    }
+
+    @Test
+    public void testRefreshAheadKeepsUnchangedContext() throws Exception {
+        CountingRoleReader reader = new CountingRoleReader("viewer");
+        SecurityContext first = cache.getSecurityContext("alice", reader);
+        cache.time += TimeUnit.SECONDS.toNanos(80);
+        SecurityContext refreshed = cache.getSecurityContext("alice", reader);
+        assertSame(first, refreshed);
+        assertEquals(2, reader.reads);
+        assertEquals(1L, metrics.getRefreshes());
+        assertEquals(1L, metrics.getHits());
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        CountingRoleReader reader = new CountingRoleReader("viewer");
+        cache.getSecurityContext("alice", reader);
+        cache.time += TimeUnit.SECONDS.toNanos(100);
+        reader.roles = Arrays.asList("viewer", "editor");
+        SecurityContext expired = cache.getSecurityContext("alice", reader);
+        assertTrue(expired.getUserRoles().contains("editor"));
+        assertEquals(2L, metrics.getMisses());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        CountingRoleReader reader = new CountingRoleReader("viewer");
+        cache.getSecurityContext("alice", reader);
+        cache.getSecurityContext("bob", reader);
+        cache.getSecurityContext("alice", reader);
+        cache.getSecurityContext("carol", reader);
+        assertEquals(2, cache.size());
+        assertEquals(1L, metrics.getEvictions());
+        cache.getSecurityContext("alice", reader);
+        assertEquals(3, reader.reads);
+        cache.getSecurityContext("bob", reader);
+        assertEquals(4, reader.reads);
+    }
+
+    private static final class TestUserRoleCache extends UserRoleCache {
+
+        private long time;
+
+        private TestUserRoleCache(int maximumSize, CacheMetrics metrics) {
+            super(maximumSize, 100, TimeUnit.SECONDS, metrics);
+        }
+
+        @Override
+        long nanoTime() {
+            return time;
+        }
+    }
+
+    private static final class CountingRoleReader implements
+            UserRoleCache.RoleReader {
+
+        private List<String> roles;
+        private int reads;
+
+        private CountingRoleReader(String... roles) {
+            this.roles = Arrays.asList(roles);
+        }
+
+        @Override
+        public Collection<String> readRoles() throws IOException {
+            reads++;
+            return roles;
+        }
+    }
+}
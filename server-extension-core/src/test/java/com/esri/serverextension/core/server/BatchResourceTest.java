@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+
+package com.esri.serverextension.core.server;
+
+import com.esri.serverextension.core.metrics.MetricsRegistry;
+import com.esri.serverextension.core.rest.api.ArcGISServiceException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.web.util.UriTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BatchResourceTest {
+
+    private static final RestDelegate NO_HANDLER = null;
+
+    private ObjectMapper objectMapper;
+    private MetricsRegistry metricsRegistry;
+    private TestDelegateMappings delegateMappings;
+    private BatchResource batchResource;
+
+    @Before
+    public void setUp() throws Exception {
+        objectMapper = new ObjectMapper();
+        metricsRegistry = new MetricsRegistry();
+        delegateMappings = new TestDelegateMappings();
+        batchResource = new BatchResource(delegateMappings, metricsRegistry,
+                objectMapper, 3);
+        delegateMappings.add("/batch", new RestDelegate() {
+            @Override
+            public RestResponse process(RestRequest request, RestDelegate handler) {
+                throw new IllegalStateException(
+                        "Nested batches must not be dispatched.");
+            }
+        });
+        delegateMappings.add("/layers", new RestDelegate() {
+            @Override
+            public RestResponse process(RestRequest request, RestDelegate handler) {
+                return json("{\"layers\":[]}");
+            }
+        });
+        delegateMappings.add("/layers/query", new RestDelegate() {
+            @Override
+            public RestResponse process(RestRequest request, RestDelegate handler) {
+                try {
+                    return json("{\"where\":" + objectMapper.writeValueAsString(
+                            request.getOperationInputTree(objectMapper).get("where")
+                                    .asText()) + "}");
+                } catch (java.io.IOException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+        });
+        delegateMappings.add("/forbidden", new RestDelegate() {
+            @Override
+            public RestResponse process(RestRequest request, RestDelegate handler) {
+                throw new ArcGISServiceException(403, "Forbidden", null);
+            }
+        });
+        delegateMappings.add("/image", new RestDelegate() {
+            @Override
+            public RestResponse process(RestRequest request, RestDelegate handler) {
+                return RestResponse.fromGeneratedBody(
+                        "{\"Content-Type\":\"image/png\"}",
+                        new byte[]{(byte) 0x89, 'P', 'N', 'G'});
+            }
+        });
+        delegateMappings.add("/bom", new RestDelegate() {
+            @Override
+            public RestResponse process(RestRequest request, RestDelegate handler) {
+                byte[] body = "{\"bom\":true}".getBytes(StandardCharsets.UTF_8);
+                byte[] bodyWithBom = new byte[body.length + 3];
+                bodyWithBom[0] = (byte) 0xef;
+                bodyWithBom[1] = (byte) 0xbb;
+                bodyWithBom[2] = (byte) 0xbf;
+                System.arraycopy(body, 0, bodyWithBom, 3, body.length);
+                return RestResponse.fromGeneratedBody(null, bodyWithBom);
+            }
+        });
+        delegateMappings.add("/truncated", new RestDelegate() {
+            @Override
+            public RestResponse process(RestRequest request, RestDelegate handler) {
+                return json("{\"features\":[1,2");
+            }
+        });
+    }
+
+    @Test
+    public void testDispatchesItemsInOrder() throws Exception {
+        JsonNode responses = batch("{\"requests\":["
+                + "{\"resource\":\"layers\"},"
+                + "{\"resource\":\"layers\",\"operation\":\"query\","
+                + "\"operationInput\":{\"where\":\"1=1\"}},"
+                + "{\"resource\":\"layers\",\"operation\":\"query\","
+                + "\"operationInput\":\"{\\\"where\\\":\\\"2=2\\\"}\"}]}");
+        assertEquals(3, responses.size());
+        assertEquals("layers", responses.get(0).get("resource").asText());
+        assertTrue(responses.get(0).get("response").get("layers").isArray());
+        assertEquals("query", responses.get(1).get("operation").asText());
+        assertEquals("1=1", responses.get(1).get("response").get("where").asText());
+        assertEquals("2=2", responses.get(2).get("response").get("where").asText());
+        assertEquals(2L, metricsRegistry.getRouteMetrics("/layers/query")
+                .getRequests());
+    }
+
+    @Test
+    public void testFailedItemsAreErrorObjects() throws Exception {
+        JsonNode responses = batch("{\"requests\":["
+                + "{\"resource\":\"forbidden\"},"
+                + "{\"resource\":\"missing\"},"
+                + "{\"resource\":\"layers\"}]}");
+        assertEquals(403, responses.get(0).get("error").get("code").asInt());
+        assertEquals("Forbidden", responses.get(0).get("error").get("message")
+                .asText());
+        assertFalse(responses.get(0).has("response"));
+        assertEquals(404, responses.get(1).get("error").get("code").asInt());
+        assertTrue(responses.get(2).has("response"));
+        assertEquals(1L, metricsRegistry.getRouteMetrics("/forbidden")
+                .getErrors());
+    }
+
+    @Test
+    public void testNonJsonResponsesAreErrors() throws Exception {
+        JsonNode responses = batch("{\"requests\":["
+                + "{\"resource\":\"image\"},"
+                + "{\"resource\":\"truncated\"},"
+                + "{\"resource\":\"bom\"}]}");
+        assertEquals(400, responses.get(0).get("error").get("code").asInt());
+        assertEquals(400, responses.get(1).get("error").get("code").asInt());
+        assertTrue(responses.get(2).get("response").get("bom").asBoolean());
+    }
+
+    @Test
+    public void testNestedBatchIsRejected() throws Exception {
+        JsonNode responses = batch("{\"requests\":["
+                + "{\"resource\":\"batch\",\"operationInput\":"
+                + "{\"requests\":[{\"resource\":\"layers\"}]}}]}");
+        assertEquals(1, responses.size());
+        assertEquals(404, responses.get(0).get("error").get("code").asInt());
+    }
+
+    @Test
+    public void testRejectsTooManyRequests() throws Exception {
+        try {
+            batch("{\"requests\":[{\"resource\":\"layers\"},"
+                    + "{\"resource\":\"layers\"},{\"resource\":\"layers\"},"
+                    + "{\"resource\":\"layers\"}]}");
+            fail("Batches larger than the maximum must be rejected.");
+        } catch (ArcGISServiceException ex) {
+            assertEquals(Integer.valueOf(400), ex.getCode());
+        }
+    }
+
+    @Test
+    public void testRejectsMissingRequests() throws Exception {
+        try {
+            batch("{\"requests\":{}}");
+            fail("A batch without requests array must be rejected.");
+        } catch (ArcGISServiceException ex) {
+            assertEquals(Integer.valueOf(400), ex.getCode());
+        }
+    }
+
+    private JsonNode batch(String operationInput) throws Exception {
+        RestRequest request = TestRequests.create("batch", null,
+                operationInput, TestRequests.createSecurityContext("alice"));
+        RestResponse response = batchResource.batch(request, NO_HANDLER);
+        JsonNode body = objectMapper.readTree(response.getResponseBody());
+        return body.get("responses");
+    }
+
+    private static RestResponse json(String body) {
+        return RestResponse.fromGeneratedBody(null,
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static final class TestDelegateMappings implements
+            RestDelegateMappings {
+
+        private final Map<String, RestDelegate> delegates = new HashMap<String, RestDelegate>();
+
+        private void add(String path, RestDelegate delegate) {
+            delegates.put(path, delegate);
+        }
+
+        @Override
+        public void registerDelegate(String path, RestDelegate delegate) {
+            add(path, delegate);
+        }
+
+        @Override
+        public void registerDelegate(String path, RestDelegate delegate,
+                                     int priority) {
+            add(path, delegate);
+        }
+
+        @Override
+        public void registerDelegate(UriTemplate path, RestDelegate delegate) {
+            add(path.toString(), delegate);
+        }
+
+        @Override
+        public void registerDelegate(UriTemplate path, RestDelegate delegate,
+                                     int priority) {
+            add(path.toString(), delegate);
+        }
+
+        @Override
+        public RestDelegate getMatchingDelegate(String path) {
+            return delegates.get(path);
+        }
+
+        @Override
+        public RestDelegateMatch findMatch(String path) {
+            RestDelegate delegate = delegates.get(path);
+            return delegate != null ? new RestDelegateMatch(path, delegate,
+                    Collections.<String, String>emptyMap()) : null;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+
+package com.esri.serverextension.core.server;
+
+import com.esri.arcgis.server.IServerObject;
+import com.esri.arcgis.server.IServerObjectHelper;
+import com.esri.serverextension.core.security.SecurityContext;
+
+import java.security.Principal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Creates requests for tests running without a server object.
+ */
+public final class TestRequests {
+
+    private static final ServerObjectExtensionContext SERVER_CONTEXT = ServerObjectExtensionContext
+            .create(new IServerObjectHelper() {
+                @Override
+                public IServerObject getServerObject() {
+                    return null;
+                }
+            });
+
+    private TestRequests() {
+    }
+
+    public static RestRequest create(String resourceName, String operationName,
+                                     String operationInput, SecurityContext securityContext) {
+        return new RestRequest("", resourceName, operationName, operationInput,
+                "json", "{}", SERVER_CONTEXT, securityContext);
+    }
+
+    public static SecurityContext createSecurityContext(final String userName,
+                                                        String... roles) {
+        final Set<String> userRoles = Collections.unmodifiableSet(
+                new HashSet<String>(Arrays.asList(roles)));
+        final Principal principal = new Principal() {
+            @Override
+            public String getName() {
+                return userName;
+            }
+        };
+        return new SecurityContext() {
+            @Override
+            public Set<String> getUserRoles() {
+                return userRoles;
+            }
+
+            @Override
+            public Principal getUserPrincipal() {
+                return principal;
+            }
+        };
+    }
+}
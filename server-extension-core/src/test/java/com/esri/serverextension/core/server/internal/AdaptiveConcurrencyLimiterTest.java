@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+
+package com.esri.serverextension.core.server.internal;
+
+import com.esri.serverextension.core.metrics.MetricsRegistry;
+import com.esri.serverextension.core.metrics.RouteMetrics;
+import com.esri.serverextension.core.rest.api.ArcGISServiceException;
+import com.esri.serverextension.core.server.ConcurrencyLimit;
+import com.esri.serverextension.core.server.RequestTimeoutException;
+import com.esri.serverextension.core.server.RestDelegate;
+import com.esri.serverextension.core.server.RestRequest;
+import com.esri.serverextension.core.server.RestResponse;
+import com.esri.serverextension.core.server.TestRequests;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1L);
+
+    @Test
+    public void testAdmitsUpToLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 4);
+        assertTrue(limiter.acquire(0L, TimeUnit.NANOSECONDS));
+        assertTrue(limiter.acquire(0L, TimeUnit.NANOSECONDS));
+        assertFalse(limiter.acquire(1L, TimeUnit.MILLISECONDS));
+        assertEquals(2, limiter.getInFlight());
+        limiter.release(-1L);
+        assertTrue(limiter.acquire(0L, TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void testReleaseAdmitsWaitingRequest() throws Exception {
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1);
+        assertTrue(limiter.acquire(0L, TimeUnit.NANOSECONDS));
+        final AtomicBoolean admitted = new AtomicBoolean();
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread waiting = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    admitted.set(limiter.acquire(10L, TimeUnit.SECONDS));
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            }
+        });
+        waiting.start();
+        while (waiting.getState() != Thread.State.TIMED_WAITING) {
+            Thread.sleep(1L);
+        }
+        limiter.release(MILLIS);
+        assertTrue(done.await(10L, TimeUnit.SECONDS));
+        assertTrue(admitted.get());
+        assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    public void testLimitGrowsWhileUsedAtSteadyLatency() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 8);
+        for (int i = 0; i < 200; i++) {
+            completeAtLimit(limiter, 10L * MILLIS);
+        }
+        assertEquals(8, limiter.getLimit());
+    }
+
+    @Test
+    public void testLimitDoesNotGrowWhileUnused() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 8);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(limiter.acquire(0L, TimeUnit.NANOSECONDS));
+            limiter.release(10L * MILLIS);
+        }
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    public void testMixedLatenciesDoNotCollapseLimit() throws Exception {
+        // pyramid hits next to clustering on the fly, at a steady load
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 32);
+        Random random = new Random(42L);
+        for (int i = 0; i < 2000; i++) {
+            assertTrue(limiter.acquire(0L, TimeUnit.NANOSECONDS));
+            assertTrue(limiter.acquire(0L, TimeUnit.NANOSECONDS));
+            limiter.release(random.nextInt(4) == 0 ? 500L * MILLIS
+                    : 5L * MILLIS);
+            limiter.release(random.nextInt(4) == 0 ? 500L * MILLIS
+                    : 5L * MILLIS);
+        }
+        assertTrue(String.valueOf(limiter.getLimit()), limiter.getLimit() >= 4);
+    }
+
+    @Test
+    public void testRisingLatencyBacksOffOncePerLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 10);
+        for (int i = 0; i < 100; i++) {
+            completeAtLimit(limiter, 10L * MILLIS);
+        }
+        assertEquals(10, limiter.getLimit());
+        // the short average needs a few requests to exceed the tolerance
+        int requests = 0;
+        while (limiter.getLimit() == 10) {
+            assertTrue(limiter.acquire(0L, TimeUnit.NANOSECONDS));
+            limiter.release(100L * MILLIS);
+            requests++;
+        }
+        assertTrue(requests > 1);
+        assertEquals(9, limiter.getLimit());
+        for (int i = 0; i < 8; i++) {
+            assertTrue(limiter.acquire(0L, TimeUnit.NANOSECONDS));
+            limiter.release(100L * MILLIS);
+        }
+        assertEquals(9, limiter.getLimit());
+        assertTrue(limiter.acquire(0L, TimeUnit.NANOSECONDS));
+        limiter.release(100L * MILLIS);
+        assertEquals(8, limiter.getLimit());
+    }
+
+    @Test
+    public void testTimeoutsLowerLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 8);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limiter.acquire(0L, TimeUnit.NANOSECONDS));
+            limiter.releaseTimedOut();
+        }
+        assertEquals(4, limiter.getLimit());
+        assertTrue(limiter.acquire(0L, TimeUnit.NANOSECONDS));
+        limiter.releaseTimedOut();
+        assertEquals(3, limiter.getLimit());
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.acquire(0L, TimeUnit.NANOSECONDS));
+            limiter.releaseTimedOut();
+        }
+        assertEquals(1, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testFailuresDoNotChangeLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 8);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.acquire(0L, TimeUnit.NANOSECONDS));
+            limiter.release(-1L);
+        }
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    public void testRoutesOfLaneShareLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1);
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+        final RestDelegate[] other = new RestDelegate[1];
+        other[0] = new ConcurrencyLimitingRestDelegate(new RestDelegate() {
+            @Override
+            public RestResponse process(RestRequest request, RestDelegate handler) {
+                return null;
+            }
+        }, "/b",
+                ConcurrencyLimit.Lane.HEAVY, limiter,
+                metricsRegistry.getRouteMetrics("/b"));
+        RestDelegate first = new ConcurrencyLimitingRestDelegate(new RestDelegate() {
+            @Override
+            public RestResponse process(RestRequest request, RestDelegate handler) {
+                // a second heavy route while the first one holds the limit
+                return other[0].process(request, handler);
+            }
+        }, "/a", ConcurrencyLimit.Lane.HEAVY, limiter,
+                metricsRegistry.getRouteMetrics("/a"));
+        try {
+            first.process(createRequest(), null);
+            fail("The second route must not be admitted.");
+        } catch (ArcGISServiceException ex) {
+            assertEquals(Integer.valueOf(429), ex.getCode());
+        }
+        assertEquals(1L, metricsRegistry.getRouteMetrics("/b").getRejections());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testDelegateTimeoutsLowerLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 4);
+        RouteMetrics routeMetrics = new MetricsRegistry().getRouteMetrics("/a");
+        RestDelegate delegate = new ConcurrencyLimitingRestDelegate(new RestDelegate() {
+            @Override
+            public RestResponse process(RestRequest request, RestDelegate handler) {
+                throw new RequestTimeoutException("Timed out.");
+            }
+        }, "/a", ConcurrencyLimit.Lane.HEAVY, limiter, routeMetrics);
+        for (int i = 0; i < 20; i++) {
+            completeAtLimit(limiter, MILLIS);
+        }
+        assertEquals(4, limiter.getLimit());
+        for (int i = 0; i < 4; i++) {
+            try {
+                delegate.process(createRequest(), null);
+                fail("The request must time out.");
+            } catch (RequestTimeoutException ex) {
+                // expected
+            }
+        }
+        assertEquals(3, limiter.getLimit());
+        assertEquals(3, routeMetrics.getConcurrencyLimit());
+    }
+
+    private static RestRequest createRequest() {
+        return TestRequests.create("a", null, "{}",
+                TestRequests.createSecurityContext("alice"));
+    }
+
+    /**
+     * Admits as many requests as the limit allows and completes them.
+     */
+    private static void completeAtLimit(AdaptiveConcurrencyLimiter limiter,
+                                        long latencyNanos) throws InterruptedException {
+        int admitted = 0;
+        while (limiter.acquire(0L, TimeUnit.NANOSECONDS)) {
+            admitted++;
+        }
+        for (int i = 0; i < admitted; i++) {
+            limiter.release(latencyNanos);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+
+package com.esri.serverextension.core.server.internal;
+
+import com.esri.serverextension.core.rest.api.ArcGISServiceException;
+import com.esri.serverextension.core.security.SecurityContext;
+import com.esri.serverextension.core.server.CoalesceRequests;
+import com.esri.serverextension.core.server.RequestDeadline;
+import com.esri.serverextension.core.server.RequestTimeoutException;
+import com.esri.serverextension.core.server.RestDelegate;
+import com.esri.serverextension.core.server.RestRequest;
+import com.esri.serverextension.core.server.RestResponse;
+import com.esri.serverextension.core.server.TestRequests;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CoalescingRestDelegateTest {
+
+    private static final int FOLLOWERS = 4;
+
+    private final SecurityContext user = TestRequests.createSecurityContext(
+            "alice", "viewer");
+
+    private BlockingDelegate delegate;
+    private CoalescingRestDelegate coalescingDelegate;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        delegate = new BlockingDelegate();
+        coalescingDelegate = new CoalescingRestDelegate(delegate,
+                CoalesceRequests.Scope.SERVICE, new ObjectMapper());
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @Test
+    public void testConcurrentRequestsShareOneExecution() throws Exception {
+        Future<RestResponse> leader = submit(createRequest());
+        delegate.started.await();
+        List<Future<RestResponse>> followers = submitFollowers();
+        delegate.release.countDown();
+
+        byte[] body = leader.get().getResponseBody();
+        assertEquals("{\"count\":1}", new String(body, StandardCharsets.UTF_8));
+        for (Future<RestResponse> follower : followers) {
+            assertSame(body, follower.get().getResponseBody());
+        }
+        assertEquals(1, delegate.invocations.get());
+        assertEquals(0, coalescingDelegate.getInFlightRequestCount());
+
+        // completed requests are not remembered
+        coalescingDelegate.process(createRequest(), null);
+        assertEquals(2, delegate.invocations.get());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testFailureIsPassedToAllWaitingRequests() throws Exception {
+        delegate.failure = new ArcGISServiceException(403, "Forbidden", null);
+        Future<RestResponse> leader = submit(createRequest());
+        delegate.started.await();
+        List<Future<RestResponse>> followers = submitFollowers();
+        delegate.release.countDown();
+
+        assertSame(delegate.failure, getFailure(leader));
+        for (Future<RestResponse> follower : followers) {
+            assertSame(delegate.failure, getFailure(follower));
+        }
+        assertEquals(1, delegate.invocations.get());
+        assertEquals(0, coalescingDelegate.getInFlightRequestCount());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testWaitingRequestGivesUpAtItsDeadline() throws Exception {
+        Future<RestResponse> leader = submit(createRequest());
+        delegate.started.await();
+        RestRequest follower = createRequest();
+        follower.setDeadline(RequestDeadline.after(50L, TimeUnit.MILLISECONDS));
+        long startTime = System.nanoTime();
+        try {
+            coalescingDelegate.process(follower, null);
+            fail("The waiting request must time out.");
+        } catch (RequestTimeoutException ex) {
+            assertTrue(System.nanoTime() - startTime < TimeUnit.SECONDS
+                    .toNanos(5L));
+        }
+        delegate.release.countDown();
+        assertEquals("{\"count\":1}", new String(leader.get()
+                .getResponseBody(), StandardCharsets.UTF_8));
+        assertEquals(1, delegate.invocations.get());
+        assertEquals(0, coalescingDelegate.getInFlightRequestCount());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testTimeoutOfFirstRequestIsNotPassedOn() throws Exception {
+        delegate.failure = new RequestTimeoutException("Leader timed out.");
+        Future<RestResponse> leader = submit(createRequest());
+        delegate.started.await();
+        List<Future<RestResponse>> followers = submitFollowers();
+        // following executions succeed
+        delegate.release.countDown();
+
+        assertSame(delegate.failure, getFailure(leader));
+        for (Future<RestResponse> follower : followers) {
+            assertTrue(follower.get().getResponseBody().length > 0);
+        }
+        assertTrue(delegate.invocations.get() >= 2);
+        assertEquals(0, coalescingDelegate.getInFlightRequestCount());
+        executor.shutdown();
+    }
+
+    private RestRequest createRequest() {
+        return TestRequests.create("layers/0", "query",
+                "{\"where\":\"1=1\"}", user);
+    }
+
+    private Future<RestResponse> submit(final RestRequest request) {
+        return executor.submit(new Callable<RestResponse>() {
+            @Override
+            public RestResponse call() throws Exception {
+                return coalescingDelegate.process(request, null);
+            }
+        });
+    }
+
+    /**
+     * Submits requests while the first one is blocked, and returns once all of
+     * them are waiting for it.
+     */
+    private List<Future<RestResponse>> submitFollowers()
+            throws InterruptedException {
+        final List<Thread> threads = new ArrayList<Thread>();
+        List<Future<RestResponse>> followers = new ArrayList<Future<RestResponse>>();
+        final CountDownLatch submitted = new CountDownLatch(FOLLOWERS);
+        for (int i = 0; i < FOLLOWERS; i++) {
+            final RestRequest request = createRequest();
+            followers.add(executor.submit(new Callable<RestResponse>() {
+                @Override
+                public RestResponse call() throws Exception {
+                    synchronized (threads) {
+                        threads.add(Thread.currentThread());
+                    }
+                    submitted.countDown();
+                    return coalescingDelegate.process(request, null);
+                }
+            }));
+        }
+        submitted.await();
+        for (Thread thread : threads) {
+            while (thread.getState() != Thread.State.WAITING
+                    && thread.getState() != Thread.State.TIMED_WAITING) {
+                Thread.sleep(1L);
+            }
+        }
+        return followers;
+    }
+
+    private static Throwable getFailure(Future<RestResponse> future)
+            throws InterruptedException {
+        try {
+            future.get();
+            fail("The request must fail.");
+            return null;
+        } catch (ExecutionException ex) {
+            return ex.getCause();
+        }
+    }
+
+    private static final class BlockingDelegate implements RestDelegate {
+
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicInteger invocations = new AtomicInteger();
+        private volatile RuntimeException failure;
+
+        @Override
+        public RestResponse process(RestRequest request, RestDelegate handler) {
+            int count = invocations.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            if (count == 1 && failure != null) {
+                throw failure;
+            }
+            return RestResponse.fromGeneratedBody(null, ("{\"count\":" + count
+                    + "}").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.server.internal;
+
+import com.esri.serverextension.core.server.RestDelegate;
+import com.esri.serverextension.core.server.RestRequest;
+import com.esri.serverextension.core.server.RestResponse;
+import org.springframework.core.MethodParameter;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compares the invocation plan of {@link DelegateMethodInvoker} with the
+ * previous reflective path, which created a {@link MethodParameter} per
+ * argument and called {@link Method#invoke} for every request. Run with
+ * <code>mvn exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.esri.serverextension.core.server.internal.DelegateMethodInvokerBenchmark</code>.
+ */
+public class DelegateMethodInvokerBenchmark {
+
+    private static final int WARM_UP_ITERATIONS = 2_000_000;
+    private static final int MEASURED_ITERATIONS = 10_000_000;
+    private static final int ROUNDS = 5;
+
+    public static class Delegate {
+
+        public String query(@RequestParam("where") String where,
+                            @RequestParam("outFields") String outFields,
+                            @RequestParam("returnGeometry") Boolean returnGeometry,
+                            @RequestParam("resultOffset") Integer resultOffset) {
+            return where;
+        }
+    }
+
+    private static final class AnnotationReadingResolver implements
+            ArgumentResolver {
+
+        @Override
+        public Object resolveArgument(MethodParameter parameter,
+                                      RestRequest request, RestDelegate handler) throws Exception {
+            RequestParam annotation = parameter
+                    .getParameterAnnotation(RequestParam.class);
+            return annotation.value();
+        }
+
+        @Override
+        public boolean resolves(MethodParameter parameter) {
+            return true;
+        }
+    }
+
+    private static final class NullArgumentResolver implements ArgumentResolver {
+
+        @Override
+        public Object resolveArgument(MethodParameter parameter,
+                                      RestRequest request, RestDelegate handler) throws Exception {
+            return null;
+        }
+
+        @Override
+        public boolean resolves(MethodParameter parameter) {
+            return true;
+        }
+    }
+
+    private static final class DiscardingReturnValueHandler implements
+            ReturnValueHandler {
+
+        @Override
+        public RestResponse handleReturnValue(Object returnValue,
+                                              MethodParameter returnType, RestRequest request) throws Exception {
+            return null;
+        }
+
+        @Override
+        public boolean handles(MethodParameter returnType) {
+            return true;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Delegate bean = new Delegate();
+        Method method = Delegate.class.getMethod("query", String.class,
+                String.class, Boolean.class, Integer.class);
+        ArgumentResolver stringResolver = new AnnotationReadingResolver();
+        ArgumentResolver nullResolver = new NullArgumentResolver();
+        List<ArgumentResolver> resolvers = Arrays.asList(stringResolver,
+                stringResolver, nullResolver, nullResolver);
+        ReturnValueHandler returnValueHandler = new DiscardingReturnValueHandler();
+        DelegateMethodInvoker invoker = new DelegateMethodInvoker(bean,
+                method, resolvers, returnValueHandler);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            runReflective(bean, method, resolvers, returnValueHandler,
+                    WARM_UP_ITERATIONS);
+            runPlanned(invoker, WARM_UP_ITERATIONS);
+
+            long start = System.nanoTime();
+            runReflective(bean, method, resolvers, returnValueHandler,
+                    MEASURED_ITERATIONS);
+            long reflective = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            runPlanned(invoker, MEASURED_ITERATIONS);
+            long planned = System.nanoTime() - start;
+
+            System.out.println(String.format(
+                    "Round %1$d: reflective %2$.1f ns/op, planned %3$.1f ns/op",
+                    round + 1, (double) reflective / MEASURED_ITERATIONS,
+                    (double) planned / MEASURED_ITERATIONS));
+        }
+    }
+
+    private static void runReflective(Object bean, Method method,
+                                      List<ArgumentResolver> resolvers,
+                                      ReturnValueHandler returnValueHandler,
+                                      int iterations) throws Exception {
+        for (int n = 0; n < iterations; n++) {
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            Object[] arguments = new Object[parameterTypes.length];
+            for (int i = 0; i < parameterTypes.length; i++) {
+                MethodParameter parameter = new MethodParameter(method, i);
+                arguments[i] = resolvers.get(i).resolveArgument(parameter,
+                        null, null);
+            }
+            MethodParameter returnParameter = new MethodParameter(method, -1);
+            Object returnValue = method.invoke(bean, arguments);
+            returnValueHandler.handleReturnValue(returnValue, returnParameter,
+                    null);
+        }
+    }
+
+    private static void runPlanned(DelegateMethodInvoker invoker,
+                                   int iterations) {
+        for (int n = 0; n < iterations; n++) {
+            invoker.process(null, null);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+
+package com.esri.serverextension.core.server.internal;
+
+import org.junit.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RouteIndexTest {
+
+    @Test
+    public void testIndexedClass() throws Exception {
+        RouteIndex routeIndex = read(getTestLocation(),
+                LayerResource.class.getName() + "#getLayers()\n"
+                        + LayerResource.class.getName() + "#query(int,java.lang.String[])\n");
+        assertFalse(routeIndex.isEmpty());
+        assertTrue(routeIndex.isIndexed(LayerResource.class));
+        assertEquals(2, routeIndex.getMethods(LayerResource.class).size());
+    }
+
+    @Test
+    public void testClassOutsideIndex() throws Exception {
+        RouteIndex routeIndex = read("file:/extensions/other.jar!/", "");
+        assertFalse(routeIndex.isEmpty());
+        assertFalse(routeIndex.isIndexed(LayerResource.class));
+        assertTrue(routeIndex.getMethods(LayerResource.class).isEmpty());
+    }
+
+    @Test
+    public void testOverriddenMethod() throws Exception {
+        RouteIndex routeIndex = read(getTestLocation(),
+                LayerResource.class.getName() + "#getLayers()\n"
+                        + LayerResource.class.getName() + "#query(int,java.lang.String[])\n"
+                        + CachedLayerResource.class.getName() + "#getLayers()\n");
+        assertTrue(routeIndex.isIndexed(CachedLayerResource.class));
+        List<Method> methods = routeIndex.getMethods(CachedLayerResource.class);
+        assertEquals(2, methods.size());
+        assertEquals(CachedLayerResource.class, methods.get(0)
+                .getDeclaringClass());
+        assertEquals("query", methods.get(1).getName());
+    }
+
+    @Test
+    public void testMismatchedIndex() throws Exception {
+        try {
+            read(getTestLocation(), LayerResource.class.getName()
+                    + "#getLayer(int)\n");
+            fail("Expected IllegalStateException.");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+    }
+
+    private static String getTestLocation() {
+        String url = RouteIndexTest.class.getResource(
+                "RouteIndexTest.class").toString();
+        return url.substring(0, url.length()
+                - (RouteIndexTest.class.getName().replace('.', '/') + ".class")
+                .length());
+    }
+
+    private static RouteIndex read(String location, String content) {
+        final Resource resource = new ByteArrayResource(
+                content.getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public URL getURL() throws IOException {
+                return new URL(location
+                        + RestDelegateMappingRegistry.ROUTE_INDEX_LOCATION);
+            }
+        };
+        ResourcePatternResolver resourceResolver = new ResourcePatternResolver() {
+            @Override
+            public Resource[] getResources(String locationPattern) {
+                return new Resource[]{resource};
+            }
+
+            @Override
+            public Resource getResource(String location) {
+                return resource;
+            }
+
+            @Override
+            public ClassLoader getClassLoader() {
+                return RouteIndexTest.class.getClassLoader();
+            }
+        };
+        return RouteIndex.read(resourceResolver,
+                RouteIndexTest.class.getClassLoader());
+    }
+
+    public static class LayerResource {
+
+        @RequestMapping("/layers")
+        public String getLayers() {
+            return "layers";
+        }
+
+        @RequestMapping("/layers/{id}/query")
+        public String query(int id, String[] fields) {
+            return "query";
+        }
+    }
+
+    public static class CachedLayerResource extends LayerResource {
+
+        @Override
+        @RequestMapping("/layers")
+        public String getLayers() {
+            return "cached layers";
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.core.server.internal;
+
+import com.esri.serverextension.core.server.RestDelegate;
+import com.esri.serverextension.core.server.RestDelegateMatch;
+import com.esri.serverextension.core.server.RestRequest;
+import com.esri.serverextension.core.server.RestResponse;
+import com.esri.serverextension.core.server.internal.RestDelegateMappingRegistry.RestDelegateMappingEntry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.web.util.UriTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class UriTemplateTrieTest {
+
+    private UriTemplateTrie trie;
+
+    @Before
+    public void setUp() throws Exception {
+        List<RestDelegateMappingEntry> entries = new ArrayList<RestDelegateMappingEntry>();
+        entries.add(entry("/", 1));
+        entries.add(entry("/layers", 1));
+        entries.add(entry("/layers/{layerId}", 1));
+        entries.add(entry("/layers/{layerId}/query", 1));
+        entries.add(entry("/layers/0/query", 1));
+        entries.add(entry("/layers/{id}/{operation}", 1));
+        entries.add(entry("/layers/{id}/export", 5));
+        entries.add(entry("/files/{name}.json", 1));
+        Collections.sort(entries);
+        Collections.reverse(entries);
+        trie = UriTemplateTrie.compile(entries);
+    }
+
+    @Test
+    public void testMatchRoot() throws Exception {
+        assertEquals("/", trie.match("/").getPathTemplate());
+    }
+
+    @Test
+    public void testMatchVariable() throws Exception {
+        RestDelegateMatch match = trie.match("/layers/3/query");
+        assertEquals("/layers/{layerId}/query", match.getPathTemplate());
+        assertEquals("3", match.getUriVariables().get("layerId"));
+    }
+
+    @Test
+    public void testLiteralBeforeVariable() throws Exception {
+        RestDelegateMatch match = trie.match("/layers/0/query");
+        assertEquals("/layers/0/query", match.getPathTemplate());
+        assertEquals(0, match.getUriVariables().size());
+    }
+
+    @Test
+    public void testPriorityBeforeLiteral() throws Exception {
+        RestDelegateMatch match = trie.match("/layers/0/export");
+        assertEquals("/layers/{id}/export", match.getPathTemplate());
+        assertEquals("0", match.getUriVariables().get("id"));
+    }
+
+    @Test
+    public void testMatchMultipleVariables() throws Exception {
+        RestDelegateMatch match = trie.match("/layers/2/generateRenderer");
+        assertEquals("/layers/{id}/{operation}", match.getPathTemplate());
+        assertEquals("2", match.getUriVariables().get("id"));
+        assertEquals("generateRenderer",
+                match.getUriVariables().get("operation"));
+    }
+
+    @Test
+    public void testMatchPartialSegmentTemplate() throws Exception {
+        RestDelegateMatch match = trie.match("/files/schema.json");
+        assertEquals("/files/{name}.json", match.getPathTemplate());
+        assertEquals("schema", match.getUriVariables().get("name"));
+    }
+
+    @Test
+    public void testNoMatch() throws Exception {
+        assertNull(trie.match("/about"));
+        assertNull(trie.match("/layers/0/query/extra"));
+    }
+
+    private static RestDelegateMappingEntry entry(String path, int priority) {
+        return new RestDelegateMappingEntry(new UriTemplate(path),
+                new NamedDelegate(path), priority);
+    }
+
+    private static final class NamedDelegate implements RestDelegate {
+
+        private final String name;
+
+        private NamedDelegate(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public RestResponse process(RestRequest request, RestDelegate handler) {
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
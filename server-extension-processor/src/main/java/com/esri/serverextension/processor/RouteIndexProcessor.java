@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+package com.esri.serverextension.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Writes the public methods annotated with <code>@RequestMapping</code> to
+ * <code>META-INF/server-extension/routes.index</code>, one method per line
+ * in the form <code>class#method(parameterType,...)</code> with binary class
+ * names. The REST delegate registry reads the index instead of reflecting
+ * over all methods of all beans at construct time.
+ */
+@SupportedAnnotationTypes(RouteIndexProcessor.REQUEST_MAPPING_ANNOTATION)
+public class RouteIndexProcessor extends AbstractProcessor {
+
+    static final String REQUEST_MAPPING_ANNOTATION = "org.springframework.web.bind.annotation.RequestMapping";
+    static final String ROUTE_INDEX_LOCATION = "META-INF/server-extension/routes.index";
+
+    private final Set<String> routes = new TreeSet<String>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations,
+                           RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.METHOD) {
+                    addRoute((ExecutableElement) element);
+                }
+            }
+        }
+        if (roundEnv.processingOver() && !routes.isEmpty()) {
+            writeRouteIndex();
+        }
+        return false;
+    }
+
+    private void addRoute(ExecutableElement method) {
+        if (!method.getModifiers().contains(Modifier.PUBLIC)) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "Request mapping of non-public method is ignored.", method);
+            return;
+        }
+        TypeElement type = (TypeElement) method.getEnclosingElement();
+        StringBuilder route = new StringBuilder();
+        route.append(processingEnv.getElementUtils().getBinaryName(type))
+                .append('#').append(method.getSimpleName()).append('(');
+        boolean first = true;
+        for (VariableElement parameter : method.getParameters()) {
+            if (!first) {
+                route.append(',');
+            }
+            route.append(getClassName(parameter.asType()));
+            first = false;
+        }
+        route.append(')');
+        routes.add(route.toString());
+    }
+
+    private String getClassName(TypeMirror type) {
+        TypeMirror erasedType = processingEnv.getTypeUtils().erasure(type);
+        if (erasedType.getKind() == TypeKind.ARRAY) {
+            return getClassName(((ArrayType) erasedType).getComponentType())
+                    + "[]";
+        }
+        if (erasedType.getKind() == TypeKind.DECLARED) {
+            return processingEnv.getElementUtils().getBinaryName(
+                    (TypeElement) ((DeclaredType) erasedType).asElement())
+                    .toString();
+        }
+        return erasedType.toString();
+    }
+
+    private void writeRouteIndex() {
+        try {
+            FileObject file = processingEnv.getFiler().createResource(
+                    StandardLocation.CLASS_OUTPUT, "", ROUTE_INDEX_LOCATION);
+            try (Writer writer = new OutputStreamWriter(file.openOutputStream(),
+                    StandardCharsets.UTF_8)) {
+                for (String route : routes) {
+                    writer.write(route);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException ex) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Failed to write route index: " + ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2017 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+
+
+package com.esri.serverextension.processor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class RouteIndexProcessorTest {
+
+    private static final String REQUEST_MAPPING_SOURCE = "package org.springframework.web.bind.annotation;\n"
+            + "import java.lang.annotation.*;\n"
+            + "@Retention(RetentionPolicy.RUNTIME)\n"
+            + "@Target({ElementType.TYPE, ElementType.METHOD})\n"
+            + "public @interface RequestMapping { String[] value() default {}; }\n";
+
+    private File outputDirectory;
+    private DiagnosticCollector<JavaFileObject> diagnostics;
+
+    @Before
+    public void setUp() throws IOException {
+        outputDirectory = Files.createTempDirectory("routes").toFile();
+        diagnostics = new DiagnosticCollector<JavaFileObject>();
+    }
+
+    @After
+    public void tearDown() {
+        delete(outputDirectory);
+    }
+
+    @Test
+    public void testWriteRouteIndex() throws IOException {
+        compile(source("com.example.LayerResource", "package com.example;\n"
+                + "import org.springframework.web.bind.annotation.RequestMapping;\n"
+                + "public class LayerResource {\n"
+                + "    @RequestMapping(\"/layers\")\n"
+                + "    public String getLayers() { return null; }\n"
+                + "    @RequestMapping(\"/layers/{id}/query\")\n"
+                + "    public java.util.List<String> query(int id, String[] fields, java.util.Map<String, Object> input) { return null; }\n"
+                + "    public static class Feature {\n"
+                + "        @RequestMapping(\"/features\")\n"
+                + "        public void getFeature(Feature feature) { }\n"
+                + "    }\n"
+                + "}\n"));
+        assertEquals(Arrays.asList(
+                "com.example.LayerResource#getLayers()",
+                "com.example.LayerResource#query(int,java.lang.String[],java.util.Map)",
+                "com.example.LayerResource$Feature#getFeature(com.example.LayerResource$Feature)"),
+                readRouteIndex());
+    }
+
+    @Test
+    public void testIgnoreNonPublicMethods() throws IOException {
+        compile(source("com.example.LayerResource", "package com.example;\n"
+                + "import org.springframework.web.bind.annotation.RequestMapping;\n"
+                + "public class LayerResource {\n"
+                + "    @RequestMapping(\"/layers\")\n"
+                + "    public String getLayers() { return null; }\n"
+                + "    @RequestMapping(\"/hidden\")\n"
+                + "    String getHidden() { return null; }\n"
+                + "}\n"));
+        assertEquals(Collections.singletonList(
+                "com.example.LayerResource#getLayers()"), readRouteIndex());
+        boolean warned = false;
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics
+                .getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.WARNING
+                    && diagnostic.getMessage(null).contains("non-public")) {
+                warned = true;
+            }
+        }
+        assertTrue(warned);
+    }
+
+    @Test
+    public void testNoRouteIndexWithoutMappings() throws IOException {
+        compile(source("com.example.LayerResource", "package com.example;\n"
+                + "public class LayerResource {\n"
+                + "    public String getLayers() { return null; }\n"
+                + "}\n"));
+        assertFalse(new File(outputDirectory,
+                RouteIndexProcessor.ROUTE_INDEX_LOCATION).exists());
+    }
+
+    private void compile(JavaFileObject source) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertNotNull("Tests must run on a JDK.", compiler);
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(
+                diagnostics, null, StandardCharsets.UTF_8);
+        try {
+            fileManager.setLocation(StandardLocation.CLASS_OUTPUT,
+                    Collections.singletonList(outputDirectory));
+            JavaCompiler.CompilationTask task = compiler.getTask(null,
+                    fileManager, diagnostics, null, null, Arrays.asList(
+                            source("org.springframework.web.bind.annotation.RequestMapping",
+                                    REQUEST_MAPPING_SOURCE), source));
+            task.setProcessors(Collections.singletonList(
+                    new RouteIndexProcessor()));
+            assertTrue(diagnostics.getDiagnostics().toString(), task.call());
+        } finally {
+            fileManager.close();
+        }
+    }
+
+    private List<String> readRouteIndex() throws IOException {
+        File file = new File(outputDirectory,
+                RouteIndexProcessor.ROUTE_INDEX_LOCATION);
+        assertTrue(file.exists());
+        return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    }
+
+    private static JavaFileObject source(String className, final String code) {
+        return new SimpleJavaFileObject(URI.create("string:///"
+                + className.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}